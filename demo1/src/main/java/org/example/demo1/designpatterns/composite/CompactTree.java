@@ -0,0 +1,493 @@
+package org.example.demo1.designpatterns.composite;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 组合模式 - 紧凑树存储 (Struct-of-Arrays Tree)
+ *
+ * 把节点保存在并行的基本类型数组中，而不是每个节点一个对象：
+ * 父节点、首子节点、末子节点、下一个兄弟节点的下标，子树大小（long），
+ * 名称在共享 UTF-8 字节池中的偏移和长度，以及驻留后的扩展名编号。
+ * 每个节点约 40 字节加上名称字节，五千万个节点只需要几 GB 堆内存。
+ *
+ * {@link Node} 是按需创建的轻量视图（享元），实现了 {@link FileSystemComponent} 的操作，
+ * 本身只保存树的引用和节点下标。紧凑存储只保存元数据，不保存文件内容；
+ * 删除的节点槽位不会被复用。视图没有 {@link Directory} 父对象，
+ * 父节点通过 {@link Node#getParentNode()} 获取。
+ */
+public class CompactTree {
+
+    // 扩展名编号：目录使用该值，无扩展名的文件为0
+    private static final int DIRECTORY = -1;
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int[] parents;
+    private int[] firstChildren;
+    private int[] lastChildren;
+    private int[] nextSiblings;
+    private int[] childCounts;
+    private long[] sizes;
+    private int[] nameOffsets;
+    private int[] nameLengths;
+    private int[] extensionIds;
+    private int nodeCount;
+
+    private byte[] namePool = new byte[INITIAL_CAPACITY * 16];
+    private int namePoolSize;
+
+    private final List<String> extensions = new ArrayList<>();
+    private final Map<String, Integer> extensionIdsByName = new HashMap<>();
+
+    public CompactTree(String rootName) {
+        this(rootName, INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param rootName 根目录名称
+     * @param expectedNodes 预计的节点数量，用于预分配数组
+     */
+    public CompactTree(String rootName, int expectedNodes) {
+        int capacity = Math.max(expectedNodes, 16);
+        parents = new int[capacity];
+        firstChildren = new int[capacity];
+        lastChildren = new int[capacity];
+        nextSiblings = new int[capacity];
+        childCounts = new int[capacity];
+        sizes = new long[capacity];
+        nameOffsets = new int[capacity];
+        nameLengths = new int[capacity];
+        extensionIds = new int[capacity];
+
+        extensions.add("");
+        extensionIdsByName.put("", 0);
+        newNode(NONE, rootName, DIRECTORY, 0);
+    }
+
+    /**
+     * 把现有的组件树复制到紧凑存储中（不复制文件内容）
+     */
+    public static CompactTree from(Directory directory) {
+        long expectedNodes = Math.min(Integer.MAX_VALUE - 8, directory.getDescendantCount() + 1);
+        CompactTree tree = new CompactTree(directory.getName(), (int) expectedNodes);
+        tree.copyChildren(directory, 0);
+        return tree;
+    }
+
+    private void copyChildren(Directory source, int target) {
+        // 用显式栈复制，避免很深的树导致栈溢出
+        List<Directory> sources = new ArrayList<>();
+        List<Integer> targets = new ArrayList<>();
+        sources.add(source);
+        targets.add(target);
+        while (!sources.isEmpty()) {
+            Directory directory = sources.remove(sources.size() - 1);
+            int node = targets.remove(targets.size() - 1);
+            for (FileSystemComponent child : directory.children()) {
+                if (child instanceof Directory) {
+                    sources.add((Directory) child);
+                    targets.add(addDirectory(node, child.getName()));
+                } else {
+                    addFile(node, child.getName(), child.getSize());
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取根目录视图
+     */
+    public Node root() {
+        return new Node(this, 0);
+    }
+
+    /**
+     * 获取指定下标节点的视图
+     */
+    public Node node(int index) {
+        checkIndex(index);
+        return new Node(this, index);
+    }
+
+    /**
+     * 添加子目录
+     *
+     * @param parent 父目录下标
+     * @param name 目录名称
+     * @return 新节点下标
+     */
+    public int addDirectory(int parent, String name) {
+        checkDirectory(parent);
+        return link(parent, newNode(parent, name, DIRECTORY, 0));
+    }
+
+    /**
+     * 添加文件
+     *
+     * @param parent 父目录下标
+     * @param name 文件名称
+     * @param size 文件大小
+     * @return 新节点下标
+     */
+    public int addFile(int parent, String name, long size) {
+        checkDirectory(parent);
+        if (size < 0) {
+            throw new IllegalArgumentException("Size cannot be negative: " + size);
+        }
+        int node = newNode(parent, name, internExtension(extensionOf(name)), size);
+        link(parent, node);
+        propagateSize(parent, size);
+        return node;
+    }
+
+    /**
+     * 把节点从父目录中移除，节点槽位不再使用
+     */
+    public void remove(int node) {
+        checkIndex(node);
+        int parent = parents[node];
+        if (parent == NONE) {
+            throw new IllegalArgumentException("Cannot remove the root node");
+        }
+
+        // 单向兄弟链表，需要找到前一个兄弟
+        int previous = NONE;
+        for (int child = firstChildren[parent]; child != node; child = nextSiblings[child]) {
+            if (child == NONE) {
+                throw new IllegalArgumentException("Node " + node + " is not attached");
+            }
+            previous = child;
+        }
+        if (previous == NONE) {
+            firstChildren[parent] = nextSiblings[node];
+        } else {
+            nextSiblings[previous] = nextSiblings[node];
+        }
+        if (lastChildren[parent] == node) {
+            lastChildren[parent] = previous;
+        }
+        childCounts[parent]--;
+        propagateSize(parent, -sizes[node]);
+        parents[node] = NONE;
+        nextSiblings[node] = NONE;
+    }
+
+    /**
+     * 获取已分配的节点数量（包括已删除的槽位）
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * 获取名称池占用的字节数
+     */
+    public int getNamePoolSize() {
+        return namePoolSize;
+    }
+
+    /**
+     * 估算存储占用的字节数
+     */
+    public long getFootprintBytes() {
+        long perNode = 8L * Integer.BYTES + Long.BYTES;
+        return perNode * parents.length + namePool.length;
+    }
+
+    private int newNode(int parent, String name, int extensionId, long size) {
+        if (name == null) {
+            throw new IllegalArgumentException("Name cannot be null");
+        }
+        if (nodeCount == parents.length) {
+            grow();
+        }
+        int node = nodeCount++;
+        parents[node] = parent;
+        firstChildren[node] = NONE;
+        lastChildren[node] = NONE;
+        nextSiblings[node] = NONE;
+        childCounts[node] = 0;
+        sizes[node] = size;
+        extensionIds[node] = extensionId;
+        storeName(node, name);
+        return node;
+    }
+
+    private int link(int parent, int node) {
+        if (lastChildren[parent] == NONE) {
+            firstChildren[parent] = node;
+        } else {
+            nextSiblings[lastChildren[parent]] = node;
+        }
+        lastChildren[parent] = node;
+        childCounts[parent]++;
+        return node;
+    }
+
+    private void propagateSize(int from, long delta) {
+        for (int node = from; node != NONE; node = parents[node]) {
+            sizes[node] += delta;
+        }
+    }
+
+    private void storeName(int node, String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (namePoolSize + bytes.length > namePool.length) {
+            long newLength = Math.max((long) namePool.length * 3 / 2, (long) namePoolSize + bytes.length);
+            if (newLength > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Name pool exceeds 2 GB");
+            }
+            namePool = Arrays.copyOf(namePool, (int) newLength);
+        }
+        System.arraycopy(bytes, 0, namePool, namePoolSize, bytes.length);
+        nameOffsets[node] = namePoolSize;
+        nameLengths[node] = bytes.length;
+        namePoolSize += bytes.length;
+    }
+
+    private void grow() {
+        int capacity = parents.length + (parents.length >> 1);
+        parents = Arrays.copyOf(parents, capacity);
+        firstChildren = Arrays.copyOf(firstChildren, capacity);
+        lastChildren = Arrays.copyOf(lastChildren, capacity);
+        nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        childCounts = Arrays.copyOf(childCounts, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        nameOffsets = Arrays.copyOf(nameOffsets, capacity);
+        nameLengths = Arrays.copyOf(nameLengths, capacity);
+        extensionIds = Arrays.copyOf(extensionIds, capacity);
+    }
+
+    private int internExtension(String extension) {
+        Integer id = extensionIdsByName.get(extension);
+        if (id == null) {
+            id = extensions.size();
+            extensions.add(extension);
+            extensionIdsByName.put(extension, id);
+        }
+        return id;
+    }
+
+    /**
+     * 与 {@link File} 相同的扩展名规则
+     */
+    private static String extensionOf(String name) {
+        int dotIndex = name.lastIndexOf('.');
+        if (dotIndex > 0 && dotIndex < name.length() - 1) {
+            return name.substring(dotIndex + 1).toLowerCase();
+        }
+        return "";
+    }
+
+    private void checkIndex(int node) {
+        if (node < 0 || node >= nodeCount) {
+            throw new IndexOutOfBoundsException("Node: " + node + ", Count: " + nodeCount);
+        }
+    }
+
+    private void checkDirectory(int node) {
+        checkIndex(node);
+        if (extensionIds[node] != DIRECTORY) {
+            throw new UnsupportedOperationException("Cannot add component to a leaf node");
+        }
+    }
+
+    private boolean nameEquals(int node, byte[] name) {
+        int length = nameLengths[node];
+        if (length != name.length) {
+            return false;
+        }
+        int offset = nameOffsets[node];
+        for (int i = 0; i < length; i++) {
+            if (namePool[offset + i] != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 节点视图（享元），只持有树和节点下标，可以随时创建和丢弃
+     */
+    public static final class Node extends FileSystemComponent {
+        private final CompactTree tree;
+        private final int index;
+
+        private Node(CompactTree tree, int index) {
+            super(null);
+            this.tree = tree;
+            this.index = index;
+        }
+
+        @Override
+        public String getName() {
+            return new String(tree.namePool, tree.nameOffsets[index], tree.nameLengths[index],
+                              StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public long getSize() {
+            return tree.sizes[index];
+        }
+
+        @Override
+        public String getType() {
+            return isDirectory() ? "Directory" : "File (" + getExtension().toUpperCase() + ")";
+        }
+
+        @Override
+        public void display(int depth) {
+            // 与 Directory 相同，交给渲染器按前序流式输出
+            TreeRenderer.render(this, System.out, System.out.charset(), depth);
+        }
+
+        /**
+         * 子节点视图，按加入顺序排列
+         */
+        List<FileSystemComponent> children() {
+            List<FileSystemComponent> children = new ArrayList<>(getChildCount());
+            for (int child = tree.firstChildren[index]; child != NONE; child = tree.nextSiblings[child]) {
+                children.add(new Node(tree, child));
+            }
+            return children;
+        }
+
+        /**
+         * 复制组件（目录时包括整棵子树）到本目录下，不复制文件内容
+         */
+        @Override
+        public void add(FileSystemComponent component) {
+            if (component == null) {
+                throw new IllegalArgumentException("Component cannot be null");
+            }
+            if (component instanceof Directory) {
+                int directory = tree.addDirectory(index, component.getName());
+                tree.copyChildren((Directory) component, directory);
+            } else if (component instanceof Node) {
+                throw new IllegalArgumentException("Cannot add a compact node, use addDirectory/addFile instead");
+            } else {
+                tree.addFile(index, component.getName(), component.getSize());
+            }
+        }
+
+        @Override
+        public void remove(FileSystemComponent component) {
+            if (!(component instanceof Node) || ((Node) component).tree != tree ||
+                tree.parents[((Node) component).index] != index) {
+                throw new IllegalArgumentException("Component is not a child of " + getName());
+            }
+            tree.remove(((Node) component).index);
+        }
+
+        @Override
+        public FileSystemComponent getChild(int childIndex) {
+            if (!isDirectory()) {
+                throw new UnsupportedOperationException("Cannot get child from a leaf node");
+            }
+            if (childIndex < 0 || childIndex >= getChildCount()) {
+                throw new IndexOutOfBoundsException("Index: " + childIndex + ", Size: " + getChildCount());
+            }
+            int child = tree.firstChildren[index];
+            for (int i = 0; i < childIndex; i++) {
+                child = tree.nextSiblings[child];
+            }
+            return new Node(tree, child);
+        }
+
+        /**
+         * 在子树中查找名称，直接比较名称池中的字节，不创建字符串；
+         * 借助父指针遍历，不需要额外的栈
+         */
+        @Override
+        public FileSystemComponent find(String name) {
+            if (name == null) {
+                return null;
+            }
+            byte[] target = name.getBytes(StandardCharsets.UTF_8);
+            int node = index;
+            while (true) {
+                if (tree.nameEquals(node, target)) {
+                    return new Node(tree, node);
+                }
+                if (tree.firstChildren[node] != NONE && tree.extensionIds[node] == DIRECTORY) {
+                    node = tree.firstChildren[node];
+                    continue;
+                }
+                // 回溯到下一个兄弟
+                while (node != index && tree.nextSiblings[node] == NONE) {
+                    node = tree.parents[node];
+                }
+                if (node == index) {
+                    return null;
+                }
+                node = tree.nextSiblings[node];
+            }
+        }
+
+        @Override
+        public String getPath() {
+            if (tree.parents[index] == NONE) {
+                return "/";
+            }
+            StringBuilder path = new StringBuilder();
+            for (int node = index; tree.parents[node] != NONE; node = tree.parents[node]) {
+                path.insert(0, new Node(tree, node).getName()).insert(0, '/');
+            }
+            return path.toString();
+        }
+
+        /**
+         * 获取父节点视图，根节点返回null
+         */
+        public Node getParentNode() {
+            int parent = tree.parents[index];
+            return parent == NONE ? null : new Node(tree, parent);
+        }
+
+        public boolean isDirectory() {
+            return tree.extensionIds[index] == DIRECTORY;
+        }
+
+        public int getChildCount() {
+            return tree.childCounts[index];
+        }
+
+        /**
+         * 获取文件扩展名，目录返回空字符串
+         */
+        public String getExtension() {
+            return isDirectory() ? "" : tree.extensions.get(tree.extensionIds[index]);
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Node)) {
+                return false;
+            }
+            Node other = (Node) o;
+            return tree == other.tree && index == other.index;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(tree) * 31 + index;
+        }
+
+        @Override
+        public String toString() {
+            return "CompactNode{name='" + getName() + "', index=" + index + ", size=" + getSize() + "}";
+        }
+    }
+}
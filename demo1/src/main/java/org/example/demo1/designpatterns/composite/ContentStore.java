@@ -0,0 +1,740 @@
+package org.example.demo1.designpatterns.composite;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * 组合模式 - 内容寻址的去重存储 (Content Store)
+ *
+ * 文件内容按 UTF-8 编码后用基于内容的分块（gear 滚动哈希，平均 8KB，最小 2KB，最大 64KB）切分，
+ * 每块用 SHA-256 寻址。相同的块只保存一份，存放在堆外的直接缓冲区（slab）中，
+ * 因此大文件不会撑大堆和拉长 GC 停顿，大量重复内容的树只占用一份空间。
+ * 插入或修改内容后，未变化的部分仍然切出相同的块，可以继续共享。
+ *
+ * {@link File} 只持有 {@link ContentRef}。引用被显式释放或被垃圾回收后，块的引用计数减一，
+ * 计数归零的块从索引中删除；slab 中的块全部释放后整个 slab 被丢弃，直接内存随之回收。
+ * 单个 slab 中部分块被释放留下的空洞不会被复用。
+ *
+ * 内容可以通过 {@link ContentWriter} 流式写入，堆内只缓冲不超过一个最大块的数据；
+ * 读取时按位置直接从块中复制，或把块的堆外视图直接交给目标通道写出。
+ */
+public final class ContentStore {
+
+    private static final int MIN_CHUNK = 2 * 1024;
+    private static final int MAX_CHUNK = 64 * 1024;
+    // 低 13 位为 0 时切分，平均块大小约 8KB
+    private static final long CHUNK_MASK = (1L << 13) - 1;
+    private static final int DEFAULT_SLAB_SIZE = 4 * 1024 * 1024;
+
+    // gear 哈希表，固定种子保证同样的内容总是切出同样的块
+    private static final long[] GEAR = new long[256];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5EED_C0DEL);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private static class Holder {
+        private static final ContentStore INSTANCE = new ContentStore();
+    }
+
+    private final int slabSize;
+    private final Map<ChunkKey, Chunk> chunks = new HashMap<>();
+    private Slab currentSlab;
+    private long slabBytes;
+    private long storedBytes;
+    private long logicalBytes;
+
+    public ContentStore() {
+        this(DEFAULT_SLAB_SIZE);
+    }
+
+    /**
+     * @param slabSize 每个直接缓冲区的大小，超过该大小的块单独分配
+     */
+    public ContentStore(int slabSize) {
+        if (slabSize < MAX_CHUNK) {
+            throw new IllegalArgumentException("Slab size must be at least " + MAX_CHUNK + ": " + slabSize);
+        }
+        this.slabSize = slabSize;
+    }
+
+    /**
+     * 文件默认使用的共享存储
+     */
+    public static ContentStore shared() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * 保存文本内容
+     */
+    public ContentRef put(String content) {
+        if (content == null) {
+            throw new IllegalArgumentException("Content cannot be null");
+        }
+        return put(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 保存字节内容，相同的块只保存一份
+     */
+    public ContentRef put(byte[] bytes) {
+        if (bytes == null) {
+            throw new IllegalArgumentException("Content cannot be null");
+        }
+        ContentWriter writer = newWriter(null);
+        writer.write(bytes, 0, bytes.length);
+        return writer.finish();
+    }
+
+    /**
+     * 创建流式写入器
+     *
+     * @param base 追加写入时的已有内容，为 null 时从空内容开始
+     */
+    public ContentWriter newWriter(ContentRef base) {
+        if (base != null && base.store != this) {
+            // 其他存储中的内容逐块复制过来
+            ContentWriter writer = new ContentWriter(null);
+            for (Chunk chunk : base.chunks) {
+                writer.write(chunk.slab.buffer.slice(chunk.offset, chunk.length));
+            }
+            return writer;
+        }
+        return new ContentWriter(base);
+    }
+
+    /**
+     * 为已有内容创建一个新的引用，不复制数据
+     */
+    public ContentRef retain(ContentRef ref) {
+        if (ref.store != this) {
+            return newWriter(ref).finish();
+        }
+        synchronized (this) {
+            for (Chunk chunk : ref.chunks) {
+                if (chunk.references == 0) {
+                    throw new IllegalStateException("Content has already been released");
+                }
+                chunk.references++;
+            }
+            logicalBytes += ref.length;
+        }
+        return new ContentRef(this, ref.chunks, ref.length, ref.hash);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * 查找或保存一个块，引用计数加一
+     */
+    private synchronized Chunk intern(ChunkKey key, byte[] bytes, int offset, int length) {
+        Chunk chunk = chunks.get(key);
+        if (chunk == null) {
+            chunk = allocate(key, bytes, offset, length);
+            chunks.put(key, chunk);
+        }
+        chunk.references++;
+        return chunk;
+    }
+
+    private Chunk allocate(ChunkKey key, byte[] bytes, int offset, int length) {
+        Slab slab;
+        if (length > slabSize / 4) {
+            // 大块单独分配，释放后立即可以回收
+            slab = new Slab(ByteBuffer.allocateDirect(length));
+            slabBytes += length;
+        } else {
+            if (currentSlab == null || currentSlab.used + length > currentSlab.buffer.capacity()) {
+                if (currentSlab != null && currentSlab.live == 0) {
+                    slabBytes -= currentSlab.buffer.capacity();
+                }
+                currentSlab = new Slab(ByteBuffer.allocateDirect(slabSize));
+                slabBytes += slabSize;
+            }
+            slab = currentSlab;
+        }
+        int position = slab.used;
+        slab.buffer.put(position, bytes, offset, length);
+        slab.used += length;
+        slab.live += length;
+        storedBytes += length;
+        return new Chunk(key, slab, position, length);
+    }
+
+    private synchronized void release(Chunk[] refs, long length) {
+        logicalBytes -= length;
+        for (Chunk chunk : refs) {
+            if (--chunk.references > 0) {
+                continue;
+            }
+            chunks.remove(chunk.key);
+            storedBytes -= chunk.length;
+            Slab slab = chunk.slab;
+            slab.live -= chunk.length;
+            if (slab.live == 0 && slab != currentSlab) {
+                // slab 不再被引用，直接内存由缓冲区的 Cleaner 回收
+                slabBytes -= slab.buffer.capacity();
+            }
+        }
+    }
+
+    /**
+     * 去重后实际保存的字节数
+     */
+    public synchronized long getStoredBytes() {
+        return storedBytes;
+    }
+
+    /**
+     * 所有引用的内容长度之和
+     */
+    public synchronized long getLogicalBytes() {
+        return logicalBytes;
+    }
+
+    /**
+     * 当前占用的直接内存
+     */
+    public synchronized long getOffHeapBytes() {
+        return slabBytes;
+    }
+
+    public synchronized int getChunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * 去重比例：逻辑字节数 / 实际保存的字节数
+     */
+    public synchronized double getDeduplicationRatio() {
+        return storedBytes == 0 ? 1.0 : (double) logicalBytes / storedBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("ContentStore{chunks=%d, stored=%d bytes, logical=%d bytes, offHeap=%d bytes}",
+                           chunks.size(), storedBytes, logicalBytes, slabBytes);
+    }
+
+    /**
+     * 流式写入器，数据到达后按块边界逐块保存。
+     * {@link #finish()} 得到内容引用；没有完成就关闭时放弃已写入的内容
+     */
+    public final class ContentWriter implements WritableByteChannel {
+        private final List<Chunk> written = new ArrayList<>();
+        private final byte[] pending = new byte[MAX_CHUNK];
+        private final MessageDigest chunkDigest = sha256();
+        private int pendingLength;
+        // 下一个参与滚动哈希的位置，块开头的 MIN_CHUNK 字节不会成为边界
+        private int scanned = MIN_CHUNK;
+        private long rollingHash;
+        private long length;
+        private boolean open = true;
+
+        private ContentWriter(ContentRef base) {
+            if (base == null || base.chunks.length == 0) {
+                return;
+            }
+            // 追加时沿用除最后一块以外的所有块，最后一块重新参与分块，
+            // 得到的块与一次性写入全部内容完全相同
+            Chunk[] chunks = base.chunks;
+            synchronized (ContentStore.this) {
+                for (int i = 0; i < chunks.length - 1; i++) {
+                    if (chunks[i].references == 0) {
+                        throw new IllegalStateException("Content has already been released");
+                    }
+                    chunks[i].references++;
+                    written.add(chunks[i]);
+                    length += chunks[i].length;
+                }
+            }
+            Chunk last = chunks[chunks.length - 1];
+            last.slab.buffer.get(last.offset, pending, 0, last.length);
+            pendingLength = last.length;
+            length += last.length;
+            cut();
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            ensureOpen();
+            int count = src.remaining();
+            while (src.hasRemaining()) {
+                int n = Math.min(src.remaining(), MAX_CHUNK - pendingLength);
+                src.get(pending, pendingLength, n);
+                pendingLength += n;
+                length += n;
+                cut();
+            }
+            return count;
+        }
+
+        public void write(byte[] bytes, int offset, int count) {
+            ensureOpen();
+            while (count > 0) {
+                int n = Math.min(count, MAX_CHUNK - pendingLength);
+                System.arraycopy(bytes, offset, pending, pendingLength, n);
+                pendingLength += n;
+                length += n;
+                offset += n;
+                count -= n;
+                cut();
+            }
+        }
+
+        /**
+         * 切出缓冲区中所有已经确定边界的块
+         */
+        private void cut() {
+            while (true) {
+                int boundary = -1;
+                for (; scanned < pendingLength; scanned++) {
+                    rollingHash = (rollingHash << 1) + GEAR[pending[scanned] & 0xFF];
+                    if ((rollingHash & CHUNK_MASK) == 0) {
+                        boundary = scanned + 1;
+                        break;
+                    }
+                }
+                if (boundary < 0) {
+                    if (pendingLength < MAX_CHUNK) {
+                        return;
+                    }
+                    boundary = MAX_CHUNK;
+                }
+                emit(boundary);
+            }
+        }
+
+        private void emit(int boundary) {
+            chunkDigest.update(pending, 0, boundary);
+            written.add(intern(new ChunkKey(chunkDigest.digest()), pending, 0, boundary));
+            System.arraycopy(pending, boundary, pending, 0, pendingLength - boundary);
+            pendingLength -= boundary;
+            scanned = MIN_CHUNK;
+            rollingHash = 0;
+        }
+
+        /**
+         * 保存剩余数据并返回内容引用，之后写入器不能再使用
+         */
+        public ContentRef finish() {
+            ensureOpen();
+            if (pendingLength > 0) {
+                emit(pendingLength);
+            }
+            open = false;
+
+            // 内容哈希由各块的哈希按顺序计算，追加时不需要重新读取已有内容
+            MessageDigest whole = sha256();
+            for (Chunk chunk : written) {
+                chunk.key.update(whole);
+            }
+            synchronized (ContentStore.this) {
+                logicalBytes += length;
+            }
+            return new ContentRef(ContentStore.this, written.toArray(new Chunk[0]), length, whole.digest());
+        }
+
+        /**
+         * 已写入的字节数
+         */
+        public long getLength() {
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        /**
+         * 放弃没有完成的写入
+         */
+        @Override
+        public void close() {
+            if (open) {
+                open = false;
+                release(written.toArray(new Chunk[0]), 0);
+            }
+        }
+
+        private void ensureOpen() {
+            if (!open) {
+                throw new IllegalStateException("Writer is closed");
+            }
+        }
+    }
+
+    /**
+     * 对一份内容的引用，按顺序持有组成内容的块
+     */
+    public static final class ContentRef {
+        private final ContentStore store;
+        private final Chunk[] chunks;
+        private final long length;
+        private final byte[] hash;
+        private final Cleaner.Cleanable cleanable;
+        // 每块在内容中的起始位置，用于按位置读取
+        private final long[] starts;
+
+        private ContentRef(ContentStore store, Chunk[] chunks, long length, byte[] hash) {
+            this.store = store;
+            this.chunks = chunks;
+            this.length = length;
+            this.hash = hash;
+            // 清理动作不能引用 ContentRef 本身，否则它永远不会被回收
+            this.cleanable = CLEANER.register(this, () -> store.release(chunks, length));
+            this.starts = new long[chunks.length];
+            long position = 0;
+            for (int i = 0; i < chunks.length; i++) {
+                starts[i] = position;
+                position += chunks[i].length;
+            }
+        }
+
+        /**
+         * 释放引用，重复调用没有效果
+         */
+        void release() {
+            cleanable.clean();
+        }
+
+        /**
+         * 内容的 UTF-8 字节
+         */
+        public byte[] toBytes() {
+            if (length > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Content too large: " + length + " bytes");
+            }
+            byte[] bytes = new byte[(int) length];
+            int position = 0;
+            for (Chunk chunk : chunks) {
+                chunk.slab.buffer.get(chunk.offset, bytes, position, chunk.length);
+                position += chunk.length;
+            }
+            return bytes;
+        }
+
+        /**
+         * 解码为字符串，每次调用都会从堆外复制
+         */
+        public String asString() {
+            return new String(toBytes(), StandardCharsets.UTF_8);
+        }
+
+        /**
+         * 只解码开头的一部分，返回最多 maxChars 个字符
+         *
+         * @return 开头的字符；内容更长时比 maxChars 多一个字符，调用方据此判断是否截断
+         */
+        public String prefix(int maxChars) {
+            // 每个字符最多 4 字节，多读一个字符，截断处不完整的字符落在返回范围之外
+            long wanted = Math.min(length, 4L * (maxChars + 1));
+            byte[] bytes = new byte[(int) wanted];
+            int position = 0;
+            for (Chunk chunk : chunks) {
+                if (position == bytes.length) {
+                    break;
+                }
+                int count = Math.min(chunk.length, bytes.length - position);
+                chunk.slab.buffer.get(chunk.offset, bytes, position, count);
+                position += count;
+            }
+            String decoded = new String(bytes, StandardCharsets.UTF_8);
+            return decoded.length() > maxChars + 1 ? decoded.substring(0, maxChars + 1) : decoded;
+        }
+
+        /**
+         * 把内容按块写入输出流，不生成完整的字节数组
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            byte[] buffer = new byte[MAX_CHUNK];
+            for (Chunk chunk : chunks) {
+                chunk.slab.buffer.get(chunk.offset, buffer, 0, chunk.length);
+                out.write(buffer, 0, chunk.length);
+            }
+        }
+
+        /**
+         * 从指定位置读取到 dst 中
+         *
+         * @return 读取的字节数，位置超过末尾时返回 -1
+         */
+        public int read(ByteBuffer dst, long position) {
+            if (position < 0) {
+                throw new IllegalArgumentException("Negative position: " + position);
+            }
+            if (position >= length) {
+                return -1;
+            }
+            int index = Arrays.binarySearch(starts, position);
+            if (index < 0) {
+                index = -index - 2;
+            }
+            int total = 0;
+            while (dst.hasRemaining() && index < chunks.length) {
+                Chunk chunk = chunks[index];
+                int inner = (int) (position - starts[index]);
+                int n = Math.min(dst.remaining(), chunk.length - inner);
+                dst.put(dst.position(), chunk.slab.buffer, chunk.offset + inner, n);
+                dst.position(dst.position() + n);
+                position += n;
+                total += n;
+                index++;
+            }
+            return total;
+        }
+
+        /**
+         * 把 [position, position + count) 范围的内容写入目标通道。
+         * 写出的是块在直接内存中的只读视图，FileChannel、SocketChannel 等通道不再经过临时缓冲区复制，
+         * 支持聚集写的通道一次系统调用写出多块。非阻塞通道可能只写出一部分
+         *
+         * @return 实际写出的字节数
+         */
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            if (position < 0 || count < 0) {
+                throw new IllegalArgumentException("Negative position or count");
+            }
+            if (position >= length || count == 0) {
+                return 0;
+            }
+            long end = Math.min(length, position + count);
+            int index = Arrays.binarySearch(starts, position);
+            if (index < 0) {
+                index = -index - 2;
+            }
+            List<ByteBuffer> views = new ArrayList<>();
+            for (long current = position; current < end; index++) {
+                Chunk chunk = chunks[index];
+                int inner = (int) (current - starts[index]);
+                int n = (int) Math.min(chunk.length - inner, end - current);
+                views.add(chunk.slab.buffer.slice(chunk.offset + inner, n).asReadOnlyBuffer());
+                current += n;
+            }
+
+            long transferred = 0;
+            if (target instanceof GatheringByteChannel) {
+                ByteBuffer[] buffers = views.toArray(new ByteBuffer[0]);
+                int first = 0;
+                while (first < buffers.length) {
+                    // 单次聚集写的缓冲区数量受系统限制，分批写出
+                    long n = ((GatheringByteChannel) target).write(buffers, first, Math.min(buffers.length - first, 1024));
+                    if (n == 0) {
+                        break;
+                    }
+                    transferred += n;
+                    while (first < buffers.length && !buffers[first].hasRemaining()) {
+                        first++;
+                    }
+                }
+            } else {
+                for (ByteBuffer view : views) {
+                    while (view.hasRemaining()) {
+                        int n = target.write(view);
+                        if (n == 0) {
+                            return transferred;
+                        }
+                        transferred += n;
+                    }
+                }
+            }
+            return transferred;
+        }
+
+        /**
+         * 打开只读的可定位通道
+         */
+        public SeekableByteChannel newChannel() {
+            return new ReadChannel(this);
+        }
+
+        /**
+         * 内容的哈希：各块 SHA-256 按顺序拼接后的 SHA-256
+         */
+        public byte[] getHash() {
+            return hash.clone();
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public int getChunkCount() {
+            return chunks.length;
+        }
+
+        public ContentStore getStore() {
+            return store;
+        }
+    }
+
+    /**
+     * 内容引用上的只读通道，读取时不持有锁
+     */
+    private static final class ReadChannel implements SeekableByteChannel {
+        private final ContentRef content;
+        private long position;
+        private boolean open = true;
+
+        ReadChannel(ContentRef content) {
+            this.content = content;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            ensureOpen();
+            int n = content.read(dst, position);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public long position() throws IOException {
+            ensureOpen();
+            return position;
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) throws IOException {
+            ensureOpen();
+            if (newPosition < 0) {
+                throw new IllegalArgumentException("Negative position: " + newPosition);
+            }
+            position = newPosition;
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            ensureOpen();
+            return content.length;
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+
+        private void ensureOpen() throws ClosedChannelException {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+        }
+    }
+
+    /**
+     * 块的 SHA-256，按四个 long 保存
+     */
+    private static final class ChunkKey {
+        private final long h0;
+        private final long h1;
+        private final long h2;
+        private final long h3;
+
+        ChunkKey(byte[] digest) {
+            ByteBuffer buffer = ByteBuffer.wrap(digest);
+            this.h0 = buffer.getLong();
+            this.h1 = buffer.getLong();
+            this.h2 = buffer.getLong();
+            this.h3 = buffer.getLong();
+        }
+
+        void update(MessageDigest digest) {
+            ByteBuffer buffer = ByteBuffer.allocate(32);
+            buffer.putLong(h0).putLong(h1).putLong(h2).putLong(h3);
+            digest.update(buffer.array());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ChunkKey)) {
+                return false;
+            }
+            ChunkKey other = (ChunkKey) o;
+            return h0 == other.h0 && h1 == other.h1 && h2 == other.h2 && h3 == other.h3;
+        }
+
+        @Override
+        public int hashCode() {
+            // 哈希值本身已经均匀分布
+            return (int) h0;
+        }
+    }
+
+    private static final class Chunk {
+        private final ChunkKey key;
+        private final Slab slab;
+        private final int offset;
+        private final int length;
+        private int references;
+
+        Chunk(ChunkKey key, Slab slab, int offset, int length) {
+            this.key = key;
+            this.slab = slab;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * 一块直接内存，按顺序分配，记录仍被引用的字节数
+     */
+    private static final class Slab {
+        private final ByteBuffer buffer;
+        private int used;
+        private int live;
+
+        Slab(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+}
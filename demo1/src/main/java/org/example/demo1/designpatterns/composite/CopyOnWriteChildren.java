@@ -0,0 +1,83 @@
+package org.example.demo1.designpatterns.composite;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * 组合模式 - 写时复制的子组件数组 (Copy-On-Write Children)
+ *
+ * 并发模式的目录用它保存子组件。写入在本对象的锁内复制数组并通过 volatile 字段发布新数组，
+ * 读取不加锁：{@link #snapshot()} 直接包装当前数组，得到的列表不可修改，
+ * 之后的增删只会发布新数组，不影响已经拿到的快照，因此遍历既不复制也不会看到一半的修改。
+ *
+ * 目录的子组件以增删单个组件为主、读取远多于写入，复制数组的开销只落在写入方。
+ */
+final class CopyOnWriteChildren extends AbstractList<FileSystemComponent> implements RandomAccess {
+
+    private static final FileSystemComponent[] EMPTY = new FileSystemComponent[0];
+
+    private volatile FileSystemComponent[] elements;
+
+    CopyOnWriteChildren() {
+        this.elements = EMPTY;
+    }
+
+    CopyOnWriteChildren(Collection<FileSystemComponent> initial) {
+        this.elements = initial.toArray(EMPTY);
+    }
+
+    /**
+     * 当前子组件的不可修改快照，O(1)
+     */
+    List<FileSystemComponent> snapshot() {
+        FileSystemComponent[] current = elements;
+        return current.length == 0 ? Collections.emptyList()
+                                   : Collections.unmodifiableList(Arrays.asList(current));
+    }
+
+    @Override
+    public FileSystemComponent get(int index) {
+        return elements[index];
+    }
+
+    @Override
+    public int size() {
+        return elements.length;
+    }
+
+    @Override
+    public synchronized boolean add(FileSystemComponent component) {
+        FileSystemComponent[] current = elements;
+        FileSystemComponent[] next = Arrays.copyOf(current, current.length + 1);
+        next[current.length] = component;
+        elements = next;
+        return true;
+    }
+
+    /**
+     * 按身份移除，组件没有重写 equals
+     */
+    @Override
+    public synchronized boolean remove(Object component) {
+        FileSystemComponent[] current = elements;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == component) {
+                FileSystemComponent[] next = new FileSystemComponent[current.length - 1];
+                System.arraycopy(current, 0, next, 0, i);
+                System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                elements = next;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized void clear() {
+        elements = EMPTY;
+    }
+}
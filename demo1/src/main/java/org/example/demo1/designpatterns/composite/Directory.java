@@ -1,23 +1,92 @@
 package org.example.demo1.designpatterns.composite;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 组合模式 - 组合节点 (Composite)
  * 
  * 表示文件系统中的目录，可以包含文件和子目录
  * 组合节点可以有子节点，实现了组件接口的所有操作
+ * 
+ * 目录在 size 字段中缓存子树的总大小。添加、删除子组件以及文件内容变化时，
+ * 变化量沿父指针向上传播到所有祖先，因此 {@link #getSize()} 是 O(1) 的，
+ * 显示整棵树也不再在每一层重新遍历子树。
+ * 
+ * 根目录在首次查找时建立 {@link PathIndex}，之后随 add/remove 增量维护，
+ * 按名称或路径查找不再需要遍历整棵子树。
+ * 
+ * 每个目录还维护子树的扩展名直方图（扩展名 -> 文件数量和字节数），同样随 add/remove
+ * 和文件大小变化沿父指针增量更新，按扩展名统计是 O(1) 的；
+ * 按扩展名列出文件时使用根目录索引中的扩展名表，或按直方图剪枝只进入包含该类文件的子目录。
+ * 
+ * 默克尔哈希（{@link #getTreeHash()}）也以同样方式增量维护，见 {@link MerkleHash}；
+ * {@link TreeDiff} 比较两棵树时只进入哈希不同的子树。
+ * 
+ * 显示交给 {@link TreeRenderer}，需要分页或提前停止时直接使用渲染器。
+ * 
+ * 并发模式（{@link #Directory(String, boolean)}）下子组件保存在写时复制数组中：
+ * <ul>
+ *   <li>读取不加锁：遍历、getChild、getChildren 和渲染拿到的是不可修改的快照，不复制；
+ *       大小、后代数量和直方图用原子操作更新，索引按键并发更新</li>
+ *   <li>写入持有每个目录各自的 {@link StructureLock}：加入组件和文件大小变化对所在目录及祖先持有共享锁，
+ *       不同分支上的写入可以同时进行，缓存的统计用原子加法沿祖先链更新</li>
+ *   <li>搬动或移出目录、清空目录和建立索引会整体搬动子树的统计，只对该目录持有独占锁，
+ *       与它的子树中的写入互斥，树的其他部分不受影响；移出文件对所在目录持有独占锁</li>
+ * </ul>
+ * 并发目录下加入的目录会整棵子树转为并发模式。写入进行中的读取可能看到统计暂时落后于子组件列表，
+ * 写入完成后一致。
  */
 public class Directory extends FileSystemComponent {
     
+    private static final VarHandle SIZE;
+    private static final VarHandle DESCENDANT_COUNT;
+    private static final VarHandle HISTOGRAM;
+    private static final VarHandle TREE_HASH;
+    
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            SIZE = lookup.findVarHandle(FileSystemComponent.class, "size", long.class);
+            DESCENDANT_COUNT = lookup.findVarHandle(Directory.class, "descendantCount", long.class);
+            HISTOGRAM = lookup.findVarHandle(Directory.class, "histogram", ExtensionHistogram.class);
+            TREE_HASH = lookup.findVarHandle(FileSystemComponent.class, "treeHash", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+    
     private List<FileSystemComponent> children;
     private int maxDepth;
     
+    // 是否为并发模式，子组件为写时复制数组
+    private boolean concurrent;
+    
+    // 并发模式下本目录的结构锁，读取子组件不使用它
+    private StructureLock structureLock;
+    
+    // 缓存的后代节点数量，并行遍历据此决定是否拆分子树
+    private volatile long descendantCount;
+    
+    // 仅根目录持有，首次查找时建立；加入其他目录后丢弃
+    private volatile PathIndex index;
+    
+    // 子树的扩展名直方图，子树中没有文件时为 null
+    private volatile ExtensionHistogram histogram;
+    
     public Directory(String name) {
         super(name);
         this.children = new ArrayList<>();
         this.maxDepth = Integer.MAX_VALUE;
+        this.treeHash = MerkleHash.ofDirectory(name);
     }
     
     public Directory(String name, int maxDepth) {
@@ -25,28 +94,27 @@ public class Directory extends FileSystemComponent {
         this.maxDepth = maxDepth;
     }
     
+    /**
+     * 创建目录，concurrent 为 true 时使用并发模式，允许多个线程同时读写这棵树
+     */
+    public Directory(String name, boolean concurrent) {
+        this(name);
+        if (concurrent) {
+            this.concurrent = true;
+            this.children = new CopyOnWriteChildren();
+            this.structureLock = new StructureLock();
+        }
+    }
+    
     @Override
     public void display(int depth) {
-        String indent = getIndent(depth);
-        System.out.println(indent + "📁 " + name + "/ (" + children.size() + " items, " + getSize() + " bytes total)");
-        
-        // 递归显示子组件
-        if (depth < maxDepth) {
-            for (FileSystemComponent child : children) {
-                child.display(depth + 1);
-            }
-        } else if (!children.isEmpty()) {
-            System.out.println(getIndent(depth + 1) + "... (" + children.size() + " items)");
-        }
+        // 由流式渲染器用显式栈输出整棵子树，所有行写入同一个缓冲区后一次刷新
+        TreeRenderer.render(this, System.out, System.out.charset(), depth);
     }
     
     @Override
-    public int getSize() {
-        int totalSize = 0;
-        for (FileSystemComponent child : children) {
-            totalSize += child.getSize();
-        }
-        return totalSize;
+    public long getSize() {
+        return size;
     }
     
     @Override
@@ -65,21 +133,126 @@ public class Directory extends FileSystemComponent {
             throw new IllegalArgumentException("Cannot add directory to itself");
         }
         
-        children.add(component);
+        if (concurrent) {
+            addConcurrently(component);
+        } else {
+            addChild(component);
+        }
         System.out.println("Added " + component.getName() + " to directory " + this.name);
     }
     
+    private void addChild(FileSystemComponent component) {
+        // 防止把祖先加入后代目录
+        for (Directory ancestor = getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+            if (ancestor == component) {
+                throw new IllegalArgumentException("Cannot add ancestor " + component.getName() +
+                                                   " to its descendant " + this.name);
+            }
+        }
+        
+        // 每个组件只能属于一个目录，已有父目录时先从原目录移出
+        Directory previousParent = component.getParent();
+        if (previousParent != null) {
+            previousParent.detach(component);
+        }
+        
+        attach(component);
+    }
+    
+    /**
+     * 并发模式下加入组件：目录对它自己持有独占锁，从其他目录移来的文件对原目录持有独占锁，
+     * 本目录和原位置的祖先链持有共享锁
+     */
+    private void addConcurrently(FileSystemComponent component) {
+        while (true) {
+            Directory previousParent = component.getParent();
+            StructureLock.Held locks = StructureLock.acquire(
+                component instanceof Directory ? (Directory) component : previousParent, this);
+            try {
+                // 取得锁之前组件可能已被其他线程移走，按新的位置重新加锁
+                if (component.getParent() == previousParent) {
+                    addChild(component);
+                    return;
+                }
+            } finally {
+                locks.release();
+            }
+        }
+    }
+    
+    /**
+     * 挂载一个没有父目录的组件并维护缓存和索引，不输出日志。
+     * 扫描器等批量构建树的代码直接使用，调用方保证不会产生循环。
+     */
+    void attach(FileSystemComponent component) {
+        if (concurrent && component instanceof Directory) {
+            ((Directory) component).makeConcurrent();
+        }
+        children.add(component);
+        component.setParent(this);
+        addSize(component.getSize());
+        propagateSizeChange(component.getSize());
+        adjustDescendantCount(1 + descendantsOf(component));
+        adjustHistogram(component, 1);
+        adjustTreeHash(MerkleHash.mix(component.treeHash));
+        
+        // 加入的目录不再是根，由所在树的索引接管
+        if (component instanceof Directory) {
+            ((Directory) component).index = null;
+        }
+        PathIndex treeIndex = getRootDirectory().index;
+        if (treeIndex != null) {
+            treeIndex.addSubtree(component);
+        }
+    }
+    
     @Override
     public void remove(FileSystemComponent component) {
-        if (children.remove(component)) {
+        if (component != null && component.getParent() == this && removeChild(component)) {
             System.out.println("Removed " + component.getName() + " from directory " + this.name);
         } else {
-            System.out.println("Component " + component.getName() + " not found in directory " + this.name);
+            System.out.println("Component " + (component != null ? component.getName() : null) +
+                               " not found in directory " + this.name);
+        }
+    }
+    
+    private boolean removeChild(FileSystemComponent component) {
+        if (!concurrent) {
+            return detach(component);
+        }
+        // 移出目录对它自己持有独占锁，移出文件对本目录持有独占锁
+        StructureLock.Held locks = StructureLock.acquire(component instanceof Directory ? (Directory) component : this);
+        try {
+            // 取得锁之前组件可能已被其他线程移走
+            return component.getParent() == this && detach(component);
+        } finally {
+            locks.release();
+        }
+    }
+    
+    /**
+     * 从子组件中移除并扣除其大小
+     */
+    private boolean detach(FileSystemComponent component) {
+        if (!children.remove(component)) {
+            return false;
         }
+        PathIndex treeIndex = getRootDirectory().index;
+        if (treeIndex != null) {
+            treeIndex.removeSubtree(component);
+        }
+        component.setParent(null);
+        addSize(-component.getSize());
+        propagateSizeChange(-component.getSize());
+        adjustDescendantCount(-1 - descendantsOf(component));
+        adjustHistogram(component, -1);
+        adjustTreeHash(-MerkleHash.mix(component.treeHash));
+        return true;
     }
     
     @Override
     public FileSystemComponent getChild(int index) {
+        List<FileSystemComponent> children = children();
         if (index < 0 || index >= children.size()) {
             throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + children.size());
         }
@@ -88,27 +261,209 @@ public class Directory extends FileSystemComponent {
     
     @Override
     public FileSystemComponent find(String name) {
-        // 首先检查自己
-        if (this.name.equals(name)) {
-            return this;
+        List<FileSystemComponent> matches = findAll(name);
+        return matches.isEmpty() ? null : matches.get(0);
+    }
+    
+    /**
+     * 查找子树中（包括自己）所有指定名称的组件，按先序遍历的顺序返回
+     */
+    public List<FileSystemComponent> findAll(String name) {
+        Directory root = getRootDirectory();
+        List<FileSystemComponent> matches = root.index().findByName(name);
+        if (root == this || matches.isEmpty()) {
+            sortByTreePosition(matches);
+            return matches;
         }
         
-        // 递归搜索子组件
-        for (FileSystemComponent child : children) {
-            FileSystemComponent found = child.find(name);
-            if (found != null) {
-                return found;
+        // 索引是整棵树的，只保留本目录子树中的结果
+        List<FileSystemComponent> result = new ArrayList<>();
+        for (FileSystemComponent match : matches) {
+            if (isAncestorOrSelf(match)) {
+                result.add(match);
             }
         }
-        
-        return null;
+        sortByTreePosition(result);
+        return result;
+    }
+    
+    /**
+     * 索引中的同名节点按加入索引的顺序排列，与索引建立的时机有关；
+     * 按各节点在树中的位置重新排序，结果与不使用索引的深度优先查找一致
+     */
+    private static void sortByTreePosition(List<FileSystemComponent> components) {
+        if (components.size() < 2) {
+            return;
+        }
+        Map<FileSystemComponent, int[]> positions = new IdentityHashMap<>();
+        for (FileSystemComponent component : components) {
+            positions.put(component, treePosition(component));
+        }
+        components.sort((a, b) -> Arrays.compare(positions.get(a), positions.get(b)));
+    }
+    
+    /**
+     * 从根目录到组件每一层的子组件下标，按字典序比较即为先序遍历的顺序
+     */
+    private static int[] treePosition(FileSystemComponent component) {
+        List<Integer> reversed = new ArrayList<>();
+        FileSystemComponent node = component;
+        Directory parent;
+        while ((parent = node.getParent()) != null) {
+            reversed.add(parent.loadedChildren().indexOf(node));
+            node = parent;
+        }
+        int[] position = new int[reversed.size()];
+        for (int i = 0; i < position.length; i++) {
+            position[i] = reversed.get(position.length - 1 - i);
+        }
+        return position;
+    }
+    
+    /**
+     * 按路径查找组件。路径以 "/" 开头时从根目录出发，否则相对于本目录，
+     * 同一目录下有同名组件时可能返回多个结果
+     */
+    public List<FileSystemComponent> findByPath(String path) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
+        return getRootDirectory().index().findByPath(this, path);
+    }
+    
+    private boolean isAncestorOrSelf(FileSystemComponent component) {
+        for (FileSystemComponent node = component; node != null; node = node.getParent()) {
+            if (node == this) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private Directory getRootDirectory() {
+        Directory root = this;
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+        return root;
+    }
+    
+    private PathIndex index() {
+        PathIndex current = index;
+        if (current != null) {
+            return current;
+        }
+        if (!concurrent) {
+            return index = new PathIndex(this);
+        }
+        // 建立索引期间树中不能有写入，否则新加入的节点可能既不在遍历中也不在增量更新中
+        StructureLock.Held locks = StructureLock.acquire(this);
+        try {
+            if (getParent() == null) {
+                if (index == null) {
+                    index = new PathIndex(this);
+                }
+                return index;
+            }
+        } finally {
+            locks.release();
+        }
+        // 等待锁期间本目录被加入了其他目录，索引由新的根目录持有
+        return getRootDirectory().index();
+    }
+    
+    /**
+     * 本目录的结构锁，非并发模式为 null
+     */
+    StructureLock structureLock() {
+        return structureLock;
+    }
+    
+    /**
+     * 子组件列表，供同包的遍历使用；延迟加载的目录在这里加载子组件。
+     * 并发模式下返回不可修改的快照
+     */
+    List<FileSystemComponent> children() {
+        return loadedChildren();
+    }
+    
+    /**
+     * 已在内存中的子组件，不触发加载，供索引使用
+     */
+    List<FileSystemComponent> loadedChildren() {
+        return concurrent ? ((CopyOnWriteChildren) children).snapshot() : children;
+    }
+    
+    /**
+     * 是否为并发模式
+     */
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+    
+    /**
+     * 把整棵子树转为并发模式，子树加入并发目录之前使用，此时子树还不会被其他线程访问
+     */
+    private void makeConcurrent() {
+        Deque<Directory> stack = new ArrayDeque<>();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            Directory directory = stack.pop();
+            if (directory.concurrent) {
+                continue;
+            }
+            directory.children = new CopyOnWriteChildren(directory.children);
+            directory.structureLock = new StructureLock();
+            directory.concurrent = true;
+            for (FileSystemComponent child : directory.children) {
+                if (child instanceof Directory) {
+                    stack.push((Directory) child);
+                }
+            }
+        }
+    }
+    
+    /**
+     * 丢弃已加载的子组件，保留缓存的大小和后代数量，
+     * 供延迟加载的目录回收冷子树，之后可以从加载器重新加载
+     */
+    void discardChildren() {
+        PathIndex treeIndex = getRootDirectory().index;
+        for (FileSystemComponent child : loadedChildren()) {
+            if (treeIndex != null) {
+                treeIndex.removeSubtree(child);
+            }
+            child.setParent(null);
+        }
+        children = concurrent ? new CopyOnWriteChildren() : new ArrayList<>();
+    }
+    
+    /**
+     * 从自己和所有祖先中去掉本目录的大小、后代数量、直方图和子组件的哈希，重新加载子组件之前使用
+     */
+    void resetAggregates() {
+        adjustAggregates(-size, -descendantCount);
+        removeHistogram();
+        adjustTreeHash(MerkleHash.ofDirectory(name) - treeHash);
+    }
+    
+    /**
+     * 调整自己和所有祖先缓存的大小和后代数量，用于以元数据估计值代替实际子组件
+     */
+    void adjustAggregates(long sizeDelta, long descendantDelta) {
+        addSize(sizeDelta);
+        propagateSizeChange(sizeDelta);
+        adjustDescendantCount(descendantDelta);
     }
     
     /**
      * 获取所有子组件
      */
     public List<FileSystemComponent> getChildren() {
-        return new ArrayList<>(children); // 返回副本，防止外部修改
+        if (concurrent) {
+            return children(); // 不可修改的快照，不需要复制
+        }
+        return new ArrayList<>(children()); // 返回副本，防止外部修改
     }
     
     /**
@@ -118,38 +473,281 @@ public class Directory extends FileSystemComponent {
         return children.size();
     }
     
+    /**
+     * 获取显示时展开的最大深度
+     */
+    int getMaxDepth() {
+        return maxDepth;
+    }
+    
     /**
      * 检查目录是否为空
      */
     public boolean isEmpty() {
-        return children.isEmpty();
+        return getChildCount() == 0;
     }
     
     /**
      * 清空目录
      */
     public void clear() {
-        children.clear();
+        if (concurrent) {
+            StructureLock.Held locks = StructureLock.acquire(this);
+            try {
+                clearChildren();
+            } finally {
+                locks.release();
+            }
+        } else {
+            clearChildren();
+        }
         System.out.println("Cleared directory " + this.name);
     }
     
+    private void clearChildren() {
+        PathIndex treeIndex = getRootDirectory().index;
+        for (FileSystemComponent child : loadedChildren()) {
+            if (treeIndex != null) {
+                treeIndex.removeSubtree(child);
+            }
+            child.setParent(null);
+        }
+        children.clear();
+        propagateSizeChange(-size);
+        size = 0;
+        adjustDescendantCount(-descendantCount);
+        removeHistogram();
+        adjustTreeHash(MerkleHash.ofDirectory(name) - treeHash);
+    }
+    
+    /**
+     * 获取后代节点数量（不包括自己）
+     */
+    public long getDescendantCount() {
+        return descendantCount;
+    }
+    
+    private static long descendantsOf(FileSystemComponent component) {
+        return component instanceof Directory ? ((Directory) component).descendantCount : 0;
+    }
+    
+    /**
+     * 调整自己和所有祖先的后代节点数量
+     */
+    private void adjustDescendantCount(long delta) {
+        for (Directory directory = this; directory != null; directory = directory.getParent()) {
+            if (directory.concurrent) {
+                DESCENDANT_COUNT.getAndAdd(directory, delta);
+            } else {
+                directory.descendantCount += delta;
+            }
+        }
+    }
+    
+    /**
+     * 自己的哈希加上 delta，并把自己在父目录中的贡献 mix(hash) 的变化量继续向上传播
+     */
+    private void adjustTreeHash(long delta) {
+        for (Directory directory = this; directory != null && delta != 0; directory = directory.getParent()) {
+            long previous;
+            if (directory.concurrent) {
+                previous = (long) TREE_HASH.getAndAdd(directory, delta);
+            } else {
+                previous = directory.treeHash;
+                directory.treeHash = previous + delta;
+            }
+            delta = MerkleHash.mix(previous + delta) - MerkleHash.mix(previous);
+        }
+    }
+    
+    /**
+     * 调整自己缓存的大小，并发模式下用原子加法，祖先由 propagateSizeChange 负责
+     */
+    void addSize(long delta) {
+        if (concurrent) {
+            SIZE.getAndAdd(this, delta);
+        } else {
+            size += delta;
+        }
+    }
+    
+    /**
+     * 对所有后代执行并行归约
+     */
+    public <A> A reduce(TreeTraversal.Reduction<A> reduction) {
+        return TreeTraversal.reduce(this, reduction);
+    }
+    
+    /**
+     * 把组件的文件统计加到（sign 为 1）或减出（sign 为 -1）自己和所有祖先的直方图
+     */
+    private void adjustHistogram(FileSystemComponent component, int sign) {
+        if (component instanceof File) {
+            File file = (File) component;
+            for (Directory directory = this; directory != null; directory = directory.getParent()) {
+                directory.histogram().add(file.getExtensionId(), sign, sign * file.getSize());
+            }
+        } else if (component instanceof Directory && ((Directory) component).histogram != null) {
+            ExtensionHistogram subtree = ((Directory) component).histogram;
+            for (Directory directory = this; directory != null; directory = directory.getParent()) {
+                directory.histogram().addAll(subtree, sign);
+            }
+        }
+    }
+    
+    /**
+     * 从祖先中减去本目录的直方图并清空
+     */
+    private void removeHistogram() {
+        if (histogram != null) {
+            for (Directory ancestor = getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+                ancestor.histogram().addAll(histogram, -1);
+            }
+            histogram = null;
+        }
+    }
+    
     /**
-     * 获取指定类型的文件数量
+     * 本目录下的文件内容变化后更新它的大小和哈希，同步所有祖先缓存的大小、直方图和哈希。
+     * 调用方持有文件的锁，并发模式下再对本目录和祖先持有共享结构锁，保证不与文件或子树的搬动交错
+     */
+    void updateFile(File file, long newSize) {
+        if (!concurrent) {
+            applyUpdate(file, newSize);
+            return;
+        }
+        StructureLock.Held locks = StructureLock.acquire(null, this);
+        try {
+            if (file.getParent() == this) {
+                applyUpdate(file, newSize);
+                return;
+            }
+        } finally {
+            locks.release();
+        }
+        // 等待锁期间文件被移到其他目录或移出了树，按新的位置更新
+        file.updateSize(newSize);
+    }
+    
+    private void applyUpdate(File file, long newSize) {
+        long delta = newSize - file.size;
+        file.size = newSize;
+        file.propagateSizeChange(delta);
+        adjustFileBytes(file.getExtensionId(), delta);
+        long previousHash = file.treeHash;
+        file.treeHash = file.computeTreeHash(newSize);
+        adjustTreeHash(MerkleHash.mix(file.treeHash) - MerkleHash.mix(previousHash));
+    }
+    
+    /**
+     * 子树中的文件大小变化时更新自己和所有祖先的直方图
+     */
+    void adjustFileBytes(int extensionId, long delta) {
+        for (Directory directory = this; directory != null; directory = directory.getParent()) {
+            directory.histogram().add(extensionId, 0, delta);
+        }
+    }
+    
+    private ExtensionHistogram histogram() {
+        ExtensionHistogram current = histogram;
+        if (current == null) {
+            current = new ExtensionHistogram();
+            if (concurrent && !HISTOGRAM.compareAndSet(this, null, current)) {
+                // 其他线程已经创建
+                return histogram;
+            }
+            histogram = current;
+        }
+        return current;
+    }
+    
+    private static String normalizeExtension(String extension) {
+        return extension == null ? "" : extension.toLowerCase();
+    }
+    
+    /**
+     * 获取指定类型的文件数量，扩展名为空时返回所有文件的数量
      */
     public int getFileCount(String extension) {
-        int count = 0;
-        for (FileSystemComponent child : children) {
-            if (child instanceof File) {
-                File file = (File) child;
-                if (extension == null || extension.isEmpty() || 
-                    file.getExtension().equalsIgnoreCase(extension)) {
-                    count++;
+        ExtensionHistogram histogram = this.histogram;
+        if (histogram == null) {
+            return 0;
+        }
+        String key = normalizeExtension(extension);
+        if (key.isEmpty()) {
+            return (int) histogram.getTotalCount();
+        }
+        return (int) histogram.getCount(ExtensionHistogram.find(key));
+    }
+    
+    /**
+     * 获取指定类型的文件总字节数，扩展名为空时返回所有文件的字节数
+     */
+    public long getFileBytes(String extension) {
+        ExtensionHistogram histogram = this.histogram;
+        if (histogram == null) {
+            return 0;
+        }
+        String key = normalizeExtension(extension);
+        if (key.isEmpty()) {
+            return histogram.getTotalBytes();
+        }
+        return histogram.getBytes(ExtensionHistogram.find(key));
+    }
+    
+    /**
+     * 子树中各扩展名的文件数量，没有扩展名的文件记在空字符串下
+     */
+    public Map<String, Long> getExtensionCounts() {
+        ExtensionHistogram histogram = this.histogram;
+        return histogram != null ? histogram.toCountMap() : new LinkedHashMap<>();
+    }
+    
+    /**
+     * 列出子树中指定扩展名的所有文件
+     * 
+     * 子树包含整棵树中所有此类文件时直接返回根目录扩展名索引中的结果；
+     * 否则按直方图剪枝，只进入包含此类文件的子目录，结果按目录分组。
+     */
+    public List<File> findByExtension(String extension) {
+        String key = normalizeExtension(extension);
+        int id = ExtensionHistogram.find(key);
+        List<File> result = new ArrayList<>();
+        ExtensionHistogram histogram = this.histogram;
+        if (id < 0 || histogram == null || histogram.getCount(id) == 0) {
+            return result;
+        }
+        
+        Directory root = getRootDirectory();
+        ExtensionHistogram rootHistogram = root.histogram;
+        if (rootHistogram != null && rootHistogram.getCount(id) == histogram.getCount(id)) {
+            // 索引只包含已加载的节点，数量一致时才能直接使用
+            List<FileSystemComponent> matches = root.index().findByExtension(key);
+            if (matches.size() == histogram.getCount(id)) {
+                for (FileSystemComponent match : matches) {
+                    result.add((File) match);
+                }
+                return result;
+            }
+        }
+        
+        Deque<Directory> stack = new ArrayDeque<>();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            Directory directory = stack.pop();
+            List<FileSystemComponent> children = directory.children();
+            for (FileSystemComponent child : children) {
+                if (child instanceof File && ((File) child).getExtensionId() == id) {
+                    result.add((File) child);
+                } else if (child instanceof Directory) {
+                    ExtensionHistogram subtree = ((Directory) child).histogram;
+                    if (subtree != null && subtree.getCount(id) > 0) {
+                        stack.push((Directory) child);
+                    }
                 }
-            } else if (child instanceof Directory) {
-                count += ((Directory) child).getFileCount(extension);
             }
         }
-        return count;
+        return result;
     }
     
     /**
@@ -161,31 +759,55 @@ public class Directory extends FileSystemComponent {
     
     /**
      * 目录统计信息内部类
+     * 
+     * 统计本身也是一个并行归约的累加器，各子树的部分统计最后合并。
      */
     public static class DirectoryStats {
         private int totalFiles;
         private int totalDirectories;
-        private int totalSize;
+        private long totalSize;
         private int maxDepth;
         
         public DirectoryStats(Directory directory) {
-            calculateStats(directory, 0);
+            DirectoryStats stats = directory.reduce(REDUCTION);
+            this.totalFiles = stats.totalFiles;
+            this.totalDirectories = stats.totalDirectories;
+            this.totalSize = stats.totalSize;
+            this.maxDepth = stats.maxDepth;
         }
         
-        private void calculateStats(Directory directory, int currentDepth) {
-            maxDepth = Math.max(maxDepth, currentDepth);
-            
-            for (FileSystemComponent child : directory.children) {
-                if (child instanceof File) {
-                    totalFiles++;
-                    totalSize += child.getSize();
-                } else if (child instanceof Directory) {
-                    totalDirectories++;
-                    calculateStats((Directory) child, currentDepth + 1);
-                }
-            }
+        private DirectoryStats() {
         }
         
+        private static final TreeTraversal.Reduction<DirectoryStats> REDUCTION =
+            new TreeTraversal.Reduction<DirectoryStats>() {
+                @Override
+                public DirectoryStats identity() {
+                    return new DirectoryStats();
+                }
+                
+                @Override
+                public DirectoryStats accept(DirectoryStats stats, FileSystemComponent node, int depth) {
+                    if (node instanceof File) {
+                        stats.totalFiles++;
+                        stats.totalSize += node.getSize();
+                    } else if (node instanceof Directory) {
+                        stats.totalDirectories++;
+                        stats.maxDepth = Math.max(stats.maxDepth, depth);
+                    }
+                    return stats;
+                }
+                
+                @Override
+                public DirectoryStats combine(DirectoryStats left, DirectoryStats right) {
+                    left.totalFiles += right.totalFiles;
+                    left.totalDirectories += right.totalDirectories;
+                    left.totalSize += right.totalSize;
+                    left.maxDepth = Math.max(left.maxDepth, right.maxDepth);
+                    return left;
+                }
+            };
+        
         @Override
         public String toString() {
             return String.format("Stats{files=%d, directories=%d, totalSize=%d bytes, maxDepth=%d}", 
@@ -195,12 +817,12 @@ public class Directory extends FileSystemComponent {
         // Getters
         public int getTotalFiles() { return totalFiles; }
         public int getTotalDirectories() { return totalDirectories; }
-        public int getTotalSize() { return totalSize; }
+        public long getTotalSize() { return totalSize; }
         public int getMaxDepth() { return maxDepth; }
     }
     
     @Override
     public String toString() {
-        return "Directory{name='" + name + "', children=" + children.size() + ", size=" + getSize() + "}";
+        return "Directory{name='" + name + "', children=" + getChildCount() + ", size=" + getSize() + "}";
     }
 }
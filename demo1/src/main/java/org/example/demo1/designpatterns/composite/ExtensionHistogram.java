@@ -0,0 +1,168 @@
+package org.example.demo1.designpatterns.composite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 组合模式 - 扩展名直方图 (Extension Histogram)
+ *
+ * 记录一棵子树中每种扩展名的文件数量和字节数，按扩展名编号索引。
+ * 扩展名编号全局驻留，文件创建时取得编号，之后的统计只做数组访问。
+ * 目录在子组件加入、移出以及文件大小变化时沿父指针增量更新直方图。
+ * 计数保存在按编号分块的原子数组中，更新是对单个计数的原子加法，不持有锁，
+ * 并发模式的树中不同分支的写入同时更新同一个祖先（如根目录）的直方图时互不阻塞；
+ * 块创建后不再复制，新扩展名扩容时不会丢失其他线程的更新。
+ */
+final class ExtensionHistogram {
+
+    // 全局扩展名驻留表，编号只增不减；查询不加锁，分配新编号时持有 NAMES 的锁
+    private static final Map<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static final List<String> NAMES = new ArrayList<>();
+    private static volatile String[] names = new String[0];
+
+    // 每块保存 16 个扩展名，数量和字节数交替存放
+    private static final int CHUNK_BITS = 4;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    private volatile AtomicLongArray[] chunks = new AtomicLongArray[0];
+
+    /**
+     * 获取扩展名的编号，首次出现时分配
+     */
+    static int idOf(String extension) {
+        Integer id = IDS.get(extension);
+        if (id != null) {
+            return id;
+        }
+        synchronized (NAMES) {
+            id = IDS.get(extension);
+            if (id == null) {
+                id = NAMES.size();
+                NAMES.add(extension);
+                names = NAMES.toArray(new String[0]);
+                IDS.put(extension, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * 查找已分配的编号，没有出现过的扩展名返回 -1
+     */
+    static int find(String extension) {
+        Integer id = IDS.get(extension);
+        return id != null ? id : -1;
+    }
+
+    static String nameOf(int id) {
+        return names[id];
+    }
+
+    void add(int id, long count, long size) {
+        AtomicLongArray chunk = chunk(id >>> CHUNK_BITS);
+        int slot = (id & CHUNK_MASK) << 1;
+        if (count != 0) {
+            chunk.getAndAdd(slot, count);
+        }
+        if (size != 0) {
+            chunk.getAndAdd(slot + 1, size);
+        }
+    }
+
+    /**
+     * 取得编号所在的块，不存在时创建。只有创建块时加锁，块数组按写时复制发布
+     */
+    private AtomicLongArray chunk(int index) {
+        AtomicLongArray[] current = chunks;
+        if (index < current.length && current[index] != null) {
+            return current[index];
+        }
+        synchronized (this) {
+            current = chunks;
+            if (index < current.length && current[index] != null) {
+                return current[index];
+            }
+            AtomicLongArray[] next = Arrays.copyOf(current, Math.max(index + 1, current.length));
+            next[index] = new AtomicLongArray(2 << CHUNK_BITS);
+            chunks = next;
+            return next[index];
+        }
+    }
+
+    private long get(int id, int offset) {
+        AtomicLongArray[] current = chunks;
+        int index = id >>> CHUNK_BITS;
+        if (id < 0 || index >= current.length || current[index] == null) {
+            return 0;
+        }
+        return current[index].get(((id & CHUNK_MASK) << 1) + offset);
+    }
+
+    /**
+     * 加上（sign 为 1）或减去（sign 为 -1）另一个直方图
+     */
+    void addAll(ExtensionHistogram other, int sign) {
+        AtomicLongArray[] source = other.chunks;
+        for (int index = 0; index < source.length; index++) {
+            AtomicLongArray chunk = source[index];
+            if (chunk == null) {
+                continue;
+            }
+            for (int slot = 0; slot <= CHUNK_MASK; slot++) {
+                long count = chunk.get(slot << 1);
+                long size = chunk.get((slot << 1) + 1);
+                if (count != 0 || size != 0) {
+                    add((index << CHUNK_BITS) | slot, sign * count, sign * size);
+                }
+            }
+        }
+    }
+
+    long getCount(int id) {
+        return get(id, 0);
+    }
+
+    long getBytes(int id) {
+        return get(id, 1);
+    }
+
+    long getTotalCount() {
+        return total(0);
+    }
+
+    long getTotalBytes() {
+        return total(1);
+    }
+
+    private long total(int offset) {
+        long total = 0;
+        for (AtomicLongArray chunk : chunks) {
+            if (chunk != null) {
+                for (int i = offset; i < chunk.length(); i += 2) {
+                    total += chunk.get(i);
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 扩展名 -> 文件数量，只包含数量不为 0 的扩展名
+     */
+    Map<String, Long> toCountMap() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        int limit = chunks.length << CHUNK_BITS;
+        for (int id = 0; id < limit; id++) {
+            long count = getCount(id);
+            if (count != 0) {
+                result.put(nameOf(id), count);
+            }
+        }
+        return result;
+    }
+}
@@ -1,20 +1,66 @@
 package org.example.demo1.designpatterns.composite;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.function.Supplier;
+
 /**
  * 组合模式 - 叶子节点 (Leaf)
  * 
  * 表示文件系统中的文件，是组合结构中的叶子节点
  * 叶子节点没有子节点，实现了组件接口的基本操作
+ * 
+ * 内容保存在 {@link ContentStore} 中按块去重并放在堆外，文件只持有内容引用，
+ * 读取内容时再解码为字符串。大文件使用通道按位置读取、追加写入，
+ * 或通过 {@link #transferTo} 直接从堆外写到文件和套接字，内容不需要整体进入堆。
+ * 
+ * 文件的默克尔哈希覆盖名称、大小和内容指纹，写入内容时重新计算并沿父指针传播。
+ * 延迟加载的文件在写入之前用加载器提供的内容版本（如修改时间）代替内容指纹，
+ * 大小不变的修改也会改变哈希；读取内容不会改变哈希。
  */
 public class File extends FileSystemComponent {
     
-    private String content;
+    // 内容引用，空内容为 null
+    private ContentStore.ContentRef content;
     private String extension;
+    // 驻留的扩展名编号，用于目录的扩展名直方图
+    private int extensionId;
+    
+    // 延迟加载内容的加载器，首次读取内容后清空
+    private Supplier<String> contentLoader;
+    
+    // 延迟加载的文件在写入之前代替内容指纹参与哈希，写入后为 0
+    private long contentVersion;
     
     public File(String name, int size) {
+        this(name, (long) size);
+    }
+    
+    /**
+     * 创建延迟加载内容的文件，例如从磁盘扫描得到的文件。
+     * 大小为实际字节数，首次读取内容时才调用加载器，加载不会改变文件大小。
+     */
+    public File(String name, long size, Supplier<String> contentLoader) {
+        this(name, size, contentLoader, 0);
+    }
+    
+    /**
+     * 创建延迟加载内容的文件，contentVersion 是内容的廉价变化信号（如修改时间），
+     * 内容变化而大小不变时哈希也随之变化；为 0 时只按名称和大小参与哈希
+     */
+    public File(String name, long size, Supplier<String> contentLoader, long contentVersion) {
+        this(name, size);
+        this.contentLoader = contentLoader;
+        this.contentVersion = contentVersion;
+        this.treeHash = treeHashOf(this.name, size, this.content, this.contentVersion);
+    }
+    
+    private File(String name, long size) {
         super(name);
         this.size = size;
-        this.content = "";
         
         // 提取文件扩展名
         int dotIndex = name.lastIndexOf('.');
@@ -23,11 +69,28 @@ public class File extends FileSystemComponent {
         } else {
             this.extension = "";
         }
+        this.extensionId = ExtensionHistogram.idOf(extension);
+        this.treeHash = treeHashOf(this.name, size, this.content, this.contentVersion);
     }
     
     public File(String name, int size, String content) {
         this(name, size);
-        this.content = content != null ? content : "";
+        this.content = store(ContentStore.shared(), content);
+        this.treeHash = treeHashOf(this.name, size, this.content, this.contentVersion);
+    }
+    
+    /**
+     * 使用已保存的内容创建文件，文件接管该引用。
+     * 多个文件共享同一份内容时，每个文件使用 {@link ContentStore#retain} 得到的独立引用。
+     */
+    public File(String name, long size, ContentStore.ContentRef content) {
+        this(name, size);
+        this.content = content != null && content.getLength() > 0 ? content : null;
+        this.treeHash = treeHashOf(this.name, size, this.content, this.contentVersion);
+    }
+    
+    private static ContentStore.ContentRef store(ContentStore store, String content) {
+        return content == null || content.isEmpty() ? null : store.put(content);
     }
     
     @Override
@@ -37,15 +100,16 @@ public class File extends FileSystemComponent {
         System.out.println(indent + icon + " " + name + " (" + size + " bytes)");
         
         // 如果有内容，显示内容预览
-        if (!content.isEmpty()) {
-            String preview = content.length() > 50 ? 
-                content.substring(0, 50) + "..." : content;
+        if (isContentLoaded() && content != null) {
+            String prefix = contentPrefix(50);
+            String preview = prefix.length() > 50 ? 
+                prefix.substring(0, 50) + "..." : prefix;
             System.out.println(indent + "  Content: " + preview);
         }
     }
     
     @Override
-    public int getSize() {
+    public long getSize() {
         return size;
     }
     
@@ -57,7 +121,14 @@ public class File extends FileSystemComponent {
     /**
      * 根据文件扩展名返回对应的图标
      */
-    private String getFileIcon() {
+    String getFileIcon() {
+        return iconFor(extension);
+    }
+    
+    /**
+     * 扩展名（小写）对应的图标，紧凑树的文件节点同样使用
+     */
+    static String iconFor(String extension) {
         switch (extension) {
             case "txt":
             case "md":
@@ -87,26 +158,194 @@ public class File extends FileSystemComponent {
     }
     
     // 文件特有的方法
-    public String getContent() {
+    public synchronized String getContent() {
+        ContentStore.ContentRef ref = getContentRef();
+        return ref != null ? ref.asString() : "";
+    }
+    
+    /**
+     * 内容引用，必要时先加载内容；空内容返回 null
+     */
+    synchronized ContentStore.ContentRef getContentRef() {
+        if (contentLoader != null) {
+            content = store(ContentStore.shared(), contentLoader.get());
+            contentLoader = null;
+        }
         return content;
     }
     
-    public void setContent(String content) {
-        this.content = content != null ? content : "";
-        // 更新文件大小（简化计算）
-        this.size = this.content.length();
+    /**
+     * 只解码内容开头的一部分，内容超过 maxChars 时多返回一个字符
+     */
+    synchronized String contentPrefix(int maxChars) {
+        ContentStore.ContentRef ref = getContentRef();
+        return ref != null ? ref.prefix(maxChars) : "";
+    }
+    
+    /**
+     * 内容是否已经在内存中
+     */
+    public synchronized boolean isContentLoaded() {
+        return contentLoader == null;
+    }
+    
+    public synchronized void setContent(String content) {
+        this.contentLoader = null;
+        this.contentVersion = 0;
+        ContentStore.ContentRef previous = this.content;
+        // 先保存新内容再释放旧内容，未变化的块不会被删除后重新写入
+        this.content = store(previous != null ? previous.getStore() : ContentStore.shared(), content);
+        if (previous != null) {
+            previous.release();
+        }
+        // 文件大小为 UTF-8 字节数，并同步所有祖先目录的缓存大小
+        updateSize(this.content != null ? this.content.getLength() : 0);
+    }
+    
+    void updateSize(long newSize) {
+        Directory parent = getParent();
+        if (parent != null) {
+            // 由所在目录同步祖先的大小、直方图和哈希，并发模式下还要持有结构锁
+            parent.updateFile(this, newSize);
+        } else {
+            this.size = newSize;
+            this.treeHash = computeTreeHash(newSize);
+        }
+    }
+    
+    /**
+     * 按当前内容和指定大小计算哈希
+     */
+    final long computeTreeHash(long size) {
+        return treeHashOf(name, size, content, contentVersion);
+    }
+    
+    /**
+     * 构造器使用的静态版本，构造期间不调用可被重写的方法
+     */
+    private static long treeHashOf(String name, long size, ContentStore.ContentRef content, long contentVersion) {
+        long fingerprint = contentVersion != 0 ? contentVersion : MerkleHash.fingerprint(content);
+        return MerkleHash.ofFile(name, size, fingerprint);
+    }
+    
+    /**
+     * 内容的字节数
+     */
+    public long getContentLength() {
+        ContentStore.ContentRef ref = getContentRef();
+        return ref != null ? ref.getLength() : 0;
+    }
+    
+    /**
+     * 从指定位置读取内容到 dst 中
+     *
+     * @return 读取的字节数，位置超过末尾时返回 -1
+     */
+    public int read(ByteBuffer dst, long position) {
+        ContentStore.ContentRef ref = getContentRef();
+        if (ref == null) {
+            if (position < 0) {
+                throw new IllegalArgumentException("Negative position: " + position);
+            }
+            return -1;
+        }
+        return ref.read(dst, position);
+    }
+    
+    /**
+     * 打开只读通道。通道读取的是打开时的内容，之后的修改不影响已打开的通道
+     */
+    public SeekableByteChannel openReadChannel() {
+        ContentStore.ContentRef ref = getContentRef();
+        return (ref != null ? ref : ContentStore.shared().put(new byte[0])).newChannel();
+    }
+    
+    /**
+     * 把内容的一段直接写入目标通道，不经过堆
+     *
+     * @return 实际写出的字节数
+     */
+    public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        ContentStore.ContentRef ref = getContentRef();
+        if (position < 0 || count < 0) {
+            throw new IllegalArgumentException("Negative position or count");
+        }
+        return ref != null ? ref.transferTo(position, count, target) : 0;
+    }
+    
+    /**
+     * 打开写入通道，写入的数据按块流式保存，关闭通道时替换文件内容并更新大小
+     *
+     * @param append 是否追加到已有内容之后
+     */
+    public WritableByteChannel openWriteChannel(boolean append) {
+        ContentStore.ContentRef base = append ? getContentRef() : null;
+        ContentStore store;
+        synchronized (this) {
+            store = content != null ? content.getStore() : ContentStore.shared();
+        }
+        return new CommitChannel(store.newWriter(base));
+    }
+    
+    private synchronized void commit(ContentStore.ContentRef ref) {
+        ContentStore.ContentRef previous = this.content;
+        this.contentLoader = null;
+        this.contentVersion = 0;
+        this.content = ref.getLength() > 0 ? ref : null;
+        if (this.content == null) {
+            ref.release();
+        }
+        if (previous != null) {
+            previous.release();
+        }
+        updateSize(ref.getLength());
+    }
+    
+    /**
+     * 关闭时提交内容的写入通道
+     */
+    private class CommitChannel implements WritableByteChannel {
+        private final ContentStore.ContentWriter writer;
+        
+        CommitChannel(ContentStore.ContentWriter writer) {
+            this.writer = writer;
+        }
+        
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (!writer.isOpen()) {
+                throw new ClosedChannelException();
+            }
+            return writer.write(src);
+        }
+        
+        @Override
+        public boolean isOpen() {
+            return writer.isOpen();
+        }
+        
+        @Override
+        public void close() {
+            if (writer.isOpen()) {
+                commit(writer.finish());
+            }
+        }
     }
     
     public String getExtension() {
         return extension;
     }
     
+    int getExtensionId() {
+        return extensionId;
+    }
+    
     /**
      * 读取文件内容
      */
     public String read() {
         System.out.println("Reading file: " + name);
-        return content;
+        return getContent();
     }
     
     /**
@@ -1,5 +1,8 @@
 package org.example.demo1.designpatterns.composite;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+
 /**
  * 组合模式 - 组件接口 (Component)
  * 
@@ -9,7 +12,15 @@ package org.example.demo1.designpatterns.composite;
 public abstract class FileSystemComponent {
     
     protected String name;
-    protected int size;
+    
+    // 文件为自身大小，目录为缓存的子树总大小；并发模式下读取不加锁
+    protected volatile long size;
+    
+    // 所属目录，根节点或未加入目录时为null
+    private volatile Directory parent;
+    
+    // 默克尔哈希，由子类在创建和修改时维护，见 MerkleHash
+    volatile long treeHash;
     
     public FileSystemComponent(String name) {
         this.name = name;
@@ -18,7 +29,7 @@ public abstract class FileSystemComponent {
     
     // 基本操作 - 所有组件都需要实现
     public abstract void display(int depth);
-    public abstract int getSize();
+    public abstract long getSize();
     public abstract String getType();
     
     // 组合操作 - 默认实现，叶子节点不支持
@@ -39,15 +50,60 @@ public abstract class FileSystemComponent {
         return name;
     }
     
+    /**
+     * 获取所属目录
+     */
+    public Directory getParent() {
+        return parent;
+    }
+    
+    /**
+     * 获取从根目录开始的路径，根目录为 "/"
+     */
+    public String getPath() {
+        if (parent == null) {
+            return "/";
+        }
+        Deque<String> segments = new ArrayDeque<>();
+        for (FileSystemComponent node = this; node.parent != null; node = node.parent) {
+            segments.push(node.name);
+        }
+        StringBuilder path = new StringBuilder();
+        for (String segment : segments) {
+            path.append('/').append(segment);
+        }
+        return path.toString();
+    }
+    
+    /**
+     * 组件的结构哈希：文件覆盖名称、大小和内容，目录覆盖名称和整棵子树。
+     * 两个组件哈希相同时可以认为内容相同，{@link TreeDiff} 据此跳过未变化的子树
+     */
+    public long getTreeHash() {
+        return treeHash;
+    }
+    
+    void setParent(Directory parent) {
+        this.parent = parent;
+    }
+    
+    /**
+     * 自身大小变化后，把变化量沿祖先链向上传播
+     */
+    protected void propagateSizeChange(long delta) {
+        if (delta == 0) {
+            return;
+        }
+        for (Directory ancestor = parent; ancestor != null; ancestor = ancestor.getParent()) {
+            ancestor.addSize(delta);
+        }
+    }
+    
     /**
      * 生成缩进字符串，用于显示层次结构
      */
     protected String getIndent(int depth) {
-        StringBuilder indent = new StringBuilder();
-        for (int i = 0; i < depth; i++) {
-            indent.append("  ");
-        }
-        return indent.toString();
+        return TreeRenderer.indent(depth);
     }
     
     /**
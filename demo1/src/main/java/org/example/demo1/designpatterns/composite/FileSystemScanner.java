@@ -0,0 +1,300 @@
+package org.example.demo1.designpatterns.composite;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 组合模式 - 并行文件系统扫描器 (File System Scanner)
+ *
+ * 用 NIO 遍历磁盘上的真实目录，构建对应的 {@link Directory} / {@link File} 树。
+ * 每个目录由一个 {@link RecursiveTask} 读取，子目录作为新任务 fork 出去并行扫描，
+ * 子树在各自的任务中构建完成后再挂到父目录上，因此构建过程不需要加锁。
+ *
+ * 文件大小和修改时间取自文件属性，内容在首次读取时才从磁盘加载，修改时间作为内容版本参与默克尔哈希。
+ * 默认不跟随符号链接；跟随时用文件键（inode）检测指向祖先目录的链接，跳过形成的环。
+ * 扫描进度按固定的条目间隔回调给监听器，扫描结束时再回调一次最终结果。
+ */
+public class FileSystemScanner {
+
+    private final ForkJoinPool pool;
+    private final boolean followLinks;
+    private final long progressInterval;
+    private final Consumer<ScanProgress> progressListener;
+
+    public FileSystemScanner() {
+        this(ForkJoinPool.commonPool(), false, 10_000, progress -> { });
+    }
+
+    /**
+     * @param pool 执行扫描任务的线程池
+     * @param followLinks 是否跟随符号链接
+     * @param progressInterval 每扫描多少个条目回调一次进度
+     * @param progressListener 进度监听器，可能在任意扫描线程中被调用
+     */
+    public FileSystemScanner(ForkJoinPool pool, boolean followLinks, long progressInterval,
+                             Consumer<ScanProgress> progressListener) {
+        if (pool == null || progressListener == null) {
+            throw new IllegalArgumentException("Pool and progress listener cannot be null");
+        }
+        if (progressInterval <= 0) {
+            throw new IllegalArgumentException("Progress interval must be positive: " + progressInterval);
+        }
+        this.pool = pool;
+        this.followLinks = followLinks;
+        this.progressInterval = progressInterval;
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * 扫描目录并构建组件树
+     *
+     * @param root 要扫描的目录
+     * @return 与磁盘目录对应的根目录
+     * @throws IOException 根目录不存在或不是目录时抛出
+     */
+    public Directory scan(Path root) throws IOException {
+        if (root == null) {
+            throw new IllegalArgumentException("Root path cannot be null");
+        }
+        BasicFileAttributes attributes = Files.readAttributes(root, BasicFileAttributes.class, linkOptions());
+        if (!attributes.isDirectory()) {
+            throw new IOException("Not a directory: " + root);
+        }
+
+        ScanState state = new ScanState();
+        Ancestor rootKey = new Ancestor(fileKey(root, attributes), null);
+        Directory directory = pool.invoke(new ScanTask(root, nameOf(root), rootKey, state));
+        progressListener.accept(state.snapshot(root, true));
+        return directory;
+    }
+
+    private LinkOption[] linkOptions() {
+        return followLinks ? new LinkOption[0] : new LinkOption[] {LinkOption.NOFOLLOW_LINKS};
+    }
+
+    private static String nameOf(Path path) {
+        Path fileName = path.getFileName();
+        return fileName != null ? fileName.toString() : path.toString();
+    }
+
+    /**
+     * 文件的内容版本：修改时间（纳秒），大小不变的修改也能从哈希中看出
+     */
+    static long versionOf(BasicFileAttributes attributes) {
+        return attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 文件键用于识别同一个目录，文件系统不提供时退化为真实路径
+     */
+    private static Object fileKey(Path path, BasicFileAttributes attributes) throws IOException {
+        Object key = attributes.fileKey();
+        return key != null ? key : path.toRealPath();
+    }
+
+    /**
+     * 从磁盘读取文件内容，按 UTF-8 解码，无法解码的字节被替换
+     */
+    private static String readContent(Path path) {
+        try {
+            return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + path, e);
+        }
+    }
+
+    private static String readLinkTarget(Path link) {
+        try {
+            return Files.readSymbolicLink(link).toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read link " + link, e);
+        }
+    }
+
+    /**
+     * 扫描一个目录及其子树
+     */
+    @SuppressWarnings("serial") // 任务只在线程池中执行，不会被序列化
+    private class ScanTask extends RecursiveTask<Directory> {
+        private final Path path;
+        private final String name;
+        private final Ancestor ancestors;
+        private final ScanState state;
+
+        ScanTask(Path path, String name, Ancestor ancestors, ScanState state) {
+            this.path = path;
+            this.name = name;
+            this.ancestors = ancestors;
+            this.state = state;
+        }
+
+        @Override
+        protected Directory compute() {
+            Directory directory = new Directory(name);
+            state.directories.increment();
+
+            List<FileSystemComponent> files = new ArrayList<>();
+            List<ScanTask> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(path)) {
+                for (Path entry : entries) {
+                    scanEntry(entry, files, subtasks);
+                }
+            } catch (IOException | UncheckedIOException | DirectoryIteratorException e) {
+                // 无权限或扫描过程中被删除的目录，迭代中途失败时保留已读取的部分
+                state.errors.increment();
+            }
+
+            for (ScanTask subtask : subtasks) {
+                subtask.fork();
+            }
+            for (FileSystemComponent file : files) {
+                directory.attach(file);
+            }
+            // 按 fork 的相反顺序 join，最近 fork 的任务最可能仍在本线程的队列中
+            Directory[] subdirectories = new Directory[subtasks.size()];
+            for (int i = subtasks.size() - 1; i >= 0; i--) {
+                subdirectories[i] = subtasks.get(i).join();
+            }
+            for (Directory subdirectory : subdirectories) {
+                directory.attach(subdirectory);
+            }
+            return directory;
+        }
+
+        private void scanEntry(Path entry, List<FileSystemComponent> files, List<ScanTask> subtasks) {
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(entry, BasicFileAttributes.class, linkOptions());
+            } catch (IOException e) {
+                // 悬空链接或无权限的条目
+                state.errors.increment();
+                return;
+            }
+
+            if (attributes.isDirectory()) {
+                Object key;
+                try {
+                    key = fileKey(entry, attributes);
+                } catch (IOException e) {
+                    state.errors.increment();
+                    return;
+                }
+                if (ancestors.contains(key)) {
+                    // 符号链接指回了祖先目录
+                    state.loops.increment();
+                    return;
+                }
+                subtasks.add(new ScanTask(entry, nameOf(entry), new Ancestor(key, ancestors), state));
+            } else if (attributes.isSymbolicLink()) {
+                // 不跟随链接时，链接本身作为文件，内容为链接目标
+                files.add(new File(nameOf(entry), attributes.size(), () -> readLinkTarget(entry),
+                                   versionOf(attributes)));
+                state.files.increment();
+                state.bytes.add(attributes.size());
+            } else {
+                long size = attributes.size();
+                files.add(new File(nameOf(entry), size, () -> readContent(entry), versionOf(attributes)));
+                state.files.increment();
+                state.bytes.add(size);
+            }
+
+            long scanned = state.entries.incrementAndGet();
+            if (scanned % progressInterval == 0) {
+                progressListener.accept(state.snapshot(entry, false));
+            }
+        }
+    }
+
+    /**
+     * 祖先目录的文件键链表，用于检测符号链接形成的环
+     */
+    private static final class Ancestor {
+        private final Object key;
+        private final Ancestor parent;
+
+        Ancestor(Object key, Ancestor parent) {
+            this.key = key;
+            this.parent = parent;
+        }
+
+        boolean contains(Object candidate) {
+            for (Ancestor ancestor = this; ancestor != null; ancestor = ancestor.parent) {
+                if (ancestor.key.equals(candidate)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 各扫描线程共享的计数器
+     */
+    private static final class ScanState {
+        private final AtomicLong entries = new AtomicLong();
+        private final LongAdder files = new LongAdder();
+        private final LongAdder directories = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder loops = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        ScanProgress snapshot(Path current, boolean finished) {
+            return new ScanProgress(files.sum(), directories.sum(), bytes.sum(), loops.sum(), errors.sum(),
+                                    current, finished);
+        }
+    }
+
+    /**
+     * 扫描进度
+     */
+    public static class ScanProgress {
+        private final long files;
+        private final long directories;
+        private final long bytes;
+        private final long skippedLoops;
+        private final long errors;
+        private final Path currentPath;
+        private final boolean finished;
+
+        public ScanProgress(long files, long directories, long bytes, long skippedLoops, long errors,
+                            Path currentPath, boolean finished) {
+            this.files = files;
+            this.directories = directories;
+            this.bytes = bytes;
+            this.skippedLoops = skippedLoops;
+            this.errors = errors;
+            this.currentPath = currentPath;
+            this.finished = finished;
+        }
+
+        // Getters
+        public long getFiles() { return files; }
+        public long getDirectories() { return directories; }
+        public long getBytes() { return bytes; }
+        public long getSkippedLoops() { return skippedLoops; }
+        public long getErrors() { return errors; }
+        public Path getCurrentPath() { return currentPath; }
+        public boolean isFinished() { return finished; }
+
+        @Override
+        public String toString() {
+            return String.format("ScanProgress{files=%d, directories=%d, bytes=%d, loops=%d, errors=%d, finished=%s}",
+                               files, directories, bytes, skippedLoops, errors, finished);
+        }
+    }
+}
@@ -0,0 +1,587 @@
+package org.example.demo1.designpatterns.composite;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 组合模式 - 延迟加载目录 (Lazy Directory)
+ *
+ * 子组件在首次访问时才通过 {@link ChildLoader} 加载，加载器可以是本地文件系统、
+ * 磁盘快照等任意来源。同一棵树的所有延迟目录共享一个按最近访问排序的缓存，
+ * 已加载的子组件总数超过容量时，最久未访问的目录丢弃子组件，下次访问时重新加载，
+ * 因此浏览很大的层次结构时内存中只保留访问过的工作集。
+ *
+ * 大小、子组件数和后代数量优先使用加载器提供的元数据，未加载的目录不需要遍历；
+ * 元数据缺失时先按 0 估计，加载后变为精确值并沿父指针传播差值。
+ * 通过 add/remove/clear 修改过的目录及其祖先不再被回收，避免丢失修改。
+ *
+ * 名称查找只覆盖已加载的部分；按路径查找沿路径逐段加载。
+ * 统计、渲染等全树遍历会加载整棵子树，遍历量超过缓存容量时冷目录会在遍历中途被回收。
+ * 加载器不提供扩展名统计，按扩展名统计和查找前会把尚未完整统计过的子树加载一遍；
+ * 回收不会丢失已有的统计，只有重新加载时才需要再次统计。
+ *
+ * 加载器可以为子组件提供预先算好的默克尔哈希（{@link ChildInfo#withTreeHash}，例如快照中保存的），
+ * 此时未加载的目录直接使用它，{@link TreeDiff} 比较两棵延迟树时只加载哈希不同的目录；
+ * 没有提供哈希的子树在读取哈希前加载一遍。文件的内容版本（如修改时间）代替内容参与哈希，
+ * 计算哈希不需要读取内容。
+ */
+public class LazyDirectory extends Directory {
+
+    /**
+     * 未知的元数据
+     */
+    public static final long UNKNOWN = -1;
+
+    private final Object key;
+    private final ChildLoader loader;
+    private final MaterializationCache cache;
+
+    // 未加载时使用的子组件数，未知时为 UNKNOWN
+    private long knownChildCount;
+    private boolean loaded;
+    private boolean pinned;
+    // 子树中的每个目录都至少加载过一次，扩展名直方图是完整的
+    private boolean complete;
+    // 子树的默克尔哈希是完整的：加载器提供了哈希，或子树中的每个目录都已加载过或有加载器提供的哈希
+    private boolean hashed;
+
+    /**
+     * 创建延迟加载的根目录
+     *
+     * @param loader 子组件加载器
+     * @param info 根目录的元数据
+     * @param capacity 整棵树最多保留的已加载子组件数量
+     */
+    public LazyDirectory(ChildLoader loader, ChildInfo info, long capacity) {
+        this(info, loader, new MaterializationCache(capacity));
+        if (loader == null) {
+            throw new IllegalArgumentException("Loader cannot be null");
+        }
+    }
+
+    /**
+     * 延迟加载本地文件系统中的目录
+     */
+    public LazyDirectory(Path root, long capacity) {
+        this(new FileSystemLoader(), rootInfo(root), capacity);
+    }
+
+    private LazyDirectory(ChildInfo info, ChildLoader loader, MaterializationCache cache) {
+        super(info.getName());
+        if (!info.isDirectory()) {
+            throw new IllegalArgumentException("Not a directory: " + info.getName());
+        }
+        this.key = info.getKey();
+        this.loader = loader;
+        this.cache = cache;
+        this.knownChildCount = info.getChildCount();
+        // 尚未挂到父目录上，只设置自己的估计值
+        adjustAggregates(Math.max(info.getSize(), 0), Math.max(info.getDescendantCount(), 0));
+        if (info.hasTreeHash()) {
+            this.treeHash = info.getTreeHash();
+            this.hashed = true;
+        }
+    }
+
+    private static ChildInfo rootInfo(Path root) {
+        if (root == null) {
+            throw new IllegalArgumentException("Root path cannot be null");
+        }
+        if (!Files.isDirectory(root)) {
+            throw new IllegalArgumentException("Not a directory: " + root);
+        }
+        Path fileName = root.getFileName();
+        return new ChildInfo(fileName != null ? fileName.toString() : root.toString(), root, true,
+                             UNKNOWN, UNKNOWN, UNKNOWN);
+    }
+
+    @Override
+    List<FileSystemComponent> children() {
+        synchronized (cache) {
+            if (!loaded) {
+                load();
+            } else if (!pinned) {
+                // 访问顺序的 LinkedHashMap，get 会把目录移到最近访问的位置
+                cache.lru.get(this);
+            }
+            return super.children();
+        }
+    }
+
+    private void load() {
+        List<ChildInfo> infos = loader.list(key);
+
+        // 去掉元数据估计值（或回收前保留的统计），逐个挂载子组件后得到精确值
+        resetAggregates();
+        for (ChildInfo info : infos) {
+            if (info.isDirectory()) {
+                attach(new LazyDirectory(info, loader, cache));
+            } else {
+                Object fileKey = info.getKey();
+                File file = new File(info.getName(), Math.max(info.getSize(), 0), () -> loader.read(fileKey),
+                                     info.getContentVersion());
+                if (info.hasTreeHash()) {
+                    file.treeHash = info.getTreeHash();
+                }
+                attach(file);
+            }
+        }
+        loaded = true;
+        knownChildCount = infos.size();
+        cache.loads++;
+
+        // 新创建的子目录还没有统计，本目录和祖先的直方图不再完整；没有哈希的子目录同样使哈希不再完整
+        boolean hasDirectories = false;
+        boolean hasUnhashed = false;
+        for (ChildInfo info : infos) {
+            hasDirectories |= info.isDirectory();
+            hasUnhashed |= info.isDirectory() && !info.hasTreeHash();
+        }
+        complete = !hasDirectories;
+        hashed = !hasUnhashed;
+        for (Directory ancestor = getParent(); hasDirectories && ancestor != null; ancestor = ancestor.getParent()) {
+            if (ancestor instanceof LazyDirectory) {
+                ((LazyDirectory) ancestor).complete = false;
+                ((LazyDirectory) ancestor).hashed &= !hasUnhashed;
+            }
+        }
+
+        if (!pinned) {
+            cache.lru.put(this, Boolean.TRUE);
+            cache.materialized += infos.size();
+            cache.evict(this);
+        }
+    }
+
+    /**
+     * 丢弃子组件，子树中已加载的延迟目录一并移出缓存
+     */
+    private void unload() {
+        Deque<FileSystemComponent> stack = new ArrayDeque<>(loadedChildren());
+        while (!stack.isEmpty()) {
+            FileSystemComponent node = stack.pop();
+            if (node instanceof LazyDirectory) {
+                LazyDirectory directory = (LazyDirectory) node;
+                if (cache.lru.remove(directory) != null) {
+                    cache.materialized -= directory.loadedChildren().size();
+                }
+                stack.addAll(directory.loadedChildren());
+            }
+        }
+
+        cache.materialized -= loadedChildren().size();
+        knownChildCount = loadedChildren().size();
+        discardChildren();
+        loaded = false;
+        cache.evictions++;
+    }
+
+    /**
+     * 修改过的目录及其祖先不再参与回收
+     */
+    private void pin() {
+        for (Directory directory = this; directory != null; directory = directory.getParent()) {
+            if (directory instanceof LazyDirectory) {
+                LazyDirectory lazy = (LazyDirectory) directory;
+                lazy.pinned = true;
+                if (lazy.cache.lru.remove(lazy) != null) {
+                    lazy.cache.materialized -= lazy.loadedChildren().size();
+                }
+            }
+        }
+    }
+
+    private boolean isAncestorOf(FileSystemComponent component) {
+        for (Directory ancestor = component.getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+            if (ancestor == this) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void add(FileSystemComponent component) {
+        synchronized (cache) {
+            // 先加载已有的子组件，新组件排在它们之后
+            children();
+            super.add(component);
+            pin();
+        }
+    }
+
+    @Override
+    public void remove(FileSystemComponent component) {
+        synchronized (cache) {
+            boolean child = loaded && component != null && component.getParent() == this;
+            super.remove(component);
+            if (child) {
+                pin();
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (cache) {
+            if (loaded && !pinned) {
+                cache.lru.remove(this);
+                cache.materialized -= loadedChildren().size();
+            }
+            super.clear();
+            loaded = true;
+            knownChildCount = 0;
+            pin();
+        }
+    }
+
+    @Override
+    public int getChildCount() {
+        synchronized (cache) {
+            if (!loaded && knownChildCount != UNKNOWN) {
+                return (int) knownChildCount;
+            }
+        }
+        return children().size();
+    }
+
+    /**
+     * 加载子树中尚未统计过的目录，使扩展名直方图和哈希完整
+     */
+    private void ensureComplete() {
+        if (complete) {
+            return;
+        }
+        // 正在加载的目录的祖先不会被回收，遍历期间本目录的子组件列表保持不变
+        for (FileSystemComponent child : children()) {
+            if (child instanceof LazyDirectory) {
+                ((LazyDirectory) child).ensureComplete();
+            }
+        }
+        complete = true;
+        hashed = true;
+    }
+    
+    /**
+     * 加载子树中既没有加载过、也没有加载器提供的哈希的目录，使默克尔哈希完整
+     */
+    private void ensureHashed() {
+        if (hashed) {
+            return;
+        }
+        for (FileSystemComponent child : children()) {
+            if (child instanceof LazyDirectory) {
+                ((LazyDirectory) child).ensureHashed();
+            }
+        }
+        hashed = true;
+    }
+
+    @Override
+    public int getFileCount(String extension) {
+        synchronized (cache) {
+            ensureComplete();
+            return super.getFileCount(extension);
+        }
+    }
+
+    @Override
+    public long getFileBytes(String extension) {
+        synchronized (cache) {
+            ensureComplete();
+            return super.getFileBytes(extension);
+        }
+    }
+
+    @Override
+    public Map<String, Long> getExtensionCounts() {
+        synchronized (cache) {
+            ensureComplete();
+            return super.getExtensionCounts();
+        }
+    }
+
+    @Override
+    public List<File> findByExtension(String extension) {
+        synchronized (cache) {
+            ensureComplete();
+            return super.findByExtension(extension);
+        }
+    }
+
+    @Override
+    public long getTreeHash() {
+        synchronized (cache) {
+            ensureHashed();
+            return super.getTreeHash();
+        }
+    }
+
+    /**
+     * 沿路径逐段加载，只加载路径上的目录
+     */
+    @Override
+    public List<FileSystemComponent> findByPath(String path) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
+        Directory start = this;
+        if (path.startsWith("/")) {
+            while (start.getParent() != null) {
+                start = start.getParent();
+            }
+        }
+
+        List<FileSystemComponent> current = new ArrayList<>();
+        current.add(start);
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            List<FileSystemComponent> next = new ArrayList<>();
+            for (FileSystemComponent parent : current) {
+                if (parent instanceof Directory) {
+                    for (FileSystemComponent child : ((Directory) parent).children()) {
+                        if (child.getName().equals(segment)) {
+                            next.add(child);
+                        }
+                    }
+                }
+            }
+            current = next;
+        }
+        return current;
+    }
+
+    /**
+     * 子组件当前是否在内存中
+     */
+    public boolean isLoaded() {
+        synchronized (cache) {
+            return loaded;
+        }
+    }
+
+    /**
+     * 整棵树当前在缓存中的已加载子组件数量（不包括被固定的目录）
+     */
+    public long getMaterializedCount() {
+        synchronized (cache) {
+            return cache.materialized;
+        }
+    }
+
+    /**
+     * 整棵树累计的加载次数
+     */
+    public long getLoadCount() {
+        synchronized (cache) {
+            return cache.loads;
+        }
+    }
+
+    /**
+     * 整棵树累计的回收次数
+     */
+    public long getEvictionCount() {
+        synchronized (cache) {
+            return cache.evictions;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LazyDirectory{name='" + name + "', loaded=" + loaded + ", size=" + getSize() + "}";
+    }
+
+    /**
+     * 子组件加载器
+     */
+    public interface ChildLoader {
+
+        /**
+         * 列出目录的直接子组件
+         *
+         * @param key 目录在加载器中的标识
+         */
+        List<ChildInfo> list(Object key);
+
+        /**
+         * 读取文件内容
+         *
+         * @param key 文件在加载器中的标识
+         */
+        String read(Object key);
+    }
+
+    /**
+     * 加载器提供的子组件元数据，未知的数值为 {@link #UNKNOWN}
+     */
+    public static class ChildInfo {
+        private final String name;
+        private final Object key;
+        private final boolean directory;
+        private final long size;
+        private final long childCount;
+        private final long descendantCount;
+        private final long contentVersion;
+        private final long treeHash;
+        private final boolean treeHashKnown;
+
+        /**
+         * @param name 名称
+         * @param key 在加载器中的标识
+         * @param directory 是否为目录
+         * @param size 文件大小或目录子树总大小
+         * @param childCount 目录的子组件数量
+         * @param descendantCount 目录的后代数量
+         */
+        public ChildInfo(String name, Object key, boolean directory, long size, long childCount,
+                         long descendantCount) {
+            this(name, key, directory, size, childCount, descendantCount, 0);
+        }
+
+        /**
+         * @param contentVersion 文件内容的廉价变化信号（如修改时间），内容变化时应随之变化，未知时为 0
+         */
+        public ChildInfo(String name, Object key, boolean directory, long size, long childCount,
+                         long descendantCount, long contentVersion) {
+            this(name, key, directory, size, childCount, descendantCount, contentVersion, 0, false);
+        }
+
+        private ChildInfo(String name, Object key, boolean directory, long size, long childCount,
+                          long descendantCount, long contentVersion, long treeHash, boolean treeHashKnown) {
+            if (name == null) {
+                throw new IllegalArgumentException("Name cannot be null");
+            }
+            this.name = name;
+            this.key = key;
+            this.directory = directory;
+            this.size = size;
+            this.childCount = childCount;
+            this.descendantCount = descendantCount;
+            this.contentVersion = contentVersion;
+            this.treeHash = treeHash;
+            this.treeHashKnown = treeHashKnown;
+        }
+
+        /**
+         * 附带预先算好的默克尔哈希（{@link FileSystemComponent#getTreeHash()} 的值），
+         * 必须与加载后按子组件算出的哈希一致
+         */
+        public ChildInfo withTreeHash(long treeHash) {
+            return new ChildInfo(name, key, directory, size, childCount, descendantCount, contentVersion,
+                                 treeHash, true);
+        }
+
+        // Getters
+        public String getName() { return name; }
+        public Object getKey() { return key; }
+        public boolean isDirectory() { return directory; }
+        public long getSize() { return size; }
+        public long getChildCount() { return childCount; }
+        public long getDescendantCount() { return descendantCount; }
+        public long getContentVersion() { return contentVersion; }
+        public long getTreeHash() { return treeHash; }
+        public boolean hasTreeHash() { return treeHashKnown; }
+    }
+
+    /**
+     * 从本地文件系统加载，键为 {@link Path}。
+     * 文件大小和修改时间取自文件属性，修改时间作为内容版本；目录的聚合信息和哈希需要遍历才能得到，因此为未知
+     */
+    public static class FileSystemLoader implements ChildLoader {
+
+        @Override
+        public List<ChildInfo> list(Object key) {
+            Path directory = (Path) key;
+            List<ChildInfo> result = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        // 列出后被删除或无权限的条目
+                        continue;
+                    }
+                    String name = entry.getFileName().toString();
+                    if (attributes.isDirectory()) {
+                        result.add(new ChildInfo(name, entry, true, UNKNOWN, UNKNOWN, UNKNOWN));
+                    } else {
+                        result.add(new ChildInfo(name, entry, false, attributes.size(), 0, 0,
+                                                 FileSystemScanner.versionOf(attributes)));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to list " + directory, e);
+            } catch (DirectoryIteratorException e) {
+                throw new UncheckedIOException("Failed to list " + directory, e.getCause());
+            }
+            return result;
+        }
+
+        @Override
+        public String read(Object key) {
+            try {
+                return new String(Files.readAllBytes((Path) key), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read " + key, e);
+            }
+        }
+    }
+
+    /**
+     * 同一棵树的延迟目录共享的最近访问缓存，所有加载和回收都在它的锁内进行
+     */
+    private static final class MaterializationCache {
+        private final long capacity;
+        private final LinkedHashMap<LazyDirectory, Boolean> lru = new LinkedHashMap<>(16, 0.75f, true);
+        private long materialized;
+        private long loads;
+        private long evictions;
+
+        MaterializationCache(long capacity) {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+            }
+            this.capacity = capacity;
+        }
+
+        /**
+         * 回收最久未访问的目录，直到不超过容量。刚加载的目录和它的祖先不回收
+         */
+        void evict(LazyDirectory current) {
+            while (materialized > capacity) {
+                LazyDirectory victim = null;
+                Iterator<LazyDirectory> iterator = lru.keySet().iterator();
+                while (iterator.hasNext()) {
+                    LazyDirectory candidate = iterator.next();
+                    if (candidate != current && !candidate.isAncestorOf(current)) {
+                        victim = candidate;
+                        iterator.remove();
+                        break;
+                    }
+                }
+                if (victim == null) {
+                    return;
+                }
+                victim.unload();
+            }
+        }
+    }
+}
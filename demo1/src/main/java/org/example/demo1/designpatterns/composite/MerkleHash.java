@@ -0,0 +1,74 @@
+package org.example.demo1.designpatterns.composite;
+
+/**
+ * 组合模式 - 默克尔哈希 (Merkle Hash)
+ *
+ * 组件树的 64 位结构哈希：
+ * <ul>
+ *   <li>文件：名称、大小和内容指纹的哈希</li>
+ *   <li>目录：名称的哈希加上所有子组件哈希经过 {@link #mix} 之后的和（模 2^64）</li>
+ * </ul>
+ * 目录哈希与子组件顺序无关，子组件哈希从 old 变为 new 时，父目录的哈希只需加上
+ * mix(new) - mix(old)，再以同样方式向上传播，因此 add/remove/写文件后更新是 O(深度) 的。
+ * mix 是非线性的双射，不同层级的子树交换内容时哈希不会相互抵消。
+ * 多个线程对同一目录哈希的原子加法按顺序依次生效，传播给父目录的差值可以逐项相加。
+ */
+final class MerkleHash {
+
+    private static final long FILE_TAG = 0x46494c45_00000001L;
+    private static final long DIRECTORY_TAG = 0x44495200_00000002L;
+    private static final long SIZE_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private MerkleHash() {
+    }
+
+    /**
+     * 64 位混合函数（MurmurHash3 的 fmix64），是双射
+     */
+    static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    /**
+     * 名称的 64 位 FNV-1a 哈希
+     */
+    private static long nameHash(String name) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            hash ^= name.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * 没有子组件的目录的哈希
+     */
+    static long ofDirectory(String name) {
+        return mix(nameHash(name) ^ DIRECTORY_TAG);
+    }
+
+    static long ofFile(String name, long size, long fingerprint) {
+        return mix(mix(nameHash(name) ^ FILE_TAG) + size * SIZE_MULTIPLIER + fingerprint);
+    }
+
+    /**
+     * 内容指纹：内容 SHA-256 的前 8 个字节，空内容为 0
+     */
+    static long fingerprint(ContentStore.ContentRef content) {
+        if (content == null) {
+            return 0;
+        }
+        byte[] digest = content.getHash();
+        long fingerprint = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            fingerprint = (fingerprint << 8) | (digest[i] & 0xff);
+        }
+        return fingerprint;
+    }
+}
@@ -0,0 +1,262 @@
+package org.example.demo1.designpatterns.composite;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 组合模式 - 树级名称与路径索引 (Path Index)
+ *
+ * 由根目录持有，在 add/remove 时增量维护：
+ * <ul>
+ *   <li>路径表：键为 (父目录, 路径段)，解析路径时每一段只做一次哈希查找，
+ *       内存与节点数成正比，而不是与 节点数 × 深度 成正比</li>
+ *   <li>名称多值表：名称 -> 同名的所有节点，按加入顺序排列</li>
+ *   <li>扩展名表：扩展名 -> 该类型的所有文件，按加入顺序排列</li>
+ * </ul>
+ * 名称表的键同时作为路径段的驻留池：节点加入索引时名称替换为池中的规范实例，
+ * 大量同名节点（如 index.html）共享同一个字符串。
+ *
+ * 同一目录下允许同名子组件，因此路径查找也可能返回多个节点。
+ * 延迟加载的目录只有已加载的部分会进入索引。
+ * 三张表都是并发映射，每个键的修改在映射内原子地完成，同名节点集合另由集合自身的锁保护；
+ * 并发模式的树中不同键上的写入互不阻塞，查询不等待写入。
+ * 子树的加入和移出由目录的结构锁保证不会交错，跨多个键的查询可能看到进行中的写入的一部分。
+ */
+final class PathIndex {
+
+    private final Directory root;
+
+    // (父目录, 路径段) -> 单个节点或同名节点集合
+    private final Map<ChildKey, Object> paths = new ConcurrentHashMap<>();
+
+    // 名称 -> 单个节点或同名节点集合，键同时是驻留的路径段
+    private final Map<String, Object> names = new ConcurrentHashMap<>();
+    
+    // 扩展名 -> 单个文件或文件集合
+    private final Map<String, Object> extensions = new ConcurrentHashMap<>();
+
+    /**
+     * 为以 root 为根的整棵树建立索引
+     */
+    PathIndex(Directory root) {
+        this.root = root;
+        addName(root);
+        for (FileSystemComponent child : root.loadedChildren()) {
+            addSubtree(child);
+        }
+    }
+
+    /**
+     * 索引新加入树中的子树，子树根节点必须已经设置父目录
+     */
+    void addSubtree(FileSystemComponent subtree) {
+        Deque<FileSystemComponent> stack = new ArrayDeque<>();
+        stack.push(subtree);
+        while (!stack.isEmpty()) {
+            FileSystemComponent node = stack.pop();
+            addName(node);
+            put(paths, new ChildKey(node.getParent(), node.name), node);
+            if (node instanceof File) {
+                put(extensions, ((File) node).getExtension(), node);
+            }
+            if (node instanceof Directory) {
+                pushChildren(stack, (Directory) node);
+            }
+        }
+    }
+
+    /**
+     * 移除即将离开树的子树，必须在子树根节点的父目录被清除之前调用
+     */
+    void removeSubtree(FileSystemComponent subtree) {
+        Deque<FileSystemComponent> stack = new ArrayDeque<>();
+        stack.push(subtree);
+        while (!stack.isEmpty()) {
+            FileSystemComponent node = stack.pop();
+            remove(names, node.name, node);
+            remove(paths, new ChildKey(node.getParent(), node.name), node);
+            if (node instanceof File) {
+                remove(extensions, ((File) node).getExtension(), node);
+            }
+            if (node instanceof Directory) {
+                pushChildren(stack, (Directory) node);
+            }
+        }
+    }
+
+    /**
+     * 子组件逆序入栈，出栈时按先序遍历，同名节点在名称表中保持子树内的顺序
+     */
+    private static void pushChildren(Deque<FileSystemComponent> stack, Directory directory) {
+        List<FileSystemComponent> children = directory.loadedChildren();
+        for (int i = children.size() - 1; i >= 0; i--) {
+            stack.push(children.get(i));
+        }
+    }
+
+    /**
+     * 按名称查找所有节点
+     */
+    List<FileSystemComponent> findByName(String name) {
+        return asList(names.get(name));
+    }
+
+    /**
+     * 按扩展名查找所有文件
+     */
+    List<FileSystemComponent> findByExtension(String extension) {
+        return asList(extensions.get(extension));
+    }
+    
+    /**
+     * 从指定目录出发解析相对路径，以 "/" 开头时从根目录出发
+     */
+    List<FileSystemComponent> findByPath(Directory base, String path) {
+        List<FileSystemComponent> current = new ArrayList<>();
+        current.add(path.startsWith("/") ? root : base);
+
+        int start = 0;
+        int length = path.length();
+        while (start < length && !current.isEmpty()) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            if (end > start) {
+                String segment = path.substring(start, end);
+                List<FileSystemComponent> next = new ArrayList<>();
+                for (FileSystemComponent parent : current) {
+                    if (parent instanceof Directory) {
+                        next.addAll(asList(paths.get(new ChildKey((Directory) parent, segment))));
+                    }
+                }
+                current = next;
+            }
+            start = end + 1;
+        }
+        return current;
+    }
+
+    private void addName(FileSystemComponent node) {
+        names.compute(node.name, (name, existing) -> {
+            // 同名节点共享名称表中已有的键
+            if (existing != null) {
+                node.name = canonicalName(existing);
+            }
+            return added(existing, node);
+        });
+    }
+
+    private static String canonicalName(Object entry) {
+        if (entry instanceof FileSystemComponent) {
+            return ((FileSystemComponent) entry).name;
+        }
+        @SuppressWarnings("unchecked")
+        Set<FileSystemComponent> set = (Set<FileSystemComponent>) entry;
+        synchronized (set) {
+            return set.iterator().next().name;
+        }
+    }
+
+    private static <K> void put(Map<K, Object> map, K key, FileSystemComponent node) {
+        map.compute(key, (k, existing) -> added(existing, node));
+    }
+
+    private static <K> void remove(Map<K, Object> map, K key, FileSystemComponent node) {
+        map.computeIfPresent(key, (k, existing) -> removed(existing, node));
+    }
+
+    /**
+     * 加入节点后的映射值，在映射对该键的原子修改中调用
+     */
+    @SuppressWarnings("unchecked")
+    private static Object added(Object existing, FileSystemComponent node) {
+        if (existing == null || existing == node) {
+            // 绝大多数键只对应一个节点，此时不创建集合
+            return node;
+        }
+        if (existing instanceof FileSystemComponent) {
+            // 组件没有重写 equals/hashCode，集合按身份去重
+            Set<FileSystemComponent> set = new LinkedHashSet<>();
+            set.add((FileSystemComponent) existing);
+            set.add(node);
+            return set;
+        }
+        Set<FileSystemComponent> set = (Set<FileSystemComponent>) existing;
+        synchronized (set) {
+            set.add(node);
+        }
+        return set;
+    }
+
+    /**
+     * 移除节点后的映射值，为 null 时删除该键
+     */
+    @SuppressWarnings("unchecked")
+    private static Object removed(Object existing, FileSystemComponent node) {
+        if (existing == node) {
+            return null;
+        }
+        if (existing instanceof Set) {
+            Set<FileSystemComponent> set = (Set<FileSystemComponent>) existing;
+            synchronized (set) {
+                set.remove(node);
+                if (set.size() == 1) {
+                    return set.iterator().next();
+                }
+            }
+        }
+        return existing;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<FileSystemComponent> asList(Object entry) {
+        if (entry == null) {
+            return Collections.emptyList();
+        }
+        if (entry instanceof FileSystemComponent) {
+            return Collections.singletonList((FileSystemComponent) entry);
+        }
+        Set<FileSystemComponent> set = (Set<FileSystemComponent>) entry;
+        synchronized (set) {
+            return new ArrayList<>(set);
+        }
+    }
+
+    /**
+     * 路径表的键：父目录按身份比较，路径段按内容比较
+     */
+    private static final class ChildKey {
+        private final Directory parent;
+        private final String segment;
+
+        ChildKey(Directory parent, String segment) {
+            this.parent = parent;
+            this.segment = segment;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ChildKey)) {
+                return false;
+            }
+            ChildKey other = (ChildKey) o;
+            return parent == other.parent && segment.equals(other.segment);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(parent) * 31 + segment.hashCode();
+        }
+    }
+}
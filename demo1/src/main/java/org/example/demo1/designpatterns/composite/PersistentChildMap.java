@@ -0,0 +1,285 @@
+package org.example.demo1.designpatterns.composite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 组合模式 - 持久化子节点映射 (Persistent Child Map)
+ *
+ * 持久化目录的子节点表，按名称索引的哈希数组映射前缀树（HAMT）：
+ * 每层消耗名称哈希的 5 位，内部节点用 32 位位图标记存在的分支，
+ * 条目数组只保存存在的分支，按位图中的位次定位。
+ * 修改只复制从根到被修改条目的一条路径（最多 7 层），其余分支与旧映射共享，
+ * 因此旧版本在修改后保持不变。哈希完全相同的名称放在冲突节点中。
+ */
+final class PersistentChildMap {
+
+    static final PersistentChildMap EMPTY = new PersistentChildMap(BitmapNode.EMPTY, 0);
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private final TrieNode root;
+    private final int size;
+
+    private PersistentChildMap(TrieNode root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    PersistentTree.Node get(String name) {
+        return root.get(0, name.hashCode(), name);
+    }
+
+    /**
+     * 加入节点，已有同名节点时替换
+     */
+    PersistentChildMap with(PersistentTree.Node node) {
+        boolean[] added = new boolean[1];
+        TrieNode updated = root.put(0, node.getName().hashCode(), node, added);
+        return updated == root ? this : new PersistentChildMap(updated, added[0] ? size + 1 : size);
+    }
+
+    PersistentChildMap without(String name) {
+        TrieNode updated = root.remove(0, name.hashCode(), name);
+        if (updated == root) {
+            return this;
+        }
+        // 删除最后一个条目时根节点返回 null
+        return updated == null ? EMPTY : new PersistentChildMap(updated, size - 1);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 所有节点，按哈希顺序
+     */
+    List<PersistentTree.Node> values() {
+        List<PersistentTree.Node> result = new ArrayList<>(size);
+        root.collect(result);
+        return result;
+    }
+
+    private abstract static class TrieNode {
+        abstract PersistentTree.Node get(int shift, int hash, String name);
+
+        abstract TrieNode put(int shift, int hash, PersistentTree.Node node, boolean[] added);
+
+        /**
+         * 移除后节点为空时返回 null；没有该名称时返回自身
+         */
+        abstract TrieNode remove(int shift, int hash, String name);
+
+        abstract void collect(List<PersistentTree.Node> result);
+
+        /**
+         * 只剩一个节点且没有分支时返回该节点，父节点据此把它直接内联
+         */
+        abstract PersistentTree.Node singleLeaf();
+    }
+
+    /**
+     * 位图索引的内部节点，条目为子节点（PersistentTree.Node）或下一层（TrieNode）
+     */
+    private static final class BitmapNode extends TrieNode {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] entries;
+
+        BitmapNode(int bitmap, Object[] entries) {
+            this.bitmap = bitmap;
+            this.entries = entries;
+        }
+
+        private int indexOf(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        PersistentTree.Node get(int shift, int hash, String name) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            Object entry = entries[indexOf(bit)];
+            if (entry instanceof TrieNode) {
+                return ((TrieNode) entry).get(shift + BITS, hash, name);
+            }
+            PersistentTree.Node node = (PersistentTree.Node) entry;
+            return node.getName().equals(name) ? node : null;
+        }
+
+        @Override
+        TrieNode put(int shift, int hash, PersistentTree.Node node, boolean[] added) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            int index = indexOf(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] copy = new Object[entries.length + 1];
+                System.arraycopy(entries, 0, copy, 0, index);
+                copy[index] = node;
+                System.arraycopy(entries, index, copy, index + 1, entries.length - index);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, copy);
+            }
+            Object entry = entries[index];
+            Object replacement;
+            if (entry instanceof TrieNode) {
+                TrieNode child = ((TrieNode) entry).put(shift + BITS, hash, node, added);
+                if (child == entry) {
+                    return this;
+                }
+                replacement = child;
+            } else {
+                PersistentTree.Node existing = (PersistentTree.Node) entry;
+                if (existing == node) {
+                    return this;
+                }
+                if (existing.getName().equals(node.getName())) {
+                    replacement = node;
+                } else {
+                    added[0] = true;
+                    replacement = merge(shift + BITS, existing, existing.getName().hashCode(), node, hash);
+                }
+            }
+            Object[] copy = entries.clone();
+            copy[index] = replacement;
+            return new BitmapNode(bitmap, copy);
+        }
+
+        /**
+         * 两个哈希前缀相同的节点下沉到新的一层，哈希全部用完时放入冲突节点
+         */
+        private static TrieNode merge(int shift, PersistentTree.Node a, int hashA,
+                                      PersistentTree.Node b, int hashB) {
+            if (shift >= Integer.SIZE) {
+                return new CollisionNode(hashA, new PersistentTree.Node[] {a, b});
+            }
+            int indexA = (hashA >>> shift) & MASK;
+            int indexB = (hashB >>> shift) & MASK;
+            if (indexA == indexB) {
+                return new BitmapNode(1 << indexA, new Object[] {merge(shift + BITS, a, hashA, b, hashB)});
+            }
+            Object[] pair = indexA < indexB ? new Object[] {a, b} : new Object[] {b, a};
+            return new BitmapNode((1 << indexA) | (1 << indexB), pair);
+        }
+
+        @Override
+        TrieNode remove(int shift, int hash, String name) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int index = indexOf(bit);
+            Object entry = entries[index];
+            if (entry instanceof TrieNode) {
+                TrieNode child = ((TrieNode) entry).remove(shift + BITS, hash, name);
+                if (child == entry) {
+                    return this;
+                }
+                if (child != null) {
+                    PersistentTree.Node leaf = child.singleLeaf();
+                    Object[] copy = entries.clone();
+                    copy[index] = leaf != null ? leaf : child;
+                    return new BitmapNode(bitmap, copy);
+                }
+            } else if (!((PersistentTree.Node) entry).getName().equals(name)) {
+                return this;
+            }
+            if (entries.length == 1) {
+                return null;
+            }
+            Object[] copy = new Object[entries.length - 1];
+            System.arraycopy(entries, 0, copy, 0, index);
+            System.arraycopy(entries, index + 1, copy, index, entries.length - index - 1);
+            return new BitmapNode(bitmap & ~bit, copy);
+        }
+
+        @Override
+        void collect(List<PersistentTree.Node> result) {
+            for (Object entry : entries) {
+                if (entry instanceof TrieNode) {
+                    ((TrieNode) entry).collect(result);
+                } else {
+                    result.add((PersistentTree.Node) entry);
+                }
+            }
+        }
+
+        @Override
+        PersistentTree.Node singleLeaf() {
+            return entries.length == 1 && !(entries[0] instanceof TrieNode) ? (PersistentTree.Node) entries[0] : null;
+        }
+    }
+
+    /**
+     * 名称哈希完全相同的节点，线性查找
+     */
+    private static final class CollisionNode extends TrieNode {
+        private final int hash;
+        private final PersistentTree.Node[] nodes;
+
+        CollisionNode(int hash, PersistentTree.Node[] nodes) {
+            this.hash = hash;
+            this.nodes = nodes;
+        }
+
+        private int indexOf(String name) {
+            for (int i = 0; i < nodes.length; i++) {
+                if (nodes[i].getName().equals(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        PersistentTree.Node get(int shift, int hash, String name) {
+            int index = indexOf(name);
+            return index >= 0 ? nodes[index] : null;
+        }
+
+        @Override
+        TrieNode put(int shift, int hash, PersistentTree.Node node, boolean[] added) {
+            int index = indexOf(node.getName());
+            if (index >= 0 && nodes[index] == node) {
+                return this;
+            }
+            PersistentTree.Node[] copy;
+            if (index >= 0) {
+                copy = nodes.clone();
+                copy[index] = node;
+            } else {
+                copy = Arrays.copyOf(nodes, nodes.length + 1);
+                copy[nodes.length] = node;
+                added[0] = true;
+            }
+            return new CollisionNode(this.hash, copy);
+        }
+
+        @Override
+        TrieNode remove(int shift, int hash, String name) {
+            int index = indexOf(name);
+            if (index < 0) {
+                return this;
+            }
+            PersistentTree.Node[] copy = new PersistentTree.Node[nodes.length - 1];
+            System.arraycopy(nodes, 0, copy, 0, index);
+            System.arraycopy(nodes, index + 1, copy, index, nodes.length - index - 1);
+            return new CollisionNode(this.hash, copy);
+        }
+
+        @Override
+        void collect(List<PersistentTree.Node> result) {
+            result.addAll(Arrays.asList(nodes));
+        }
+
+        @Override
+        PersistentTree.Node singleLeaf() {
+            return nodes.length == 1 ? nodes[0] : null;
+        }
+    }
+}
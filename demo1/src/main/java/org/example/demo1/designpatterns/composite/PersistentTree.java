@@ -0,0 +1,366 @@
+package org.example.demo1.designpatterns.composite;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * 组合模式 - 持久化不可变树 (Persistent Tree)
+ *
+ * 组件树的不可变版本。每次修改都返回一棵新树，只复制从根到被修改节点的路径，
+ * 其余子树在新旧版本之间共享：目录的子节点保存在 {@link PersistentChildMap} 中，
+ * 修改一个子节点只复制映射中的一条路径，因此修改是 O(深度) 的，
+ * 目录的大小和后代数量随路径复制一起重新计算。
+ *
+ * 旧版本永远不变，取得快照只是保存一个引用，是 O(1) 的。{@link Branch} 持有当前版本，
+ * 写入线程用比较并交换发布新版本，长时间运行的报表拿到一个版本后一直读取它，不受写入影响；
+ * 回滚就是把旧版本重新设为当前版本。
+ *
+ * 同一目录下的子节点按名称唯一，写入已存在的名称会替换原节点。
+ * 文件内容保存在 {@link ContentStore} 中，各版本共享同一个内容引用。
+ */
+public final class PersistentTree {
+
+    private final DirectoryNode root;
+    private final long version;
+
+    private PersistentTree(DirectoryNode root, long version) {
+        this.root = root;
+        this.version = version;
+    }
+
+    /**
+     * 只有根目录的空树
+     */
+    public static PersistentTree empty(String rootName) {
+        return new PersistentTree(new DirectoryNode(rootName, PersistentChildMap.EMPTY, 0, 0), 0);
+    }
+
+    /**
+     * 从可变目录树创建持久化树，O(n)。同一目录下的同名子组件只保留最后一个
+     */
+    public static PersistentTree of(Directory directory) {
+        return new PersistentTree(freeze(directory), 0);
+    }
+
+    private static DirectoryNode freeze(Directory directory) {
+        DirectoryNode node = new DirectoryNode(directory.getName(), PersistentChildMap.EMPTY, 0, 0);
+        for (FileSystemComponent child : directory.children()) {
+            if (child instanceof Directory) {
+                node = node.with(freeze((Directory) child));
+            } else if (child instanceof File) {
+                File file = (File) child;
+                ContentStore.ContentRef content = file.getContentRef();
+                node = node.with(new FileNode(file.getName(), file.getSize(),
+                                              content != null ? content.getStore().retain(content) : null));
+            }
+        }
+        return node;
+    }
+
+    /**
+     * 写入文件，缺少的父目录自动创建，已存在的同名文件被替换
+     */
+    public PersistentTree putFile(String path, String content) {
+        String[] segments = split(path);
+        if (segments.length == 0) {
+            throw new IllegalArgumentException("Path must name a file: " + path);
+        }
+        ContentStore.ContentRef ref = content == null || content.isEmpty() ? null : ContentStore.shared().put(content);
+        FileNode file = new FileNode(segments[segments.length - 1], ref != null ? ref.getLength() : 0, ref);
+        return update(segments, existing -> {
+            if (existing instanceof DirectoryNode) {
+                throw new IllegalArgumentException("Path is a directory: " + path);
+            }
+            return file;
+        });
+    }
+
+    /**
+     * 创建目录及缺少的父目录，目录已存在时返回当前树
+     */
+    public PersistentTree putDirectory(String path) {
+        String[] segments = split(path);
+        if (segments.length == 0) {
+            return this;
+        }
+        String name = segments[segments.length - 1];
+        return update(segments, existing -> {
+            if (existing instanceof FileNode) {
+                throw new IllegalArgumentException("Path is a file: " + path);
+            }
+            return existing != null ? existing : new DirectoryNode(name, PersistentChildMap.EMPTY, 0, 0);
+        });
+    }
+
+    /**
+     * 删除文件或整个目录，路径不存在时返回当前树
+     */
+    public PersistentTree remove(String path) {
+        String[] segments = split(path);
+        if (segments.length == 0) {
+            throw new IllegalArgumentException("Cannot remove the root directory");
+        }
+        return update(segments, existing -> null);
+    }
+
+    /**
+     * 沿路径复制目录，对最后一段的节点执行 operation（参数为现有节点或 null，返回 null 表示删除）
+     */
+    private PersistentTree update(String[] segments, UnaryOperator<Node> operation) {
+        DirectoryNode updated = update(root, segments, 0, operation);
+        return updated == root ? this : new PersistentTree(updated, version + 1);
+    }
+
+    private static DirectoryNode update(DirectoryNode directory, String[] segments, int index,
+                                        UnaryOperator<Node> operation) {
+        String name = segments[index];
+        Node existing = directory.getChild(name);
+        Node replacement;
+        if (index == segments.length - 1) {
+            replacement = operation.apply(existing);
+        } else {
+            if (existing instanceof FileNode) {
+                throw new IllegalArgumentException("Not a directory: " + name);
+            }
+            DirectoryNode child = (DirectoryNode) existing;
+            if (child == null) {
+                // 只有写入才创建中间目录，删除不存在的路径不改变树
+                if (operation.apply(null) == null) {
+                    return directory;
+                }
+                child = new DirectoryNode(name, PersistentChildMap.EMPTY, 0, 0);
+            }
+            replacement = update(child, segments, index + 1, operation);
+        }
+        if (replacement == existing) {
+            return directory;
+        }
+        return replacement != null ? directory.with(replacement) : directory.without(name);
+    }
+
+    private static String[] split(String path) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(segment);
+            }
+        }
+        return segments.toArray(new String[0]);
+    }
+
+    /**
+     * 按路径查找节点，"/" 为根目录，不存在时返回 null
+     */
+    public Node get(String path) {
+        Node node = root;
+        for (String segment : split(path)) {
+            if (!(node instanceof DirectoryNode)) {
+                return null;
+            }
+            node = ((DirectoryNode) node).getChild(segment);
+        }
+        return node;
+    }
+
+    /**
+     * 转换为可变目录树，O(n)。子组件按名称排序，文件使用各自独立的内容引用
+     */
+    public Directory toDirectory() {
+        return thaw(root);
+    }
+
+    private static Directory thaw(DirectoryNode node) {
+        Directory directory = new Directory(node.getName());
+        List<Node> children = node.getChildren();
+        children.sort(Comparator.comparing(Node::getName));
+        for (Node child : children) {
+            if (child instanceof DirectoryNode) {
+                // 子目录先构建完整再挂载，大小和统计只向上传播一次
+                directory.attach(thaw((DirectoryNode) child));
+            } else {
+                ContentStore.ContentRef content = ((FileNode) child).content;
+                directory.attach(new File(child.getName(), child.getSize(),
+                                          content != null ? content.getStore().retain(content) : null));
+            }
+        }
+        return directory;
+    }
+
+    // Getters
+    public DirectoryNode getRoot() { return root; }
+    public long getVersion() { return version; }
+    public long getSize() { return root.getSize(); }
+    public long getDescendantCount() { return root.getDescendantCount(); }
+
+    @Override
+    public String toString() {
+        return "PersistentTree{version=" + version + ", nodes=" + (root.getDescendantCount() + 1) +
+               ", size=" + root.getSize() + "}";
+    }
+
+    /**
+     * 不可变节点
+     */
+    public abstract static class Node {
+        private final String name;
+        private final long size;
+
+        Node(String name, long size) {
+            if (name == null || name.isEmpty()) {
+                throw new IllegalArgumentException("Name cannot be empty");
+            }
+            this.name = name;
+            this.size = size;
+        }
+
+        public abstract boolean isDirectory();
+
+        // Getters
+        public String getName() { return name; }
+        public long getSize() { return size; }
+    }
+
+    /**
+     * 不可变文件，内容为空时不持有内容引用
+     */
+    public static final class FileNode extends Node {
+        private final ContentStore.ContentRef content;
+
+        FileNode(String name, long size, ContentStore.ContentRef content) {
+            super(name, size);
+            this.content = content;
+        }
+
+        public String getContent() {
+            return content != null ? content.asString() : "";
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return "FileNode{name='" + getName() + "', size=" + getSize() + "}";
+        }
+    }
+
+    /**
+     * 不可变目录，缓存子树的大小和后代数量
+     */
+    public static final class DirectoryNode extends Node {
+        private final PersistentChildMap children;
+        private final long descendantCount;
+
+        DirectoryNode(String name, PersistentChildMap children, long size, long descendantCount) {
+            super(name, size);
+            this.children = children;
+            this.descendantCount = descendantCount;
+        }
+
+        /**
+         * 加入或替换子节点后的新目录，大小和后代数量按差值更新
+         */
+        DirectoryNode with(Node child) {
+            Node previous = children.get(child.getName());
+            long size = getSize() + child.getSize() - (previous != null ? previous.getSize() : 0);
+            long descendants = descendantCount + weight(child) - weight(previous);
+            return new DirectoryNode(getName(), children.with(child), size, descendants);
+        }
+
+        DirectoryNode without(String name) {
+            Node previous = children.get(name);
+            if (previous == null) {
+                return this;
+            }
+            return new DirectoryNode(getName(), children.without(name), getSize() - previous.getSize(),
+                                     descendantCount - weight(previous));
+        }
+
+        /**
+         * 节点自身加上它的后代数量
+         */
+        private static long weight(Node node) {
+            if (node == null) {
+                return 0;
+            }
+            return node instanceof DirectoryNode ? 1 + ((DirectoryNode) node).descendantCount : 1;
+        }
+
+        public Node getChild(String name) {
+            return children.get(name);
+        }
+
+        /**
+         * 所有子节点，按名称哈希顺序；返回的列表可以自由修改
+         */
+        public List<Node> getChildren() {
+            return children.values();
+        }
+
+        public int getChildCount() {
+            return children.size();
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return true;
+        }
+
+        public long getDescendantCount() {
+            return descendantCount;
+        }
+
+        @Override
+        public String toString() {
+            return "DirectoryNode{name='" + getName() + "', children=" + getChildCount() +
+                   ", size=" + getSize() + "}";
+        }
+    }
+
+    /**
+     * 可变的当前版本引用。读取方取得快照后一直读取该版本，写入方基于最新版本修改并原子地发布
+     */
+    public static final class Branch {
+        private final AtomicReference<PersistentTree> head;
+
+        public Branch(PersistentTree initial) {
+            if (initial == null) {
+                throw new IllegalArgumentException("Tree cannot be null");
+            }
+            this.head = new AtomicReference<>(initial);
+        }
+
+        /**
+         * 当前版本，O(1)
+         */
+        public PersistentTree snapshot() {
+            return head.get();
+        }
+
+        /**
+         * 基于当前版本执行修改并发布结果。并发写入冲突时在新的当前版本上重试，
+         * 修改函数可能被调用多次，不应有副作用
+         */
+        public PersistentTree update(UnaryOperator<PersistentTree> modification) {
+            return head.updateAndGet(modification);
+        }
+
+        /**
+         * 回滚到指定版本
+         */
+        public void reset(PersistentTree version) {
+            if (version == null) {
+                throw new IllegalArgumentException("Tree cannot be null");
+            }
+            head.set(version);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.example.demo1.designpatterns.composite;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 组合模式 - 并发目录的结构锁 (Structure Lock)
+ *
+ * 并发模式的每个目录持有一个自己的读写锁，按层次加锁：
+ * <ul>
+ *   <li>在目录中加入组件、更新文件大小时，对该目录及其所有祖先持有共享锁，
+ *       写入期间祖先链不会被搬动；不同分支以及同一目录中的写入可以同时进行</li>
+ *   <li>搬动或移出一个目录、清空目录、建立索引时对该目录持有独占锁，等待子树中进行中的写入完成；
+ *       移出文件时对文件所在的目录持有独占锁，同一文件的增删与大小更新因此互斥</li>
+ * </ul>
+ * 一次写入需要的多个锁按目录创建顺序取得，不会死锁。计划加锁时读到的祖先链在取得锁之前可能已经变化，
+ * 取得后逐个校验父目录，变化时全部释放并重新计划。
+ */
+final class StructureLock {
+
+    // 加锁顺序，只增不减
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final long order = SEQUENCE.incrementAndGet();
+
+    /**
+     * 对 exclusive（可以为 null）持有独占锁，对它和 chains 中每个目录的祖先链持有共享锁。
+     * 非并发模式的目录没有结构锁，直接跳过
+     */
+    static Held acquire(Directory exclusive, Directory... chains) {
+        while (true) {
+            // 目录 -> 计划时的父目录
+            Map<Directory, Directory> parents = new IdentityHashMap<>();
+            record(exclusive, parents);
+            for (Directory chain : chains) {
+                record(chain, parents);
+            }
+
+            List<Directory> directories = new ArrayList<>();
+            for (Directory directory : parents.keySet()) {
+                if (directory.structureLock() != null) {
+                    directories.add(directory);
+                }
+            }
+            directories.sort(Comparator.comparingLong(directory -> directory.structureLock().order));
+
+            Held held = new Held(directories.size());
+            for (Directory directory : directories) {
+                ReentrantReadWriteLock lock = directory.structureLock().lock;
+                held.lock(directory == exclusive ? lock.writeLock() : lock.readLock());
+            }
+            if (unchanged(parents)) {
+                return held;
+            }
+            held.release();
+        }
+    }
+
+    private static void record(Directory start, Map<Directory, Directory> parents) {
+        for (Directory directory = start; directory != null && !parents.containsKey(directory);
+             directory = directory.getParent()) {
+            parents.put(directory, directory.getParent());
+        }
+    }
+
+    private static boolean unchanged(Map<Directory, Directory> parents) {
+        for (Map.Entry<Directory, Directory> entry : parents.entrySet()) {
+            if (entry.getKey().getParent() != entry.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 已取得的一组锁，按取得的相反顺序释放
+     */
+    static final class Held {
+        private final List<Lock> locks;
+
+        private Held(int capacity) {
+            this.locks = new ArrayList<>(capacity);
+        }
+
+        private void lock(Lock lock) {
+            lock.lock();
+            locks.add(lock);
+        }
+
+        void release() {
+            for (int i = locks.size() - 1; i >= 0; i--) {
+                locks.get(i).unlock();
+            }
+            locks.clear();
+        }
+    }
+}
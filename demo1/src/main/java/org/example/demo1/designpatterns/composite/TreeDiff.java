@@ -0,0 +1,167 @@
+package org.example.demo1.designpatterns.composite;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 组合模式 - 默克尔树比较 (Tree Diff)
+ *
+ * 比较两棵组件树，利用各节点增量维护的默克尔哈希（{@link FileSystemComponent#getTreeHash()}）：
+ * 哈希相同的子树直接跳过，只进入哈希不同的目录，按名称配对子组件后输出
+ * 新增、删除和修改的条目。两棵大树只有少量变化时，只访问变化路径上的目录及其直接子组件。
+ *
+ * 新增或删除整个目录时只输出该目录一条记录，不展开其中的内容；
+ * 同名但类型不同（文件变为目录或相反）记为一条删除加一条新增。
+ * 同一目录下的同名组件先按哈希配对，剩余的按顺序配对。
+ */
+public final class TreeDiff {
+
+    private TreeDiff() {
+    }
+
+    /**
+     * 变化类型
+     */
+    public enum ChangeType {
+        ADDED, REMOVED, MODIFIED
+    }
+
+    /**
+     * 比较两棵树，路径相对于两棵树的根目录，根目录为 "/"
+     */
+    public static Result diff(Directory left, Directory right) {
+        if (left == null || right == null) {
+            throw new IllegalArgumentException("Directories cannot be null");
+        }
+        Result result = new Result();
+        result.compared = 2;
+        if (left.getTreeHash() == right.getTreeHash()) {
+            return result;
+        }
+        Deque<Object[]> stack = new ArrayDeque<>();
+        stack.push(new Object[] {"", left, right});
+        while (!stack.isEmpty()) {
+            Object[] entry = stack.pop();
+            String path = (String) entry[0];
+            compareChildren(path, (Directory) entry[1], (Directory) entry[2], result, stack);
+        }
+        return result;
+    }
+
+    /**
+     * 哈希不同的两个目录按名称配对子组件，哈希不同的子目录压入栈中继续比较
+     */
+    private static void compareChildren(String path, Directory left, Directory right,
+                                        Result result, Deque<Object[]> stack) {
+        List<FileSystemComponent> leftChildren = left.children();
+        List<FileSystemComponent> rightChildren = right.children();
+        result.compared += leftChildren.size() + rightChildren.size();
+        Map<String, List<FileSystemComponent>> remaining = new LinkedHashMap<>();
+        for (FileSystemComponent child : rightChildren) {
+            remaining.computeIfAbsent(child.getName(), name -> new ArrayList<>(1)).add(child);
+        }
+        List<FileSystemComponent> unmatched = new ArrayList<>();
+        for (FileSystemComponent child : leftChildren) {
+            List<FileSystemComponent> candidates = remaining.get(child.getName());
+            if (candidates == null || candidates.isEmpty()) {
+                result.add(ChangeType.REMOVED, path, child, null);
+                continue;
+            }
+            // 同名组件中哈希相同的直接配对，说明没有变化
+            if (removeByHash(candidates, child.getTreeHash())) {
+                continue;
+            }
+            unmatched.add(child);
+        }
+        for (FileSystemComponent child : unmatched) {
+            List<FileSystemComponent> candidates = remaining.get(child.getName());
+            if (candidates.isEmpty()) {
+                result.add(ChangeType.REMOVED, path, child, null);
+                continue;
+            }
+            FileSystemComponent other = candidates.remove(0);
+            if (child instanceof Directory && other instanceof Directory) {
+                stack.push(new Object[] {path + "/" + child.getName(), child, other});
+            } else if (child instanceof File && other instanceof File) {
+                result.add(ChangeType.MODIFIED, path, child, other);
+            } else {
+                result.add(ChangeType.REMOVED, path, child, null);
+                result.add(ChangeType.ADDED, path, null, other);
+            }
+        }
+        for (List<FileSystemComponent> candidates : remaining.values()) {
+            for (FileSystemComponent other : candidates) {
+                result.add(ChangeType.ADDED, path, null, other);
+            }
+        }
+    }
+
+    private static boolean removeByHash(List<FileSystemComponent> candidates, long hash) {
+        for (Iterator<FileSystemComponent> it = candidates.iterator(); it.hasNext(); ) {
+            if (it.next().getTreeHash() == hash) {
+                it.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 一条变化记录，新增时 before 为 null，删除时 after 为 null
+     */
+    public static class Change {
+        private final ChangeType type;
+        private final String path;
+        private final FileSystemComponent before;
+        private final FileSystemComponent after;
+
+        public Change(ChangeType type, String path, FileSystemComponent before, FileSystemComponent after) {
+            this.type = type;
+            this.path = path;
+            this.before = before;
+            this.after = after;
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + path;
+        }
+
+        // Getters
+        public ChangeType getType() { return type; }
+        public String getPath() { return path; }
+        public FileSystemComponent getBefore() { return before; }
+        public FileSystemComponent getAfter() { return after; }
+    }
+
+    /**
+     * 比较结果：变化记录按发现顺序排列，以及比较过程中访问的节点数（两棵树合计）
+     */
+    public static class Result {
+        private final List<Change> changes = new ArrayList<>();
+        private long compared;
+
+        private void add(ChangeType type, String parentPath, FileSystemComponent before, FileSystemComponent after) {
+            String name = (before != null ? before : after).getName();
+            changes.add(new Change(type, parentPath + "/" + name, before, after));
+        }
+
+        public boolean isEmpty() {
+            return changes.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "Diff{changes=" + changes.size() + ", compared=" + compared + "}";
+        }
+
+        // Getters
+        public List<Change> getChanges() { return changes; }
+        public long getComparedCount() { return compared; }
+    }
+}
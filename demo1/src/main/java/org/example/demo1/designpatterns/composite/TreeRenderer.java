@@ -0,0 +1,304 @@
+package org.example.demo1.designpatterns.composite;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 组合模式 - 流式分页树渲染器 (Tree Renderer)
+ *
+ * 用显式栈按前序惰性遍历组件树，每次只生成调用方需要的下一项，
+ * 因此可以提前停止，也可以按 offset/limit 分页、按深度窗口截断。
+ * 输出写入带缓冲的 Writer，缩进前缀按深度缓存复用，不为每一行分配 StringBuilder。
+ *
+ * 渲染格式与各组件的 display 方法一致，目录自身的 maxDepth 限制同样生效。
+ * 紧凑树的节点视图同样可以渲染，目录节点按子节点展开，文件节点使用与 {@link File} 相同的图标。
+ */
+public final class TreeRenderer {
+
+    /**
+     * 不限制深度
+     */
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    // 按深度缓存的缩进前缀，只增长不替换元素，并发读到旧数组也是正确的
+    private static volatile String[] indents = buildIndents(32);
+
+    private TreeRenderer() {
+    }
+
+    /**
+     * 获取指定深度的缩进（每层两个空格）
+     */
+    static String indent(int depth) {
+        String[] cached = indents;
+        if (depth < cached.length) {
+            return cached[depth];
+        }
+        synchronized (TreeRenderer.class) {
+            cached = indents;
+            if (depth >= cached.length) {
+                cached = buildIndents(Math.max(depth + 1, cached.length * 2));
+                indents = cached;
+            }
+            return cached[depth];
+        }
+    }
+
+    private static String[] buildIndents(int count) {
+        String[] result = new String[count];
+        result[0] = "";
+        for (int i = 1; i < count; i++) {
+            result[i] = result[i - 1] + "  ";
+        }
+        return result;
+    }
+
+    /**
+     * 惰性遍历组件树
+     *
+     * @param root 遍历起点
+     * @param startDepth 起点的深度，影响缩进和目录的 maxDepth 判断
+     * @param maxDepth 深度窗口，超过该深度的节点不再展开
+     * @return 前序迭代器，遍历期间不能修改树
+     */
+    public static Iterator<Entry> iterate(FileSystemComponent root, int startDepth, int maxDepth) {
+        if (root == null) {
+            throw new IllegalArgumentException("Root cannot be null");
+        }
+        return new Cursor(root, startDepth, maxDepth);
+    }
+
+    /**
+     * 渲染树的一个窗口
+     *
+     * @param root 渲染起点
+     * @param out 输出，调用方负责刷新和关闭
+     * @param startDepth 起点的深度
+     * @param offset 跳过的前序条目数
+     * @param limit 最多渲染的条目数
+     * @param maxDepth 深度窗口
+     * @return 实际渲染的条目数
+     */
+    public static long render(FileSystemComponent root, Writer out, int startDepth, long offset, long limit,
+                              int maxDepth) {
+        if (out == null) {
+            throw new IllegalArgumentException("Writer cannot be null");
+        }
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit cannot be negative");
+        }
+
+        Iterator<Entry> cursor = iterate(root, startDepth, maxDepth);
+        // 跳过的条目只遍历不格式化
+        for (long skipped = 0; skipped < offset && cursor.hasNext(); skipped++) {
+            cursor.next();
+        }
+
+        long rendered = 0;
+        try {
+            while (rendered < limit && cursor.hasNext()) {
+                writeEntry(out, cursor.next());
+                rendered++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return rendered;
+    }
+
+    /**
+     * 渲染整棵树到输出流，使用给定字符集和缓冲
+     */
+    public static long render(FileSystemComponent root, OutputStream out, Charset charset, int startDepth) {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, charset), 64 * 1024);
+        long rendered = render(root, writer, startDepth, 0, Long.MAX_VALUE, UNLIMITED);
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return rendered;
+    }
+
+    private static void writeEntry(Writer out, Entry entry) throws IOException {
+        FileSystemComponent component = entry.getComponent();
+        String indent = indent(entry.getDepth());
+        out.write(indent);
+
+        if (component instanceof Directory) {
+            Directory directory = (Directory) component;
+            writeDirectory(out, entry, directory.getName(), directory.getChildCount(), directory.getSize());
+        } else if (component instanceof CompactTree.Node && ((CompactTree.Node) component).isDirectory()) {
+            CompactTree.Node node = (CompactTree.Node) component;
+            writeDirectory(out, entry, node.getName(), node.getChildCount(), node.getSize());
+        } else if (component instanceof CompactTree.Node) {
+            CompactTree.Node node = (CompactTree.Node) component;
+            writeFile(out, File.iconFor(node.getExtension()), node.getName(), node.getSize());
+        } else if (component instanceof File) {
+            File file = (File) component;
+            writeFile(out, file.getFileIcon(), file.getName(), file.getSize());
+
+            // 只预览已在内存中的内容（不触发延迟加载），并且只解码预览需要的开头部分
+            String preview = file.isContentLoaded() ? file.contentPrefix(50) : "";
+            if (!preview.isEmpty()) {
+                out.write(indent);
+                out.write("  Content: ");
+                if (preview.length() > 50) {
+                    out.write(preview, 0, 50);
+                    out.write("...");
+                } else {
+                    out.write(preview);
+                }
+                out.write('\n');
+            }
+        } else {
+            out.write(component.getName());
+            out.write(" (");
+            out.write(Long.toString(component.getSize()));
+            out.write(" bytes)\n");
+        }
+    }
+
+    private static void writeDirectory(Writer out, Entry entry, String name, int childCount, long size)
+            throws IOException {
+        out.write("📁 ");
+        out.write(name);
+        out.write("/ (");
+        out.write(Integer.toString(childCount));
+        out.write(" items, ");
+        out.write(Long.toString(size));
+        out.write(" bytes total)\n");
+        if (entry.getHiddenChildren() > 0) {
+            out.write(indent(entry.getDepth() + 1));
+            out.write("... (");
+            out.write(Integer.toString(entry.getHiddenChildren()));
+            out.write(" items)\n");
+        }
+    }
+
+    private static void writeFile(Writer out, String icon, String name, long size) throws IOException {
+        out.write(icon);
+        out.write(' ');
+        out.write(name);
+        out.write(" (");
+        out.write(Long.toString(size));
+        out.write(" bytes)\n");
+    }
+
+    /**
+     * 遍历到的一项
+     */
+    public static class Entry {
+        private final FileSystemComponent component;
+        private final int depth;
+        private final int hiddenChildren;
+
+        public Entry(FileSystemComponent component, int depth, int hiddenChildren) {
+            this.component = component;
+            this.depth = depth;
+            this.hiddenChildren = hiddenChildren;
+        }
+
+        // Getters
+        public FileSystemComponent getComponent() { return component; }
+        public int getDepth() { return depth; }
+        /** 因深度限制未展开的子组件数量 */
+        public int getHiddenChildren() { return hiddenChildren; }
+
+        @Override
+        public String toString() {
+            return "Entry{name='" + component.getName() + "', depth=" + depth + "}";
+        }
+    }
+
+    /**
+     * 前序遍历游标，栈中保存每一层目录和下一个子组件的位置
+     */
+    private static final class Cursor implements Iterator<Entry> {
+        private final int maxDepth;
+        private final Deque<Frame> stack = new ArrayDeque<>();
+        private FileSystemComponent pendingRoot;
+        private final int startDepth;
+
+        Cursor(FileSystemComponent root, int startDepth, int maxDepth) {
+            this.pendingRoot = root;
+            this.startDepth = startDepth;
+            this.maxDepth = maxDepth;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (pendingRoot != null) {
+                return true;
+            }
+            while (!stack.isEmpty()) {
+                Frame top = stack.peek();
+                if (top.next < top.children.size()) {
+                    return true;
+                }
+                stack.pop();
+            }
+            return false;
+        }
+
+        @Override
+        public Entry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (pendingRoot != null) {
+                FileSystemComponent root = pendingRoot;
+                pendingRoot = null;
+                return visit(root, startDepth);
+            }
+            Frame top = stack.peek();
+            return visit(top.children.get(top.next++), top.depth);
+        }
+
+        private Entry visit(FileSystemComponent component, int depth) {
+            List<FileSystemComponent> children;
+            int directoryMaxDepth;
+            if (component instanceof Directory) {
+                Directory directory = (Directory) component;
+                children = directory.children();
+                directoryMaxDepth = directory.getMaxDepth();
+            } else if (component instanceof CompactTree.Node && ((CompactTree.Node) component).isDirectory()) {
+                // 紧凑树不保存目录自身的深度限制
+                children = ((CompactTree.Node) component).children();
+                directoryMaxDepth = UNLIMITED;
+            } else {
+                return new Entry(component, depth, 0);
+            }
+            if (children.isEmpty()) {
+                return new Entry(component, depth, 0);
+            }
+            // 与 Directory.display 相同：深度未达到目录自身的限制时才展开
+            if (depth < directoryMaxDepth && depth - startDepth < maxDepth) {
+                stack.push(new Frame(children, depth + 1));
+                return new Entry(component, depth, 0);
+            }
+            return new Entry(component, depth, children.size());
+        }
+    }
+
+    private static final class Frame {
+        private final List<FileSystemComponent> children;
+        private final int depth;
+        private int next;
+
+        Frame(List<FileSystemComponent> children, int depth) {
+            this.children = children;
+            this.depth = depth;
+        }
+    }
+}
@@ -0,0 +1,516 @@
+package org.example.demo1.designpatterns.composite;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 组合模式 - 内存映射二进制快照 (Tree Snapshot)
+ *
+ * 把组件树保存为紧凑的二进制文件，文件由以下几部分组成（小端字节序）：
+ * <pre>
+ *   文件头       64 字节：魔数、版本、节点数、文件内容数以及各部分的偏移和长度
+ *   节点表       每个节点 56 字节，按广度优先顺序排列，同一目录的子节点连续存放
+ *   名称池       所有名称的 UTF-8 字节
+ *   内容数据     所有文件内容的 UTF-8 字节
+ *   内容偏移表   每个文件 16 字节：内容在内容数据中的偏移和长度
+ * </pre>
+ * 保存时只遍历一次树，记下广度优先顺序后每一部分按该顺序直接流式写入文件，不在内存中拼装整个文件；
+ * 先写到临时文件，完成后再原子地替换目标文件。
+ *
+ * 打开快照时只映射文件并校验文件头，节点按下标直接从映射中读取，不反序列化整棵树，
+ * 因此打开几 GB 的快照几乎是瞬时的。{@link #asDirectory(long)} 把快照作为
+ * {@link LazyDirectory} 的加载器，得到的树只加载访问过的目录，大小、数量和默克尔哈希来自节点表，
+ * 比较两个快照得到的树时只加载哈希不同的目录。
+ */
+public final class TreeSnapshot {
+
+    private static final int MAGIC = 0x43545331; // "CTS1"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 64;
+    private static final int NODE_SIZE = 56;
+    private static final int CONTENT_ENTRY_SIZE = 16;
+    private static final int NONE = -1;
+    private static final int FLAG_DIRECTORY = 1;
+    private static final int MAX_NODES = Integer.MAX_VALUE - 8;
+
+    // 节点记录中各字段的偏移
+    private static final int PARENT = 0;
+    private static final int FIRST_CHILD = 4;
+    private static final int CHILD_COUNT = 8;
+    private static final int FLAGS = 12;
+    private static final int NAME_OFFSET = 16;
+    private static final int NAME_LENGTH = 24;
+    private static final int CONTENT_INDEX = 28;
+    private static final int SIZE = 32;
+    private static final int DESCENDANT_COUNT = 40;
+    private static final int TREE_HASH = 48;
+
+    // 单个映射最大 1GB，相邻映射重叠 8 字节，基本类型字段不会跨映射
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+    private static final int SEGMENT_OVERLAP = 8;
+
+    private final MappedByteBuffer[] segments;
+    private final int nodeCount;
+    private final int contentCount;
+    private final long nodeTableOffset;
+    private final long namePoolOffset;
+    private final long contentOffset;
+    private final long contentTableOffset;
+
+    private TreeSnapshot(MappedByteBuffer[] segments, int nodeCount, int contentCount, long nodeTableOffset,
+                         long namePoolOffset, long contentOffset, long contentTableOffset) {
+        this.segments = segments;
+        this.nodeCount = nodeCount;
+        this.contentCount = contentCount;
+        this.nodeTableOffset = nodeTableOffset;
+        this.namePoolOffset = namePoolOffset;
+        this.contentOffset = contentOffset;
+        this.contentTableOffset = contentTableOffset;
+    }
+
+    // ---------------------------------------------------------------- 保存
+
+    /**
+     * 保存组件树。延迟加载的目录会被全部加载，文件内容会被读取
+     *
+     * @param root 要保存的根目录
+     * @param path 快照文件路径，已存在时被替换
+     */
+    public static void save(Directory root, Path path) throws IOException {
+        if (root == null || path == null) {
+            throw new IllegalArgumentException("Root and path cannot be null");
+        }
+        SaveOrder order = SaveOrder.of(root);
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(HEADER_SIZE);
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+
+            long nodeTableOffset = HEADER_SIZE;
+            long namePoolOffset = writeNodeTable(order, out, nodeTableOffset);
+            long contentOffset = writeNames(order, out, namePoolOffset);
+            long[] contentLengths = new long[order.files];
+            long contentTableOffset = writeContents(order, out, contentOffset, contentLengths);
+            writeContentTable(contentLengths, out);
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(order.size()).putInt(order.files);
+            header.putLong(nodeTableOffset).putLong(namePoolOffset).putLong(contentOffset)
+                  .putLong(contentTableOffset).putLong(channel.position());
+            header.flip();
+            channel.write(header, 0);
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 写节点表，返回名称池的起始偏移
+     */
+    private static long writeNodeTable(SaveOrder order, OutputStream out, long offset) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(NODE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        int nextContent = 0;
+        long nameOffset = 0;
+        for (int index = 0; index < order.size(); index++) {
+            FileSystemComponent node = order.nodes.get(index);
+            byte[] name = node.getName().getBytes(StandardCharsets.UTF_8);
+
+            record.clear();
+            record.putInt(PARENT, order.parents[index]);
+            record.putLong(NAME_OFFSET, nameOffset);
+            record.putInt(NAME_LENGTH, name.length);
+            record.putLong(SIZE, order.sizes[index]);
+            record.putLong(DESCENDANT_COUNT, order.descendants[index]);
+            record.putLong(TREE_HASH, order.hashes[index]);
+            if (node instanceof Directory) {
+                record.putInt(FIRST_CHILD, order.childCounts[index] == 0 ? NONE : order.firstChildren[index]);
+                record.putInt(CHILD_COUNT, order.childCounts[index]);
+                record.putInt(FLAGS, FLAG_DIRECTORY);
+                record.putInt(CONTENT_INDEX, NONE);
+            } else {
+                record.putInt(FIRST_CHILD, NONE);
+                record.putInt(CHILD_COUNT, 0);
+                record.putInt(FLAGS, 0);
+                record.putInt(CONTENT_INDEX, node instanceof File ? nextContent++ : NONE);
+            }
+            out.write(record.array());
+
+            nameOffset += name.length;
+        }
+        return offset + (long) order.size() * NODE_SIZE;
+    }
+
+    /**
+     * 写名称池，返回内容数据的起始偏移
+     */
+    private static long writeNames(SaveOrder order, OutputStream out, long offset) throws IOException {
+        long written = 0;
+        for (FileSystemComponent node : order.nodes) {
+            byte[] name = node.getName().getBytes(StandardCharsets.UTF_8);
+            out.write(name);
+            written += name.length;
+        }
+        return offset + written;
+    }
+
+    /**
+     * 写文件内容并记录每个文件的内容长度，返回内容偏移表的起始偏移
+     */
+    private static long writeContents(SaveOrder order, OutputStream out, long offset, long[] lengths)
+            throws IOException {
+        long written = 0;
+        int file = 0;
+        for (FileSystemComponent node : order.nodes) {
+            if (!(node instanceof File)) {
+                continue;
+            }
+            // 直接从内容存储按块写出，不解码为字符串
+            ContentStore.ContentRef content = ((File) node).getContentRef();
+            long length = content != null ? content.getLength() : 0;
+            if (content != null) {
+                content.writeTo(out);
+            }
+            lengths[file++] = length;
+            written += length;
+        }
+        return offset + written;
+    }
+
+    private static void writeContentTable(long[] lengths, OutputStream out) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(CONTENT_ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        long position = 0;
+        for (long length : lengths) {
+            entry.clear();
+            entry.putLong(position).putLong(length);
+            out.write(entry.array());
+            position += length;
+        }
+    }
+
+    /**
+     * 保存时的节点顺序：只遍历一次树，得到广度优先顺序、父子下标以及各目录的大小、后代数量和默克尔哈希，
+     * 所有写入步骤都使用它。每个目录只读取一次子组件列表，大小和后代数量由收集到的节点自底向上累加，
+     * 延迟加载的目录在遍历中途被回收、重新加载后得到的新对象和新顺序不会影响已收集的结果
+     */
+    private static final class SaveOrder {
+        private final List<FileSystemComponent> nodes = new ArrayList<>();
+        private int[] parents = new int[16];
+        private int[] firstChildren;
+        private int[] childCounts;
+        private long[] sizes;
+        private long[] descendants;
+        private long[] hashes;
+        private int files;
+
+        static SaveOrder of(Directory root) {
+            SaveOrder order = new SaveOrder();
+            order.append(root, NONE);
+            // 节点列表同时作为广度优先遍历的队列
+            for (int index = 0; index < order.nodes.size(); index++) {
+                FileSystemComponent node = order.nodes.get(index);
+                if (node instanceof Directory) {
+                    for (FileSystemComponent child : ((Directory) node).children()) {
+                        order.append(child, index);
+                    }
+                } else if (node instanceof File) {
+                    order.files++;
+                }
+            }
+            order.aggregate();
+            return order;
+        }
+
+        private void append(FileSystemComponent node, int parent) {
+            if (nodes.size() == MAX_NODES) {
+                throw new IllegalArgumentException("Too many nodes for a snapshot: more than " + MAX_NODES);
+            }
+            if (nodes.size() == parents.length) {
+                parents = Arrays.copyOf(parents, (int) Math.min((long) parents.length * 2, MAX_NODES));
+            }
+            parents[nodes.size()] = parent;
+            nodes.add(node);
+        }
+
+        /**
+         * 广度优先顺序下子节点的下标总是大于父节点，逆序扫描一遍即可把子树累加到父节点
+         */
+        private void aggregate() {
+            int count = nodes.size();
+            firstChildren = new int[count];
+            childCounts = new int[count];
+            sizes = new long[count];
+            descendants = new long[count];
+            hashes = new long[count];
+            Arrays.fill(firstChildren, NONE);
+            for (int index = 0; index < count; index++) {
+                FileSystemComponent node = nodes.get(index);
+                if (node instanceof Directory) {
+                    hashes[index] = MerkleHash.ofDirectory(node.getName());
+                } else {
+                    sizes[index] = node.getSize();
+                    hashes[index] = node.getTreeHash();
+                }
+            }
+            for (int index = count - 1; index >= 0; index--) {
+                int parent = parents[index];
+                if (parent != NONE) {
+                    sizes[parent] += sizes[index];
+                    descendants[parent] += 1 + descendants[index];
+                    hashes[parent] += MerkleHash.mix(hashes[index]);
+                    firstChildren[parent] = index;
+                    childCounts[parent]++;
+                }
+            }
+        }
+
+        int size() {
+            return nodes.size();
+        }
+    }
+
+    // ---------------------------------------------------------------- 读取
+
+    /**
+     * 映射快照文件，只读取和校验文件头
+     */
+    public static TreeSnapshot open(Path path) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                throw new IOException("Not a tree snapshot: " + path);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                // 读满文件头
+            }
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a tree snapshot: " + path);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ": " + path);
+            }
+            int nodes = header.getInt();
+            int files = header.getInt();
+            long nodeTableOffset = header.getLong();
+            long namePoolOffset = header.getLong();
+            long contentOffset = header.getLong();
+            long contentTableOffset = header.getLong();
+            long end = header.getLong();
+            if (nodes <= 0 || files < 0 || end != fileSize
+                || namePoolOffset != nodeTableOffset + (long) nodes * NODE_SIZE
+                || contentOffset < namePoolOffset || contentTableOffset < contentOffset
+                || end != contentTableOffset + (long) files * CONTENT_ENTRY_SIZE) {
+                throw new IOException("Corrupt tree snapshot: " + path);
+            }
+
+            // 映射在通道关闭后仍然有效，由垃圾回收释放
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((fileSize + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i << SEGMENT_BITS;
+                long length = Math.min(SEGMENT_SIZE + SEGMENT_OVERLAP, fileSize - start);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                segments[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return new TreeSnapshot(segments, nodes, files, nodeTableOffset, namePoolOffset, contentOffset,
+                                    contentTableOffset);
+        }
+    }
+
+    private int getInt(long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)].getInt((int) (position & (SEGMENT_SIZE - 1)));
+    }
+
+    private long getLong(long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)].getLong((int) (position & (SEGMENT_SIZE - 1)));
+    }
+
+    /**
+     * 读取一段字节，可能跨越多个映射
+     */
+    private byte[] getBytes(long position, int length) {
+        byte[] bytes = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            long current = position + copied;
+            int offset = (int) (current & (SEGMENT_SIZE - 1));
+            int chunk = (int) Math.min(length - copied, SEGMENT_SIZE - offset);
+            segments[(int) (current >>> SEGMENT_BITS)].get(offset, bytes, copied, chunk);
+            copied += chunk;
+        }
+        return bytes;
+    }
+
+    private long field(int node, int field) {
+        if (node < 0 || node >= nodeCount) {
+            throw new IndexOutOfBoundsException("Node: " + node + ", Count: " + nodeCount);
+        }
+        return nodeTableOffset + (long) node * NODE_SIZE + field;
+    }
+
+    /**
+     * 根节点的下标
+     */
+    public int root() {
+        return 0;
+    }
+
+    public String getName(int node) {
+        long offset = getLong(field(node, NAME_OFFSET));
+        int length = getInt(field(node, NAME_LENGTH));
+        return new String(getBytes(namePoolOffset + offset, length), StandardCharsets.UTF_8);
+    }
+
+    public boolean isDirectory(int node) {
+        return (getInt(field(node, FLAGS)) & FLAG_DIRECTORY) != 0;
+    }
+
+    /**
+     * 父节点下标，根节点返回 -1
+     */
+    public int getParent(int node) {
+        return getInt(field(node, PARENT));
+    }
+
+    /**
+     * 第一个子节点的下标，子节点的下标是连续的；没有子节点时返回 -1
+     */
+    public int getFirstChild(int node) {
+        return getInt(field(node, FIRST_CHILD));
+    }
+
+    public int getChildCount(int node) {
+        return getInt(field(node, CHILD_COUNT));
+    }
+
+    /**
+     * 文件大小或目录子树的总大小
+     */
+    public long getSize(int node) {
+        return getLong(field(node, SIZE));
+    }
+
+    public long getDescendantCount(int node) {
+        return getLong(field(node, DESCENDANT_COUNT));
+    }
+
+    /**
+     * 保存时的默克尔哈希，与 {@link FileSystemComponent#getTreeHash()} 一致
+     */
+    public long getTreeHash(int node) {
+        return getLong(field(node, TREE_HASH));
+    }
+
+    /**
+     * 读取文件内容，目录返回空字符串
+     */
+    public String readContent(int node) {
+        int content = getInt(field(node, CONTENT_INDEX));
+        if (content == NONE) {
+            return "";
+        }
+        long entry = contentTableOffset + (long) content * CONTENT_ENTRY_SIZE;
+        long offset = getLong(entry);
+        long length = getLong(entry + 8);
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Content too large: " + length + " bytes");
+        }
+        return new String(getBytes(contentOffset + offset, (int) length), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 按路径查找节点下标，路径相对于根节点，找不到时返回 -1
+     */
+    public int findByPath(String path) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
+        int current = root();
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            int first = getFirstChild(current);
+            int next = NONE;
+            for (int child = first; first != NONE && child < first + getChildCount(current); child++) {
+                if (getName(child).equals(segment)) {
+                    next = child;
+                    break;
+                }
+            }
+            if (next == NONE) {
+                return NONE;
+            }
+            current = next;
+        }
+        return current;
+    }
+
+    /**
+     * 以快照为加载器的延迟加载目录树
+     *
+     * @param capacity 最多保留的已加载子组件数量
+     */
+    public LazyDirectory asDirectory(long capacity) {
+        return new LazyDirectory(new SnapshotLoader(), childInfo(root()), capacity);
+    }
+
+    private LazyDirectory.ChildInfo childInfo(int node) {
+        boolean directory = isDirectory(node);
+        return new LazyDirectory.ChildInfo(getName(node), node, directory, getSize(node),
+                                           directory ? getChildCount(node) : 0, getDescendantCount(node))
+            .withTreeHash(getTreeHash(node));
+    }
+
+    // Getters
+    public int getNodeCount() { return nodeCount; }
+    public int getFileCount() { return contentCount; }
+
+    /**
+     * 从节点表读取子节点元数据，键为节点下标
+     */
+    private class SnapshotLoader implements LazyDirectory.ChildLoader {
+
+        @Override
+        public List<LazyDirectory.ChildInfo> list(Object key) {
+            int node = (Integer) key;
+            int first = getFirstChild(node);
+            int count = getChildCount(node);
+            List<LazyDirectory.ChildInfo> children = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                children.add(childInfo(first + i));
+            }
+            return children;
+        }
+
+        @Override
+        public String read(Object key) {
+            return readContent((Integer) key);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package org.example.demo1.designpatterns.composite;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+
+/**
+ * 组合模式 - 并行遍历引擎 (Fork/Join Traversal)
+ *
+ * 把目录子树的全量统计拆分为 {@link RecursiveTask}：节点数超过阈值的子树
+ * 按子组件的节点数对半拆分并行计算，小于阈值的部分在当前线程中顺序遍历，
+ * 最后合并各部分的结果。目录缓存了后代节点数量，拆分决策是 O(1) 的。
+ *
+ * 遍历访问根目录的所有后代（不包括根目录本身），根目录的子组件深度为1。
+ * 遍历期间不能修改树。
+ */
+public final class TreeTraversal {
+
+    /**
+     * 默认顺序遍历阈值（节点数）
+     */
+    public static final int DEFAULT_THRESHOLD = 10_000;
+
+    /**
+     * 可并行的归约
+     *
+     * 每个任务通过 {@link #identity()} 获得独立的累加器，累加器可以原地修改；
+     * {@link #combine(Object, Object)} 必须满足结合律，合并顺序与子组件顺序一致。
+     *
+     * @param <A> 累加器类型
+     */
+    public interface Reduction<A> {
+
+        /**
+         * 创建一个空的累加器
+         */
+        A identity();
+
+        /**
+         * 把一个节点累加到累加器中
+         *
+         * @param accumulator 累加器
+         * @param node 节点
+         * @param depth 节点相对于遍历根目录的深度
+         * @return 累加后的累加器
+         */
+        A accept(A accumulator, FileSystemComponent node, int depth);
+
+        /**
+         * 合并两个部分结果，left 对应排在前面的子树
+         */
+        A combine(A left, A right);
+    }
+
+    private TreeTraversal() {
+    }
+
+    /**
+     * 使用公共 ForkJoinPool 和默认阈值归约目录的所有后代
+     */
+    public static <A> A reduce(Directory root, Reduction<A> reduction) {
+        return reduce(root, reduction, ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * 归约目录的所有后代
+     *
+     * @param root 遍历的根目录
+     * @param reduction 归约
+     * @param pool 执行并行任务的线程池
+     * @param threshold 顺序遍历阈值，子树节点数不超过该值时不再拆分
+     * @return 归约结果
+     */
+    public static <A> A reduce(Directory root, Reduction<A> reduction, ForkJoinPool pool, int threshold) {
+        if (root == null || reduction == null || pool == null) {
+            throw new IllegalArgumentException("Root, reduction and pool cannot be null");
+        }
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Threshold must be positive: " + threshold);
+        }
+
+        List<FileSystemComponent> children = root.children();
+        ReduceTask<A> task = new ReduceTask<>(reduction, children, 0, children.size(), 1, threshold);
+        // 小树直接在当前线程中计算，避免提交任务的开销
+        if (root.getDescendantCount() <= threshold) {
+            return task.compute();
+        }
+        return pool.invoke(task);
+    }
+
+    /**
+     * 统计满足条件的后代数量
+     */
+    public static long count(Directory root, Predicate<FileSystemComponent> predicate) {
+        long[] result = reduce(root, new Reduction<long[]>() {
+            @Override
+            public long[] identity() {
+                return new long[1];
+            }
+
+            @Override
+            public long[] accept(long[] accumulator, FileSystemComponent node, int depth) {
+                if (predicate.test(node)) {
+                    accumulator[0]++;
+                }
+                return accumulator;
+            }
+
+            @Override
+            public long[] combine(long[] left, long[] right) {
+                left[0] += right[0];
+                return left;
+            }
+        });
+        return result[0];
+    }
+
+    /**
+     * 节点权重：自身加上所有后代
+     */
+    private static long weight(FileSystemComponent node) {
+        return node instanceof Directory ? 1 + ((Directory) node).getDescendantCount() : 1;
+    }
+
+    /**
+     * 归约同一目录下 [from, to) 范围内的子组件及其子树
+     */
+    @SuppressWarnings("serial") // 任务只在线程池中执行，不会被序列化
+    private static final class ReduceTask<A> extends RecursiveTask<A> {
+        private final Reduction<A> reduction;
+        private final List<FileSystemComponent> siblings;
+        private final int from;
+        private final int to;
+        private final int depth;
+        private final int threshold;
+
+        ReduceTask(Reduction<A> reduction, List<FileSystemComponent> siblings, int from, int to,
+                   int depth, int threshold) {
+            this.reduction = reduction;
+            this.siblings = siblings;
+            this.from = from;
+            this.to = to;
+            this.depth = depth;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected A compute() {
+            List<FileSystemComponent> range = siblings;
+            int start = from;
+            int end = to;
+            int rangeDepth = depth;
+            A accumulator = reduction.identity();
+            // 已拆出的右半部分，后拆出的排在前面
+            Deque<ReduceTask<A>> forked = new ArrayDeque<>();
+
+            // 在当前任务中沿着左半部分和单个大目录的链向下循环，不随树的深度递归
+            while (true) {
+                long total = 0;
+                for (int i = start; i < end; i++) {
+                    total += weight(range.get(i));
+                }
+                if (total <= threshold) {
+                    accumulator = sequential(accumulator, range, start, end, rangeDepth);
+                    break;
+                }
+
+                if (end - start == 1) {
+                    // 单个大目录：先处理自身，再拆分它的子组件
+                    FileSystemComponent node = range.get(start);
+                    accumulator = reduction.accept(accumulator, node, rangeDepth);
+                    range = ((Directory) node).children();
+                    start = 0;
+                    end = range.size();
+                    rangeDepth++;
+                    continue;
+                }
+
+                // 按节点数找到大致平分的位置
+                int split = start + 1;
+                long half = total / 2;
+                long leftWeight = weight(range.get(start));
+                while (split < end - 1 && leftWeight + weight(range.get(split)) <= half) {
+                    leftWeight += weight(range.get(split));
+                    split++;
+                }
+
+                ReduceTask<A> right = new ReduceTask<>(reduction, range, split, end, rangeDepth, threshold);
+                right.fork();
+                forked.push(right);
+                end = split;
+            }
+
+            while (!forked.isEmpty()) {
+                accumulator = reduction.combine(accumulator, forked.pop().join());
+            }
+            return accumulator;
+        }
+
+        /**
+         * 用显式栈做前序遍历，避免很深的树导致栈溢出
+         */
+        private A sequential(A accumulator, List<FileSystemComponent> range, int start, int end, int rangeDepth) {
+            Deque<FileSystemComponent> nodes = new ArrayDeque<>();
+            Deque<Integer> depths = new ArrayDeque<>();
+            for (int i = end - 1; i >= start; i--) {
+                nodes.push(range.get(i));
+                depths.push(rangeDepth);
+            }
+            while (!nodes.isEmpty()) {
+                FileSystemComponent node = nodes.pop();
+                int nodeDepth = depths.pop();
+                accumulator = reduction.accept(accumulator, node, nodeDepth);
+                if (node instanceof Directory) {
+                    List<FileSystemComponent> children = ((Directory) node).children();
+                    for (int i = children.size() - 1; i >= 0; i--) {
+                        nodes.push(children.get(i));
+                        depths.push(nodeDepth + 1);
+                    }
+                }
+            }
+            return accumulator;
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package org.example.demo1.designpatterns.observer;
 
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
@@ -20,6 +22,13 @@ public abstract class AbstractSubject implements Subject {
     private final ReentrantReadWriteLock.ReadLock readLock = lock.readLock();
     private final ReentrantReadWriteLock.WriteLock writeLock = lock.writeLock();
     
+    // 设置了最大投递频率的观察者 -> 替换到列表中的节流包装器
+    private final Map<Observer, ThrottledObserver> throttledObservers = new ConcurrentHashMap<>();
+    
+    // 事件类型 -> 优先级映射，以及可选的异步优先级分发器
+    private final Map<String, PriorityDispatcher.Priority> eventPriorities = new ConcurrentHashMap<>();
+    private volatile PriorityDispatcher dispatcher;
+    
     @Override
     public boolean registerObserver(Observer observer) {
         if (observer == null) {
@@ -29,14 +38,14 @@ public abstract class AbstractSubject implements Subject {
         writeLock.lock();
         try {
             // 检查观察者是否已存在
-            if (observers.contains(observer)) {
-                System.out.println("Observer " + observer.getName() + " is already registered");
+            if (observers.contains(observer) || throttledObservers.containsKey(observer)) {
+                ConsoleSink.shared().println("Observer " + observer.getName() + " is already registered");
                 return false;
             }
             
             boolean added = observers.add(observer);
             if (added) {
-                System.out.println("Observer " + observer.getName() + " registered successfully");
+                ConsoleSink.shared().println("Observer " + observer.getName() + " registered successfully");
                 onObserverRegistered(observer);
             }
             return added;
@@ -51,18 +60,29 @@ public abstract class AbstractSubject implements Subject {
             return false;
         }
         
-        writeLock.lock();
+        // 观察者在通知过程中移除自己时，当前线程已持有读锁，无法升级为写锁；
+        // CopyOnWriteArrayList 的删除本身是原子的，此时直接删除即可
+        boolean notifying = lock.getReadHoldCount() > 0;
+        if (!notifying) {
+            writeLock.lock();
+        }
         try {
-            boolean removed = observers.remove(observer);
+            ThrottledObserver throttled = throttledObservers.remove(observer);
+            if (throttled != null) {
+                throttled.cancel();
+            }
+            boolean removed = observers.remove(throttled != null ? throttled : observer);
             if (removed) {
-                System.out.println("Observer " + observer.getName() + " removed successfully");
+                ConsoleSink.shared().println("Observer " + observer.getName() + " removed successfully");
                 onObserverRemoved(observer);
             } else {
-                System.out.println("Observer " + observer.getName() + " not found");
+                ConsoleSink.shared().println("Observer " + observer.getName() + " not found");
             }
             return removed;
         } finally {
-            writeLock.unlock();
+            if (!notifying) {
+                writeLock.unlock();
+            }
         }
     }
     
@@ -72,14 +92,39 @@ public abstract class AbstractSubject implements Subject {
             throw new IllegalArgumentException("Event cannot be null");
         }
         
+        PriorityDispatcher current = dispatcher;
+        if (current == null) {
+            deliver(event, data);
+            return;
+        }
+        
+        // 异步模式：按事件优先级进入对应通道，由分发线程投递
+        try {
+            current.submit(getEventPriority(event), () -> deliver(event, data));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted while dispatching event: " + event);
+        }
+    }
+    
+    /**
+     * 将事件同步投递给所有感兴趣的观察者
+     * 
+     * @param event 事件类型
+     * @param data 相关数据
+     */
+    private void deliver(String event, Object data) {
         readLock.lock();
         try {
             if (observers.isEmpty()) {
-                System.out.println("No observers to notify for event: " + event);
+                ConsoleSink.shared().println("No observers to notify for event: " + event);
                 return;
             }
             
-            System.out.println("Notifying " + observers.size() + " observers about event: " + event);
+            // 每个事件都会执行，直接写入可复用的缓冲区
+            ConsoleSink sink = ConsoleSink.shared();
+            sink.submit(sink.acquire().append("Notifying ").append(observers.size())
+                            .append(" observers about event: ").append(event).append('\n'));
             
             // 通知所有感兴趣的观察者
             for (Observer observer : observers) {
@@ -108,6 +153,83 @@ public abstract class AbstractSubject implements Subject {
         }
     }
     
+    /**
+     * 设置异步优先级分发器
+     * 
+     * 设置后通知不再在调用线程中同步执行，而是按事件优先级进入分发器的通道。
+     * 
+     * @param dispatcher 分发器，为null时恢复同步通知
+     */
+    public void setDispatcher(PriorityDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+    
+    /**
+     * 配置事件类型的优先级，未配置的事件使用NORMAL优先级
+     * 
+     * @param event 事件类型
+     * @param priority 优先级
+     */
+    public void setEventPriority(String event, PriorityDispatcher.Priority priority) {
+        if (event == null || priority == null) {
+            throw new IllegalArgumentException("Event and priority cannot be null");
+        }
+        eventPriorities.put(event, priority);
+    }
+    
+    /**
+     * 获取事件类型的优先级
+     * 
+     * @param event 事件类型
+     * @return 优先级
+     */
+    public PriorityDispatcher.Priority getEventPriority(String event) {
+        return eventPriorities.getOrDefault(event, PriorityDispatcher.Priority.NORMAL);
+    }
+    
+    /**
+     * 设置观察者的最大投递频率
+     * 
+     * 限流间隔内的中间事件按事件类型合并为最新值，由共享的哈希时间轮统一刷新。
+     * 改变或取消限流时，已合并但尚未刷新的事件会先投递出去。
+     * 
+     * @param observer 已注册的观察者
+     * @param maxDeliveriesPerSecond 每秒最大投递次数，小于等于0表示取消限流
+     * @return 如果观察者已注册返回true，否则返回false
+     */
+    public boolean setMaxDeliveryRate(Observer observer, double maxDeliveriesPerSecond) {
+        if (observer == null) {
+            throw new IllegalArgumentException("Observer cannot be null");
+        }
+        
+        writeLock.lock();
+        try {
+            ThrottledObserver current = throttledObservers.get(observer);
+            Observer registered = current != null ? current : observer;
+            int index = observers.indexOf(registered);
+            if (index < 0) {
+                return false;
+            }
+            
+            if (current != null) {
+                // 改变或取消限流时先投递已合并的最新值，再换下包装器
+                current.flushAndCancel();
+                throttledObservers.remove(observer);
+            }
+            
+            if (maxDeliveriesPerSecond > 0) {
+                ThrottledObserver throttled = new ThrottledObserver(observer, maxDeliveriesPerSecond);
+                throttledObservers.put(observer, throttled);
+                observers.set(index, throttled);
+            } else {
+                observers.set(index, observer);
+            }
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
     /**
      * 获取所有观察者的副本（防止外部修改）
      * 
@@ -130,7 +252,9 @@ public abstract class AbstractSubject implements Subject {
         try {
             int count = observers.size();
             observers.clear();
-            System.out.println("Cleared " + count + " observers");
+            throttledObservers.values().forEach(ThrottledObserver::cancel);
+            throttledObservers.clear();
+            ConsoleSink.shared().println("Cleared " + count + " observers");
         } finally {
             writeLock.unlock();
         }
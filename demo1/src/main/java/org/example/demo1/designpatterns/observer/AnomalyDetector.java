@@ -0,0 +1,248 @@
+package org.example.demo1.designpatterns.observer;
+
+import java.util.Arrays;
+
+/**
+ * 观察者模式 - 流式异常检测器 (Concrete Observer)
+ *
+ * 对每个站点的温度、湿度、气压分别维护指数加权移动平均（EWMA）和方差，
+ * 用 z-score 检测偏离，并用相邻读数的变化率检测突变。
+ * 检测到的异常作为 {@link #EVENT_ANOMALY} 事件通过来源主题重新通知出去，
+ * 因此订阅天气站的观察者可以像处理其他事件一样处理异常。
+ *
+ * 站点状态保存在按 {@link FanInObserver} 分配的站点编号索引的基本类型数组中，每次更新是 O(1) 的，
+ * 正常路径上没有对象分配，单核即可处理十万级站点每秒一次的读数。
+ */
+public class AnomalyDetector extends FanInObserver {
+
+    public static final String EVENT_ANOMALY = "ANOMALY_DETECTED";
+
+    /**
+     * 检测的指标
+     */
+    public enum Metric {
+        TEMPERATURE,
+        HUMIDITY,
+        PRESSURE
+    }
+
+    /**
+     * 异常类型
+     */
+    public enum Kind {
+        Z_SCORE,
+        RATE_OF_CHANGE
+    }
+
+    private static final int METRICS = Metric.values().length;
+
+    // 方差下限，避免读数完全不变时除以0
+    private static final double MIN_VARIANCE = 1e-6;
+
+    private final double alpha;
+    private final double zThreshold;
+    private final int warmupReadings;
+    private final double[] maxRatePerSecond;
+
+    // 按 编号 * METRICS + 指标 索引的状态
+    private double[] means;
+    private double[] variances;
+    private float[] lastValues;
+
+    // 按编号索引的状态
+    private long[] lastTimestamps;
+    private int[] readingCounts;
+
+    private long anomalyCount;
+
+    public AnomalyDetector(String name) {
+        this(name, 0.05, 4.0, 20, new double[] {0.5, 2.0, 1.0});
+    }
+
+    /**
+     * @param name 观察者名称
+     * @param alpha EWMA 平滑系数，越大对新读数越敏感
+     * @param zThreshold z-score 阈值
+     * @param warmupReadings 开始检测前每个站点需要的读数数量
+     * @param maxRatePerSecond 每个指标允许的最大变化速率（单位/秒），按 {@link Metric} 顺序
+     */
+    public AnomalyDetector(String name, double alpha, double zThreshold, int warmupReadings,
+                           double[] maxRatePerSecond) {
+        super(name);
+        if (alpha <= 0 || alpha >= 1) {
+            throw new IllegalArgumentException("Alpha must be in (0, 1): " + alpha);
+        }
+        if (maxRatePerSecond == null || maxRatePerSecond.length != METRICS) {
+            throw new IllegalArgumentException("Expected " + METRICS + " rate thresholds");
+        }
+        this.alpha = alpha;
+        this.zThreshold = zThreshold;
+        this.warmupReadings = warmupReadings;
+        this.maxRatePerSecond = maxRatePerSecond.clone();
+        allocate(getCapacity());
+    }
+
+    @Override
+    protected void onUpdate(int id, Subject subject, String event, Object data) {
+        if (!(data instanceof WeatherStation.WeatherData)) {
+            return;
+        }
+
+        WeatherStation.WeatherData weatherData = (WeatherStation.WeatherData) data;
+        long timestamp = weatherData.getTimestamp();
+        int count = readingCounts[id];
+        double elapsedSeconds = count > 0 ? (timestamp - lastTimestamps[id]) / 1000.0 : 0;
+
+        observe(subject, weatherData, id, Metric.TEMPERATURE, weatherData.getTemperature(), count, elapsedSeconds);
+        observe(subject, weatherData, id, Metric.HUMIDITY, weatherData.getHumidity(), count, elapsedSeconds);
+        observe(subject, weatherData, id, Metric.PRESSURE, weatherData.getPressure(), count, elapsedSeconds);
+
+        readingCounts[id] = count + 1;
+        lastTimestamps[id] = timestamp;
+    }
+
+    @Override
+    public boolean isInterestedIn(String event) {
+        return WeatherStation.EVENT_MEASUREMENTS_CHANGED.equals(event);
+    }
+
+    /**
+     * 检测并更新单个指标
+     */
+    private void observe(Subject subject, WeatherStation.WeatherData data, int id, Metric metric, float value,
+                         int count, double elapsedSeconds) {
+        int slot = id * METRICS + metric.ordinal();
+
+        if (count == 0) {
+            means[slot] = value;
+            variances[slot] = 0;
+            lastValues[slot] = value;
+            return;
+        }
+
+        double mean = means[slot];
+        double variance = variances[slot];
+
+        if (count >= warmupReadings) {
+            double z = (value - mean) / Math.sqrt(Math.max(variance, MIN_VARIANCE));
+            if (Math.abs(z) > zThreshold) {
+                emit(subject, data, id, metric, Kind.Z_SCORE, value, mean, z);
+            }
+        }
+
+        if (elapsedSeconds > 0) {
+            double rate = (value - lastValues[slot]) / elapsedSeconds;
+            if (Math.abs(rate) > maxRatePerSecond[metric.ordinal()]) {
+                emit(subject, data, id, metric, Kind.RATE_OF_CHANGE, value, lastValues[slot], rate);
+            }
+        }
+
+        // 增量更新 EWMA 均值和方差
+        double diff = value - mean;
+        double increment = alpha * diff;
+        means[slot] = mean + increment;
+        variances[slot] = (1 - alpha) * (variance + diff * increment);
+        lastValues[slot] = value;
+    }
+
+    private void emit(Subject subject, WeatherStation.WeatherData data, int id, Metric metric, Kind kind,
+                      float value, double expected, double score) {
+        anomalyCount++;
+        Anomaly anomaly = new Anomaly(id, data.getLocation(), metric, kind, value, expected, score,
+                                      data.getTimestamp());
+        // 通过来源主题把异常重新通知给它的观察者
+        subject.notifyObservers(EVENT_ANOMALY, anomaly);
+    }
+
+    @Override
+    protected void onSourceAttached(int id, Subject subject) {
+        // 编号可能是复用的，读数计数清零后首个读数会重新初始化其余状态
+        readingCounts[id] = 0;
+    }
+
+    @Override
+    protected void onCapacityChanged(int capacity) {
+        means = Arrays.copyOf(means, capacity * METRICS);
+        variances = Arrays.copyOf(variances, capacity * METRICS);
+        lastValues = Arrays.copyOf(lastValues, capacity * METRICS);
+        lastTimestamps = Arrays.copyOf(lastTimestamps, capacity);
+        readingCounts = Arrays.copyOf(readingCounts, capacity);
+    }
+
+    private void allocate(int capacity) {
+        means = new double[capacity * METRICS];
+        variances = new double[capacity * METRICS];
+        lastValues = new float[capacity * METRICS];
+        lastTimestamps = new long[capacity];
+        readingCounts = new int[capacity];
+    }
+
+    /**
+     * 获取站点某个指标当前的 EWMA 均值，未知站点返回NaN
+     */
+    public synchronized double getMean(Subject subject, Metric metric) {
+        int id = getSourceId(subject);
+        return id >= 0 ? means[id * METRICS + metric.ordinal()] : Double.NaN;
+    }
+
+    /**
+     * 获取已跟踪的站点数量
+     */
+    public int getStationCount() {
+        return getSourceCount();
+    }
+
+    /**
+     * 获取检测到的异常总数
+     */
+    public synchronized long getAnomalyCount() {
+        return anomalyCount;
+    }
+
+    @Override
+    public String toString() {
+        return "AnomalyDetector{name='" + getName() + "', stations=" + getStationCount() + ", anomalies=" + getAnomalyCount() + "}";
+    }
+
+    /**
+     * 异常事件数据
+     */
+    public static class Anomaly {
+        private final int stationId;
+        private final String location;
+        private final Metric metric;
+        private final Kind kind;
+        private final float value;
+        private final double expected;
+        private final double score;
+        private final long timestamp;
+
+        public Anomaly(int stationId, String location, Metric metric, Kind kind, float value,
+                       double expected, double score, long timestamp) {
+            this.stationId = stationId;
+            this.location = location;
+            this.metric = metric;
+            this.kind = kind;
+            this.value = value;
+            this.expected = expected;
+            this.score = score;
+            this.timestamp = timestamp;
+        }
+
+        // Getters
+        public int getStationId() { return stationId; }
+        public String getLocation() { return location; }
+        public Metric getMetric() { return metric; }
+        public Kind getKind() { return kind; }
+        public float getValue() { return value; }
+        public double getExpected() { return expected; }
+        public double getScore() { return score; }
+        public long getTimestamp() { return timestamp; }
+
+        @Override
+        public String toString() {
+            return String.format("Anomaly{location='%s', metric=%s, kind=%s, value=%.1f, expected=%.1f, score=%.2f}",
+                               location, metric, kind, value, expected, score);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package org.example.demo1.designpatterns.observer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * 观察者模式 - 检查点管理器 (Checkpoint Manager)
+ *
+ * 定期把已注册观察者的状态保存到一个紧凑的二进制文件中，重启时一次顺序读取即可恢复。
+ *
+ * 文件格式：
+ * <pre>
+ * int     MAGIC
+ * int     VERSION
+ * int     条目数量
+ * 每个条目: UTF 标识 | int 长度 | 状态字节
+ * long    前面所有字节的 CRC32 校验和
+ * </pre>
+ *
+ * 保存时先写临时文件再原子替换，避免进程崩溃留下半个检查点。
+ * 定期保存与手动保存互斥执行，不会同时写同一个临时文件。
+ */
+public class CheckpointManager {
+
+    private static final int MAGIC = 0x4F425343; // "OBSC"
+    private static final int VERSION = 1;
+
+    private final Map<String, Checkpointable> participants = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> scheduledCheckpoint;
+
+    /**
+     * 注册需要检查点的观察者
+     *
+     * @param participant 有状态的观察者
+     * @return 如果标识已被占用返回false
+     */
+    public boolean register(Checkpointable participant) {
+        if (participant == null) {
+            throw new IllegalArgumentException("Participant cannot be null");
+        }
+        return participants.putIfAbsent(participant.getCheckpointId(), participant) == null;
+    }
+
+    /**
+     * 取消注册
+     */
+    public boolean unregister(Checkpointable participant) {
+        return participant != null && participants.remove(participant.getCheckpointId(), participant);
+    }
+
+    /**
+     * 立即保存一次检查点
+     *
+     * @param file 检查点文件
+     * @return 写入的条目数量
+     * @throws IOException 如果写入失败
+     */
+    public synchronized int checkpoint(Path file) throws IOException {
+        // 先快速捕获所有状态，再在当前线程中序列化
+        List<String> ids = new ArrayList<>();
+        List<Checkpointable.StateWriter> writers = new ArrayList<>();
+        for (Map.Entry<String, Checkpointable> entry : participants.entrySet()) {
+            ids.add(entry.getKey());
+            writers.add(entry.getValue().captureState());
+        }
+
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (OutputStream fileOut = new BufferedOutputStream(Files.newOutputStream(tempFile));
+             DataOutputStream out = new DataOutputStream(new ChecksumOutputStream(fileOut, crc))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(ids.size());
+
+            ByteArrayOutputStream entryBuffer = new ByteArrayOutputStream();
+            DataOutputStream entryOut = new DataOutputStream(entryBuffer);
+            for (int i = 0; i < ids.size(); i++) {
+                entryBuffer.reset();
+                writers.get(i).writeTo(entryOut);
+                entryOut.flush();
+
+                out.writeUTF(ids.get(i));
+                out.writeInt(entryBuffer.size());
+                entryBuffer.writeTo(out);
+            }
+            out.flush();
+
+            // 校验和本身不计入校验范围
+            new DataOutputStream(fileOut).writeLong(crc.getValue());
+        }
+
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return ids.size();
+    }
+
+    /**
+     * 从检查点文件恢复已注册观察者的状态
+     *
+     * 文件中存在但未注册的条目会被跳过；单个条目恢复失败不影响其他条目。
+     *
+     * @param file 检查点文件
+     * @return 成功恢复的条目数量，文件不存在时返回0
+     * @throws IOException 如果文件损坏
+     */
+    public int restore(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+
+        // 一次顺序读取整个文件
+        byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length < Long.BYTES) {
+            throw new IOException("Checkpoint file is truncated: " + file);
+        }
+
+        int bodyLength = bytes.length - Long.BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bodyLength);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        in.skipBytes(bodyLength);
+        if (in.readLong() != crc.getValue()) {
+            throw new IOException("Checkpoint checksum mismatch: " + file);
+        }
+
+        in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bodyLength));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a checkpoint file: " + file);
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported checkpoint version: " + version);
+        }
+
+        int count = in.readInt();
+        int restored = 0;
+        for (int i = 0; i < count; i++) {
+            String id = in.readUTF();
+            int length = in.readInt();
+            byte[] state = new byte[length];
+            in.readFully(state);
+
+            Checkpointable participant = participants.get(id);
+            if (participant == null) {
+                continue;
+            }
+            try {
+                participant.restoreState(new DataInputStream(new ByteArrayInputStream(state)));
+                restored++;
+            } catch (IOException e) {
+                System.err.println("Error restoring checkpoint for " + id + ": " + e.getMessage());
+            }
+        }
+        return restored;
+    }
+
+    /**
+     * 启动定期检查点
+     *
+     * @param file 检查点文件
+     * @param period 保存周期
+     * @param unit 时间单位
+     */
+    public synchronized void start(Path file, long period, TimeUnit unit) {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "observer-checkpoint");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        if (scheduledCheckpoint != null) {
+            scheduledCheckpoint.cancel(false);
+        }
+        scheduledCheckpoint = scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                checkpoint(file);
+            } catch (IOException e) {
+                System.err.println("Error writing checkpoint " + file + ": " + e.getMessage());
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * 停止定期检查点
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+            scheduledCheckpoint = null;
+        }
+    }
+
+    /**
+     * 获取已注册的参与者数量
+     */
+    public int getParticipantCount() {
+        return participants.size();
+    }
+
+    /**
+     * 写出时同步计算校验和的输出流
+     */
+    private static class ChecksumOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final CRC32 crc;
+
+        ChecksumOutputStream(OutputStream out, CRC32 crc) {
+            this.out = out;
+            this.crc = crc;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            crc.update(b);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            crc.update(b, off, len);
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.example.demo1.designpatterns.observer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 观察者模式 - 可检查点的观察者状态 (Checkpointable)
+ * 
+ * 有状态的观察者实现此接口后可以注册到 {@link CheckpointManager}，
+ * 定期把状态保存为紧凑的二进制快照，并在重启时恢复。
+ */
+public interface Checkpointable {
+    
+    /**
+     * 获取检查点中的唯一标识，观察者通常返回自己的名称
+     * 
+     * @return 检查点标识
+     */
+    String getCheckpointId();
+    
+    /**
+     * 捕获当前状态
+     * 
+     * 实现应只做常数时间的引用捕获或小对象复制（写时复制/双缓冲），
+     * 真正的序列化由返回的写出器在检查点线程中完成，不阻塞分发路径。
+     * 
+     * @return 状态写出器
+     */
+    StateWriter captureState();
+    
+    /**
+     * 从检查点数据恢复状态
+     * 
+     * @param in 由 {@link StateWriter#writeTo(DataOutput)} 写出的数据
+     * @throws IOException 如果数据损坏或格式不兼容
+     */
+    void restoreState(DataInput in) throws IOException;
+    
+    /**
+     * 状态写出器，持有捕获时刻的不可变状态视图
+     */
+    @FunctionalInterface
+    interface StateWriter {
+        void writeTo(DataOutput out) throws IOException;
+    }
+}
@@ -0,0 +1,291 @@
+package org.example.demo1.designpatterns.observer;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 观察者模式 - 批量异步控制台输出 (Console Sink)
+ *
+ * 显示器在分发线程上把一次更新的全部输出写入一个可复用的 StringBuilder，
+ * 然后交给后台写线程；写线程把队列中积累的多条输出合并成一次写入并刷新，
+ * 因此分发线程不再为每一行竞争 System.out 的锁，也不再等待终端 I/O。
+ *
+ * 队列是有界的，写线程跟不上时提交方会阻塞，内存占用不会无限增长。
+ * 同一个提交线程的输出保持顺序；需要与直接写入 System.out 的内容对齐时调用 {@link #flush()}。
+ * 各显示器和树渲染器的输出统一以 '\n' 换行。
+ */
+public class ConsoleSink implements AutoCloseable {
+
+    private static final DateTimeFormatter TIME_FORMATTER =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    // 单次合并写入的最大条数
+    private static final int MAX_BATCH = 256;
+
+    // 超过该容量的缓冲区不再回收，避免偶尔的大输出长期占用内存
+    private static final int MAX_POOLED_CAPACITY = 8 * 1024;
+
+    private final PrintStream out;
+    private final BlockingQueue<StringBuilder> queue;
+    private final BlockingQueue<StringBuilder> pool;
+    private final Thread writerThread;
+
+    private volatile boolean closed;
+    private volatile CachedTime cachedTime = new CachedTime(Long.MIN_VALUE, "");
+
+    // 以下字段由 this 锁保护
+    private long submittedCount;
+    private long writtenCount;
+    private long batchCount;
+
+    private static class Holder {
+        private static final ConsoleSink INSTANCE = createShared();
+
+        private static ConsoleSink createShared() {
+            ConsoleSink sink = new ConsoleSink(System.out, 4096, "console-sink");
+            // JVM 退出前输出剩余内容
+            Runtime.getRuntime().addShutdownHook(new Thread(sink::flush, "console-sink-shutdown"));
+            return sink;
+        }
+    }
+
+    /**
+     * 获取写入 System.out 的共享实例
+     */
+    public static ConsoleSink shared() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * @param out 输出流
+     * @param capacity 待写队列容量
+     * @param threadName 写线程名称
+     */
+    public ConsoleSink(PrintStream out, int capacity, String threadName) {
+        if (out == null) {
+            throw new IllegalArgumentException("Output stream cannot be null");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.out = out;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.pool = new ArrayBlockingQueue<>(capacity);
+        this.writerThread = new Thread(this::runWriter, threadName);
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * 获取一个空的输出缓冲区，写完后通过 {@link #submit(StringBuilder)} 交回
+     */
+    public StringBuilder acquire() {
+        StringBuilder buffer = pool.poll();
+        return buffer != null ? buffer : new StringBuilder(512);
+    }
+
+    /**
+     * 提交缓冲区中的输出，提交后调用方不能再使用该缓冲区
+     */
+    public void submit(StringBuilder buffer) {
+        if (buffer.length() == 0) {
+            recycle(buffer);
+            return;
+        }
+        synchronized (this) {
+            submittedCount++;
+        }
+        if (closed) {
+            // 已关闭时同步写出
+            write(buffer);
+            markWritten(1);
+            return;
+        }
+        try {
+            queue.put(buffer);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            write(buffer);
+            markWritten(1);
+        }
+    }
+
+    /**
+     * 提交单行输出
+     */
+    public void println(String line) {
+        StringBuilder buffer = acquire();
+        buffer.append(line).append('\n');
+        submit(buffer);
+    }
+
+    /**
+     * 等待此前提交的所有输出写出
+     */
+    public synchronized void flush() {
+        long target = submittedCount;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (writtenCount < target && writerThread.isAlive()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 追加格式化后的时间（yyyy-MM-dd HH:mm:ss），同一秒内复用已格式化的字符串
+     */
+    public void appendTime(StringBuilder buffer, long epochMillis) {
+        long second = Math.floorDiv(epochMillis, 1000L);
+        CachedTime cached = cachedTime;
+        if (cached.second != second) {
+            cached = new CachedTime(second, TIME_FORMATTER.format(Instant.ofEpochSecond(second)));
+            cachedTime = cached;
+        }
+        buffer.append(cached.text);
+    }
+
+    /**
+     * 追加保留一位小数的数值，等价于 %.1f 但不创建 Formatter
+     */
+    public static StringBuilder appendDecimal(StringBuilder buffer, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return buffer.append(value);
+        }
+        // 与 %.1f 一致，负数舍入为0时保留负号
+        if (Double.compare(value, 0.0) < 0) {
+            buffer.append('-');
+            value = -value;
+        }
+        long scaled = Math.round(value * 10);
+        return buffer.append(scaled / 10).append('.').append(scaled % 10);
+    }
+
+    /**
+     * 追加带符号、保留一位小数的数值，等价于 %+.1f
+     */
+    public static StringBuilder appendSignedDecimal(StringBuilder buffer, double value) {
+        if (Double.compare(value, 0.0) >= 0) {
+            buffer.append('+');
+        }
+        return appendDecimal(buffer, value);
+    }
+
+    private void runWriter() {
+        List<StringBuilder> batch = new ArrayList<>(MAX_BATCH);
+        StringBuilder combined = new StringBuilder(MAX_POOLED_CAPACITY);
+        while (true) {
+            try {
+                StringBuilder first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (closed && queue.isEmpty()) {
+                        return;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+            } catch (InterruptedException e) {
+                // 写线程只通过 closed 标志停止
+                continue;
+            }
+
+            // 合并成一次写入，只获取一次输出流的锁
+            for (StringBuilder buffer : batch) {
+                combined.append(buffer);
+                recycle(buffer);
+            }
+            write(combined);
+            if (combined.capacity() > MAX_POOLED_CAPACITY * 4) {
+                combined = new StringBuilder(MAX_POOLED_CAPACITY);
+            } else {
+                combined.setLength(0);
+            }
+
+            int written = batch.size();
+            batch.clear();
+            synchronized (this) {
+                batchCount++;
+            }
+            markWritten(written);
+        }
+    }
+
+    private void write(CharSequence text) {
+        out.append(text);
+        out.flush();
+    }
+
+    private synchronized void markWritten(int count) {
+        writtenCount += count;
+        notifyAll();
+    }
+
+    private void recycle(StringBuilder buffer) {
+        if (buffer.capacity() <= MAX_POOLED_CAPACITY) {
+            buffer.setLength(0);
+            pool.offer(buffer);
+        }
+    }
+
+    /**
+     * 写出剩余内容并停止写线程，之后提交的输出同步写出
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writerThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 写线程退出前后仍可能有刚入队的输出
+        StringBuilder buffer;
+        while ((buffer = queue.poll()) != null) {
+            write(buffer);
+            recycle(buffer);
+            markWritten(1);
+        }
+    }
+
+    /**
+     * 获取已写出的输出条数
+     */
+    public synchronized long getWrittenCount() {
+        return writtenCount;
+    }
+
+    /**
+     * 获取实际写入输出流的次数
+     */
+    public synchronized long getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * 同一秒内格式化结果的缓存
+     */
+    private static final class CachedTime {
+        private final long second;
+        private final String text;
+
+        CachedTime(long second, String text) {
+            this.second = second;
+            this.text = text;
+        }
+    }
+}
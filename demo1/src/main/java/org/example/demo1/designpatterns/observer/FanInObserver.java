@@ -0,0 +1,254 @@
+package org.example.demo1.designpatterns.observer;
+
+import java.util.Arrays;
+
+/**
+ * 观察者模式 - 多主题汇聚观察者基类 (Fan-in Observer)
+ *
+ * 监听成千上万个主题的观察者如果用 {@code HashMap<Subject, ...>} 保存每个来源的状态，
+ * 每个事件都要付出哈希、装箱和对象头的开销。本基类在注册时为每个主题分配一个稠密的整数编号，
+ * 主题到编号的映射使用基于身份哈希的开放寻址表（无装箱、无节点对象），
+ * 子类把每个来源的状态保存在按编号索引的基本类型数组中，{@code update} 就变成一次数组下标访问。
+ *
+ * 编号在主题解除注册后会被回收复用；子类通过 {@link #onCapacityChanged(int)} 扩容自己的数组，
+ * 通过 {@link #onSourceAttached(int, Subject)} 重置复用编号的状态。
+ */
+public abstract class FanInObserver implements Observer {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final String name;
+    private final SourceIdMap sourceIds = new SourceIdMap();
+
+    private int capacity;
+    private int nextId;
+    private int[] freeIds = new int[16];
+    private int freeCount;
+
+    protected FanInObserver(String name) {
+        this.name = name;
+        this.capacity = INITIAL_CAPACITY;
+    }
+
+    /**
+     * 注册到主题上并为它分配编号
+     *
+     * @param subject 来源主题
+     * @return 分配给主题的编号
+     */
+    public int attach(Subject subject) {
+        if (subject == null) {
+            throw new IllegalArgumentException("Subject cannot be null");
+        }
+        int id;
+        synchronized (this) {
+            id = sourceId(subject);
+        }
+        // 注册时主题可能立即推送当前数据，必须在释放锁之后注册
+        subject.registerObserver(this);
+        return id;
+    }
+
+    /**
+     * 从主题上解除注册并回收编号
+     *
+     * @param subject 来源主题
+     * @return 如果主题之前已分配编号返回true
+     */
+    public boolean detach(Subject subject) {
+        if (subject == null) {
+            return false;
+        }
+        subject.removeObserver(this);
+
+        synchronized (this) {
+            int id = sourceIds.remove(subject);
+            if (id < 0) {
+                return false;
+            }
+            onSourceDetached(id);
+            if (freeCount == freeIds.length) {
+                freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+            }
+            freeIds[freeCount++] = id;
+            return true;
+        }
+    }
+
+    @Override
+    public final synchronized void update(Subject subject, String event, Object data) {
+        onUpdate(sourceId(subject), subject, event, data);
+    }
+
+    /**
+     * 处理来自某个来源的事件，在本对象的锁内调用
+     *
+     * @param sourceId 来源编号，可直接用作状态数组的下标
+     * @param subject 来源主题
+     * @param event 事件类型
+     * @param data 相关数据
+     */
+    protected abstract void onUpdate(int sourceId, Subject subject, String event, Object data);
+
+    /**
+     * 编号容量增长时调用，子类应把状态数组扩容到至少 newCapacity
+     *
+     * @param newCapacity 新的编号容量
+     */
+    protected abstract void onCapacityChanged(int newCapacity);
+
+    /**
+     * 为主题分配编号后调用，编号可能是回收复用的，子类应在此重置该编号的状态
+     */
+    protected void onSourceAttached(int sourceId, Subject subject) {
+        // 默认空实现，子类可以重写
+    }
+
+    /**
+     * 主题解除注册后调用
+     */
+    protected void onSourceDetached(int sourceId) {
+        // 默认空实现，子类可以重写
+    }
+
+    /**
+     * 获取主题的编号，未分配时返回-1
+     */
+    protected synchronized int getSourceId(Subject subject) {
+        return sourceIds.get(subject);
+    }
+
+    /**
+     * 获取当前编号容量（状态数组需要的最小长度）
+     */
+    protected int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 获取当前来源数量
+     */
+    public synchronized int getSourceCount() {
+        return sourceIds.size();
+    }
+
+    private int sourceId(Subject subject) {
+        int id = sourceIds.get(subject);
+        if (id >= 0) {
+            return id;
+        }
+
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            id = nextId++;
+            if (id >= capacity) {
+                capacity *= 2;
+                onCapacityChanged(capacity);
+            }
+        }
+        sourceIds.put(subject, id);
+        onSourceAttached(id, subject);
+        return id;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 基于身份哈希的开放寻址表：主题 -> 编号
+     *
+     * 使用线性探测，删除时向后移位以保持探测链连续，不需要墓碑。
+     */
+    private static final class SourceIdMap {
+        private Object[] keys = new Object[INITIAL_CAPACITY * 2];
+        private int[] values = new int[INITIAL_CAPACITY * 2];
+        private int size;
+
+        int get(Object key) {
+            int mask = keys.length - 1;
+            int index = hash(key) & mask;
+            while (true) {
+                Object current = keys[index];
+                if (current == null) {
+                    return -1;
+                }
+                if (current == key) {
+                    return values[index];
+                }
+                index = (index + 1) & mask;
+            }
+        }
+
+        void put(Object key, int value) {
+            // 负载因子保持在 0.5 以下
+            if ((size + 1) * 2 > keys.length) {
+                rehash(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int index = hash(key) & mask;
+            while (keys[index] != null && keys[index] != key) {
+                index = (index + 1) & mask;
+            }
+            if (keys[index] == null) {
+                size++;
+            }
+            keys[index] = key;
+            values[index] = value;
+        }
+
+        int remove(Object key) {
+            int mask = keys.length - 1;
+            int index = hash(key) & mask;
+            while (keys[index] != key) {
+                if (keys[index] == null) {
+                    return -1;
+                }
+                index = (index + 1) & mask;
+            }
+
+            int removed = values[index];
+            size--;
+
+            // 向后移位：把后续仍能放到空位上的元素前移
+            int gap = index;
+            int next = (gap + 1) & mask;
+            while (keys[next] != null) {
+                int home = hash(keys[next]) & mask;
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    keys[gap] = keys[next];
+                    values[gap] = values[next];
+                    gap = next;
+                }
+                next = (next + 1) & mask;
+            }
+            keys[gap] = null;
+            return removed;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void rehash(int newLength) {
+            Object[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new Object[newLength];
+            values = new int[newLength];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int hash(Object key) {
+            // 打散身份哈希的低位
+            int h = System.identityHashCode(key);
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package org.example.demo1.designpatterns.observer;
 
+import java.io.DataInput;
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -8,10 +10,12 @@ import java.util.Set;
  * 
  * 天气预报显示器类，基于当前天气数据和气压变化趋势
  * 提供简单的天气预报功能。
+ * 预报输出写入可复用的缓冲区后交给 {@link ConsoleSink} 批量写出。
  */
-public class ForecastDisplay implements Observer {
+public class ForecastDisplay implements Observer, Checkpointable {
     
     private final String name;
+    private final ConsoleSink sink;
     private float currentPressure = 1013.25f; // 标准大气压
     private float lastPressure = 1013.25f;
     private String currentForecast = "More of the same";
@@ -20,7 +24,15 @@ public class ForecastDisplay implements Observer {
     private final Set<String> interestedEvents = new HashSet<>();
     
     public ForecastDisplay(String name) {
+        this(name, ConsoleSink.shared());
+    }
+    
+    public ForecastDisplay(String name, ConsoleSink sink) {
+        if (sink == null) {
+            throw new IllegalArgumentException("Sink cannot be null");
+        }
         this.name = name;
+        this.sink = sink;
         
         // 设置感兴趣的事件
         interestedEvents.add(WeatherStation.EVENT_MEASUREMENTS_CHANGED);
@@ -29,33 +41,33 @@ public class ForecastDisplay implements Observer {
     }
     
     @Override
-    public void update(Subject subject, String event, Object data) {
+    public synchronized void update(Subject subject, String event, Object data) {
         if (subject instanceof WeatherStation) {
-            WeatherStation station = (WeatherStation) subject;
-            
+            StringBuilder out = sink.acquire();
             switch (event) {
                 case WeatherStation.EVENT_MEASUREMENTS_CHANGED:
                     if (data instanceof WeatherStation.WeatherData) {
                         updateForecast((WeatherStation.WeatherData) data);
-                        displayForecast();
+                        displayForecast(out);
                     }
                     break;
                     
                 case WeatherStation.EVENT_PRESSURE_CHANGED:
-                    System.out.println("\n=== " + name + " Pressure Alert ===");
-                    System.out.println("🌪️ Pressure change detected: " + data + " hPa");
+                    out.append("\n=== ").append(name).append(" Pressure Alert ===\n");
+                    out.append("🌪️ Pressure change detected: ").append(data).append(" hPa\n");
                     updatePressureForecast((Float) data);
-                    displayForecast();
-                    System.out.println("=== End " + name + " Pressure Alert ===\n");
+                    displayForecast(out);
+                    out.append("=== End ").append(name).append(" Pressure Alert ===\n\n");
                     break;
                     
                 case WeatherStation.EVENT_EXTREME_WEATHER:
-                    System.out.println("\n=== " + name + " Extreme Weather Forecast ===");
-                    System.out.println("🚨 Extreme weather conditions detected!");
-                    displayExtremeForecast();
-                    System.out.println("=== End " + name + " Extreme Weather Forecast ===\n");
+                    out.append("\n=== ").append(name).append(" Extreme Weather Forecast ===\n");
+                    out.append("🚨 Extreme weather conditions detected!\n");
+                    displayExtremeForecast(out);
+                    out.append("=== End ").append(name).append(" Extreme Weather Forecast ===\n\n");
                     break;
             }
+            sink.submit(out);
         }
     }
     
@@ -144,36 +156,38 @@ public class ForecastDisplay implements Observer {
     /**
      * 显示天气预报
      */
-    private void displayForecast() {
-        System.out.println("\n=== " + name + " Forecast ===");
-        System.out.println("🔮 Weather Forecast:");
-        System.out.println("   " + currentForecast);
+    private void displayForecast(StringBuilder out) {
+        out.append("\n=== ").append(name).append(" Forecast ===\n");
+        out.append("🔮 Weather Forecast:\n");
+        out.append("   ").append(currentForecast).append('\n');
         
         // 显示预报依据
         float pressureChange = currentPressure - lastPressure;
-        System.out.println("📊 Forecast Basis:");
-        System.out.printf("   Current Pressure: %.1f hPa%n", currentPressure);
-        System.out.printf("   Pressure Change: %+.1f hPa%n", pressureChange);
-        System.out.println("   Trend: " + getPressureTrend(pressureChange));
+        out.append("📊 Forecast Basis:\n");
+        out.append("   Current Pressure: ");
+        ConsoleSink.appendDecimal(out, currentPressure).append(" hPa\n");
+        out.append("   Pressure Change: ");
+        ConsoleSink.appendSignedDecimal(out, pressureChange).append(" hPa\n");
+        out.append("   Trend: ").append(getPressureTrend(pressureChange)).append('\n');
         
         // 可信度评估
-        System.out.println("   Confidence: " + getConfidenceLevel(pressureChange));
+        out.append("   Confidence: ").append(getConfidenceLevel(pressureChange)).append('\n');
         
-        System.out.println("=== End " + name + " Forecast ===\n");
+        out.append("=== End ").append(name).append(" Forecast ===\n\n");
     }
     
     /**
      * 显示极端天气预报
      */
-    private void displayExtremeForecast() {
-        System.out.println("⚠️ Extreme Weather Forecast:");
-        System.out.println("   Conditions are expected to remain extreme for the next few hours");
-        System.out.println("   Please monitor weather updates closely and take appropriate precautions");
+    private void displayExtremeForecast(StringBuilder out) {
+        out.append("⚠️ Extreme Weather Forecast:\n");
+        out.append("   Conditions are expected to remain extreme for the next few hours\n");
+        out.append("   Please monitor weather updates closely and take appropriate precautions\n");
         
         if (currentPressure < 980) {
-            System.out.println("   Very low pressure - severe storms possible");
+            out.append("   Very low pressure - severe storms possible\n");
         } else if (currentPressure > 1040) {
-            System.out.println("   Very high pressure - stable but potentially extreme temperatures");
+            out.append("   Very high pressure - stable but potentially extreme temperatures\n");
         }
     }
     
@@ -230,6 +244,32 @@ public class ForecastDisplay implements Observer {
         return currentPressure - lastPressure;
     }
     
+    @Override
+    public String getCheckpointId() {
+        return name;
+    }
+    
+    @Override
+    public synchronized StateWriter captureState() {
+        // 状态只有几个字段，直接复制
+        float pressure = currentPressure;
+        float previousPressure = lastPressure;
+        String forecast = currentForecast;
+        
+        return out -> {
+            out.writeFloat(pressure);
+            out.writeFloat(previousPressure);
+            out.writeUTF(forecast);
+        };
+    }
+    
+    @Override
+    public synchronized void restoreState(DataInput in) throws IOException {
+        currentPressure = in.readFloat();
+        lastPressure = in.readFloat();
+        currentForecast = in.readUTF();
+    }
+    
     @Override
     public String toString() {
         return "ForecastDisplay{name='" + name + "', currentPressure=" + currentPressure + "}";
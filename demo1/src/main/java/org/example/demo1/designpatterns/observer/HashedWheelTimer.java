@@ -0,0 +1,274 @@
+package org.example.demo1.designpatterns.observer;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 观察者模式 - 哈希时间轮定时器 (Hashed Wheel Timer)
+ *
+ * 由单个调度线程驱动的时间轮，用于大量低精度延迟任务（例如节流观察者的延迟刷新）。
+ * 新任务先进入无锁队列，由调度线程在每个 tick 时放入对应的槽位，
+ * 因此调度和取消都是 O(1) 的，一个线程即可服务数十万个节流观察者。
+ */
+public class HashedWheelTimer {
+
+    private static final int WORKER_INIT = 0;
+    private static final int WORKER_STARTED = 1;
+    private static final int WORKER_SHUTDOWN = 2;
+
+    // 每个 tick 最多从队列中转移的任务数，避免调度线程长时间不推进时间轮
+    private static final int MAX_TRANSFER_PER_TICK = 100_000;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger workerState = new AtomicInteger(WORKER_INIT);
+    private final Thread workerThread;
+
+    private volatile long startTime;
+    private long tick;
+
+    public HashedWheelTimer(String threadName) {
+        this(threadName, 10, TimeUnit.MILLISECONDS, 512);
+    }
+
+    public HashedWheelTimer(String threadName, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("Tick duration must be positive: " + tickDuration);
+        }
+        if (ticksPerWheel <= 0) {
+            throw new IllegalArgumentException("Ticks per wheel must be positive: " + ticksPerWheel);
+        }
+
+        // 槽位数向上取整为2的幂，便于用位运算定位槽位
+        int size = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        if (size <= 0) {
+            size = 1;
+        }
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.tickNanos = unit.toNanos(tickDuration);
+
+        this.workerThread = new Thread(this::runWorker, threadName);
+        this.workerThread.setDaemon(true);
+    }
+
+    /**
+     * 获取共享的定时器实例（静态内部类方式延迟初始化）
+     */
+    public static HashedWheelTimer shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    private static class SharedHolder {
+        private static final HashedWheelTimer INSTANCE = new HashedWheelTimer("observer-wheel-timer");
+    }
+
+    /**
+     * 提交一个延迟任务
+     *
+     * @param task 到期后在调度线程中执行的任务
+     * @param delay 延迟时间
+     * @param unit 时间单位
+     * @return 可用于取消任务的句柄
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        if (task == null) {
+            throw new IllegalArgumentException("Task cannot be null");
+        }
+        start();
+
+        long deadline = System.nanoTime() + unit.toNanos(Math.max(0, delay)) - startTime;
+        Timeout timeout = new Timeout(task, deadline);
+        pendingTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * 停止调度线程，未到期的任务将不再执行
+     */
+    public void stop() {
+        if (workerState.getAndSet(WORKER_SHUTDOWN) == WORKER_STARTED) {
+            workerThread.interrupt();
+        }
+    }
+
+    /**
+     * 获取尚未放入时间轮的任务数量
+     */
+    public int getPendingCount() {
+        return pendingTimeouts.size();
+    }
+
+    private void start() {
+        switch (workerState.get()) {
+            case WORKER_INIT:
+                if (workerState.compareAndSet(WORKER_INIT, WORKER_STARTED)) {
+                    startTime = System.nanoTime();
+                    workerThread.start();
+                }
+                break;
+            case WORKER_STARTED:
+                break;
+            default:
+                throw new IllegalStateException("Timer has been stopped");
+        }
+
+        // 等待调度线程完成启动时间的初始化
+        while (startTime == 0) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private void runWorker() {
+        while (workerState.get() == WORKER_STARTED) {
+            if (!waitForNextTick()) {
+                break;
+            }
+            transferPendingToBuckets();
+            wheel[(int) (tick & mask)].expire();
+            tick++;
+        }
+    }
+
+    /**
+     * 休眠到下一个 tick 的时间点
+     *
+     * @return 如果定时器被停止则返回false
+     */
+    private boolean waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+
+        while (true) {
+            long current = System.nanoTime() - startTime;
+            long sleepNanos = deadline - current;
+            if (sleepNanos <= 0) {
+                return true;
+            }
+
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                if (workerState.get() == WORKER_SHUTDOWN) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    private void transferPendingToBuckets() {
+        for (int i = 0; i < MAX_TRANSFER_PER_TICK; i++) {
+            Timeout timeout = pendingTimeouts.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.isCancelled()) {
+                continue;
+            }
+
+            long calculated = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+
+            // 已经过期的任务放到当前槽位，本次 tick 立即执行
+            long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    /**
+     * 定时任务句柄
+     */
+    public static final class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private long remainingRounds;
+        private volatile boolean cancelled;
+
+        // 槽位中的双向链表指针，仅由调度线程访问
+        private Timeout next;
+        private Timeout prev;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * 取消任务，已在执行或已执行的任务不受影响
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * 时间轮槽位，使用侵入式双向链表存放任务
+     */
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expire() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.cancelled) {
+                    remove(timeout);
+                } else if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    runTask(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        private void remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+        }
+
+        private static void runTask(Timeout timeout) {
+            try {
+                timeout.task.run();
+            } catch (Throwable t) {
+                // 单个任务的异常不能让调度线程退出
+                System.err.println("Error running timer task: " + t.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package org.example.demo1.designpatterns.observer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 观察者模式 - 端到端负载测试工具 (Load Harness)
+ *
+ * 用 {@link SensorFeedGenerator} 产生的读数以目标速率驱动一组 {@link WeatherStation}，
+ * 统计持续吞吐量、分发延迟分位数和分配速率，作为可重复的容量规划基准。
+ *
+ * 延迟从每条读数的计划发送时刻开始计算，而不是实际调用时刻，
+ * 因此发送线程被慢观察者拖住时，积压造成的排队时间也会计入延迟（避免协调遗漏）。
+ * 分配量使用 HotSpot 的线程分配计数器统计发送线程上的分配，异步分发线程上的分配不在其中。
+ */
+public class LoadHarness {
+
+    private final WeatherStation[] stations;
+    private final SensorFeedGenerator feed;
+
+    public LoadHarness(WeatherStation[] stations, SensorFeedGenerator feed) {
+        if (stations == null || feed == null) {
+            throw new IllegalArgumentException("Stations and feed cannot be null");
+        }
+        if (stations.length != feed.getStationCount()) {
+            throw new IllegalArgumentException("Expected " + feed.getStationCount() + " stations, got " + stations.length);
+        }
+        this.stations = stations.clone();
+        this.feed = feed;
+    }
+
+    /**
+     * 发送指定数量的读数
+     *
+     * @param readings 读数数量
+     * @param targetRatePerSecond 目标速率（条/秒），小于等于0表示不限速
+     * @return 负载报告
+     */
+    public Report run(int readings, double targetRatePerSecond) {
+        if (readings <= 0) {
+            throw new IllegalArgumentException("Readings must be positive: " + readings);
+        }
+
+        long intervalNanos = targetRatePerSecond > 0 ? (long) (1_000_000_000L / targetRatePerSecond) : 0;
+        long[] latencies = new long[readings];
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < readings; i++) {
+            SensorFeedGenerator.Reading reading = feed.next();
+
+            long scheduled = start + i * intervalNanos;
+            long now = System.nanoTime();
+            while (now < scheduled) {
+                LockSupport.parkNanos(scheduled - now);
+                now = System.nanoTime();
+            }
+            if (intervalNanos == 0) {
+                scheduled = now;
+            }
+
+            reading.applyTo(stations[reading.getStation()]);
+            latencies[i] = System.nanoTime() - scheduled;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        long allocatedAfter = allocatedBytes();
+        long allocated = allocatedBefore >= 0 && allocatedAfter >= 0 ? allocatedAfter - allocatedBefore : -1;
+
+        Arrays.sort(latencies);
+        return new Report(readings, elapsed, latencies, allocated);
+    }
+
+    /**
+     * 当前线程累计分配的字节数，JVM 不支持时返回-1
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+            if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                return hotspot.getCurrentThreadAllocatedBytes();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 命令行入口：stations readings rate seed
+     */
+    public static void main(String[] args) {
+        int stationCount = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int readings = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        double rate = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42L;
+
+        WeatherStation[] stations = new WeatherStation[stationCount];
+        for (int i = 0; i < stationCount; i++) {
+            stations[i] = new WeatherStation("Station-" + i);
+            stations[i].registerObserver(new StatisticsDisplay("Statistics-" + i));
+        }
+        AnomalyDetector detector = new AnomalyDetector("Anomaly Detector");
+        for (WeatherStation station : stations) {
+            detector.attach(station);
+        }
+
+        // 预热，让 JIT 编译热点路径
+        LoadHarness harness = new LoadHarness(stations, new SensorFeedGenerator(stationCount, seed));
+        harness.run(Math.min(readings, 20_000), 0);
+
+        Report report = harness.run(readings, rate);
+        ConsoleSink.shared().flush();
+        System.out.println("=== Load Report ===");
+        System.out.println(report);
+        System.out.println(detector);
+    }
+
+    /**
+     * 负载报告
+     */
+    public static class Report {
+        private final int readings;
+        private final long elapsedNanos;
+        private final long[] sortedLatencies;
+        private final long allocatedBytes;
+
+        Report(int readings, long elapsedNanos, long[] sortedLatencies, long allocatedBytes) {
+            this.readings = readings;
+            this.elapsedNanos = elapsedNanos;
+            this.sortedLatencies = sortedLatencies;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        /**
+         * 持续吞吐量（条/秒）
+         */
+        public double getThroughput() {
+            return readings * 1_000_000_000.0 / Math.max(1, elapsedNanos);
+        }
+
+        /**
+         * 延迟分位数（纳秒）
+         *
+         * @param percentile 百分位，0到100
+         */
+        public long getLatencyPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Percentile must be in [0, 100]: " + percentile);
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(0, index)];
+        }
+
+        /**
+         * 分配速率（字节/秒），无法统计时返回-1
+         */
+        public double getAllocationRate() {
+            return allocatedBytes < 0 ? -1 : allocatedBytes * 1_000_000_000.0 / Math.max(1, elapsedNanos);
+        }
+
+        /**
+         * 平均每条读数分配的字节数，无法统计时返回-1
+         */
+        public double getBytesPerReading() {
+            return allocatedBytes < 0 ? -1 : (double) allocatedBytes / readings;
+        }
+
+        // Getters
+        public int getReadings() { return readings; }
+        public long getElapsedNanos() { return elapsedNanos; }
+        public long getAllocatedBytes() { return allocatedBytes; }
+
+        @Override
+        public String toString() {
+            return String.format("Report{readings=%d, throughput=%.0f/s, p50=%dus, p99=%dus, p99.9=%dus, max=%dus, " +
+                               "allocation=%.1fMB/s (%.0fB/reading)}",
+                               readings, getThroughput(), getLatencyPercentile(50) / 1000,
+                               getLatencyPercentile(99) / 1000, getLatencyPercentile(99.9) / 1000,
+                               getLatencyPercentile(100) / 1000, getAllocationRate() / (1024 * 1024),
+                               getBytesPerReading());
+        }
+    }
+}
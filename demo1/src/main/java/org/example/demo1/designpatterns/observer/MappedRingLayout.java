@@ -0,0 +1,193 @@
+package org.example.demo1.designpatterns.observer;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 观察者模式 - 内存映射环形文件布局 (Mapped Ring Layout)
+ *
+ * {@link MappedRingPublisher} 与 {@link MappedRingSubscriber} 共享的文件布局和事件编解码。
+ *
+ * <pre>
+ * 0    int  MAGIC
+ * 4    int  VERSION
+ * 8    int  槽位数量（2的幂）
+ * 12   int  槽位大小（8的倍数）
+ * 64   long 写序号（下一个要写入的序号，独占缓存行）
+ * 128  读者租约 x MAX_READERS（每个独占缓存行）:
+ *      long 游标+1（0表示尚未发布游标） | long 心跳时间（毫秒，0表示空闲）
+ * DATA 槽位数组，每个槽位: long 提交序号 | int 长度 | 事件字节
+ * </pre>
+ *
+ * 读者位置以租约方式占用：读者定期刷新心跳，超过 {@link #LEASE_TIMEOUT_MILLIS} 未刷新的位置
+ * 视为读者已退出，新的读者可以通过 CAS 心跳接管，异常退出的进程不会永久占用位置。
+ *
+ * 所有跨进程可见的 long 字段都通过 VarHandle 的 acquire/release 访问，热路径上没有系统调用。
+ */
+final class MappedRingLayout {
+
+    static final int MAGIC = 0x4F42524E; // "OBRN"
+    static final int VERSION = 2;
+    static final int MAX_READERS = 16;
+
+    // 读者租约：超时未刷新的位置可被接管；刷新间隔远小于超时
+    static final long LEASE_TIMEOUT_MILLIS = 5_000;
+    static final long HEARTBEAT_INTERVAL_MILLIS = 500;
+
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int SLOT_COUNT_OFFSET = 8;
+    static final int SLOT_SIZE_OFFSET = 12;
+    static final int WRITE_SEQUENCE_OFFSET = 64;
+    static final int READER_CURSORS_OFFSET = 128;
+    static final int READER_HEARTBEAT_OFFSET = 8;
+    static final int CACHE_LINE = 64;
+    static final int DATA_OFFSET = READER_CURSORS_OFFSET + MAX_READERS * CACHE_LINE;
+
+    static final int SLOT_SEQUENCE_OFFSET = 0;
+    static final int SLOT_LENGTH_OFFSET = 8;
+    static final int SLOT_HEADER_SIZE = 12;
+
+    // 单个字符串的最大 UTF-8 字节数，长度字段为无符号 short
+    static final int MAX_STRING_BYTES = 0xFFFF;
+
+    // 槽位正在被写入时的提交序号
+    static final long SLOT_IN_PROGRESS = -1L;
+
+    // 事件数据类型
+    private static final byte KIND_NULL = 0;
+    private static final byte KIND_WEATHER_DATA = 1;
+    private static final byte KIND_EXTREME_WEATHER = 2;
+    private static final byte KIND_FLOAT = 3;
+    private static final byte KIND_STRING = 4;
+
+    static final VarHandle LONG_VIEW =
+        MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private MappedRingLayout() {
+    }
+
+    static long fileSize(int slotCount, int slotSize) {
+        return DATA_OFFSET + (long) slotCount * slotSize;
+    }
+
+    static int slotOffset(long sequence, int slotCount, int slotSize) {
+        return DATA_OFFSET + (int) (sequence & (slotCount - 1)) * slotSize;
+    }
+
+    static int readerCursorOffset(int readerIndex) {
+        return READER_CURSORS_OFFSET + readerIndex * CACHE_LINE;
+    }
+
+    static int readerHeartbeatOffset(int readerIndex) {
+        return readerCursorOffset(readerIndex) + READER_HEARTBEAT_OFFSET;
+    }
+
+    /**
+     * 租约是否仍被某个读者持有
+     */
+    static boolean isLeaseHeld(long heartbeat, long nowMillis) {
+        return heartbeat > 0 && nowMillis - heartbeat <= LEASE_TIMEOUT_MILLIS;
+    }
+
+    /**
+     * 位置是否可以被新的读者占用：从未占用或租约已过期
+     */
+    static boolean isLeaseClaimable(long heartbeat, long nowMillis) {
+        return !isLeaseHeld(heartbeat, nowMillis);
+    }
+
+    /**
+     * 把事件编码到缓冲区中（从位置0开始）
+     *
+     * @throws java.nio.BufferOverflowException 如果事件超过槽位容量
+     */
+    static void encode(ByteBuffer buffer, String event, Object data) {
+        buffer.clear();
+        putString(buffer, event);
+
+        if (data == null) {
+            buffer.put(KIND_NULL);
+        } else if (data instanceof WeatherStation.WeatherData) {
+            WeatherStation.WeatherData weatherData = (WeatherStation.WeatherData) data;
+            boolean extreme = data instanceof WeatherStation.ExtremeWeatherData;
+            buffer.put(extreme ? KIND_EXTREME_WEATHER : KIND_WEATHER_DATA);
+            buffer.putFloat(weatherData.getTemperature());
+            buffer.putFloat(weatherData.getHumidity());
+            buffer.putFloat(weatherData.getPressure());
+            buffer.putLong(weatherData.getTimestamp());
+            putString(buffer, weatherData.getCondition());
+            if (!extreme) {
+                putString(buffer, weatherData.getLocation());
+            }
+        } else if (data instanceof Float) {
+            buffer.put(KIND_FLOAT);
+            buffer.putFloat((Float) data);
+        } else {
+            buffer.put(KIND_STRING);
+            putString(buffer, data.toString());
+        }
+        buffer.flip();
+    }
+
+    /**
+     * 解码事件，返回 {事件类型, 数据}
+     */
+    static Object[] decode(ByteBuffer buffer) {
+        String event = getString(buffer);
+        byte kind = buffer.get();
+
+        Object data;
+        switch (kind) {
+            case KIND_NULL:
+                data = null;
+                break;
+            case KIND_WEATHER_DATA:
+            case KIND_EXTREME_WEATHER: {
+                float temperature = buffer.getFloat();
+                float humidity = buffer.getFloat();
+                float pressure = buffer.getFloat();
+                long timestamp = buffer.getLong();
+                String condition = getString(buffer);
+                data = kind == KIND_EXTREME_WEATHER
+                    ? new WeatherStation.ExtremeWeatherData(temperature, humidity, pressure, condition, timestamp)
+                    : new WeatherStation.WeatherData(temperature, humidity, pressure, condition,
+                                                     getString(buffer), timestamp);
+                break;
+            }
+            case KIND_FLOAT:
+                data = buffer.getFloat();
+                break;
+            case KIND_STRING:
+                data = getString(buffer);
+                break;
+            default:
+                throw new IllegalStateException("Unknown payload kind: " + kind);
+        }
+        return new Object[] {event, data};
+    }
+
+    /**
+     * 字符串以无符号 short 记录长度，超过 65535 字节时拒绝编码，而不是截断长度
+     */
+    private static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("String of " + bytes.length + " bytes exceeds " +
+                                               MAX_STRING_BYTES + " bytes");
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                                  StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
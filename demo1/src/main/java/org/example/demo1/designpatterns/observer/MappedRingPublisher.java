@@ -0,0 +1,202 @@
+package org.example.demo1.designpatterns.observer;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.example.demo1.designpatterns.observer.MappedRingLayout.LONG_VIEW;
+
+/**
+ * 观察者模式 - 共享内存发布者 (Mapped Ring Publisher)
+ *
+ * 作为观察者注册到本地主题上，把收到的每个事件写入内存映射的环形文件，
+ * 同一台机器上的其他 JVM 进程可以通过 {@link MappedRingSubscriber} 读取，
+ * 并交给它们自己的 {@link Observer} 实现处理。
+ *
+ * 单写者/多读者：写者先把槽位标记为写入中，写完事件字节后以 release 语义提交槽位序号，
+ * 再推进全局写序号。写者从不等待读者，落后太多的读者会检测到覆盖并跳过丢失的事件。
+ * 同一时刻只能有一个发布者；重启的发布者复用已有文件的头部，从原写序号继续发布。
+ */
+public class MappedRingPublisher implements Observer, AutoCloseable {
+
+    private final String name;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int slotCount;
+    private final int slotSize;
+    private final ByteBuffer scratch;
+
+    private long nextSequence;
+
+    public MappedRingPublisher(String name, Path file) throws IOException {
+        this(name, file, 4096, 256);
+    }
+
+    /**
+     * @param name 观察者名称
+     * @param file 环形文件路径，已存在且布局一致时接着原有写序号继续发布，仍在读取的订阅者不受影响
+     * @param slotCount 槽位数量，必须是2的幂
+     * @param slotSize 每个槽位的字节数，必须是8的倍数
+     * @throws IOException 如果已有的环形文件版本或布局不同
+     */
+    public MappedRingPublisher(String name, Path file, int slotCount, int slotSize) throws IOException {
+        if (slotCount <= 0 || Integer.bitCount(slotCount) != 1) {
+            throw new IllegalArgumentException("Slot count must be a power of two: " + slotCount);
+        }
+        if (slotSize <= MappedRingLayout.SLOT_HEADER_SIZE || slotSize % Long.BYTES != 0) {
+            throw new IllegalArgumentException("Slot size must be a multiple of 8 larger than the header: " + slotSize);
+        }
+
+        this.name = name;
+        this.slotCount = slotCount;
+        this.slotSize = slotSize;
+        this.scratch = ByteBuffer.allocate(slotSize - MappedRingLayout.SLOT_HEADER_SIZE);
+
+        long fileSize = MappedRingLayout.fileSize(slotCount, slotSize);
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Ring file too large: " + fileSize + " bytes");
+        }
+        // 不截断已有文件：重启的发布者不能清零仍被订阅者映射的头部
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                        StandardOpenOption.WRITE);
+        try {
+            boolean initialized = channel.size() >= MappedRingLayout.DATA_OFFSET;
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            if (initialized && buffer.getInt(MappedRingLayout.MAGIC_OFFSET) == MappedRingLayout.MAGIC) {
+                VarHandle.loadLoadFence();
+                validateHeader(file);
+                this.nextSequence = (long) LONG_VIEW.getAcquire(buffer, MappedRingLayout.WRITE_SEQUENCE_OFFSET);
+            } else {
+                initializeHeader();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 复用已有的环形文件前确认版本和布局一致
+     */
+    private void validateHeader(Path file) throws IOException {
+        int version = buffer.getInt(MappedRingLayout.VERSION_OFFSET);
+        if (version != MappedRingLayout.VERSION) {
+            throw new IOException("Unsupported ring version " + version + " in " + file);
+        }
+        int existingSlotCount = buffer.getInt(MappedRingLayout.SLOT_COUNT_OFFSET);
+        int existingSlotSize = buffer.getInt(MappedRingLayout.SLOT_SIZE_OFFSET);
+        if (existingSlotCount != slotCount || existingSlotSize != slotSize) {
+            throw new IOException("Ring file " + file + " has " + existingSlotCount + " slots of " +
+                                  existingSlotSize + " bytes, expected " + slotCount + " slots of " + slotSize);
+        }
+    }
+
+    /**
+     * 初始化新文件（或内容无效的旧文件）的头部：写序号为0，所有读者位置空闲
+     */
+    private void initializeHeader() {
+        buffer.putInt(MappedRingLayout.SLOT_COUNT_OFFSET, slotCount);
+        buffer.putInt(MappedRingLayout.SLOT_SIZE_OFFSET, slotSize);
+        buffer.putInt(MappedRingLayout.VERSION_OFFSET, MappedRingLayout.VERSION);
+        LONG_VIEW.setRelease(buffer, MappedRingLayout.WRITE_SEQUENCE_OFFSET, 0L);
+        for (int i = 0; i < MappedRingLayout.MAX_READERS; i++) {
+            LONG_VIEW.setRelease(buffer, MappedRingLayout.readerCursorOffset(i), 0L);
+            LONG_VIEW.setRelease(buffer, MappedRingLayout.readerHeartbeatOffset(i), 0L);
+        }
+        for (long sequence = 0; sequence < slotCount; sequence++) {
+            int slot = MappedRingLayout.slotOffset(sequence, slotCount, slotSize);
+            LONG_VIEW.setRelease(buffer, slot + MappedRingLayout.SLOT_SEQUENCE_OFFSET, MappedRingLayout.SLOT_IN_PROGRESS);
+        }
+        // MAGIC 最后写入，读者看到 MAGIC 即表示头部已初始化完成
+        VarHandle.storeStoreFence();
+        buffer.putInt(MappedRingLayout.MAGIC_OFFSET, MappedRingLayout.MAGIC);
+    }
+
+    @Override
+    public synchronized void update(Subject subject, String event, Object data) {
+        try {
+            MappedRingLayout.encode(scratch, event, data);
+        } catch (BufferOverflowException e) {
+            throw new IllegalArgumentException("Event " + event + " exceeds slot size " + slotSize);
+        }
+
+        long sequence = nextSequence;
+        int slot = MappedRingLayout.slotOffset(sequence, slotCount, slotSize);
+
+        // 先标记槽位为写入中，读者据此识别被覆盖或未完成的槽位
+        LONG_VIEW.setOpaque(buffer, slot + MappedRingLayout.SLOT_SEQUENCE_OFFSET, MappedRingLayout.SLOT_IN_PROGRESS);
+        VarHandle.storeStoreFence();
+        buffer.putInt(slot + MappedRingLayout.SLOT_LENGTH_OFFSET, scratch.remaining());
+        buffer.put(slot + MappedRingLayout.SLOT_HEADER_SIZE, scratch.array(), 0, scratch.remaining());
+        LONG_VIEW.setRelease(buffer, slot + MappedRingLayout.SLOT_SEQUENCE_OFFSET, sequence);
+
+        nextSequence = sequence + 1;
+        LONG_VIEW.setRelease(buffer, MappedRingLayout.WRITE_SEQUENCE_OFFSET, nextSequence);
+    }
+
+    /**
+     * 获取已发布的事件数量
+     */
+    public synchronized long getPublishedCount() {
+        return nextSequence;
+    }
+
+    /**
+     * 获取当前持有租约的读者数量，租约过期的读者视为已退出
+     */
+    public int getReaderCount() {
+        long now = System.currentTimeMillis();
+        int count = 0;
+        for (int i = 0; i < MappedRingLayout.MAX_READERS; i++) {
+            long heartbeat = (long) LONG_VIEW.getAcquire(buffer, MappedRingLayout.readerHeartbeatOffset(i));
+            if (MappedRingLayout.isLeaseHeld(heartbeat, now)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 获取最慢读者落后的事件数量，没有持有租约的读者时返回0
+     *
+     * 落后超过槽位数量的读者已经丢失了事件。
+     */
+    public long getMaxReaderLag() {
+        long written = (long) LONG_VIEW.getAcquire(buffer, MappedRingLayout.WRITE_SEQUENCE_OFFSET);
+        long now = System.currentTimeMillis();
+        long maxLag = 0;
+        for (int i = 0; i < MappedRingLayout.MAX_READERS; i++) {
+            long heartbeat = (long) LONG_VIEW.getAcquire(buffer, MappedRingLayout.readerHeartbeatOffset(i));
+            long cursor = (long) LONG_VIEW.getAcquire(buffer, MappedRingLayout.readerCursorOffset(i));
+            if (cursor != 0 && MappedRingLayout.isLeaseHeld(heartbeat, now)) {
+                maxLag = Math.max(maxLag, written - (cursor - 1));
+            }
+        }
+        return maxLag;
+    }
+
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return "MappedRingPublisher{name='" + name + "', slots=" + slotCount + ", published=" + getPublishedCount() + "}";
+    }
+}
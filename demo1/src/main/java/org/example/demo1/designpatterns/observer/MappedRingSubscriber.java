@@ -0,0 +1,256 @@
+package org.example.demo1.designpatterns.observer;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.example.demo1.designpatterns.observer.MappedRingLayout.LONG_VIEW;
+
+/**
+ * 观察者模式 - 共享内存订阅者 (Mapped Ring Subscriber)
+ *
+ * 在另一个进程中读取 {@link MappedRingPublisher} 写入的环形文件，
+ * 并作为一个本地主题把事件重新通知给注册在它上面的观察者。
+ *
+ * 读取过程不加锁也不做系统调用：读者比较槽位提交序号与自己的游标，
+ * 复制事件字节后再次检查序号，若被写者覆盖则记为丢失并跳到仍然有效的最早序号。
+ * 读者游标会发布到文件头中，写者据此统计读者落后情况。
+ * 读者位置是租约：轮询时定期刷新心跳，长时间未轮询的读者可能被新读者接管位置，
+ * 之后再轮询时会重新占用一个空闲位置。
+ */
+public class MappedRingSubscriber extends AbstractSubject implements AutoCloseable {
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int slotCount;
+    private final int slotSize;
+    private final ByteBuffer scratch;
+
+    // 当前占用的读者位置，-1 表示租约已被接管且暂时没有空闲位置
+    private int readerIndex;
+    private long heartbeat;
+
+    private long cursor;
+    private long lostCount;
+    private volatile Thread pollingThread;
+    private volatile boolean polling;
+
+    /**
+     * 打开环形文件，从当前最新位置开始读取
+     */
+    public MappedRingSubscriber(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, MappedRingLayout.DATA_OFFSET);
+        if (header.getInt(MappedRingLayout.MAGIC_OFFSET) != MappedRingLayout.MAGIC) {
+            channel.close();
+            throw new IOException("Ring file is not initialized: " + file);
+        }
+        VarHandle.loadLoadFence();
+        int version = header.getInt(MappedRingLayout.VERSION_OFFSET);
+        if (version != MappedRingLayout.VERSION) {
+            channel.close();
+            throw new IOException("Unsupported ring version: " + version);
+        }
+
+        this.slotCount = header.getInt(MappedRingLayout.SLOT_COUNT_OFFSET);
+        this.slotSize = header.getInt(MappedRingLayout.SLOT_SIZE_OFFSET);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                                  MappedRingLayout.fileSize(slotCount, slotSize));
+        this.scratch = ByteBuffer.allocate(slotSize - MappedRingLayout.SLOT_HEADER_SIZE);
+        this.cursor = (long) LONG_VIEW.getAcquire(buffer, MappedRingLayout.WRITE_SEQUENCE_OFFSET);
+        if (!claimReaderSlot()) {
+            channel.close();
+            throw new IOException("Too many readers, max " + MappedRingLayout.MAX_READERS);
+        }
+    }
+
+    /**
+     * 在文件头中占用一个读者位置，空闲或租约已过期的位置都可以占用
+     *
+     * @return 如果没有可用位置返回false
+     */
+    private boolean claimReaderSlot() {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < MappedRingLayout.MAX_READERS; i++) {
+            int heartbeatOffset = MappedRingLayout.readerHeartbeatOffset(i);
+            long current = (long) LONG_VIEW.getAcquire(buffer, heartbeatOffset);
+            // 通过 CAS 心跳占用，多个读者同时接管同一个过期位置时只有一个成功
+            if (MappedRingLayout.isLeaseClaimable(current, now) &&
+                LONG_VIEW.compareAndSet(buffer, heartbeatOffset, current, now)) {
+                LONG_VIEW.setRelease(buffer, MappedRingLayout.readerCursorOffset(i), cursor + 1);
+                readerIndex = i;
+                heartbeat = now;
+                return true;
+            }
+        }
+        readerIndex = -1;
+        return false;
+    }
+
+    /**
+     * 按间隔刷新心跳；租约已被接管时重新占用一个位置
+     */
+    private void renewLease() {
+        long now = System.currentTimeMillis();
+        if (readerIndex >= 0) {
+            int heartbeatOffset = MappedRingLayout.readerHeartbeatOffset(readerIndex);
+            if (now - heartbeat < MappedRingLayout.HEARTBEAT_INTERVAL_MILLIS &&
+                (long) LONG_VIEW.getAcquire(buffer, heartbeatOffset) == heartbeat) {
+                return;
+            }
+            if (LONG_VIEW.compareAndSet(buffer, heartbeatOffset, heartbeat, now)) {
+                heartbeat = now;
+                return;
+            }
+        }
+        claimReaderSlot();
+    }
+
+    /**
+     * 读取并通知最多 maxEvents 个事件，不阻塞
+     *
+     * @param maxEvents 本次最多处理的事件数量
+     * @return 实际处理的事件数量
+     */
+    public synchronized int poll(int maxEvents) {
+        renewLease();
+        int processed = 0;
+        while (processed < maxEvents) {
+            long available = (long) LONG_VIEW.getAcquire(buffer, MappedRingLayout.WRITE_SEQUENCE_OFFSET);
+            if (cursor >= available) {
+                break;
+            }
+
+            // 落后超过一整圈时，最早的事件已被覆盖
+            if (available - cursor > slotCount) {
+                skipTo(available - slotCount);
+            }
+
+            if (!readSlot(cursor)) {
+                // 读取期间槽位被覆盖，重新计算有效范围
+                skipTo(Math.max(cursor + 1, available - slotCount + 1));
+                continue;
+            }
+
+            cursor++;
+            processed++;
+            Object[] decoded = MappedRingLayout.decode(scratch);
+            notifyObservers((String) decoded[0], decoded[1]);
+        }
+
+        if (processed > 0 && readerIndex >= 0) {
+            LONG_VIEW.setRelease(buffer, MappedRingLayout.readerCursorOffset(readerIndex), cursor + 1);
+        }
+        return processed;
+    }
+
+    /**
+     * 把指定序号的槽位复制到 scratch 中
+     *
+     * @return 如果读取期间槽位被覆盖返回false
+     */
+    private boolean readSlot(long sequence) {
+        int slot = MappedRingLayout.slotOffset(sequence, slotCount, slotSize);
+        int sequenceOffset = slot + MappedRingLayout.SLOT_SEQUENCE_OFFSET;
+        if ((long) LONG_VIEW.getAcquire(buffer, sequenceOffset) != sequence) {
+            return false;
+        }
+
+        int length = buffer.getInt(slot + MappedRingLayout.SLOT_LENGTH_OFFSET);
+        if (length < 0 || length > scratch.capacity()) {
+            return false;
+        }
+        scratch.clear();
+        buffer.get(slot + MappedRingLayout.SLOT_HEADER_SIZE, scratch.array(), 0, length);
+        scratch.limit(length);
+
+        // 复制完成后再次确认序号未变，否则数据可能已被写者改写
+        VarHandle.loadLoadFence();
+        return (long) LONG_VIEW.getAcquire(buffer, sequenceOffset) == sequence;
+    }
+
+    private void skipTo(long sequence) {
+        lostCount += sequence - cursor;
+        cursor = sequence;
+    }
+
+    /**
+     * 启动后台轮询线程，空闲时先自旋再逐步退避到短暂休眠
+     */
+    public synchronized void start() {
+        if (pollingThread != null) {
+            return;
+        }
+        polling = true;
+        pollingThread = new Thread(() -> {
+            int idle = 0;
+            while (polling) {
+                if (poll(256) > 0) {
+                    idle = 0;
+                } else if (++idle < 100) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(Math.min(idle, 1000) * 1000L);
+                }
+            }
+        }, "mapped-ring-subscriber-" + readerIndex);
+        pollingThread.setDaemon(true);
+        pollingThread.start();
+    }
+
+    /**
+     * 获取尚未读取的事件数量
+     */
+    public synchronized long getLag() {
+        return (long) LONG_VIEW.getAcquire(buffer, MappedRingLayout.WRITE_SEQUENCE_OFFSET) - cursor;
+    }
+
+    /**
+     * 获取因落后过多被覆盖而丢失的事件数量
+     */
+    public synchronized long getLostCount() {
+        return lostCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        polling = false;
+        Thread thread = pollingThread;
+        if (thread != null) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        releaseReaderSlot();
+        channel.close();
+    }
+
+    /**
+     * 释放读者位置。先刷新心跳确认仍持有租约，此后在超时前不会被接管，
+     * 清除游标时不会覆盖接管者写入的游标
+     */
+    private synchronized void releaseReaderSlot() {
+        if (readerIndex < 0) {
+            return;
+        }
+        int heartbeatOffset = MappedRingLayout.readerHeartbeatOffset(readerIndex);
+        long now = System.currentTimeMillis();
+        if (LONG_VIEW.compareAndSet(buffer, heartbeatOffset, heartbeat, now)) {
+            LONG_VIEW.setRelease(buffer, MappedRingLayout.readerCursorOffset(readerIndex), 0L);
+            LONG_VIEW.setRelease(buffer, heartbeatOffset, 0L);
+        }
+        readerIndex = -1;
+    }
+
+    @Override
+    public String toString() {
+        return "MappedRingSubscriber{reader=" + readerIndex + ", cursor=" + cursor + ", lost=" + lostCount + "}";
+    }
+}
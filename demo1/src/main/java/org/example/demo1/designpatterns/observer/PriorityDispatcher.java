@@ -0,0 +1,235 @@
+package org.example.demo1.designpatterns.observer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 观察者模式 - 优先级分发器 (Priority Dispatcher)
+ *
+ * 异步分发通知的单线程分发器，每个优先级有独立的有界队列（通道）。
+ * 分发线程总是优先处理高优先级通道，因此在低优先级事件堆积时，
+ * 极端天气警报等高优先级事件不会排在大量常规事件之后。
+ *
+ * 为防止低优先级通道饿死，提供两种保护：
+ * 1. 连续服务高优先级达到上限后，强制服务一次低优先级通道；
+ * 2. 低优先级队首事件等待超过最大等待时间后，在下一个时隙得到服务，
+ *    但超时通道每次只得到一个时隙，之后必须先服务一次最高优先级通道，
+ *    并且这个时隙同样计入连续服务次数。
+ * 被服务的低优先级通道是所有更低通道中队首等待最久的一个，NORMAL 积压时 LOW 同样受到保护。
+ * 过载时超时通道最多占用一半时隙，高优先级事件的等待时间因此仍然有界。
+ */
+public class PriorityDispatcher {
+
+    /**
+     * 事件优先级，声明顺序即服务顺序
+     */
+    public enum Priority {
+        HIGH,
+        NORMAL,
+        LOW
+    }
+
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private final List<BlockingQueue<DispatchTask>> lanes;
+    private final Semaphore available = new Semaphore(0);
+    private final int maxConsecutive;
+    private final long maxWaitNanos;
+    private final Thread workerThread;
+
+    private final AtomicLong[] dispatchedCounts = new AtomicLong[PRIORITIES.length];
+    private final AtomicLong[] maxWaitObserved = new AtomicLong[PRIORITIES.length];
+
+    private volatile boolean running = true;
+    // 上一次强制服务低优先级通道之后经过的时隙数
+    private int consecutiveServed;
+    // 上一个时隙是否服务了低优先级通道
+    private boolean lastServedLower;
+
+    public PriorityDispatcher(String threadName) {
+        this(threadName, 10_000, 32, 100, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param threadName 分发线程名称
+     * @param laneCapacity 每个通道的容量，通道满时提交线程阻塞（反压）
+     * @param maxConsecutive 低优先级有积压时，高优先级最多连续服务的次数
+     * @param maxWait 低优先级事件的最大等待时间，超过后优先服务
+     * @param unit 时间单位
+     */
+    public PriorityDispatcher(String threadName, int laneCapacity, int maxConsecutive, long maxWait, TimeUnit unit) {
+        if (laneCapacity <= 0) {
+            throw new IllegalArgumentException("Lane capacity must be positive: " + laneCapacity);
+        }
+        if (maxConsecutive <= 0) {
+            throw new IllegalArgumentException("Max consecutive must be positive: " + maxConsecutive);
+        }
+
+        this.lanes = new ArrayList<>(PRIORITIES.length);
+        for (int i = 0; i < PRIORITIES.length; i++) {
+            lanes.add(new ArrayBlockingQueue<>(laneCapacity));
+            dispatchedCounts[i] = new AtomicLong();
+            maxWaitObserved[i] = new AtomicLong();
+        }
+        this.maxConsecutive = maxConsecutive;
+        this.maxWaitNanos = unit.toNanos(maxWait);
+
+        this.workerThread = new Thread(this::runWorker, threadName);
+        this.workerThread.setDaemon(true);
+        this.workerThread.start();
+    }
+
+    /**
+     * 提交一个分发任务
+     *
+     * @param priority 事件优先级
+     * @param delivery 实际执行通知的任务
+     * @throws InterruptedException 如果在等待通道空间时被中断
+     */
+    public void submit(Priority priority, Runnable delivery) throws InterruptedException {
+        if (priority == null || delivery == null) {
+            throw new IllegalArgumentException("Priority and delivery cannot be null");
+        }
+        if (!running) {
+            throw new IllegalStateException("Dispatcher has been shut down");
+        }
+
+        lanes.get(priority.ordinal()).put(new DispatchTask(delivery, System.nanoTime()));
+        available.release();
+    }
+
+    /**
+     * 停止分发器，已提交的任务仍会被处理完
+     */
+    public void shutdown() {
+        running = false;
+        available.release();
+    }
+
+    /**
+     * 等待分发线程退出
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        workerThread.join(unit.toMillis(timeout));
+        return !workerThread.isAlive();
+    }
+
+    /**
+     * 获取指定通道当前排队的事件数量
+     */
+    public int getQueueDepth(Priority priority) {
+        return lanes.get(priority.ordinal()).size();
+    }
+
+    /**
+     * 获取指定通道已分发的事件数量
+     */
+    public long getDispatchedCount(Priority priority) {
+        return dispatchedCounts[priority.ordinal()].get();
+    }
+
+    /**
+     * 获取指定通道观察到的最大排队等待时间（纳秒）
+     */
+    public long getMaxWaitNanos(Priority priority) {
+        return maxWaitObserved[priority.ordinal()].get();
+    }
+
+    private void runWorker() {
+        while (true) {
+            try {
+                available.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            int lane = selectLane(System.nanoTime());
+            if (lane < 0) {
+                // 只有关闭信号，没有待处理任务
+                if (!running) {
+                    return;
+                }
+                continue;
+            }
+
+            DispatchTask task = lanes.get(lane).poll();
+            long waited = System.nanoTime() - task.enqueueNanos;
+            maxWaitObserved[lane].accumulateAndGet(waited, Math::max);
+            dispatchedCounts[lane].incrementAndGet();
+
+            try {
+                task.delivery.run();
+            } catch (Exception e) {
+                System.err.println("Error dispatching event: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 选择下一个要服务的通道，仅由分发线程调用
+     *
+     * @return 通道下标，如果所有通道为空返回-1
+     */
+    private int selectLane(long now) {
+        int top = -1;
+        for (int i = 0; i < lanes.size(); i++) {
+            if (!lanes.get(i).isEmpty()) {
+                top = i;
+                break;
+            }
+        }
+        if (top < 0) {
+            return -1;
+        }
+
+        // 所有更低通道中队首等待最久的一个
+        int victim = -1;
+        long oldest = 0;
+        for (int i = top + 1; i < lanes.size(); i++) {
+            DispatchTask head = lanes.get(i).peek();
+            if (head != null && (victim < 0 || head.enqueueNanos - oldest < 0)) {
+                oldest = head.enqueueNanos;
+                victim = i;
+            }
+        }
+        if (victim < 0) {
+            // 没有更低优先级的积压，不计入连续服务次数
+            consecutiveServed = 0;
+            lastServedLower = false;
+            return top;
+        }
+
+        if (consecutiveServed >= maxConsecutive) {
+            consecutiveServed = 0;
+            lastServedLower = true;
+            return victim;
+        }
+        consecutiveServed++;
+        if (!lastServedLower && now - oldest > maxWaitNanos) {
+            // 超时的通道只得到这一个时隙，下一个时隙回到最高优先级通道
+            lastServedLower = true;
+            return victim;
+        }
+        lastServedLower = false;
+        return top;
+    }
+
+    /**
+     * 排队中的分发任务
+     */
+    private static class DispatchTask {
+        private final Runnable delivery;
+        private final long enqueueNanos;
+
+        DispatchTask(Runnable delivery, long enqueueNanos) {
+            this.delivery = delivery;
+            this.enqueueNanos = enqueueNanos;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package org.example.demo1.designpatterns.observer;
+
+import java.util.SplittableRandom;
+
+/**
+ * 观察者模式 - 合成传感器数据源 (Synthetic Sensor Feed)
+ *
+ * 为 N 个站点生成确定性的（相同种子产生相同序列）读数流，用于容量规划和回归对比：
+ * <ul>
+ *   <li>日变化：温度按24小时正弦曲线变化，湿度与温度反向变化</li>
+ *   <li>锋面：随机出现的锋面在数小时内使气压持续下降、温度跳变</li>
+ *   <li>极端事件：小概率出现的高温、暴雨或强低压读数</li>
+ *   <li>突发：某个站点短时间内连续上报多条读数</li>
+ *   <li>乱序：部分读数被网关延迟，在更晚的读数之后才到达</li>
+ * </ul>
+ *
+ * 读数按站点轮转产生，每个站点的事件时间按采样间隔推进。
+ * 返回的 {@link Reading} 是可复用对象，在下一次调用 {@link #next()} 之前有效。
+ */
+public class SensorFeedGenerator {
+
+    private static final long HOUR_MILLIS = 3_600_000L;
+    private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+    private final int stationCount;
+    private final long sampleIntervalMillis;
+    private final double extremeProbability;
+    private final double burstProbability;
+    private final double outOfOrderProbability;
+    private final SplittableRandom random;
+
+    // 按站点编号索引的状态
+    private final float[] baseTemperatures;
+    private final float[] dailyAmplitudes;
+    private final float[] basePressures;
+    private final long[] eventTimes;
+    private final long[] frontStarts;
+    private final long[] frontEnds;
+    private final float[] frontPressureRates;
+    private final float[] frontTemperatureShifts;
+
+    // 被网关延迟的读数，每个站点最多一条
+    private final boolean[] delayed;
+    private final float[] delayedValues;
+    private final long[] delayedTimes;
+
+    private final Reading reading = new Reading();
+    private int nextStation;
+    private int burstStation = -1;
+    private int burstRemaining;
+
+    private long generatedCount;
+    private long extremeCount;
+    private long outOfOrderCount;
+
+    public SensorFeedGenerator(int stationCount, long seed) {
+        this(stationCount, seed, 60_000L, 0.001, 0.002, 0.01);
+    }
+
+    /**
+     * @param stationCount 站点数量
+     * @param seed 随机种子
+     * @param sampleIntervalMillis 每个站点的采样间隔（事件时间）
+     * @param extremeProbability 单条读数为极端事件的概率
+     * @param burstProbability 触发突发上报的概率
+     * @param outOfOrderProbability 读数被延迟、乱序到达的概率
+     */
+    public SensorFeedGenerator(int stationCount, long seed, long sampleIntervalMillis, double extremeProbability,
+                               double burstProbability, double outOfOrderProbability) {
+        if (stationCount <= 0) {
+            throw new IllegalArgumentException("Station count must be positive: " + stationCount);
+        }
+        if (sampleIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Sample interval must be positive: " + sampleIntervalMillis);
+        }
+        checkProbability(extremeProbability);
+        checkProbability(burstProbability);
+        checkProbability(outOfOrderProbability);
+
+        this.stationCount = stationCount;
+        this.sampleIntervalMillis = sampleIntervalMillis;
+        this.extremeProbability = extremeProbability;
+        this.burstProbability = burstProbability;
+        this.outOfOrderProbability = outOfOrderProbability;
+        this.random = new SplittableRandom(seed);
+
+        this.baseTemperatures = new float[stationCount];
+        this.dailyAmplitudes = new float[stationCount];
+        this.basePressures = new float[stationCount];
+        this.eventTimes = new long[stationCount];
+        this.frontStarts = new long[stationCount];
+        this.frontEnds = new long[stationCount];
+        this.frontPressureRates = new float[stationCount];
+        this.frontTemperatureShifts = new float[stationCount];
+        this.delayed = new boolean[stationCount];
+        this.delayedValues = new float[stationCount * 3];
+        this.delayedTimes = new long[stationCount];
+
+        // 固定起始时间，保证相同种子产生相同的事件时间
+        long start = 1_700_000_000_000L;
+        for (int i = 0; i < stationCount; i++) {
+            baseTemperatures[i] = (float) (random.nextDouble(-5, 30));
+            dailyAmplitudes[i] = (float) (random.nextDouble(3, 8));
+            basePressures[i] = (float) (random.nextDouble(1005, 1020));
+            // 错开各站点的采样时刻
+            eventTimes[i] = start + random.nextLong(sampleIntervalMillis);
+        }
+    }
+
+    private static void checkProbability(double probability) {
+        if (probability < 0 || probability > 1) {
+            throw new IllegalArgumentException("Probability must be in [0, 1]: " + probability);
+        }
+    }
+
+    /**
+     * 生成下一条读数
+     *
+     * @return 可复用的读数对象，下一次调用后内容会被覆盖
+     */
+    public Reading next() {
+        int station = pickStation();
+        generatedCount++;
+
+        // 先前被延迟的读数在本站点的新读数生成之后才到达
+        if (delayed[station] && random.nextInt(4) == 0) {
+            delayed[station] = false;
+            outOfOrderCount++;
+            return reading.set(station, delayedValues[station * 3], delayedValues[station * 3 + 1],
+                               delayedValues[station * 3 + 2], delayedTimes[station]);
+        }
+
+        long time = eventTimes[station];
+        eventTimes[station] = time + sampleIntervalMillis;
+        generate(station, time);
+
+        if (!delayed[station] && random.nextDouble() < outOfOrderProbability) {
+            // 暂存本条读数，改为发送下一条
+            delayed[station] = true;
+            delayedValues[station * 3] = reading.temperature;
+            delayedValues[station * 3 + 1] = reading.humidity;
+            delayedValues[station * 3 + 2] = reading.pressure;
+            delayedTimes[station] = time;
+
+            time = eventTimes[station];
+            eventTimes[station] = time + sampleIntervalMillis;
+            generate(station, time);
+        }
+        return reading;
+    }
+
+    private int pickStation() {
+        if (burstRemaining > 0) {
+            burstRemaining--;
+            return burstStation;
+        }
+        int station = nextStation;
+        nextStation = station + 1 == stationCount ? 0 : station + 1;
+        if (random.nextDouble() < burstProbability) {
+            burstStation = station;
+            burstRemaining = 2 + random.nextInt(20);
+        }
+        return station;
+    }
+
+    /**
+     * 按站点状态和事件时间计算读数，写入 reading
+     */
+    private void generate(int station, long time) {
+        // 日变化：最低温在凌晨，最高温在午后
+        double dayPhase = 2 * Math.PI * ((time % DAY_MILLIS) - 9 * HOUR_MILLIS) / DAY_MILLIS;
+        double diurnal = Math.sin(dayPhase);
+
+        // 锋面过境
+        if (time >= frontEnds[station]) {
+            frontPressureRates[station] = 0;
+            frontTemperatureShifts[station] = 0;
+            if (random.nextDouble() < 0.001) {
+                frontStarts[station] = time;
+                frontEnds[station] = time + (3 + random.nextInt(10)) * HOUR_MILLIS;
+                frontPressureRates[station] = (float) -random.nextDouble(0.5, 3.0);
+                frontTemperatureShifts[station] = (float) random.nextDouble(-8, 4);
+            }
+        }
+        double frontHours = (time - frontStarts[station]) / (double) HOUR_MILLIS;
+
+        double temperature = baseTemperatures[station] + dailyAmplitudes[station] * diurnal
+            + frontTemperatureShifts[station] + random.nextGaussian() * 0.3;
+        double humidity = 60 - 15 * diurnal + (frontPressureRates[station] != 0 ? 20 : 0)
+            + random.nextGaussian() * 2;
+        double pressure = basePressures[station] + frontPressureRates[station] * frontHours
+            + random.nextGaussian() * 0.5;
+
+        if (random.nextDouble() < extremeProbability) {
+            extremeCount++;
+            switch (random.nextInt(3)) {
+                case 0:
+                    temperature = 41 + random.nextDouble(5);
+                    break;
+                case 1:
+                    humidity = 96 + random.nextDouble(4);
+                    break;
+                default:
+                    pressure = 960 + random.nextDouble(15);
+                    break;
+            }
+        }
+
+        reading.set(station, (float) temperature, (float) Math.max(0, Math.min(100, humidity)),
+                    (float) pressure, time);
+    }
+
+    /**
+     * 获取站点数量
+     */
+    public int getStationCount() {
+        return stationCount;
+    }
+
+    // Getters
+    public long getGeneratedCount() { return generatedCount; }
+    public long getExtremeCount() { return extremeCount; }
+    public long getOutOfOrderCount() { return outOfOrderCount; }
+
+    /**
+     * 一条传感器读数
+     */
+    public static class Reading {
+        private int station;
+        private float temperature;
+        private float humidity;
+        private float pressure;
+        private long eventTime;
+
+        private Reading set(int station, float temperature, float humidity, float pressure, long eventTime) {
+            this.station = station;
+            this.temperature = temperature;
+            this.humidity = humidity;
+            this.pressure = pressure;
+            this.eventTime = eventTime;
+            return this;
+        }
+
+        /**
+         * 把读数应用到天气站上
+         */
+        public void applyTo(WeatherStation weatherStation) {
+            weatherStation.setMeasurements(temperature, humidity, pressure, eventTime);
+        }
+
+        // Getters
+        public int getStation() { return station; }
+        public float getTemperature() { return temperature; }
+        public float getHumidity() { return humidity; }
+        public float getPressure() { return pressure; }
+        public long getEventTime() { return eventTime; }
+
+        @Override
+        public String toString() {
+            return String.format("Reading{station=%d, temp=%.1f°C, humidity=%.1f%%, pressure=%.1fhPa, time=%d}",
+                               station, temperature, humidity, pressure, eventTime);
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package org.example.demo1.designpatterns.observer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 观察者模式 - 天气站地理空间索引 (Concrete Observer)
+ *
+ * 按经纬度把天气站放入均匀网格中，支持半径查询和矩形范围查询，
+ * 只需检查与查询范围相交的网格单元，而不必扫描全部站点。
+ *
+ * 索引同时作为观察者注册到每个天气站上，读数到达时增量更新站点所在单元的聚合值
+ * （减去旧读数、加上新读数）。区域平均值查询对完全落在范围内的单元直接使用聚合值，
+ * 只有边界单元需要逐个检查站点。
+ *
+ * 注意：范围查询不处理跨越 ±180° 经线的情况。
+ */
+public class StationGeoIndex implements Observer {
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private final String name;
+    private final double cellSizeDegrees;
+    private final int columns;
+    private final Map<Long, Cell> cells = new HashMap<>();
+    private final Map<Subject, Entry> entries = new IdentityHashMap<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantReadWriteLock.ReadLock readLock = lock.readLock();
+    private final ReentrantReadWriteLock.WriteLock writeLock = lock.writeLock();
+
+    public StationGeoIndex(String name) {
+        this(name, 0.5);
+    }
+
+    /**
+     * @param name 观察者名称
+     * @param cellSizeDegrees 网格单元的边长（度）
+     */
+    public StationGeoIndex(String name, double cellSizeDegrees) {
+        if (cellSizeDegrees <= 0 || cellSizeDegrees > 90) {
+            throw new IllegalArgumentException("Cell size must be in (0, 90]: " + cellSizeDegrees);
+        }
+        this.name = name;
+        this.cellSizeDegrees = cellSizeDegrees;
+        this.columns = (int) Math.ceil(360 / cellSizeDegrees) + 1;
+    }
+
+    /**
+     * 把天气站加入索引，并注册为它的观察者以跟踪读数
+     *
+     * @param station 带坐标的天气站
+     * @return 如果天气站已在索引中返回false
+     */
+    public boolean addStation(WeatherStation station) {
+        if (station == null || !station.hasCoordinates()) {
+            throw new IllegalArgumentException("Station must have coordinates");
+        }
+
+        writeLock.lock();
+        try {
+            if (entries.containsKey(station)) {
+                return false;
+            }
+            Entry entry = new Entry(station, cellKey(station.getLatitude(), station.getLongitude()));
+            entries.put(station, entry);
+            cells.computeIfAbsent(entry.cellKey, key -> new Cell()).entries.add(entry);
+        } finally {
+            writeLock.unlock();
+        }
+
+        // 注册时天气站会推送当前读数，因此需要在释放锁之后注册
+        station.registerObserver(this);
+        return true;
+    }
+
+    /**
+     * 把天气站移出索引
+     */
+    public boolean removeStation(WeatherStation station) {
+        writeLock.lock();
+        try {
+            Entry entry = entries.remove(station);
+            if (entry == null) {
+                return false;
+            }
+            Cell cell = cells.get(entry.cellKey);
+            cell.entries.remove(entry);
+            if (entry.hasReading) {
+                cell.subtract(entry);
+            }
+            if (cell.entries.isEmpty()) {
+                cells.remove(entry.cellKey);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+
+        station.removeObserver(this);
+        return true;
+    }
+
+    @Override
+    public void update(Subject subject, String event, Object data) {
+        if (!(data instanceof WeatherStation.WeatherData)) {
+            return;
+        }
+
+        WeatherStation.WeatherData weatherData = (WeatherStation.WeatherData) data;
+        writeLock.lock();
+        try {
+            Entry entry = entries.get(subject);
+            if (entry == null) {
+                return;
+            }
+
+            // 增量更新单元聚合：先减去旧读数，再加上新读数
+            Cell cell = cells.get(entry.cellKey);
+            if (entry.hasReading) {
+                cell.subtract(entry);
+            }
+            entry.temperature = weatherData.getTemperature();
+            entry.humidity = weatherData.getHumidity();
+            entry.pressure = weatherData.getPressure();
+            entry.hasReading = true;
+            cell.add(entry);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isInterestedIn(String event) {
+        return WeatherStation.EVENT_MEASUREMENTS_CHANGED.equals(event);
+    }
+
+    /**
+     * 查询距离指定点不超过半径的天气站
+     *
+     * @param latitude 中心纬度
+     * @param longitude 中心经度
+     * @param radiusKm 半径（公里）
+     * @return 范围内的天气站
+     */
+    public List<WeatherStation> findWithinRadius(double latitude, double longitude, double radiusKm) {
+        // 先用外接矩形筛选网格单元，再按球面距离精确过滤
+        double latDelta = Math.toDegrees(radiusKm / EARTH_RADIUS_KM);
+        double cosLat = Math.cos(Math.toRadians(latitude));
+        double lonDelta = cosLat > 1e-9 ? Math.min(180, latDelta / cosLat) : 180;
+
+        List<WeatherStation> result = new ArrayList<>();
+        readLock.lock();
+        try {
+            forEachCell(latitude - latDelta, longitude - lonDelta, latitude + latDelta, longitude + lonDelta,
+                (cell, fullyInside) -> {
+                    for (Entry entry : cell.entries) {
+                        if (distanceKm(latitude, longitude, entry.latitude, entry.longitude) <= radiusKm) {
+                            result.add(entry.station);
+                        }
+                    }
+                });
+        } finally {
+            readLock.unlock();
+        }
+        return result;
+    }
+
+    /**
+     * 查询矩形范围内的天气站
+     */
+    public List<WeatherStation> findInBoundingBox(double minLatitude, double minLongitude,
+                                                  double maxLatitude, double maxLongitude) {
+        List<WeatherStation> result = new ArrayList<>();
+        readLock.lock();
+        try {
+            forEachCell(minLatitude, minLongitude, maxLatitude, maxLongitude, (cell, fullyInside) -> {
+                for (Entry entry : cell.entries) {
+                    if (fullyInside || entry.isInside(minLatitude, minLongitude, maxLatitude, maxLongitude)) {
+                        result.add(entry.station);
+                    }
+                }
+            });
+        } finally {
+            readLock.unlock();
+        }
+        return result;
+    }
+
+    /**
+     * 计算矩形范围内天气站最新读数的平均值
+     *
+     * 完全落在范围内的单元直接使用增量维护的聚合值。
+     */
+    public RegionalAggregate getRegionalAggregate(double minLatitude, double minLongitude,
+                                                  double maxLatitude, double maxLongitude) {
+        double[] sums = new double[4]; // count, temperature, humidity, pressure
+        readLock.lock();
+        try {
+            forEachCell(minLatitude, minLongitude, maxLatitude, maxLongitude, (cell, fullyInside) -> {
+                if (fullyInside) {
+                    sums[0] += cell.readingCount;
+                    sums[1] += cell.temperatureSum;
+                    sums[2] += cell.humiditySum;
+                    sums[3] += cell.pressureSum;
+                    return;
+                }
+                for (Entry entry : cell.entries) {
+                    if (entry.hasReading && entry.isInside(minLatitude, minLongitude, maxLatitude, maxLongitude)) {
+                        sums[0]++;
+                        sums[1] += entry.temperature;
+                        sums[2] += entry.humidity;
+                        sums[3] += entry.pressure;
+                    }
+                }
+            });
+        } finally {
+            readLock.unlock();
+        }
+
+        int count = (int) sums[0];
+        if (count == 0) {
+            return new RegionalAggregate(0, Float.NaN, Float.NaN, Float.NaN);
+        }
+        return new RegionalAggregate(count, (float) (sums[1] / count), (float) (sums[2] / count),
+                                     (float) (sums[3] / count));
+    }
+
+    /**
+     * 获取索引中的天气站数量
+     */
+    public int getStationCount() {
+        readLock.lock();
+        try {
+            return entries.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * 遍历与矩形相交的非空网格单元
+     */
+    private void forEachCell(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude,
+                             CellVisitor visitor) {
+        double clampedMinLat = Math.max(-90, minLatitude);
+        double clampedMaxLat = Math.min(90, maxLatitude);
+        double clampedMinLon = Math.max(-180, minLongitude);
+        double clampedMaxLon = Math.min(180, maxLongitude);
+        if (clampedMinLat > clampedMaxLat || clampedMinLon > clampedMaxLon) {
+            return;
+        }
+
+        int minRow = row(clampedMinLat);
+        int maxRow = row(clampedMaxLat);
+        int minColumn = column(clampedMinLon);
+        int maxColumn = column(clampedMaxLon);
+
+        // 范围覆盖的单元比非空单元还多时，直接遍历非空单元
+        long rangeCells = (long) (maxRow - minRow + 1) * (maxColumn - minColumn + 1);
+        if (rangeCells > cells.size()) {
+            for (Map.Entry<Long, Cell> entry : cells.entrySet()) {
+                int cellRow = (int) (entry.getKey() / columns);
+                int cellColumn = (int) (entry.getKey() % columns);
+                if (cellRow >= minRow && cellRow <= maxRow && cellColumn >= minColumn && cellColumn <= maxColumn) {
+                    visitor.visit(entry.getValue(), isCellInside(cellRow, cellColumn, minLatitude, minLongitude,
+                                                                 maxLatitude, maxLongitude));
+                }
+            }
+            return;
+        }
+
+        for (int cellRow = minRow; cellRow <= maxRow; cellRow++) {
+            for (int cellColumn = minColumn; cellColumn <= maxColumn; cellColumn++) {
+                Cell cell = cells.get((long) cellRow * columns + cellColumn);
+                if (cell != null) {
+                    visitor.visit(cell, isCellInside(cellRow, cellColumn, minLatitude, minLongitude,
+                                                     maxLatitude, maxLongitude));
+                }
+            }
+        }
+    }
+
+    private boolean isCellInside(int cellRow, int cellColumn, double minLatitude, double minLongitude,
+                                 double maxLatitude, double maxLongitude) {
+        double cellMinLat = cellRow * cellSizeDegrees - 90;
+        double cellMinLon = cellColumn * cellSizeDegrees - 180;
+        return cellMinLat >= minLatitude && cellMinLat + cellSizeDegrees <= maxLatitude
+            && cellMinLon >= minLongitude && cellMinLon + cellSizeDegrees <= maxLongitude;
+    }
+
+    private int row(double latitude) {
+        return (int) Math.floor((latitude + 90) / cellSizeDegrees);
+    }
+
+    private int column(double longitude) {
+        return (int) Math.floor((longitude + 180) / cellSizeDegrees);
+    }
+
+    private long cellKey(double latitude, double longitude) {
+        return (long) row(latitude) * columns + column(longitude);
+    }
+
+    /**
+     * 计算两点之间的球面距离（haversine 公式）
+     *
+     * @return 距离（公里）
+     */
+    public static double distanceKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double dLat = Math.toRadians(latitude2 - latitude1);
+        double dLon = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+            + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2))
+            * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return "StationGeoIndex{name='" + name + "', stations=" + getStationCount() + ", cellSize=" + cellSizeDegrees + "°}";
+    }
+
+    @FunctionalInterface
+    private interface CellVisitor {
+        void visit(Cell cell, boolean fullyInside);
+    }
+
+    /**
+     * 网格单元：单元内的站点及其最新读数的聚合值
+     */
+    private static class Cell {
+        private final List<Entry> entries = new ArrayList<>();
+        private int readingCount;
+        private double temperatureSum;
+        private double humiditySum;
+        private double pressureSum;
+
+        void add(Entry entry) {
+            readingCount++;
+            temperatureSum += entry.temperature;
+            humiditySum += entry.humidity;
+            pressureSum += entry.pressure;
+        }
+
+        void subtract(Entry entry) {
+            readingCount--;
+            temperatureSum -= entry.temperature;
+            humiditySum -= entry.humidity;
+            pressureSum -= entry.pressure;
+        }
+    }
+
+    /**
+     * 索引中的站点及其最新读数
+     */
+    private static class Entry {
+        private final WeatherStation station;
+        private final double latitude;
+        private final double longitude;
+        private final long cellKey;
+        private boolean hasReading;
+        private float temperature;
+        private float humidity;
+        private float pressure;
+
+        Entry(WeatherStation station, long cellKey) {
+            this.station = station;
+            this.latitude = station.getLatitude();
+            this.longitude = station.getLongitude();
+            this.cellKey = cellKey;
+        }
+
+        boolean isInside(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+            return latitude >= minLatitude && latitude <= maxLatitude
+                && longitude >= minLongitude && longitude <= maxLongitude;
+        }
+    }
+
+    /**
+     * 区域聚合结果
+     */
+    public static class RegionalAggregate {
+        private final int stationCount;
+        private final float averageTemperature;
+        private final float averageHumidity;
+        private final float averagePressure;
+
+        public RegionalAggregate(int stationCount, float averageTemperature, float averageHumidity,
+                                 float averagePressure) {
+            this.stationCount = stationCount;
+            this.averageTemperature = averageTemperature;
+            this.averageHumidity = averageHumidity;
+            this.averagePressure = averagePressure;
+        }
+
+        // Getters
+        public int getStationCount() { return stationCount; }
+        public float getAverageTemperature() { return averageTemperature; }
+        public float getAverageHumidity() { return averageHumidity; }
+        public float getAveragePressure() { return averagePressure; }
+
+        @Override
+        public String toString() {
+            return String.format("RegionalAggregate{stations=%d, temp=%.1f°C, humidity=%.1f%%, pressure=%.1fhPa}",
+                               stationCount, averageTemperature, averageHumidity, averagePressure);
+        }
+    }
+}
@@ -1,20 +1,24 @@
 package org.example.demo1.designpatterns.observer;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * 观察者模式 - 具体观察者类 (Concrete Observer)
  * 
  * 统计显示器类，用于收集和显示天气数据的统计信息，
  * 包括最高温、最低温、平均温度等。
+ * 统计输出写入可复用的缓冲区后交给 {@link ConsoleSink} 批量写出。
  */
-public class StatisticsDisplay implements Observer {
+public class StatisticsDisplay implements Observer, Checkpointable {
     
     private final String name;
-    private final List<Float> temperatureHistory = new ArrayList<>();
-    private final List<Float> humidityHistory = new ArrayList<>();
-    private final List<Float> pressureHistory = new ArrayList<>();
+    private final ConsoleSink sink;
+    private FloatHistory temperatureHistory = new FloatHistory();
+    private FloatHistory humidityHistory = new FloatHistory();
+    private FloatHistory pressureHistory = new FloatHistory();
     
     private float maxTemperature = Float.MIN_VALUE;
     private float minTemperature = Float.MAX_VALUE;
@@ -26,11 +30,19 @@ public class StatisticsDisplay implements Observer {
     private int updateCount = 0;
     
     public StatisticsDisplay(String name) {
+        this(name, ConsoleSink.shared());
+    }
+    
+    public StatisticsDisplay(String name, ConsoleSink sink) {
+        if (sink == null) {
+            throw new IllegalArgumentException("Sink cannot be null");
+        }
         this.name = name;
+        this.sink = sink;
     }
     
     @Override
-    public void update(Subject subject, String event, Object data) {
+    public synchronized void update(Subject subject, String event, Object data) {
         // 只对测量数据变化事件感兴趣
         if (!WeatherStation.EVENT_MEASUREMENTS_CHANGED.equals(event)) {
             return;
@@ -91,59 +103,67 @@ public class StatisticsDisplay implements Observer {
      * 显示统计信息
      */
     private void displayStatistics() {
-        System.out.println("\n=== " + name + " Statistics ===");
-        System.out.println("📈 Weather Statistics (Based on " + updateCount + " readings):");
+        StringBuilder out = sink.acquire();
+        out.append("\n=== ").append(name).append(" Statistics ===\n");
+        out.append("📈 Weather Statistics (Based on ").append(updateCount).append(" readings):\n");
         
         // 温度统计
-        System.out.println("🌡️ Temperature:");
-        System.out.printf("   Max: %.1f°C | Min: %.1f°C | Avg: %.1f°C%n", 
-                         maxTemperature, minTemperature, getAverageTemperature());
+        out.append("🌡️ Temperature:\n");
+        out.append("   Max: ");
+        ConsoleSink.appendDecimal(out, maxTemperature).append("°C | Min: ");
+        ConsoleSink.appendDecimal(out, minTemperature).append("°C | Avg: ");
+        ConsoleSink.appendDecimal(out, getAverageTemperature()).append("°C\n");
         
         // 湿度统计
-        System.out.println("💧 Humidity:");
-        System.out.printf("   Max: %.1f%% | Min: %.1f%% | Avg: %.1f%%%n", 
-                         maxHumidity, minHumidity, getAverageHumidity());
+        out.append("💧 Humidity:\n");
+        out.append("   Max: ");
+        ConsoleSink.appendDecimal(out, maxHumidity).append("% | Min: ");
+        ConsoleSink.appendDecimal(out, minHumidity).append("% | Avg: ");
+        ConsoleSink.appendDecimal(out, getAverageHumidity()).append("%\n");
         
         // 气压统计
-        System.out.println("🌪️ Pressure:");
-        System.out.printf("   Max: %.1f hPa | Min: %.1f hPa | Avg: %.1f hPa%n", 
-                         maxPressure, minPressure, getAveragePressure());
+        out.append("🌪️ Pressure:\n");
+        out.append("   Max: ");
+        ConsoleSink.appendDecimal(out, maxPressure).append(" hPa | Min: ");
+        ConsoleSink.appendDecimal(out, minPressure).append(" hPa | Avg: ");
+        ConsoleSink.appendDecimal(out, getAveragePressure()).append(" hPa\n");
         
         // 趋势分析
-        displayTrends();
+        displayTrends(out);
         
-        System.out.println("=== End " + name + " Statistics ===\n");
+        out.append("=== End ").append(name).append(" Statistics ===\n\n");
+        sink.submit(out);
     }
     
     /**
      * 显示趋势分析
      */
-    private void displayTrends() {
+    private void displayTrends(StringBuilder out) {
         if (temperatureHistory.size() < 2) {
             return;
         }
         
-        System.out.println("📊 Trends:");
+        out.append("📊 Trends:\n");
         
         // 温度趋势
-        String tempTrend = getTrend(temperatureHistory);
-        System.out.println("   Temperature: " + tempTrend);
+        out.append("   Temperature: ");
+        appendTrend(out, temperatureHistory).append('\n');
         
         // 湿度趋势
-        String humidityTrend = getTrend(humidityHistory);
-        System.out.println("   Humidity: " + humidityTrend);
+        out.append("   Humidity: ");
+        appendTrend(out, humidityHistory).append('\n');
         
         // 气压趋势
-        String pressureTrend = getTrend(pressureHistory);
-        System.out.println("   Pressure: " + pressureTrend);
+        out.append("   Pressure: ");
+        appendTrend(out, pressureHistory).append('\n');
     }
     
     /**
-     * 计算数据趋势
+     * 计算数据趋势并追加到输出中
      */
-    private String getTrend(List<Float> data) {
+    private StringBuilder appendTrend(StringBuilder out, FloatHistory data) {
         if (data.size() < 2) {
-            return "Insufficient data";
+            return out.append("Insufficient data");
         }
         
         int size = data.size();
@@ -168,15 +188,17 @@ public class StatisticsDisplay implements Observer {
             
             float difference = recentAvg - previousAvg;
             if (Math.abs(difference) < 0.1) {
-                return "Stable ➡️";
+                return out.append("Stable ➡️");
             } else if (difference > 0) {
-                return "Rising ⬆️ (+" + String.format("%.1f", difference) + ")";
+                out.append("Rising ⬆️ (");
+                return ConsoleSink.appendSignedDecimal(out, difference).append(')');
             } else {
-                return "Falling ⬇️ (" + String.format("%.1f", difference) + ")";
+                out.append("Falling ⬇️ (");
+                return ConsoleSink.appendDecimal(out, difference).append(')');
             }
         }
         
-        return "Stable ➡️";
+        return out.append("Stable ➡️");
     }
     
     /**
@@ -186,7 +208,7 @@ public class StatisticsDisplay implements Observer {
         if (temperatureHistory.isEmpty()) {
             return 0;
         }
-        return (float) temperatureHistory.stream().mapToDouble(Float::doubleValue).average().orElse(0);
+        return temperatureHistory.average();
     }
     
     /**
@@ -196,7 +218,7 @@ public class StatisticsDisplay implements Observer {
         if (humidityHistory.isEmpty()) {
             return 0;
         }
-        return (float) humidityHistory.stream().mapToDouble(Float::doubleValue).average().orElse(0);
+        return humidityHistory.average();
     }
     
     /**
@@ -206,7 +228,7 @@ public class StatisticsDisplay implements Observer {
         if (pressureHistory.isEmpty()) {
             return 0;
         }
-        return (float) pressureHistory.stream().mapToDouble(Float::doubleValue).average().orElse(0);
+        return pressureHistory.average();
     }
     
     @Override
@@ -217,10 +239,11 @@ public class StatisticsDisplay implements Observer {
     /**
      * 重置统计数据
      */
-    public void resetStatistics() {
-        temperatureHistory.clear();
-        humidityHistory.clear();
-        pressureHistory.clear();
+    public synchronized void resetStatistics() {
+        // 替换为新的历史缓冲区，已捕获的检查点快照不受影响
+        temperatureHistory = new FloatHistory();
+        humidityHistory = new FloatHistory();
+        pressureHistory = new FloatHistory();
         
         maxTemperature = Float.MIN_VALUE;
         minTemperature = Float.MAX_VALUE;
@@ -231,13 +254,13 @@ public class StatisticsDisplay implements Observer {
         
         updateCount = 0;
         
-        System.out.println(name + " statistics have been reset.");
+        ConsoleSink.shared().println(name + " statistics have been reset.");
     }
     
     /**
      * 获取统计摘要
      */
-    public String getStatisticsSummary() {
+    public synchronized String getStatisticsSummary() {
         if (updateCount == 0) {
             return "No data collected yet";
         }
@@ -247,8 +270,114 @@ public class StatisticsDisplay implements Observer {
                            minHumidity, maxHumidity, minPressure, maxPressure);
     }
     
+    @Override
+    public String getCheckpointId() {
+        return name;
+    }
+    
+    @Override
+    public synchronized StateWriter captureState() {
+        // 历史缓冲区只追加不修改，捕获数组引用和长度即可得到一致的快照
+        float[] temperatures = temperatureHistory.values;
+        float[] humidities = humidityHistory.values;
+        float[] pressures = pressureHistory.values;
+        int size = temperatureHistory.size;
+        float[] extremes = {maxTemperature, minTemperature, maxHumidity, minHumidity, maxPressure, minPressure};
+        int count = updateCount;
+        
+        return out -> {
+            out.writeInt(count);
+            for (float extreme : extremes) {
+                out.writeFloat(extreme);
+            }
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeFloat(temperatures[i]);
+                out.writeFloat(humidities[i]);
+                out.writeFloat(pressures[i]);
+            }
+        };
+    }
+    
+    @Override
+    public synchronized void restoreState(DataInput in) throws IOException {
+        int count = in.readInt();
+        float[] extremes = new float[6];
+        for (int i = 0; i < extremes.length; i++) {
+            extremes[i] = in.readFloat();
+        }
+        int size = in.readInt();
+        if (size < 0) {
+            throw new IOException("Invalid history size: " + size);
+        }
+        
+        FloatHistory temperatures = new FloatHistory(size);
+        FloatHistory humidities = new FloatHistory(size);
+        FloatHistory pressures = new FloatHistory(size);
+        for (int i = 0; i < size; i++) {
+            temperatures.add(in.readFloat());
+            humidities.add(in.readFloat());
+            pressures.add(in.readFloat());
+        }
+        
+        updateCount = count;
+        maxTemperature = extremes[0];
+        minTemperature = extremes[1];
+        maxHumidity = extremes[2];
+        minHumidity = extremes[3];
+        maxPressure = extremes[4];
+        minPressure = extremes[5];
+        temperatureHistory = temperatures;
+        humidityHistory = humidities;
+        pressureHistory = pressures;
+    }
+    
     @Override
     public String toString() {
         return "StatisticsDisplay{name='" + name + "', readings=" + updateCount + "}";
     }
+    
+    /**
+     * 只追加的float历史缓冲区
+     * 
+     * 已写入的元素永不修改，扩容时复制到新数组，因此旧数组引用加长度
+     * 可以作为写时复制的快照被其他线程安全读取。
+     */
+    private static class FloatHistory {
+        private float[] values;
+        private int size;
+        private double sum;
+        
+        FloatHistory() {
+            this(16);
+        }
+        
+        FloatHistory(int capacity) {
+            this.values = new float[Math.max(16, capacity)];
+        }
+        
+        void add(float value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+            sum += value;
+        }
+        
+        float get(int index) {
+            return values[index];
+        }
+        
+        int size() {
+            return size;
+        }
+        
+        boolean isEmpty() {
+            return size == 0;
+        }
+        
+        float average() {
+            return size == 0 ? 0 : (float) (sum / size);
+        }
+    }
 }
@@ -0,0 +1,320 @@
+package org.example.demo1.designpatterns.observer;
+
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 观察者模式 - 响应式发布者适配器 (Flow.Publisher Adapter)
+ *
+ * 把任意 {@link Subject} 适配为 {@link Flow.Publisher}，使天气站可以直接接入
+ * java.util.concurrent.Flow 的消费者，而不需要阻塞式桥接。
+ *
+ * 每个订阅者对应一个注册到主题上的桥接观察者。主题的分发线程只负责入队，
+ * 缓冲区大小不超过订阅者通过 request(n) 申请的数量（以及配置的上限），
+ * 超出部分按溢出策略处理；信号在执行器中按批次串行投递给订阅者，
+ * 因此慢消费者通过信用（demand）限制生产，而不会无限缓冲导致内存溢出。
+ */
+public class SubjectPublisher implements Flow.Publisher<SubjectPublisher.Event>, AutoCloseable {
+
+    /**
+     * 缓冲区已满（没有剩余需求）时的处理策略
+     */
+    public enum OverflowStrategy {
+        /** 丢弃新到达的事件 */
+        DROP_NEWEST,
+        /** 丢弃缓冲区中最早的事件，保留最新的事件 */
+        DROP_OLDEST,
+        /** 取消订阅并向订阅者发送错误信号 */
+        ERROR
+    }
+
+    private final Subject subject;
+    private final OverflowStrategy overflowStrategy;
+    private final int maxBufferSize;
+    private final int batchSize;
+    private final Executor executor;
+    private final Set<BridgeSubscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    public SubjectPublisher(Subject subject) {
+        this(subject, OverflowStrategy.DROP_OLDEST, Flow.defaultBufferSize(), 64, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param subject 被适配的主题
+     * @param overflowStrategy 溢出策略
+     * @param maxBufferSize 每个订阅者的最大缓冲数量
+     * @param batchSize 每次投递任务最多发送的 onNext 信号数量
+     * @param executor 投递信号的执行器
+     */
+    public SubjectPublisher(Subject subject, OverflowStrategy overflowStrategy, int maxBufferSize,
+                            int batchSize, Executor executor) {
+        if (subject == null || overflowStrategy == null || executor == null) {
+            throw new IllegalArgumentException("Subject, overflow strategy and executor cannot be null");
+        }
+        if (maxBufferSize <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Buffer size and batch size must be positive");
+        }
+        this.subject = subject;
+        this.overflowStrategy = overflowStrategy;
+        this.maxBufferSize = maxBufferSize;
+        this.batchSize = batchSize;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Event> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("Subscriber cannot be null");
+        }
+
+        BridgeSubscription subscription = new BridgeSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        if (subscription.isDone()) {
+            // 订阅者在 onSubscribe 中已取消或申请了非法需求，不再注册
+            return;
+        }
+        if (closed) {
+            subscription.complete();
+            return;
+        }
+
+        // 先完成 onSubscribe，再注册到主题，保证订阅者有机会先申请需求
+        subscriptions.add(subscription);
+        subject.registerObserver(subscription);
+        if (subscription.isDone()) {
+            // 注册期间被并发取消时，取消方可能在注册之前就已移除，这里补做一次移除
+            subscriptions.remove(subscription);
+            subject.removeObserver(subscription);
+        } else if (closed) {
+            // 并发的 close 可能在加入集合之前完成了遍历
+            subscription.complete();
+        }
+    }
+
+    /**
+     * 关闭发布者，所有订阅者在收到已缓冲的事件后收到 onComplete
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (BridgeSubscription subscription : subscriptions) {
+            subscription.complete();
+        }
+    }
+
+    /**
+     * 获取当前订阅者数量
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * 发布给订阅者的事件
+     */
+    public static class Event {
+        private final Subject subject;
+        private final String type;
+        private final Object data;
+
+        public Event(Subject subject, String type, Object data) {
+            this.subject = subject;
+            this.type = type;
+            this.data = data;
+        }
+
+        // Getters
+        public Subject getSubject() { return subject; }
+        public String getType() { return type; }
+        public Object getData() { return data; }
+
+        @Override
+        public String toString() {
+            return "Event{type='" + type + "', data=" + data + "}";
+        }
+    }
+
+    /**
+     * 订阅：同时作为注册在主题上的观察者
+     */
+    private class BridgeSubscription implements Flow.Subscription, Observer {
+        private final Flow.Subscriber<? super Event> subscriber;
+        private final ArrayDeque<Event> buffer = new ArrayDeque<>();
+        private final AtomicInteger wip = new AtomicInteger();
+
+        // 以下字段由 this 锁保护
+        private long requested;
+        private long droppedCount;
+        private boolean cancelled;
+        private boolean completed;
+        private Throwable error;
+        private boolean terminated;
+
+        BridgeSubscription(Flow.Subscriber<? super Event> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void update(Subject source, String event, Object data) {
+            boolean overflowError = false;
+            synchronized (this) {
+                if (cancelled || completed) {
+                    return;
+                }
+
+                // 缓冲区只保留有需求覆盖的事件
+                long limit = Math.min(requested, maxBufferSize);
+                if (buffer.size() < limit) {
+                    buffer.add(new Event(source, event, data));
+                } else {
+                    droppedCount++;
+                    switch (overflowStrategy) {
+                        case DROP_OLDEST:
+                            if (!buffer.isEmpty()) {
+                                buffer.poll();
+                                buffer.add(new Event(source, event, data));
+                            }
+                            break;
+                        case ERROR:
+                            error = new IllegalStateException(
+                                "Subscriber " + subscriber + " cannot keep up, no outstanding demand for " + event);
+                            completed = true;
+                            overflowError = true;
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            }
+
+            if (overflowError) {
+                detach();
+            }
+            schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                if (n <= 0) {
+                    // 规范 §3.9：非正数需求必须以 onError 终止
+                    error = new IllegalArgumentException("Non-positive request: " + n);
+                    completed = true;
+                    buffer.clear();
+                } else {
+                    requested = requested + n < 0 ? Long.MAX_VALUE : requested + n;
+                }
+            }
+            if (n <= 0) {
+                detach();
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                cancelled = true;
+                buffer.clear();
+            }
+            detach();
+        }
+
+        void complete() {
+            synchronized (this) {
+                completed = true;
+            }
+            detach();
+            schedule();
+        }
+
+        synchronized boolean isDone() {
+            return cancelled || completed;
+        }
+
+        private void detach() {
+            if (subscriptions.remove(this)) {
+                subject.removeObserver(this);
+            }
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        /**
+         * 串行投递信号，每批最多 batchSize 个 onNext，之后让出执行器
+         */
+        private void drain() {
+            int missed = 1;
+            Event[] batch = new Event[batchSize];
+            while (true) {
+                int count = 0;
+                boolean signalTerminal = false;
+                Throwable terminalError = null;
+                synchronized (this) {
+                    if (cancelled || terminated) {
+                        buffer.clear();
+                    } else {
+                        while (count < batchSize && requested > 0 && !buffer.isEmpty()) {
+                            batch[count++] = buffer.poll();
+                            requested--;
+                        }
+                        // 已完成且缓冲区已清空时，在本批事件之后发送终止信号
+                        if (completed && (buffer.isEmpty() || error != null)) {
+                            buffer.clear();
+                            terminated = true;
+                            signalTerminal = true;
+                            terminalError = error;
+                        }
+                    }
+                }
+
+                for (int i = 0; i < count && terminalError == null; i++) {
+                    subscriber.onNext(batch[i]);
+                    batch[i] = null;
+                }
+                if (signalTerminal) {
+                    if (terminalError != null) {
+                        subscriber.onError(terminalError);
+                    } else {
+                        subscriber.onComplete();
+                    }
+                }
+
+                if (count == batchSize) {
+                    // 本批已满，重新提交以便其他任务有机会执行
+                    executor.execute(this::drain);
+                    return;
+                }
+
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public String getName() {
+            return "FlowSubscription(" + subscriber + ")";
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "BridgeSubscription{requested=" + requested + ", buffered=" + buffer.size() +
+                   ", dropped=" + droppedCount + "}";
+        }
+    }
+}
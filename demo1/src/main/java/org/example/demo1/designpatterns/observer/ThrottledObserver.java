@@ -0,0 +1,209 @@
+package org.example.demo1.designpatterns.observer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 观察者模式 - 节流观察者 (Throttled Observer)
+ *
+ * 装饰器模式包装一个观察者，限制其最大投递频率。
+ * 在限流间隔内到达的事件按事件类型合并，只保留最新的值，
+ * 由共享的哈希时间轮在间隔结束时触发刷新。时间轮调度线程只负责提交，
+ * 刷新在执行器中投递给被包装的观察者，慢观察者不会拖住其他定时任务。
+ * 适用于界面显示、日志等不需要每秒上百次更新的观察者。
+ */
+public class ThrottledObserver implements Observer {
+
+    private final Observer delegate;
+    private final long intervalNanos;
+    private final HashedWheelTimer timer;
+    private final Executor flushExecutor;
+
+    // 按事件类型合并的待投递事件，保持首次到达的顺序
+    private final Map<String, PendingEvent> pendingEvents = new LinkedHashMap<>();
+
+    private long lastDeliveryNanos;
+    private boolean delivered;
+    private HashedWheelTimer.Timeout scheduledFlush;
+    private boolean cancelled;
+    private long conflatedCount;
+
+    public ThrottledObserver(Observer delegate, double maxDeliveriesPerSecond) {
+        this(delegate, maxDeliveriesPerSecond, HashedWheelTimer.shared(), ForkJoinPool.commonPool());
+    }
+
+    public ThrottledObserver(Observer delegate, double maxDeliveriesPerSecond, HashedWheelTimer timer) {
+        this(delegate, maxDeliveriesPerSecond, timer, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param flushExecutor 执行合并刷新的执行器，被包装观察者的 update 在其中调用
+     */
+    public ThrottledObserver(Observer delegate, double maxDeliveriesPerSecond, HashedWheelTimer timer,
+                             Executor flushExecutor) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Observer cannot be null");
+        }
+        if (maxDeliveriesPerSecond <= 0) {
+            throw new IllegalArgumentException("Max delivery rate must be positive: " + maxDeliveriesPerSecond);
+        }
+        if (timer == null) {
+            throw new IllegalArgumentException("Timer cannot be null");
+        }
+        if (flushExecutor == null) {
+            throw new IllegalArgumentException("Flush executor cannot be null");
+        }
+        this.delegate = delegate;
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / maxDeliveriesPerSecond);
+        this.timer = timer;
+        this.flushExecutor = flushExecutor;
+    }
+
+    @Override
+    public synchronized void update(Subject subject, String event, Object data) {
+        if (cancelled) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        if (scheduledFlush == null && (!delivered || now - lastDeliveryNanos >= intervalNanos)) {
+            // 不在限流窗口内，直接投递（异常交给主题的错误处理）
+            markDelivered(now);
+            delegate.update(subject, event, data);
+            return;
+        }
+
+        // 在限流窗口内，合并为该事件类型的最新值
+        PendingEvent pending = pendingEvents.get(event);
+        if (pending == null) {
+            pendingEvents.put(event, new PendingEvent(subject, data));
+        } else {
+            pending.subject = subject;
+            pending.data = data;
+            conflatedCount++;
+        }
+
+        if (scheduledFlush == null) {
+            long delay = Math.max(0, lastDeliveryNanos + intervalNanos - now);
+            scheduledFlush = timer.newTimeout(this::submitFlush, delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 到期时由时间轮调度线程调用，只把刷新交给执行器
+     */
+    private void submitFlush() {
+        try {
+            flushExecutor.execute(this::flush);
+        } catch (RuntimeException e) {
+            // 执行器拒绝时就地刷新，不丢失最新值
+            flush();
+        }
+    }
+
+    /**
+     * 将合并后的最新事件投递给被包装的观察者，在刷新执行器中调用
+     */
+    private synchronized void flush() {
+        scheduledFlush = null;
+        if (cancelled || pendingEvents.isEmpty()) {
+            return;
+        }
+
+        markDelivered(System.nanoTime());
+        Iterator<Map.Entry<String, PendingEvent>> iterator = pendingEvents.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, PendingEvent> entry = iterator.next();
+            PendingEvent pending = entry.getValue();
+            iterator.remove();
+            try {
+                delegate.update(pending.subject, entry.getKey(), pending.data);
+            } catch (Exception e) {
+                // 刷新线程中没有主题的错误处理，这里捕获异常避免影响其他事件
+                System.err.println("Error notifying throttled observer " + delegate.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void markDelivered(long now) {
+        lastDeliveryNanos = now;
+        delivered = true;
+    }
+
+    /**
+     * 立即投递尚未刷新的事件后取消节流，用于改变或取消限流，不丢失最新值
+     */
+    public synchronized void flushAndCancel() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel();
+        }
+        flush();
+        cancel();
+    }
+
+    /**
+     * 取消节流，丢弃尚未投递的事件
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+        pendingEvents.clear();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel();
+            scheduledFlush = null;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public boolean isInterestedIn(String event) {
+        return delegate.isInterestedIn(event);
+    }
+
+    /**
+     * 获取被包装的观察者
+     */
+    public Observer getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * 获取被合并（丢弃中间值）的事件数量
+     */
+    public synchronized long getConflatedCount() {
+        return conflatedCount;
+    }
+
+    /**
+     * 获取当前等待投递的事件类型数量
+     */
+    public synchronized int getPendingCount() {
+        return pendingEvents.size();
+    }
+
+    @Override
+    public String toString() {
+        return "ThrottledObserver{delegate=" + delegate.getName() + ", intervalMillis=" +
+               TimeUnit.NANOSECONDS.toMillis(intervalNanos) + "}";
+    }
+
+    /**
+     * 某个事件类型的最新待投递值
+     */
+    private static class PendingEvent {
+        private Subject subject;
+        private Object data;
+
+        PendingEvent(Subject subject, Object data) {
+            this.subject = subject;
+            this.data = data;
+        }
+    }
+}
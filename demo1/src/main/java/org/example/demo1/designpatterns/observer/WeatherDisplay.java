@@ -1,99 +1,110 @@
 package org.example.demo1.designpatterns.observer;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-
 /**
  * 观察者模式 - 具体观察者类 (Concrete Observer)
  * 
  * 天气显示器类，实现观察者接口，用于显示当前天气信息。
  * 这是一个基础的天气显示观察者。
+ * 
+ * 输出先写入可复用的缓冲区，再交给 {@link ConsoleSink} 的后台线程批量写出，
+ * 分发线程不会阻塞在控制台 I/O 上。
  */
 public class WeatherDisplay implements Observer {
     
     private final String name;
-    private WeatherStation.WeatherData currentWeatherData;
-    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    private final ConsoleSink sink;
+    private volatile WeatherStation.WeatherData currentWeatherData;
     
     public WeatherDisplay(String name) {
+        this(name, ConsoleSink.shared());
+    }
+    
+    public WeatherDisplay(String name, ConsoleSink sink) {
+        if (sink == null) {
+            throw new IllegalArgumentException("Sink cannot be null");
+        }
         this.name = name;
+        this.sink = sink;
     }
     
     @Override
     public void update(Subject subject, String event, Object data) {
-        System.out.println("\n=== " + name + " Update ===");
-        System.out.println("Event: " + event);
-        System.out.println("Time: " + dateFormat.format(new Date()));
+        StringBuilder out = sink.acquire();
+        out.append("\n=== ").append(name).append(" Update ===\n");
+        out.append("Event: ").append(event).append('\n');
+        out.append("Time: ");
+        sink.appendTime(out, System.currentTimeMillis());
+        out.append('\n');
         
         if (subject instanceof WeatherStation) {
-            WeatherStation station = (WeatherStation) subject;
-            
             switch (event) {
                 case WeatherStation.EVENT_MEASUREMENTS_CHANGED:
                     if (data instanceof WeatherStation.WeatherData) {
                         this.currentWeatherData = (WeatherStation.WeatherData) data;
-                        displayCurrentConditions();
+                        displayCurrentConditions(out);
                     }
                     break;
                     
                 case WeatherStation.EVENT_TEMPERATURE_CHANGED:
-                    System.out.println("🌡️ Temperature updated: " + data + "°C");
+                    out.append("🌡️ Temperature updated: ").append(data).append("°C\n");
                     break;
                     
                 case WeatherStation.EVENT_HUMIDITY_CHANGED:
-                    System.out.println("💧 Humidity updated: " + data + "%");
+                    out.append("💧 Humidity updated: ").append(data).append("%\n");
                     break;
                     
                 case WeatherStation.EVENT_PRESSURE_CHANGED:
-                    System.out.println("🌪️ Pressure updated: " + data + " hPa");
+                    out.append("🌪️ Pressure updated: ").append(data).append(" hPa\n");
                     break;
                     
                 case WeatherStation.EVENT_WEATHER_CHANGED:
-                    System.out.println("🌤️ Weather condition changed to: " + data);
+                    out.append("🌤️ Weather condition changed to: ").append(data).append('\n');
                     break;
                     
                 case WeatherStation.EVENT_EXTREME_WEATHER:
                     if (data instanceof WeatherStation.ExtremeWeatherData) {
-                        displayExtremeWeatherAlert((WeatherStation.ExtremeWeatherData) data);
+                        displayExtremeWeatherAlert(out, (WeatherStation.ExtremeWeatherData) data);
                     }
                     break;
                     
                 default:
-                    System.out.println("Unknown event received: " + event);
+                    out.append("Unknown event received: ").append(event).append('\n');
                     break;
             }
         }
         
-        System.out.println("=== End " + name + " Update ===\n");
+        out.append("=== End ").append(name).append(" Update ===\n\n");
+        sink.submit(out);
     }
     
     /**
      * 显示当前天气状况
      */
-    private void displayCurrentConditions() {
-        if (currentWeatherData == null) {
-            System.out.println("No weather data available");
+    private void displayCurrentConditions(StringBuilder out) {
+        WeatherStation.WeatherData weatherData = currentWeatherData;
+        if (weatherData == null) {
+            out.append("No weather data available\n");
             return;
         }
         
-        System.out.println("📊 Current Weather Conditions:");
-        System.out.println("   Location: " + currentWeatherData.getLocation());
-        System.out.println("   Temperature: " + currentWeatherData.getTemperature() + "°C");
-        System.out.println("   Humidity: " + currentWeatherData.getHumidity() + "%");
-        System.out.println("   Pressure: " + currentWeatherData.getPressure() + " hPa");
-        System.out.println("   Condition: " + currentWeatherData.getCondition());
-        System.out.println("   Comfort Level: " + getComfortLevel());
+        out.append("📊 Current Weather Conditions:\n");
+        out.append("   Location: ").append(weatherData.getLocation()).append('\n');
+        out.append("   Temperature: ").append(weatherData.getTemperature()).append("°C\n");
+        out.append("   Humidity: ").append(weatherData.getHumidity()).append("%\n");
+        out.append("   Pressure: ").append(weatherData.getPressure()).append(" hPa\n");
+        out.append("   Condition: ").append(weatherData.getCondition()).append('\n');
+        out.append("   Comfort Level: ").append(getComfortLevel()).append('\n');
     }
     
     /**
      * 显示极端天气警报
      */
-    private void displayExtremeWeatherAlert(WeatherStation.ExtremeWeatherData extremeData) {
-        System.out.println("🚨 " + extremeData.getAlertMessage());
-        System.out.println("   Temperature: " + extremeData.getTemperature() + "°C");
-        System.out.println("   Humidity: " + extremeData.getHumidity() + "%");
-        System.out.println("   Pressure: " + extremeData.getPressure() + " hPa");
-        System.out.println("   Please take necessary precautions!");
+    private void displayExtremeWeatherAlert(StringBuilder out, WeatherStation.ExtremeWeatherData extremeData) {
+        out.append("🚨 ").append(extremeData.getAlertMessage()).append('\n');
+        out.append("   Temperature: ").append(extremeData.getTemperature()).append("°C\n");
+        out.append("   Humidity: ").append(extremeData.getHumidity()).append("%\n");
+        out.append("   Pressure: ").append(extremeData.getPressure()).append(" hPa\n");
+        out.append("   Please take necessary precautions!\n");
     }
     
     /**
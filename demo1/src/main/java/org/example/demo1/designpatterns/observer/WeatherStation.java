@@ -14,6 +14,9 @@ public class WeatherStation extends AbstractSubject {
     private float pressure;         // 气压（百帕）
     private String weatherCondition; // 天气状况
     private String location;        // 位置
+    private long eventTime;         // 最近一次读数的传感器时间（毫秒）
+    private final double latitude;  // 纬度（度），未知时为NaN
+    private final double longitude; // 经度（度），未知时为NaN
     
     // 事件类型常量
     public static final String EVENT_TEMPERATURE_CHANGED = "TEMPERATURE_CHANGED";
@@ -24,11 +27,34 @@ public class WeatherStation extends AbstractSubject {
     public static final String EVENT_EXTREME_WEATHER = "EXTREME_WEATHER";
     
     public WeatherStation(String location) {
+        this(location, Double.NaN, Double.NaN);
+    }
+    
+    /**
+     * 创建带坐标的天气站
+     * 
+     * @param location 位置名称
+     * @param latitude 纬度，范围[-90, 90]
+     * @param longitude 经度，范围[-180, 180]
+     */
+    public WeatherStation(String location, double latitude, double longitude) {
+        if (!Double.isNaN(latitude) && (latitude < -90 || latitude > 90)) {
+            throw new IllegalArgumentException("Latitude out of range: " + latitude);
+        }
+        if (!Double.isNaN(longitude) && (longitude < -180 || longitude > 180)) {
+            throw new IllegalArgumentException("Longitude out of range: " + longitude);
+        }
         this.location = location;
+        this.latitude = latitude;
+        this.longitude = longitude;
         this.temperature = 0.0f;
         this.humidity = 0.0f;
         this.pressure = 1013.25f; // 标准大气压
         this.weatherCondition = "Unknown";
+        this.eventTime = System.currentTimeMillis();
+        
+        // 极端天气警报优先于常规测量事件分发
+        setEventPriority(EVENT_EXTREME_WEATHER, PriorityDispatcher.Priority.HIGH);
     }
     
     /**
@@ -39,6 +65,21 @@ public class WeatherStation extends AbstractSubject {
      * @param pressure 气压
      */
     public void setMeasurements(float temperature, float humidity, float pressure) {
+        setMeasurements(temperature, humidity, pressure, System.currentTimeMillis());
+    }
+    
+    /**
+     * 设置带传感器时间戳的天气测量数据
+     * 
+     * 网关可能缓存后批量上报，读数的到达顺序不一定与传感器时间一致，
+     * 下游基于事件时间的统计应使用这里传入的时间戳。
+     * 
+     * @param temperature 温度
+     * @param humidity 湿度
+     * @param pressure 气压
+     * @param eventTimeMillis 传感器采集时间（毫秒）
+     */
+    public void setMeasurements(float temperature, float humidity, float pressure, long eventTimeMillis) {
         boolean temperatureChanged = Math.abs(this.temperature - temperature) > 0.1f;
         boolean humidityChanged = Math.abs(this.humidity - humidity) > 1.0f;
         boolean pressureChanged = Math.abs(this.pressure - pressure) > 1.0f;
@@ -46,6 +87,7 @@ public class WeatherStation extends AbstractSubject {
         this.temperature = temperature;
         this.humidity = humidity;
         this.pressure = pressure;
+        this.eventTime = eventTimeMillis;
         
         // 根据数据更新天气状况
         updateWeatherCondition();
@@ -113,7 +155,7 @@ public class WeatherStation extends AbstractSubject {
             humidity > 95 || pressure < 980 || pressure > 1040) {
             
             ExtremeWeatherData extremeData = new ExtremeWeatherData(
-                temperature, humidity, pressure, weatherCondition
+                temperature, humidity, pressure, weatherCondition, eventTime
             );
             notifyObservers(EVENT_EXTREME_WEATHER, extremeData);
         }
@@ -125,7 +167,7 @@ public class WeatherStation extends AbstractSubject {
      * @return 天气数据
      */
     private WeatherData createWeatherData() {
-        return new WeatherData(temperature, humidity, pressure, weatherCondition, location);
+        return new WeatherData(temperature, humidity, pressure, weatherCondition, location, eventTime);
     }
     
     // Getters
@@ -134,6 +176,16 @@ public class WeatherStation extends AbstractSubject {
     public float getPressure() { return pressure; }
     public String getWeatherCondition() { return weatherCondition; }
     public String getLocation() { return location; }
+    public long getEventTime() { return eventTime; }
+    public double getLatitude() { return latitude; }
+    public double getLongitude() { return longitude; }
+    
+    /**
+     * 检查天气站是否有坐标
+     */
+    public boolean hasCoordinates() {
+        return !Double.isNaN(latitude) && !Double.isNaN(longitude);
+    }
     
     /**
      * 获取当前天气数据
@@ -172,12 +224,20 @@ public class WeatherStation extends AbstractSubject {
         private final long timestamp;
         
         public WeatherData(float temperature, float humidity, float pressure, String condition, String location) {
+            this(temperature, humidity, pressure, condition, location, System.currentTimeMillis());
+        }
+        
+        /**
+         * @param timestamp 传感器采集时间（事件时间，毫秒）
+         */
+        public WeatherData(float temperature, float humidity, float pressure, String condition, String location,
+                           long timestamp) {
             this.temperature = temperature;
             this.humidity = humidity;
             this.pressure = pressure;
             this.condition = condition;
             this.location = location;
-            this.timestamp = System.currentTimeMillis();
+            this.timestamp = timestamp;
         }
         
         // Getters
@@ -202,7 +262,11 @@ public class WeatherStation extends AbstractSubject {
         private final String alertMessage;
         
         public ExtremeWeatherData(float temperature, float humidity, float pressure, String condition) {
-            super(temperature, humidity, pressure, condition, "");
+            this(temperature, humidity, pressure, condition, System.currentTimeMillis());
+        }
+        
+        public ExtremeWeatherData(float temperature, float humidity, float pressure, String condition, long timestamp) {
+            super(temperature, humidity, pressure, condition, "", timestamp);
             this.alertMessage = generateAlertMessage();
         }
         
@@ -0,0 +1,314 @@
+package org.example.demo1.designpatterns.observer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * 观察者模式 - 事件时间窗口统计显示器 (Concrete Observer)
+ *
+ * 按传感器事件时间（而不是到达时间）把读数划分到固定大小的滚动窗口中统计。
+ * 每个站点维护独立的水位线（已见最大事件时间 - 最大乱序时间），
+ * 水位线越过窗口结束时间时输出窗口结果；在允许的迟到时间内到达的读数
+ * 会更新窗口并重新输出，超过迟到时间的读数被丢弃并计数。
+ *
+ * 窗口在水位线越过 "结束时间 + 允许迟到时间" 后被增量清理，
+ * 因此每个站点保留的窗口数量是有界的。站点数量同样有上限，超过时淘汰最久没有访问的站点，
+ * 被淘汰站点中尚未输出的窗口先输出。
+ */
+public class WindowedStatisticsDisplay implements Observer {
+
+    // 每个站点最多保留的窗口数，防止异常时间戳导致状态无限增长
+    private static final int MAX_WINDOWS_PER_STATION = 1024;
+
+    // 最多跟踪的站点数，站点编号不断变化时状态不会无限增长
+    static final int MAX_STATIONS = 4096;
+
+    // 保留的最近窗口结果数量
+    private static final int MAX_RECENT_RESULTS = 1024;
+
+    private final String name;
+    private final long windowSizeMillis;
+    private final long maxOutOfOrdernessMillis;
+    private final long allowedLatenessMillis;
+    // 按最近访问排序，最久没有访问的站点在头部
+    private final Map<String, StationState> stations = new LinkedHashMap<>(16, 0.75f, true);
+    private final Deque<WindowResult> recentResults = new ArrayDeque<>();
+    private Consumer<WindowResult> resultListener = result -> { };
+
+    private long droppedLateCount;
+
+    public WindowedStatisticsDisplay(String name, long windowSizeMillis, long maxOutOfOrdernessMillis,
+                                     long allowedLatenessMillis) {
+        if (windowSizeMillis <= 0) {
+            throw new IllegalArgumentException("Window size must be positive: " + windowSizeMillis);
+        }
+        if (maxOutOfOrdernessMillis < 0 || allowedLatenessMillis < 0) {
+            throw new IllegalArgumentException("Out-of-orderness and lateness cannot be negative");
+        }
+        this.name = name;
+        this.windowSizeMillis = windowSizeMillis;
+        this.maxOutOfOrdernessMillis = maxOutOfOrdernessMillis;
+        this.allowedLatenessMillis = allowedLatenessMillis;
+    }
+
+    @Override
+    public synchronized void update(Subject subject, String event, Object data) {
+        if (!(data instanceof WeatherStation.WeatherData)) {
+            return;
+        }
+
+        WeatherStation.WeatherData weatherData = (WeatherStation.WeatherData) data;
+        StationState state = stations.get(weatherData.getLocation());
+        if (state == null) {
+            if (stations.size() >= MAX_STATIONS) {
+                evictEldestStation();
+            }
+            state = new StationState(weatherData.getLocation());
+            stations.put(state.location, state);
+        }
+        long eventTime = weatherData.getTimestamp();
+        long windowStart = Math.floorDiv(eventTime, windowSizeMillis) * windowSizeMillis;
+        long windowEnd = windowStart + windowSizeMillis;
+
+        // 超过允许迟到时间的读数直接丢弃
+        if (windowEnd + allowedLatenessMillis <= state.watermark) {
+            droppedLateCount++;
+            return;
+        }
+
+        Window window = state.windows.get(windowStart);
+        if (window == null) {
+            if (state.windows.size() >= MAX_WINDOWS_PER_STATION) {
+                // 窗口过多时淘汰最早的窗口，已输出过的窗口不再重复输出
+                Window evicted = state.windows.pollFirstEntry().getValue();
+                if (!evicted.fired) {
+                    emit(state, evicted, false);
+                }
+            }
+            window = new Window(windowStart);
+            state.windows.put(windowStart, window);
+        }
+        window.add(weatherData);
+
+        if (window.fired) {
+            // 已输出过的窗口收到迟到读数，重新输出更新后的结果
+            emit(state, window, true);
+        }
+
+        advanceWatermark(state, eventTime - maxOutOfOrdernessMillis);
+    }
+
+    @Override
+    public boolean isInterestedIn(String event) {
+        return WeatherStation.EVENT_MEASUREMENTS_CHANGED.equals(event);
+    }
+
+    /**
+     * 推进站点水位线，输出到期的窗口并增量清理过期窗口
+     */
+    private void advanceWatermark(StationState state, long candidate) {
+        if (candidate <= state.watermark) {
+            return;
+        }
+        state.watermark = candidate;
+
+        for (Window window : state.windows.values()) {
+            if (window.start + windowSizeMillis > state.watermark) {
+                break;
+            }
+            if (!window.fired) {
+                window.fired = true;
+                emit(state, window, false);
+            }
+        }
+
+        // 清理已超过允许迟到时间的窗口，TreeMap 按开始时间有序，只需检查头部
+        while (!state.windows.isEmpty()) {
+            Window first = state.windows.firstEntry().getValue();
+            if (first.start + windowSizeMillis + allowedLatenessMillis > state.watermark) {
+                break;
+            }
+            state.windows.pollFirstEntry();
+        }
+    }
+
+    /**
+     * 淘汰最久没有访问的站点，尚未输出的窗口先输出
+     */
+    private void evictEldestStation() {
+        Iterator<StationState> iterator = stations.values().iterator();
+        StationState eldest = iterator.next();
+        iterator.remove();
+        for (Window window : eldest.windows.values()) {
+            if (!window.fired) {
+                emit(eldest, window, false);
+            }
+        }
+    }
+
+    private void emit(StationState state, Window window, boolean lateUpdate) {
+        WindowResult result = window.toResult(state.location, windowSizeMillis, lateUpdate);
+        recentResults.add(result);
+        if (recentResults.size() > MAX_RECENT_RESULTS) {
+            recentResults.pollFirst();
+        }
+        resultListener.accept(result);
+    }
+
+    /**
+     * 设置窗口结果监听器
+     */
+    public synchronized void setResultListener(Consumer<WindowResult> resultListener) {
+        this.resultListener = resultListener != null ? resultListener : result -> { };
+    }
+
+    /**
+     * 获取最近输出的窗口结果
+     */
+    public synchronized List<WindowResult> getRecentResults() {
+        return new ArrayList<>(recentResults);
+    }
+
+    /**
+     * 获取站点当前的水位线，未知站点返回Long.MIN_VALUE
+     */
+    public synchronized long getWatermark(String location) {
+        StationState state = stations.get(location);
+        return state != null ? state.watermark : Long.MIN_VALUE;
+    }
+
+    /**
+     * 获取站点当前保留的窗口数量
+     */
+    public synchronized int getRetainedWindowCount(String location) {
+        StationState state = stations.get(location);
+        return state != null ? state.windows.size() : 0;
+    }
+
+    /**
+     * 获取当前跟踪的站点数量
+     */
+    public synchronized int getStationCount() {
+        return stations.size();
+    }
+
+    /**
+     * 获取因迟到过多而被丢弃的读数数量
+     */
+    public synchronized long getDroppedLateCount() {
+        return droppedLateCount;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return "WindowedStatisticsDisplay{name='" + name + "', windowSize=" + windowSizeMillis + "ms}";
+    }
+
+    /**
+     * 单个站点的水位线和窗口状态
+     */
+    private static class StationState {
+        private final String location;
+        private final TreeMap<Long, Window> windows = new TreeMap<>();
+        private long watermark = Long.MIN_VALUE;
+
+        StationState(String location) {
+            this.location = location;
+        }
+    }
+
+    /**
+     * 单个窗口的增量聚合状态
+     */
+    private static class Window {
+        private final long start;
+        private int count;
+        private float minTemperature = Float.MAX_VALUE;
+        private float maxTemperature = -Float.MAX_VALUE;
+        private double temperatureSum;
+        private double humiditySum;
+        private double pressureSum;
+        private boolean fired;
+
+        Window(long start) {
+            this.start = start;
+        }
+
+        void add(WeatherStation.WeatherData data) {
+            count++;
+            minTemperature = Math.min(minTemperature, data.getTemperature());
+            maxTemperature = Math.max(maxTemperature, data.getTemperature());
+            temperatureSum += data.getTemperature();
+            humiditySum += data.getHumidity();
+            pressureSum += data.getPressure();
+        }
+
+        WindowResult toResult(String location, long size, boolean lateUpdate) {
+            return new WindowResult(location, start, start + size, count, minTemperature, maxTemperature,
+                                    (float) (temperatureSum / count), (float) (humiditySum / count),
+                                    (float) (pressureSum / count), lateUpdate);
+        }
+    }
+
+    /**
+     * 窗口统计结果
+     */
+    public static class WindowResult {
+        private final String location;
+        private final long windowStart;
+        private final long windowEnd;
+        private final int count;
+        private final float minTemperature;
+        private final float maxTemperature;
+        private final float averageTemperature;
+        private final float averageHumidity;
+        private final float averagePressure;
+        private final boolean lateUpdate;
+
+        public WindowResult(String location, long windowStart, long windowEnd, int count,
+                            float minTemperature, float maxTemperature, float averageTemperature,
+                            float averageHumidity, float averagePressure, boolean lateUpdate) {
+            this.location = location;
+            this.windowStart = windowStart;
+            this.windowEnd = windowEnd;
+            this.count = count;
+            this.minTemperature = minTemperature;
+            this.maxTemperature = maxTemperature;
+            this.averageTemperature = averageTemperature;
+            this.averageHumidity = averageHumidity;
+            this.averagePressure = averagePressure;
+            this.lateUpdate = lateUpdate;
+        }
+
+        // Getters
+        public String getLocation() { return location; }
+        public long getWindowStart() { return windowStart; }
+        public long getWindowEnd() { return windowEnd; }
+        public int getCount() { return count; }
+        public float getMinTemperature() { return minTemperature; }
+        public float getMaxTemperature() { return maxTemperature; }
+        public float getAverageTemperature() { return averageTemperature; }
+        public float getAverageHumidity() { return averageHumidity; }
+        public float getAveragePressure() { return averagePressure; }
+        public boolean isLateUpdate() { return lateUpdate; }
+
+        @Override
+        public String toString() {
+            return String.format("WindowResult{location='%s', window=[%d,%d), count=%d, temp=%.1f-%.1f°C, avg=%.1f°C%s}",
+                               location, windowStart, windowEnd, count, minTemperature, maxTemperature,
+                               averageTemperature, lateUpdate ? ", late" : "");
+        }
+    }
+}
@@ -2,8 +2,39 @@ package org.example.demo1.designpatterns.composite;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.io.TempDir;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  * 组合模式测试类
  */
@@ -205,4 +236,1151 @@ public class CompositeTest {
         assertEquals("gz", multiDot.getExtension());
         assertEquals("", hiddenFile.getExtension()); // 隐藏文件没有扩展名
     }
+    
+    @Test
+    public void testCachedSizePropagatesToAncestors() {
+        // 构建一条较深的目录链
+        Directory current = documents;
+        for (int i = 0; i < 50; i++) {
+            Directory next = new Directory("level" + i);
+            current.add(next);
+            current = next;
+        }
+        File deep = new File("deep.txt", 100);
+        current.add(deep);
+        
+        assertEquals(1636, root.getSize());
+        assertEquals(612, documents.getSize());
+        assertEquals(current, deep.getParent());
+        
+        // 文件内容变化沿祖先链传播
+        deep.write("0123456789");
+        assertEquals(10, current.getSize());
+        assertEquals(1546, root.getSize());
+        readme.setContent("");
+        assertEquals(522, root.getSize());
+        
+        // 移动子树：从原目录扣除，加到新目录
+        Directory level0 = (Directory) documents.getChild(1);
+        root.add(level0);
+        assertEquals(root, level0.getParent());
+        assertEquals(512, documents.getSize());
+        assertEquals(522, root.getSize());
+        
+        root.remove(level0);
+        assertNull(level0.getParent());
+        assertEquals(512, root.getSize());
+        
+        // 清空目录后父目录大小同步
+        documents.clear();
+        assertEquals(0, root.getSize());
+        assertNull(config.getParent());
+    }
+    
+    @Test
+    public void testAncestorAdditionPrevention() {
+        Directory child = new Directory("child");
+        documents.add(child);
+        
+        assertThrows(IllegalArgumentException.class, () -> child.add(root));
+        assertThrows(IllegalArgumentException.class, () -> child.add(documents));
+        assertEquals(root, documents.getParent());
+    }
+    
+    @Test
+    public void testPathAndNameIndex() {
+        // 建立索引后再修改树，索引应增量更新
+        assertEquals(config, root.find("config.txt"));
+        
+        Directory src = new Directory("src");
+        root.add(src);
+        File copy = new File(new String("config.txt"), 10);
+        src.add(copy);
+        
+        List<FileSystemComponent> all = root.findAll("config.txt");
+        assertEquals(2, all.size());
+        assertTrue(all.contains(config) && all.contains(copy));
+        // 同名节点共享驻留的名称字符串
+        assertSame(config.getName(), copy.getName());
+        
+        // 子目录上的查找只返回自己子树中的结果
+        assertEquals(List.of(copy), src.findAll("config.txt"));
+        
+        assertEquals(List.of(config), root.findByPath("/Documents/config.txt"));
+        assertEquals(List.of(config), documents.findByPath("config.txt"));
+        assertEquals(List.of(copy), documents.findByPath("/src/config.txt"));
+        assertEquals("/src/config.txt", copy.getPath());
+        assertEquals("/", root.getPath());
+        assertTrue(root.findByPath("/missing/config.txt").isEmpty());
+        
+        // 移动子树后路径随之变化
+        documents.add(src);
+        assertEquals("/Documents/src/config.txt", copy.getPath());
+        assertEquals(List.of(copy), root.findByPath("/Documents/src/config.txt"));
+        assertTrue(root.findByPath("/src/config.txt").isEmpty());
+        
+        // 移除后不再能找到，移出的子树可以独立查找
+        documents.remove(src);
+        assertEquals(List.of(config), root.findAll("config.txt"));
+        assertEquals(copy, src.find("config.txt"));
+        assertEquals(List.of(copy), src.findByPath("/config.txt"));
+        
+        documents.clear();
+        assertNull(root.find("config.txt"));
+        assertEquals(readme, root.find("README.md"));
+    }
+    
+    @Test
+    public void testIndexKeepsSubtreeOrder() {
+        // 整棵子树挂载时同名节点按先序（加入子树的顺序）进入索引
+        Directory docs = new Directory("docs");
+        Directory a = new Directory("a");
+        Directory b = new Directory("b");
+        File first = new File("notes.txt", 1);
+        File second = new File("notes.txt", 2);
+        docs.add(a);
+        docs.add(b);
+        a.add(first);
+        b.add(second);
+        
+        assertNull(root.find("notes.txt"));
+        root.add(docs);
+        assertEquals(first, root.find("notes.txt"));
+        assertEquals(List.of(first, second), root.findAll("notes.txt"));
+        
+        // 移出后重新挂载，以及首次建立索引时顺序相同
+        root.remove(docs);
+        root.add(docs);
+        assertEquals(List.of(first, second), root.findAll("notes.txt"));
+        assertEquals(List.of(first, second), docs.findAll("notes.txt"));
+    }
+    
+    @Test
+    public void testFindFollowsTreeOrderWithPrebuiltIndex() {
+        Directory tree = new Directory("tree");
+        Directory left = new Directory("left");
+        Directory right = new Directory("right");
+        tree.add(left);
+        tree.add(right);
+        
+        // 先建立索引，再按与树中位置相反的顺序加入同名节点
+        assertNull(tree.find("x"));
+        File later = new File("x", 1);
+        File earlier = new File("x", 2);
+        right.add(later);
+        left.add(earlier);
+        
+        // 结果与深度优先查找一致，与索引建立的时机无关
+        assertEquals(earlier, tree.find("x"));
+        assertEquals(List.of(earlier, later), tree.findAll("x"));
+        assertEquals(List.of(later), right.findAll("x"));
+        assertEquals(earlier, left.find("x"));
+    }
+    
+    @Test
+    public void testParallelTraversal() {
+        // 构建一棵较大的树：20 个目录，每个目录 3 层，每层 50 个文件
+        Directory big = new Directory("big");
+        int expectedFiles = 0;
+        long expectedSize = 0;
+        for (int d = 0; d < 20; d++) {
+            Directory current = new Directory("dir" + d);
+            big.add(current);
+            for (int level = 0; level < 3; level++) {
+                for (int f = 0; f < 50; f++) {
+                    current.add(new File("f" + f + (f % 2 == 0 ? ".java" : ".txt"), f + 1));
+                    expectedFiles++;
+                    expectedSize += f + 1;
+                }
+                Directory next = new Directory("sub" + level);
+                current.add(next);
+                current = next;
+            }
+        }
+        assertEquals(expectedFiles + 80, big.getDescendantCount());
+        
+        Directory.DirectoryStats stats = big.getStats();
+        assertEquals(expectedFiles, stats.getTotalFiles());
+        assertEquals(80, stats.getTotalDirectories());
+        assertEquals(expectedSize, stats.getTotalSize());
+        assertEquals(4, stats.getMaxDepth());
+        assertEquals(expectedFiles / 2, big.getFileCount("java"));
+        
+        // 很小的阈值强制拆分，结果与顺序遍历一致
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            TreeTraversal.Reduction<long[]> sizeAndDepth = new TreeTraversal.Reduction<long[]>() {
+                @Override
+                public long[] identity() {
+                    return new long[2];
+                }
+                
+                @Override
+                public long[] accept(long[] acc, FileSystemComponent node, int depth) {
+                    if (node instanceof File) {
+                        acc[0] += node.getSize();
+                    }
+                    acc[1] = Math.max(acc[1], depth);
+                    return acc;
+                }
+                
+                @Override
+                public long[] combine(long[] left, long[] right) {
+                    left[0] += right[0];
+                    left[1] = Math.max(left[1], right[1]);
+                    return left;
+                }
+            };
+            long[] parallel = TreeTraversal.reduce(big, sizeAndDepth, pool, 7);
+            long[] sequential = TreeTraversal.reduce(big, sizeAndDepth, pool, Integer.MAX_VALUE);
+            assertEquals(big.getSize(), parallel[0]);
+            assertArrayEquals(sequential, parallel);
+            assertEquals(4, parallel[1]);
+        } finally {
+            pool.shutdown();
+        }
+        
+        // 移除子树后后代数量同步
+        big.remove(big.getChild(0));
+        assertEquals((expectedFiles + 80) * 19 / 20, big.getDescendantCount());
+    }
+    
+    @Test
+    public void testParallelTraversalOfDeepChain() {
+        // 自底向上构建一条很深的单目录链，每层都超过阈值，拆分时沿链循环而不是递归
+        int depth = 50_000;
+        Directory current = new Directory("level" + depth);
+        current.add(new File("leaf.txt", 42));
+        for (int level = depth - 1; level > 0; level--) {
+            Directory parent = new Directory("level" + level);
+            parent.add(current);
+            current = parent;
+        }
+        Directory chain = new Directory("chain");
+        chain.add(current);
+        
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            assertEquals(depth + 1, TreeTraversal.reduce(chain, new TreeTraversal.Reduction<long[]>() {
+                @Override
+                public long[] identity() {
+                    return new long[1];
+                }
+                
+                @Override
+                public long[] accept(long[] acc, FileSystemComponent node, int nodeDepth) {
+                    acc[0] = Math.max(acc[0], nodeDepth);
+                    return acc;
+                }
+                
+                @Override
+                public long[] combine(long[] left, long[] right) {
+                    left[0] = Math.max(left[0], right[0]);
+                    return left;
+                }
+            }, pool, 1)[0]);
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    public void testFileSystemScanner(@TempDir Path tempDir) throws Exception {
+        Path project = Files.createDirectories(tempDir.resolve("project"));
+        Path src = Files.createDirectories(project.resolve("src/main"));
+        Files.writeString(project.resolve("README.md"), "# Scanned");
+        Files.writeString(src.resolve("App.java"), "class App {}");
+        for (int i = 0; i < 30; i++) {
+            Files.writeString(src.resolve("data" + i + ".txt"), "x".repeat(i));
+        }
+        // 指回祖先目录的符号链接会形成环
+        boolean linked = true;
+        try {
+            Files.createSymbolicLink(src.resolve("loop"), project);
+        } catch (UnsupportedOperationException | IOException e) {
+            linked = false;
+        }
+        
+        List<FileSystemScanner.ScanProgress> progress = new CopyOnWriteArrayList<>();
+        FileSystemScanner scanner = new FileSystemScanner(ForkJoinPool.commonPool(), true, 10,
+                                                          progress::add);
+        Directory scanned = scanner.scan(project);
+        
+        assertEquals("project", scanned.getName());
+        assertEquals(9 + 12 + 435, scanned.getSize());
+        assertEquals(32, scanned.getFileCount(null));
+        assertTrue(progress.size() >= 3);
+        FileSystemScanner.ScanProgress last = progress.get(progress.size() - 1);
+        assertTrue(last.isFinished());
+        assertEquals(32, last.getFiles());
+        assertEquals(3, last.getDirectories());
+        assertEquals(linked ? 1 : 0, last.getSkippedLoops());
+        
+        // 内容在首次读取时才加载
+        File app = (File) scanned.findByPath("src/main/App.java").get(0);
+        assertFalse(app.isContentLoaded());
+        assertEquals("class App {}", app.getContent());
+        assertTrue(app.isContentLoaded());
+        
+        // 不跟随链接时，链接本身作为文件
+        if (linked) {
+            Directory withoutLinks = new FileSystemScanner().scan(project);
+            File link = (File) withoutLinks.findByPath("src/main/loop").get(0);
+            assertEquals(project.toString(), link.getContent());
+        }
+        
+        assertThrows(IOException.class, () -> scanner.scan(project.resolve("README.md")));
+    }
+    
+    @Test
+    public void testCompactTreeViews() {
+        CompactTree tree = CompactTree.from(root);
+        CompactTree.Node compactRoot = tree.root();
+        
+        assertEquals("root", compactRoot.getName());
+        assertEquals(root.getSize(), compactRoot.getSize());
+        assertEquals(2, compactRoot.getChildCount());
+        assertEquals("Documents", compactRoot.getChild(0).getName());
+        
+        FileSystemComponent compactConfig = compactRoot.find("config.txt");
+        assertNotNull(compactConfig);
+        assertEquals(512, compactConfig.getSize());
+        assertEquals("File (TXT)", compactConfig.getType());
+        assertEquals("/Documents/config.txt", compactConfig.getPath());
+        assertNull(compactRoot.find("missing"));
+        // 视图按节点比较，重复查找得到相等的视图
+        assertEquals(compactConfig, compactRoot.find("config.txt"));
+        
+        // 通过组件接口添加和删除，大小沿父节点传播
+        CompactTree.Node documentsNode = (CompactTree.Node) compactRoot.getChild(0);
+        documentsNode.add(new File("数据.csv", 100));
+        assertEquals(612, documentsNode.getSize());
+        assertEquals(1636, compactRoot.getSize());
+        assertEquals("csv", ((CompactTree.Node) compactRoot.find("数据.csv")).getExtension());
+        
+        documentsNode.remove(documentsNode.getChild(0));
+        assertEquals(100, documentsNode.getSize());
+        assertEquals(1124, compactRoot.getSize());
+        assertNull(compactRoot.find("config.txt"));
+        assertThrows(UnsupportedOperationException.class,
+                     () -> tree.addFile(((CompactTree.Node) compactRoot.getChild(1)).getIndex(), "x", 1));
+        
+        // 大量节点直接通过下标构建
+        CompactTree big = new CompactTree("big", 16);
+        int directory = big.addDirectory(0, "dir");
+        for (int i = 0; i < 100_000; i++) {
+            big.addFile(directory, "file" + i + ".log", i % 100);
+        }
+        assertEquals(100_002, big.getNodeCount());
+        assertEquals(100_000L / 100 * 4950, big.root().getSize());
+        assertEquals("file99999.log", big.root().find("file99999.log").getName());
+        
+        // 紧凑视图与目录使用同一个渲染器：文件图标按扩展名选择，深度窗口同样生效
+        CompactTree code = new CompactTree("code");
+        int src = code.addDirectory(0, "src");
+        code.addFile(src, "App.java", 10);
+        StringWriter rendered = new StringWriter();
+        assertEquals(3, TreeRenderer.render(code.root(), rendered, 0, 0, Long.MAX_VALUE, TreeRenderer.UNLIMITED));
+        assertEquals("📁 code/ (1 items, 10 bytes total)\n" +
+                     "  📁 src/ (1 items, 10 bytes total)\n" +
+                     "    💻 App.java (10 bytes)\n", rendered.toString());
+        StringWriter shallow = new StringWriter();
+        assertEquals(1, TreeRenderer.render(code.root(), shallow, 0, 0, Long.MAX_VALUE, 0));
+        assertEquals("📁 code/ (1 items, 10 bytes total)\n  ... (1 items)\n", shallow.toString());
+    }
+    
+    @Test
+    public void testTreeRendererWindows() {
+        Directory root = new Directory("root");
+        Directory src = new Directory("src");
+        Directory limited = new Directory("limited", 1);
+        root.add(src);
+        root.add(limited);
+        src.add(new File("Main.java", 100, "public class Main {}"));
+        src.add(new File("Util.java", 50));
+        limited.add(new File("a.txt", 10));
+        limited.add(new File("b.txt", 20));
+        
+        // 完整渲染与原来的逐行格式一致，目录自身的 maxDepth 仍然生效
+        StringWriter full = new StringWriter();
+        assertEquals(5, TreeRenderer.render(root, full, 0, 0, Long.MAX_VALUE, TreeRenderer.UNLIMITED));
+        assertEquals(
+            "📁 root/ (2 items, 180 bytes total)\n" +
+            "  📁 src/ (2 items, 150 bytes total)\n" +
+            "    💻 Main.java (100 bytes)\n" +
+            "      Content: public class Main {}\n" +
+            "    💻 Util.java (50 bytes)\n" +
+            "  📁 limited/ (2 items, 30 bytes total)\n" +
+            "    ... (2 items)\n", full.toString());
+        
+        // 分页：跳过前两项，只渲染两项
+        StringWriter page = new StringWriter();
+        assertEquals(2, TreeRenderer.render(root, page, 0, 2, 2, TreeRenderer.UNLIMITED));
+        assertTrue(page.toString().startsWith("    💻 Main.java"));
+        assertTrue(page.toString().contains("Util.java"));
+        assertFalse(page.toString().contains("limited"));
+        
+        // 深度窗口：只展开一层
+        StringWriter shallow = new StringWriter();
+        assertEquals(3, TreeRenderer.render(root, shallow, 0, 0, Long.MAX_VALUE, 1));
+        assertTrue(shallow.toString().contains("  📁 src/ (2 items, 150 bytes total)\n    ... (2 items)\n"));
+        
+        // 惰性迭代可以提前停止
+        Iterator<TreeRenderer.Entry> entries = TreeRenderer.iterate(root, 0, TreeRenderer.UNLIMITED);
+        assertSame(root, entries.next().getComponent());
+        TreeRenderer.Entry second = entries.next();
+        assertSame(src, second.getComponent());
+        assertEquals(1, second.getDepth());
+        
+        // 缩进前缀缓存复用，超出初始容量时扩展
+        assertEquals("      ", TreeRenderer.indent(3));
+        assertSame(TreeRenderer.indent(3), TreeRenderer.indent(3));
+        assertEquals(200, TreeRenderer.indent(100).length());
+    }
+    
+    @Test
+    public void testLazyDirectoryWorkingSet(@TempDir Path tempDir) throws Exception {
+        // 虚拟的层次结构：每层 10 个子目录和 10 个 10 字节的文件，共 6 层目录
+        LazyDirectory.ChildLoader loader = new LazyDirectory.ChildLoader() {
+            @Override
+            public List<LazyDirectory.ChildInfo> list(Object key) {
+                int depth = (Integer) key;
+                List<LazyDirectory.ChildInfo> infos = new ArrayList<>();
+                if (depth < 6) {
+                    for (int i = 0; i < 10; i++) {
+                        infos.add(new LazyDirectory.ChildInfo("d" + i, depth + 1, true, virtualSize(depth + 1),
+                                                              depth + 1 < 6 ? 20 : 10, virtualCount(depth + 1)));
+                    }
+                }
+                for (int i = 0; i < 10; i++) {
+                    infos.add(new LazyDirectory.ChildInfo("f" + i + ".txt", null, false, 10, 0, 0));
+                }
+                return infos;
+            }
+            
+            @Override
+            public String read(Object key) {
+                return "0123456789";
+            }
+        };
+        
+        LazyDirectory root = new LazyDirectory(loader,
+            new LazyDirectory.ChildInfo("root", 0, true, virtualSize(0), 20, virtualCount(0)), 100);
+        
+        // 聚合信息来自元数据，不需要加载
+        assertEquals(virtualSize(0), root.getSize());
+        assertEquals(virtualCount(0), root.getDescendantCount());
+        assertEquals(20, root.getChildCount());
+        assertFalse(root.isLoaded());
+        assertEquals(0, root.getLoadCount());
+        
+        // 按路径查找只加载路径上的目录
+        List<FileSystemComponent> found = root.findByPath("/d3/d1/d4/f2.txt");
+        assertEquals(1, found.size());
+        assertEquals("/d3/d1/d4/f2.txt", found.get(0).getPath());
+        assertEquals("0123456789", ((File) found.get(0)).getContent());
+        assertEquals(4, root.getLoadCount());
+        assertEquals(80, root.getMaterializedCount());
+        
+        // 浏览另一个分支，冷分支被回收，工作集不超过容量
+        Directory deep = (Directory) root.findByPath("d5/d5/d5/d5/d5").get(0);
+        assertEquals(20, deep.getChildCount());
+        assertTrue(root.getEvictionCount() > 0);
+        assertTrue(root.getMaterializedCount() <= 100);
+        LazyDirectory cold = (LazyDirectory) root.findByPath("d3").get(0);
+        assertFalse(cold.isLoaded());
+        assertEquals(virtualSize(1), cold.getSize());
+        assertEquals(virtualSize(0), root.getSize());
+        
+        // 回收后可以重新加载
+        assertEquals(1, root.findByPath("/d3/d1/d4/f2.txt").size());
+        assertTrue(cold.isLoaded());
+        
+        // 修改过的目录不再被回收，大小变化传播到根目录
+        LazyDirectory modified = (LazyDirectory) root.findByPath("d7/d7").get(0);
+        modified.add(new File("new.txt", 5));
+        for (int i = 0; i < 10; i++) {
+            root.findByPath("d" + i + "/d" + i + "/d" + i);
+        }
+        assertTrue(modified.isLoaded());
+        assertEquals(1, root.findAll("new.txt").size());
+        assertEquals(virtualSize(0) + 5, root.getSize());
+        
+        // 本地文件系统加载器：目录大小未知，加载后变为精确值
+        Files.createDirectories(tempDir.resolve("a/b"));
+        Files.writeString(tempDir.resolve("a/b/note.txt"), "hello");
+        Files.writeString(tempDir.resolve("top.md"), "# top");
+        LazyDirectory disk = new LazyDirectory(tempDir, 10);
+        assertEquals(0, disk.getSize());
+        FileSystemComponent note = disk.findByPath("a/b/note.txt").get(0);
+        assertEquals("hello", ((File) note).getContent());
+        assertEquals(10, disk.getSize());
+        assertEquals(4, disk.getDescendantCount());
+    }
+    
+    private static long virtualSize(int depth) {
+        return depth == 6 ? 100 : 100 + 10 * virtualSize(depth + 1);
+    }
+    
+    private static long virtualCount(int depth) {
+        return depth == 6 ? 10 : 20 + 10 * virtualCount(depth + 1);
+    }
+    
+    @Test
+    public void testTreeSnapshotRoundTrip(@TempDir Path tempDir) throws Exception {
+        Directory root = new Directory("root");
+        Directory docs = new Directory("文档");
+        Directory empty = new Directory("empty");
+        root.add(docs);
+        root.add(empty);
+        root.add(new File("readme.md", 12, "# 说明 readme"));
+        docs.add(new File("a.txt", 100, "alpha"));
+        docs.add(new File("b.txt", 200));
+        
+        Path path = tempDir.resolve("tree.snap");
+        TreeSnapshot.save(root, path);
+        TreeSnapshot snapshot = TreeSnapshot.open(path);
+        
+        // 节点表按广度优先顺序排列，子节点连续
+        assertEquals(6, snapshot.getNodeCount());
+        assertEquals(3, snapshot.getFileCount());
+        assertEquals("root", snapshot.getName(snapshot.root()));
+        assertEquals(312, snapshot.getSize(0));
+        assertEquals(5, snapshot.getDescendantCount(0));
+        assertEquals(3, snapshot.getChildCount(0));
+        assertEquals(1, snapshot.getFirstChild(0));
+        assertEquals("文档", snapshot.getName(1));
+        assertTrue(snapshot.isDirectory(1));
+        assertEquals(-1, snapshot.getFirstChild(2));
+        
+        int a = snapshot.findByPath("/文档/a.txt");
+        assertEquals(1, snapshot.getParent(a));
+        assertEquals("alpha", snapshot.readContent(a));
+        assertEquals("# 说明 readme", snapshot.readContent(snapshot.findByPath("readme.md")));
+        assertEquals("", snapshot.readContent(snapshot.findByPath("文档/b.txt")));
+        assertEquals(-1, snapshot.findByPath("missing"));
+        
+        // 作为延迟加载目录使用，聚合值来自节点表
+        LazyDirectory restored = snapshot.asDirectory(100);
+        assertEquals(312, restored.getSize());
+        assertEquals(5, restored.getDescendantCount());
+        assertFalse(restored.isLoaded());
+        File restoredA = (File) restored.findByPath("文档/a.txt").get(0);
+        assertEquals(100, restoredA.getSize());
+        assertEquals("alpha", restoredA.getContent());
+        assertEquals(2, restored.getStats().getTotalDirectories());
+        
+        // 覆盖保存后重新打开
+        docs.add(new File("c.txt", 1, "c"));
+        TreeSnapshot.save(root, path);
+        assertEquals(7, TreeSnapshot.open(path).getNodeCount());
+        
+        Path invalid = tempDir.resolve("invalid.snap");
+        Files.write(invalid, new byte[128]);
+        assertThrows(IOException.class, () -> TreeSnapshot.open(invalid));
+    }
+    
+    @Test
+    public void testTreeSnapshotOfLazyTreeLargerThanCache(@TempDir Path tempDir) throws Exception {
+        // 磁盘上 5 × 4 个目录，每个叶子目录 3 个文件；缓存只能保留 5 个子组件，保存过程中会不断回收
+        Path tree = Files.createDirectory(tempDir.resolve("tree"));
+        long totalBytes = 0;
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 4; j++) {
+                Path leaf = Files.createDirectories(tree.resolve("d" + i).resolve("e" + j));
+                for (int k = 0; k < 3; k++) {
+                    String content = "file " + i + j + k + "x".repeat(k);
+                    Files.writeString(leaf.resolve("f" + k + ".txt"), content);
+                    totalBytes += content.length();
+                }
+            }
+        }
+        LazyDirectory lazy = new LazyDirectory(tree, 5);
+        
+        Path path = tempDir.resolve("lazy.snap");
+        TreeSnapshot.save(lazy, path);
+        TreeSnapshot snapshot = TreeSnapshot.open(path);
+        
+        assertEquals(1 + 5 + 20 + 60, snapshot.getNodeCount());
+        assertEquals(60, snapshot.getFileCount());
+        assertEquals(totalBytes, snapshot.getSize(0));
+        assertEquals(85, snapshot.getDescendantCount(0));
+        // 每个目录的聚合值与其子节点一致，子节点的父下标指回该目录
+        for (int node = 0; node < snapshot.getNodeCount(); node++) {
+            if (!snapshot.isDirectory(node)) {
+                continue;
+            }
+            long size = 0;
+            long descendants = 0;
+            int first = snapshot.getFirstChild(node);
+            for (int child = first; child < first + snapshot.getChildCount(node); child++) {
+                assertEquals(node, snapshot.getParent(child));
+                size += snapshot.getSize(child);
+                descendants += 1 + snapshot.getDescendantCount(child);
+            }
+            assertEquals(size, snapshot.getSize(node));
+            assertEquals(descendants, snapshot.getDescendantCount(node));
+        }
+        assertEquals("file 432xx", snapshot.readContent(snapshot.findByPath("/d4/e3/f2.txt")));
+        assertEquals("file 000", snapshot.readContent(snapshot.findByPath("/d0/e0/f0.txt")));
+    }
+    
+    @Test
+    public void testContentStoreDeduplication() {
+        ContentStore store = new ContentStore();
+        SplittableRandom random = new SplittableRandom(42);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 200_000) {
+            text.append("line ").append(random.nextInt(1_000_000)).append(" 数据\n");
+        }
+        String body = text.toString();
+        
+        // 相同内容只保存一份
+        Directory root = new Directory("root");
+        for (int i = 0; i < 50; i++) {
+            root.add(new File("copy" + i + ".txt", body.length(), store.put(body)));
+        }
+        long single = body.getBytes(StandardCharsets.UTF_8).length;
+        assertEquals(single, store.getStoredBytes());
+        assertEquals(50 * single, store.getLogicalBytes());
+        assertTrue(store.getDeduplicationRatio() > 49);
+        assertTrue(store.getOffHeapBytes() >= single);
+        
+        File first = (File) root.getChild(0);
+        assertEquals(body, first.getContent());
+        assertTrue(first.getContentRef().getChunkCount() > 1);
+        assertArrayEquals(first.getContentRef().getHash(), ((File) root.getChild(1)).getContentRef().getHash());
+        
+        // 在开头插入内容后，只有第一块发生变化
+        File shifted = new File("shifted.txt", 0, store.put("插入的前缀" + body));
+        assertTrue(store.getStoredBytes() < single + 70 * 1024);
+        assertTrue(shifted.getContent().startsWith("插入的前缀line"));
+        
+        // 共享引用，修改一个文件不影响其他文件
+        File shared = new File("shared.txt", 0, store.retain(first.getContentRef()));
+        first.setContent("changed");
+        assertEquals("changed", first.getContent());
+        assertEquals(7, first.getSize());
+        assertEquals(body, shared.getContent());
+        
+        // 释放所有引用后块被删除
+        for (FileSystemComponent child : root.getChildren()) {
+            ((File) child).setContent("");
+        }
+        shifted.setContent("");
+        assertEquals(shared.getContentRef().getChunkCount(), store.getChunkCount());
+        shared.setContent("");
+        assertEquals(0, store.getChunkCount());
+        assertEquals(0, store.getStoredBytes());
+        assertEquals(0, store.getLogicalBytes());
+        
+        // 预览只解码开头
+        File preview = new File("preview.txt", 10, "0123456789".repeat(10));
+        assertEquals("0123456789", preview.contentPrefix(9).substring(0, 10));
+        assertEquals(11, preview.contentPrefix(10).length());
+    }
+    
+    @Test
+    public void testFileChannels(@TempDir Path tempDir) throws Exception {
+        Directory root = new Directory("root");
+        File file = new File("big.bin", 0);
+        root.add(file);
+        
+        // 分多次流式写入 3MB，关闭时提交，大小按字节计算并传播
+        byte[] block = new byte[100_000];
+        new Random(7).nextBytes(block);
+        try (WritableByteChannel out = file.openWriteChannel(false)) {
+            for (int i = 0; i < 30; i++) {
+                out.write(ByteBuffer.wrap(block));
+            }
+        }
+        assertEquals(3_000_000, file.getSize());
+        assertEquals(3_000_000, file.getContentLength());
+        assertEquals(3_000_000, root.getSize());
+        
+        // 按位置读取跨越多个块
+        ByteBuffer buffer = ByteBuffer.allocate(150_000);
+        assertEquals(150_000, file.read(buffer, 1_250_000));
+        for (int i = 0; i < 150_000; i++) {
+            assertEquals(block[(1_250_000 + i) % 100_000], buffer.get(i));
+        }
+        assertEquals(-1, file.read(ByteBuffer.allocate(1), 3_000_000));
+        
+        // 可定位的只读通道
+        try (SeekableByteChannel in = file.openReadChannel()) {
+            in.position(2_999_990);
+            ByteBuffer tail = ByteBuffer.allocate(64);
+            assertEquals(10, in.read(tail));
+            assertEquals(-1, in.read(tail));
+            assertEquals(3_000_000, in.size());
+        }
+        
+        // 追加后的块和哈希与一次性写入相同
+        byte[] hashBefore = file.getContentRef().getHash();
+        try (WritableByteChannel out = file.openWriteChannel(true)) {
+            out.write(ByteBuffer.wrap(block));
+        }
+        assertEquals(3_100_000, root.getSize());
+        byte[] whole = new byte[3_100_000];
+        for (int i = 0; i < 31; i++) {
+            System.arraycopy(block, 0, whole, i * 100_000, 100_000);
+        }
+        ContentStore.ContentRef oneShot = ContentStore.shared().put(whole);
+        assertArrayEquals(oneShot.getHash(), file.getContentRef().getHash());
+        assertFalse(Arrays.equals(hashBefore, oneShot.getHash()));
+        
+        // 直接写到文件通道
+        Path target = tempDir.resolve("out.bin");
+        try (FileChannel channel = FileChannel.open(target,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long transferred = 0;
+            while (transferred < 3_100_000) {
+                transferred += file.transferTo(transferred, 3_100_000 - transferred, channel);
+            }
+        }
+        assertArrayEquals(whole, Files.readAllBytes(target));
+        
+        // 普通通道只写出请求的范围
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        assertEquals(5, file.transferTo(99_998, 5, Channels.newChannel(bytes)));
+        assertArrayEquals(new byte[] {block[99_998], block[99_999], block[0], block[1], block[2]}, bytes.toByteArray());
+        
+        // 文本内容的大小按 UTF-8 字节计算
+        file.write("文件");
+        assertEquals(6, file.getSize());
+        assertEquals(6, root.getSize());
+    }
+    
+    @Test
+    public void testExtensionHistogram() {
+        Directory root = new Directory("root");
+        Directory src = new Directory("src");
+        Directory test = new Directory("test");
+        Directory docs = new Directory("docs");
+        root.add(src);
+        root.add(docs);
+        src.add(test);
+        src.add(new File("Main.java", 100));
+        src.add(new File("Util.JAVA", 50));
+        test.add(new File("MainTest.java", 30));
+        test.add(new File("data.json", 7));
+        docs.add(new File("guide.md", 20));
+        docs.add(new File("LICENSE", 5));
+        
+        // 每个目录的直方图包含整个子树
+        assertEquals(3, root.getFileCount("java"));
+        assertEquals(180, root.getFileBytes("Java"));
+        assertEquals(3, src.getFileCount("java"));
+        assertEquals(1, test.getFileCount("java"));
+        assertEquals(0, docs.getFileCount("java"));
+        assertEquals(6, root.getFileCount(null));
+        assertEquals(212, root.getFileBytes(""));
+        assertEquals(0, root.getFileCount("unknown-ext"));
+        assertEquals(Long.valueOf(1), root.getExtensionCounts().get(""));
+        assertEquals(Long.valueOf(3), root.getExtensionCounts().get("java"));
+        
+        // 列出文件：整棵树走索引，子树按直方图剪枝
+        assertEquals(3, root.findByExtension("java").size());
+        assertEquals(1, test.findByExtension("java").size());
+        assertEquals("MainTest.java", test.findByExtension("java").get(0).getName());
+        assertTrue(docs.findByExtension("java").isEmpty());
+        
+        // 大小变化、移动和删除都沿父指针更新
+        File main = (File) src.getChild(1);
+        main.write("class Main {}");
+        assertEquals(13 + 50 + 30, root.getFileBytes("java"));
+        docs.add(test);
+        assertEquals(2, src.getFileCount("java"));
+        assertEquals(1, docs.getFileCount("java"));
+        assertEquals(1, docs.getFileCount("json"));
+        assertEquals(3, root.getFileCount("java"));
+        assertEquals(1, docs.findByExtension("java").size());
+        src.remove(main);
+        assertEquals(2, root.getFileCount("java"));
+        assertEquals(80, root.getFileBytes("java"));
+        docs.clear();
+        assertEquals(0, root.getFileCount("json"));
+        assertEquals(1, root.getFileCount(null));
+        assertEquals(1, root.findByExtension("java").size());
+        
+        // 延迟加载的目录：统计前加载未统计过的子树，回收后统计仍然保留
+        Map<String, List<LazyDirectory.ChildInfo>> listing = new HashMap<>();
+        listing.put("/", Arrays.asList(
+            new LazyDirectory.ChildInfo("a", "/a", true, LazyDirectory.UNKNOWN, LazyDirectory.UNKNOWN, LazyDirectory.UNKNOWN),
+            new LazyDirectory.ChildInfo("b", "/b", true, LazyDirectory.UNKNOWN, LazyDirectory.UNKNOWN, LazyDirectory.UNKNOWN),
+            new LazyDirectory.ChildInfo("top.java", "/top.java", false, 10, 0, 0)));
+        listing.put("/a", Arrays.asList(
+            new LazyDirectory.ChildInfo("x.java", "/a/x.java", false, 1, 0, 0),
+            new LazyDirectory.ChildInfo("y.txt", "/a/y.txt", false, 2, 0, 0)));
+        listing.put("/b", Arrays.asList(
+            new LazyDirectory.ChildInfo("z.java", "/b/z.java", false, 3, 0, 0)));
+        LazyDirectory lazy = new LazyDirectory(new LazyDirectory.ChildLoader() {
+            @Override
+            public List<LazyDirectory.ChildInfo> list(Object key) {
+                return listing.get(key);
+            }
+            
+            @Override
+            public String read(Object key) {
+                return "";
+            }
+        }, new LazyDirectory.ChildInfo("lazy", "/", true, LazyDirectory.UNKNOWN, 3, LazyDirectory.UNKNOWN), 3);
+        assertEquals(3, lazy.getFileCount("java"));
+        assertEquals(14, lazy.getFileBytes("java"));
+        assertTrue(lazy.getEvictionCount() > 0);
+        assertEquals(3, lazy.getFileCount("java"));
+        assertEquals(3, lazy.findByExtension("java").size());
+    }
+    
+    @Test
+    public void testConcurrentDirectory() throws Exception {
+        Directory root = new Directory("root", true);
+        Directory[] branches = new Directory[4];
+        for (int i = 0; i < branches.length; i++) {
+            // 普通目录加入并发目录后整棵子树转为并发模式
+            branches[i] = new Directory("branch" + i);
+            branches[i].add(new Directory("nested"));
+            root.add(branches[i]);
+            assertTrue(branches[i].isConcurrent());
+        }
+        assertEquals(1, root.findByPath("/branch0/nested").size());
+        
+        int filesPerBranch = 200;
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (Directory branch : branches) {
+            threads.add(new Thread(() -> {
+                try {
+                    Directory nested = (Directory) branch.getChild(0);
+                    for (int i = 0; i < filesPerBranch; i++) {
+                        File file = new File("f" + i + ".txt", 1);
+                        (i % 2 == 0 ? branch : nested).add(file);
+                        file.setContent("abc");
+                        if (i % 10 == 9) {
+                            file.getParent().remove(file);
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }));
+        }
+        for (int r = 0; r < 2; r++) {
+            threads.add(new Thread(() -> {
+                try {
+                    while (!done.get()) {
+                        // 读取不加锁，快照在遍历期间保持不变
+                        for (FileSystemComponent child : root.getChildren()) {
+                            List<FileSystemComponent> snapshot = ((Directory) child).getChildren();
+                            int count = snapshot.size();
+                            for (FileSystemComponent grandchild : snapshot) {
+                                assertNotNull(grandchild.getName());
+                            }
+                            assertEquals(count, snapshot.size());
+                        }
+                        assertTrue(root.getSize() >= 0);
+                        root.findByPath("/branch1/f0.txt");
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (int i = 0; i < branches.length; i++) {
+            threads.get(i).join();
+        }
+        done.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+        
+        int remaining = branches.length * (filesPerBranch - filesPerBranch / 10);
+        assertEquals(remaining, root.getFileCount("txt"));
+        assertEquals(remaining * 3L, root.getSize());
+        assertEquals(remaining * 3L, root.getStats().getTotalSize());
+        assertEquals(branches.length * 2L + remaining, root.getDescendantCount());
+        assertEquals(1, root.findByPath("/branch3/nested/f1.txt").size());
+        assertTrue(root.findByPath("/branch3/nested/f9.txt").isEmpty());
+        assertThrows(UnsupportedOperationException.class, () -> root.getChildren().clear());
+    }
+    
+    @Test
+    public void testConcurrentStructureLocksArePerDirectory() throws Exception {
+        Directory tree = new Directory("tree", true);
+        Directory busy = new Directory("busy");
+        Directory idle = new Directory("idle");
+        tree.add(busy);
+        tree.add(idle);
+        Directory other = new Directory("other", true);
+        
+        // 对一个目录持有独占锁（如搬动它）时，同一棵树的其他分支、祖先以及其他树的写入不受影响
+        CountDownLatch blockedDone = new CountDownLatch(1);
+        StructureLock.Held held = StructureLock.acquire(busy);
+        try {
+            Thread writer = new Thread(() -> {
+                idle.add(new File("a.txt", 1));
+                tree.add(new File("b.txt", 1));
+                other.add(new File("c.txt", 1));
+            });
+            writer.start();
+            writer.join(5000);
+            assertFalse(writer.isAlive());
+            
+            // 该目录子树中的写入等待锁释放
+            new Thread(() -> {
+                busy.add(new File("d.txt", 1));
+                blockedDone.countDown();
+            }).start();
+            assertFalse(blockedDone.await(100, TimeUnit.MILLISECONDS));
+        } finally {
+            held.release();
+        }
+        assertTrue(blockedDone.await(5, TimeUnit.SECONDS));
+        
+        // 子目录在两个分支之间来回搬动，同时在其中增删和写入文件，统计保持一致
+        Directory left = new Directory("left");
+        Directory right = new Directory("right");
+        tree.add(left);
+        tree.add(right);
+        Directory[] movers = new Directory[4];
+        for (int i = 0; i < movers.length; i++) {
+            movers[i] = new Directory("mover" + i);
+            left.add(movers[i]);
+        }
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (Directory mover : movers) {
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < 200; i++) {
+                        (i % 2 == 0 ? right : left).add(mover);
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }));
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < 200; i++) {
+                        File file = new File("f" + i + ".txt", 1);
+                        mover.add(file);
+                        file.setContent("abcd");
+                        if (i % 5 == 4) {
+                            mover.remove(file);
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+        
+        int files = movers.length * 160;
+        assertEquals(movers.length, left.getChildCount());
+        // 另外 3 个 1 字节的文件：a.txt、b.txt 和 d.txt
+        assertEquals(files * 4L + 3, tree.getSize());
+        assertEquals(tree.getStats().getTotalSize(), tree.getSize());
+        assertEquals(files + 3, tree.getFileCount("txt"));
+        assertEquals(4 + movers.length + files + 3, tree.getDescendantCount());
+        // 增量维护的哈希与重新构建的同一棵树一致
+        assertEquals(PersistentTree.of(tree).toDirectory().getTreeHash(), tree.getTreeHash());
+    }
+    
+    @Test
+    public void testPersistentTree() {
+        PersistentTree empty = PersistentTree.empty("root");
+        PersistentTree v1 = empty.putFile("/src/Main.java", "class Main {}").putFile("/docs/readme.md", "hi");
+        PersistentTree v2 = v1.putFile("/src/Util.java", "u").remove("/docs");
+        
+        // 旧版本不受后续修改影响，未修改的子树在版本之间共享
+        assertEquals(0, empty.getDescendantCount());
+        assertEquals(15, v1.getSize());
+        assertEquals(4, v1.getDescendantCount());
+        assertNotNull(v1.get("/docs/readme.md"));
+        assertNull(v2.get("/docs"));
+        assertEquals(14, v2.getSize());
+        assertSame(v1.get("/src/Main.java"), v2.get("/src/Main.java"));
+        assertNotSame(v1.get("/src"), v2.get("/src"));
+        assertSame(v2, v2.remove("/missing/file.txt"));
+        assertSame(v2, v2.putDirectory("/src"));
+        assertEquals("class Main {}", ((PersistentTree.FileNode) v2.get("/src/Main.java")).getContent());
+        assertThrows(IllegalArgumentException.class, () -> v2.putFile("/src/Main.java/x", "x"));
+        assertThrows(IllegalArgumentException.class, () -> v2.putFile("/src", "x"));
+        
+        // 删除目录的最后一个子组件后，目录仍然可以查找和继续写入
+        PersistentTree single = empty.putFile("/a.txt", "x").remove("/a.txt");
+        assertEquals(0, single.getDescendantCount());
+        assertNull(single.get("/a.txt"));
+        assertEquals(1, single.putFile("/b.txt", "y").getDescendantCount());
+        PersistentTree nested = empty.putFile("/d/a.txt", "x").remove("/d/a.txt");
+        assertEquals(0, ((PersistentTree.DirectoryNode) nested.get("/d")).getChildCount());
+        assertTrue(((PersistentTree.DirectoryNode) nested.get("/d")).getChildren().isEmpty());
+        assertNull(nested.get("/d/zz"));
+        assertNotNull(nested.putFile("/d/b.txt", "y").get("/d/b.txt"));
+        
+        // 大目录和哈希冲突的名称："Aa" 与 "BB" 的哈希相同
+        PersistentTree wide = empty;
+        for (int i = 0; i < 2000; i++) {
+            wide = wide.putFile("/wide/f" + i, "x");
+        }
+        wide = wide.putFile("/wide/Aa", "1").putFile("/wide/BB", "22");
+        assertEquals(2002, ((PersistentTree.DirectoryNode) wide.get("/wide")).getChildCount());
+        assertEquals(2003, wide.getSize());
+        PersistentTree pruned = wide;
+        for (int i = 0; i < 2000; i += 2) {
+            pruned = pruned.remove("/wide/f" + i);
+        }
+        pruned = pruned.remove("/wide/Aa");
+        assertEquals(1001, ((PersistentTree.DirectoryNode) pruned.get("/wide")).getChildCount());
+        assertEquals(1002, pruned.getSize());
+        assertNull(pruned.get("/wide/f10"));
+        assertNotNull(pruned.get("/wide/f11"));
+        assertEquals(2, pruned.get("/wide/BB").getSize());
+        assertNotNull(wide.get("/wide/f10"));
+        
+        // 与可变目录树互相转换
+        Directory directory = new Directory("project");
+        Directory src = new Directory("src");
+        src.add(new File("App.java", 0, "app"));
+        directory.add(src);
+        PersistentTree frozen = PersistentTree.of(directory);
+        src.add(new File("Later.java", 0, "later"));
+        assertNull(frozen.get("/src/Later.java"));
+        Directory thawed = frozen.putFile("/src/Extra.java", "extra").toDirectory();
+        assertEquals(5, thawed.getSize());
+        assertEquals(2, thawed.getFileCount("java"));
+        assertEquals("app", ((File) thawed.findByPath("/src/App.java").get(0)).getContent());
+        
+        // 分支：读取方持有快照，写入和回滚都不影响它
+        PersistentTree.Branch branch = new PersistentTree.Branch(v1);
+        PersistentTree report = branch.snapshot();
+        branch.update(tree -> tree.putFile("/new.txt", "n"));
+        assertNotNull(branch.snapshot().get("/new.txt"));
+        assertNull(report.get("/new.txt"));
+        assertEquals(v1.getVersion() + 1, branch.snapshot().getVersion());
+        branch.reset(report);
+        assertSame(v1, branch.snapshot());
+    }
+    
+    private static Directory buildHashTree(boolean reversed) {
+        Directory root = new Directory("root");
+        for (int d = 0; d < 50; d++) {
+            int i = reversed ? 49 - d : d;
+            Directory directory = new Directory("dir" + i);
+            for (int f = 0; f < 100; f++) {
+                String content = "content " + i + "/" + f;
+                directory.attach(new File("file" + f + ".txt", content.length(), content));
+            }
+            root.attach(directory);
+        }
+        return root;
+    }
+    
+    @Test
+    public void testMerkleDiff() {
+        Directory left = buildHashTree(false);
+        Directory right = buildHashTree(true);
+        // 哈希与子组件顺序无关
+        assertEquals(left.getTreeHash(), right.getTreeHash());
+        TreeDiff.Result same = TreeDiff.diff(left, right);
+        assertTrue(same.isEmpty());
+        assertEquals(2, same.getComparedCount());
+        
+        long original = right.getTreeHash();
+        File changed = (File) right.findByPath("/dir7/file3.txt").get(0);
+        changed.setContent("changed");
+        assertNotEquals(original, right.getTreeHash());
+        changed.setContent("content 7/3");
+        assertEquals(original, right.getTreeHash());
+        
+        // 修改、删除和新增各一处，再交换两个文件的内容
+        changed.setContent("changed");
+        Directory dir20 = (Directory) right.findByPath("/dir20").get(0);
+        dir20.remove(dir20.findByPath("file0.txt").get(0));
+        Directory extra = new Directory("extra");
+        extra.add(new File("new.txt", 0, "n"));
+        ((Directory) right.findByPath("/dir30").get(0)).add(extra);
+        ((File) right.findByPath("/dir40/file1.txt").get(0)).setContent("content 41/1");
+        ((File) right.findByPath("/dir41/file1.txt").get(0)).setContent("content 40/1");
+        
+        TreeDiff.Result result = TreeDiff.diff(left, right);
+        Set<String> changes = new HashSet<>();
+        for (TreeDiff.Change change : result.getChanges()) {
+            changes.add(change.toString());
+        }
+        assertEquals(new HashSet<>(Arrays.asList(
+            "MODIFIED /dir7/file3.txt", "REMOVED /dir20/file0.txt", "ADDED /dir30/extra",
+            "MODIFIED /dir40/file1.txt", "MODIFIED /dir41/file1.txt")), changes);
+        // 只访问根目录的子组件和变化的目录，而不是全部 5000 多个节点
+        assertTrue(result.getComparedCount() < 1200, result.toString());
+        
+        // 清空后与空目录的哈希相同，所有子目录都记为删除
+        right.clear();
+        assertEquals(new Directory("root").getTreeHash(), right.getTreeHash());
+        assertEquals(50, TreeDiff.diff(left, right).getChanges().size());
+    }
+    
+    @Test
+    public void testLazyTreeDiffUsesLoaderHashes(@TempDir Path tempDir) throws Exception {
+        Directory root = new Directory("root");
+        for (int i = 0; i < 50; i++) {
+            Directory dir = new Directory("dir" + i);
+            for (int j = 0; j < 20; j++) {
+                String content = "content " + i + "/" + j;
+                dir.add(new File("file" + j + ".txt", content.length(), content));
+            }
+            root.add(dir);
+        }
+        long original = root.getTreeHash();
+        Path before = tempDir.resolve("before.snap");
+        TreeSnapshot.save(root, before);
+        // 大小不变的修改
+        ((File) root.findByPath("/dir7/file3.txt").get(0)).setContent("CONTENT 7/3");
+        Path after = tempDir.resolve("after.snap");
+        TreeSnapshot.save(root, after);
+        
+        // 快照保存了每个节点的哈希，读取根目录的哈希不需要加载
+        LazyDirectory left = TreeSnapshot.open(before).asDirectory(100);
+        LazyDirectory right = TreeSnapshot.open(after).asDirectory(100);
+        assertEquals(original, left.getTreeHash());
+        assertEquals(root.getTreeHash(), right.getTreeHash());
+        assertEquals(0, left.getLoadCount());
+        
+        // 只加载两棵树的根目录和哈希不同的 dir7
+        List<TreeDiff.Change> changes = TreeDiff.diff(left, right).getChanges();
+        assertEquals(1, changes.size());
+        assertEquals("MODIFIED /dir7/file3.txt", changes.get(0).toString());
+        assertEquals(2, left.getLoadCount());
+        assertEquals(2, right.getLoadCount());
+        
+        // 从磁盘延迟加载时，修改时间作为内容版本，大小不变的修改也能比较出来
+        Path disk = Files.createDirectory(tempDir.resolve("disk"));
+        Path notes = Files.writeString(disk.resolve("notes.txt"), "version 1");
+        Files.writeString(disk.resolve("other.txt"), "unchanged");
+        LazyDirectory first = new LazyDirectory(disk, 100);
+        long firstHash = first.getTreeHash();
+        Files.writeString(notes, "version 2");
+        Files.setLastModifiedTime(notes, FileTime.fromMillis(Files.getLastModifiedTime(notes).toMillis() + 10_000));
+        LazyDirectory second = new LazyDirectory(disk, 100);
+        assertNotEquals(firstHash, second.getTreeHash());
+        changes = TreeDiff.diff(first, second).getChanges();
+        assertEquals(1, changes.size());
+        assertEquals("MODIFIED /notes.txt", changes.get(0).toString());
+        // 读取内容不改变哈希
+        long secondHash = second.getTreeHash();
+        assertEquals("version 2", ((File) second.findByPath("notes.txt").get(0)).getContent());
+        assertEquals(secondHash, second.getTreeHash());
+    }
 }
@@ -2,11 +2,35 @@ package org.example.demo1.designpatterns.observer;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.io.TempDir;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 观察者模式测试类
@@ -271,13 +295,802 @@ public class ObserverTest {
         }
     }
     
+    @Test
+    public void testThrottledObserverConflation() throws InterruptedException {
+        CountDownLatch lastValueDelivered = new CountDownLatch(1);
+        AtomicReference<String> flushThread = new AtomicReference<>();
+        TestObserver throttledObserver = new TestObserver("Throttled Observer") {
+            @Override
+            public void update(Subject subject, String event, Object data) {
+                super.update(subject, event, data);
+                if (Integer.valueOf(99).equals(data)) {
+                    flushThread.set(Thread.currentThread().getName());
+                    lastValueDelivered.countDown();
+                }
+            }
+        };
+        weatherStation.registerObserver(throttledObserver);
+        assertTrue(weatherStation.setMaxDeliveryRate(throttledObserver, 5));
+        
+        // 限流窗口内的大量事件应被合并为最新值
+        int before = throttledObserver.getUpdateCount();
+        for (int i = 0; i < 100; i++) {
+            weatherStation.notifyObservers("COUNTER", i);
+        }
+        assertTrue(lastValueDelivered.await(5, TimeUnit.SECONDS));
+        
+        int delivered = throttledObserver.getUpdateCount() - before;
+        assertTrue(delivered >= 1 && delivered <= 3, "Delivered " + delivered + " updates");
+        assertEquals(99, throttledObserver.getLastData());
+        // 合并刷新不占用共享的时间轮调度线程
+        assertNotEquals("observer-wheel-timer", flushThread.get());
+        
+        // 取消限流时先投递尚未刷新的最新值，不会丢失
+        assertTrue(weatherStation.setMaxDeliveryRate(throttledObserver, 5));
+        weatherStation.notifyObservers("COUNTER", 100);
+        weatherStation.notifyObservers("COUNTER", 101);
+        assertTrue(weatherStation.setMaxDeliveryRate(throttledObserver, 0));
+        assertEquals(101, throttledObserver.getLastData());
+        
+        // 取消限流后恢复逐条投递
+        before = throttledObserver.getUpdateCount();
+        for (int i = 0; i < 10; i++) {
+            weatherStation.notifyObservers("COUNTER", i);
+        }
+        assertEquals(10, throttledObserver.getUpdateCount() - before);
+        
+        // 节流的观察者仍然可以通过原对象移除
+        assertTrue(weatherStation.removeObserver(throttledObserver));
+        assertEquals(0, weatherStation.getObserverCount());
+    }
+    
+    @Test
+    public void testPriorityLanesDispatchAlertsFirst() throws InterruptedException {
+        CountDownLatch blocker = new CountDownLatch(1);
+        List<String> deliveryOrder = new CopyOnWriteArrayList<>();
+        Observer orderObserver = new Observer() {
+            @Override
+            public void update(Subject subject, String event, Object data) {
+                try {
+                    blocker.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                deliveryOrder.add(event);
+            }
+            
+            @Override
+            public String getName() {
+                return "Order Observer";
+            }
+        };
+        AbstractSubject subject = new AbstractSubject() { };
+        subject.setEventPriority(WeatherStation.EVENT_EXTREME_WEATHER, PriorityDispatcher.Priority.HIGH);
+        subject.registerObserver(orderObserver);
+        
+        PriorityDispatcher dispatcher = new PriorityDispatcher("test-dispatcher");
+        subject.setDispatcher(dispatcher);
+        
+        // 分发线程被第一个事件阻塞，其余常规事件排队，警报事件应插队
+        for (int i = 0; i < 5; i++) {
+            subject.notifyObservers(WeatherStation.EVENT_MEASUREMENTS_CHANGED, i);
+        }
+        subject.notifyObservers(WeatherStation.EVENT_EXTREME_WEATHER, "alert");
+        blocker.countDown();
+        
+        dispatcher.shutdown();
+        assertTrue(dispatcher.awaitTermination(5, TimeUnit.SECONDS));
+        
+        assertEquals(6, deliveryOrder.size());
+        assertTrue(deliveryOrder.indexOf(WeatherStation.EVENT_EXTREME_WEATHER) <= 1);
+        assertEquals(1, dispatcher.getDispatchedCount(PriorityDispatcher.Priority.HIGH));
+        assertEquals(5, dispatcher.getDispatchedCount(PriorityDispatcher.Priority.NORMAL));
+    }
+    
+    @Test
+    public void testPriorityLanesBoundAlertLatencyUnderOverload() throws InterruptedException {
+        PriorityDispatcher dispatcher = new PriorityDispatcher("overload-dispatcher", 10_000, 4, 1, TimeUnit.MILLISECONDS);
+        CountDownLatch gate = new CountDownLatch(1);
+        AtomicInteger lowServedWhileNormalBacklogged = new AtomicInteger();
+        Runnable slowDelivery = () -> {
+            try {
+                gate.await(5, TimeUnit.SECONDS);
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        
+        // NORMAL 和 LOW 同时积压，并在分发线程被阻塞期间全部超时
+        for (int i = 0; i < 300; i++) {
+            dispatcher.submit(PriorityDispatcher.Priority.NORMAL, slowDelivery);
+            dispatcher.submit(PriorityDispatcher.Priority.LOW, () -> {
+                if (dispatcher.getQueueDepth(PriorityDispatcher.Priority.NORMAL) > 0) {
+                    lowServedWhileNormalBacklogged.incrementAndGet();
+                }
+                slowDelivery.run();
+            });
+        }
+        Thread.sleep(20);
+        gate.countDown();
+        
+        CountDownLatch alerts = new CountDownLatch(20);
+        for (int i = 0; i < 20; i++) {
+            dispatcher.submit(PriorityDispatcher.Priority.HIGH, alerts::countDown);
+            Thread.sleep(5);
+        }
+        assertTrue(alerts.await(5, TimeUnit.SECONDS));
+        
+        // 超时的低优先级通道只能占用一半时隙，警报的等待时间不随积压增长
+        assertTrue(dispatcher.getMaxWaitNanos(PriorityDispatcher.Priority.HIGH) < TimeUnit.MILLISECONDS.toNanos(50),
+                   "HIGH waited " + dispatcher.getMaxWaitNanos(PriorityDispatcher.Priority.HIGH) + " ns");
+        assertTrue(dispatcher.getQueueDepth(PriorityDispatcher.Priority.NORMAL) > 0);
+        assertTrue(lowServedWhileNormalBacklogged.get() > 0);
+        dispatcher.shutdown();
+    }
+    
+    @Test
+    public void testWindowedStatisticsStateIsBounded() {
+        String event = WeatherStation.EVENT_MEASUREMENTS_CHANGED;
+        // 允许迟到时间很长，已输出的窗口一直保留，直到窗口数量达到上限被淘汰
+        WindowedStatisticsDisplay windowed = new WindowedStatisticsDisplay("Bounded Display", 10, 0, 1_000_000);
+        AtomicInteger firstWindowResults = new AtomicInteger();
+        windowed.setResultListener(result -> {
+            if (result.getWindowStart() == 0) {
+                firstWindowResults.incrementAndGet();
+            }
+        });
+        for (int i = 0; i < 1100; i++) {
+            windowed.update(weatherStation, event, reading(20.0f, i * 10L));
+        }
+        assertEquals(1024, windowed.getRetainedWindowCount("Test Weather Station"));
+        // 被淘汰的窗口已经输出过，不再重复输出
+        assertEquals(1, firstWindowResults.get());
+        
+        // 站点数量有上限，淘汰的站点先输出尚未输出的窗口
+        WindowedStatisticsDisplay stations = new WindowedStatisticsDisplay("Stations Display", 1000, 0, 0);
+        AtomicInteger emitted = new AtomicInteger();
+        stations.setResultListener(result -> emitted.incrementAndGet());
+        int stationCount = WindowedStatisticsDisplay.MAX_STATIONS + 10;
+        for (int i = 0; i < stationCount; i++) {
+            stations.update(weatherStation, event,
+                            new WeatherStation.WeatherData(20.0f, 50.0f, 1013.0f, "Mild", "station-" + i, 100));
+        }
+        assertEquals(WindowedStatisticsDisplay.MAX_STATIONS, stations.getStationCount());
+        assertEquals(10, emitted.get());
+        assertEquals(Long.MIN_VALUE, stations.getWatermark("station-0"));
+    }
+    
+    @Test
+    public void testEventTimeWindowsWithLateReadings() {
+        WindowedStatisticsDisplay windowed = new WindowedStatisticsDisplay("Windowed Display", 1000, 500, 1000);
+        String event = WeatherStation.EVENT_MEASUREMENTS_CHANGED;
+        
+        // 乱序到达：1200 先于 900 到达，但仍落入各自的事件时间窗口
+        windowed.update(weatherStation, event, reading(10.0f, 100));
+        windowed.update(weatherStation, event, reading(30.0f, 1200));
+        windowed.update(weatherStation, event, reading(20.0f, 900));
+        assertTrue(windowed.getRecentResults().isEmpty());
+        
+        // 水位线越过1000，第一个窗口输出
+        windowed.update(weatherStation, event, reading(31.0f, 1600));
+        assertEquals(1, windowed.getRecentResults().size());
+        WindowedStatisticsDisplay.WindowResult first = windowed.getRecentResults().get(0);
+        assertEquals(0, first.getWindowStart());
+        assertEquals(2, first.getCount());
+        assertEquals(15.0f, first.getAverageTemperature(), 0.01f);
+        
+        // 允许迟到时间内的读数更新已输出的窗口
+        windowed.update(weatherStation, event, reading(40.0f, 500));
+        WindowedStatisticsDisplay.WindowResult late = windowed.getRecentResults().get(1);
+        assertTrue(late.isLateUpdate());
+        assertEquals(3, late.getCount());
+        
+        // 水位线推进后旧窗口被清理，过迟的读数被丢弃
+        windowed.update(weatherStation, event, reading(25.0f, 5000));
+        assertEquals(4500, windowed.getWatermark("Test Weather Station"));
+        windowed.update(weatherStation, event, reading(50.0f, 700));
+        assertEquals(1, windowed.getDroppedLateCount());
+        assertEquals(1, windowed.getRetainedWindowCount("Test Weather Station"));
+    }
+    
+    @Test
+    public void testCheckpointAndRestore(@TempDir Path tempDir) throws Exception {
+        weatherStation.registerObserver(statisticsDisplay);
+        weatherStation.registerObserver(forecastDisplay);
+        weatherStation.setMeasurements(20.0f, 50.0f, 1010.0f);
+        weatherStation.setMeasurements(30.0f, 70.0f, 1020.0f);
+        
+        CheckpointManager manager = new CheckpointManager();
+        assertTrue(manager.register(statisticsDisplay));
+        assertTrue(manager.register(forecastDisplay));
+        Path file = tempDir.resolve("observers.ckpt");
+        assertEquals(2, manager.checkpoint(file));
+        
+        // 模拟重启：新建观察者并从检查点恢复
+        StatisticsDisplay restoredStatistics = new StatisticsDisplay("Test Statistics Display");
+        ForecastDisplay restoredForecast = new ForecastDisplay("Test Forecast Display");
+        CheckpointManager restoreManager = new CheckpointManager();
+        restoreManager.register(restoredStatistics);
+        restoreManager.register(restoredForecast);
+        assertEquals(2, restoreManager.restore(file));
+        
+        assertEquals(statisticsDisplay.getStatisticsSummary(), restoredStatistics.getStatisticsSummary());
+        assertEquals(forecastDisplay.getCurrentForecast(), restoredForecast.getCurrentForecast());
+        assertEquals(forecastDisplay.getPressureChange(), restoredForecast.getPressureChange(), 0.001f);
+        
+        // 损坏的文件应被拒绝
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 0x7F;
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> restoreManager.restore(file));
+    }
+    
+    @Test
+    public void testConcurrentCheckpointsShareFile(@TempDir Path tempDir) throws Exception {
+        weatherStation.registerObserver(statisticsDisplay);
+        weatherStation.setMeasurements(20.0f, 50.0f, 1010.0f);
+        CheckpointManager manager = new CheckpointManager();
+        manager.register(statisticsDisplay);
+        Path file = tempDir.resolve("observers.ckpt");
+        
+        // 定期保存与手动保存同时写同一个检查点文件，不能互相破坏临时文件
+        int threadCount = 4;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int j = 0; j < 50; j++) {
+                        manager.checkpoint(file);
+                    }
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        assertNull(failure.get());
+        StatisticsDisplay restoredStatistics = new StatisticsDisplay("Test Statistics Display");
+        CheckpointManager restoreManager = new CheckpointManager();
+        restoreManager.register(restoredStatistics);
+        assertEquals(1, restoreManager.restore(file));
+        assertEquals(statisticsDisplay.getStatisticsSummary(), restoredStatistics.getStatisticsSummary());
+    }
+    
+    @Test
+    public void testMappedRingTransport(@TempDir Path tempDir) throws Exception {
+        Path ringFile = tempDir.resolve("weather.ring");
+        try (MappedRingPublisher publisher = new MappedRingPublisher("Ring Publisher", ringFile, 8, 128);
+             MappedRingSubscriber subscriber = new MappedRingSubscriber(ringFile)) {
+            TestObserver remoteObserver = new TestObserver("Remote Observer");
+            subscriber.registerObserver(remoteObserver);
+            assertEquals(1, publisher.getReaderCount());
+            
+            weatherStation.registerObserver(publisher);
+            weatherStation.setMeasurements(42.0f, 96.0f, 975.0f);
+            assertTrue(publisher.getMaxReaderLag() > 0);
+            
+            // 订阅者把读取到的事件重新通知给本地观察者
+            long published = publisher.getPublishedCount();
+            assertEquals(published, subscriber.poll(100));
+            assertTrue(remoteObserver.getReceivedEvents().contains(WeatherStation.EVENT_EXTREME_WEATHER));
+            assertTrue(remoteObserver.getReceivedEvents().contains(WeatherStation.EVENT_TEMPERATURE_CHANGED));
+            assertEquals(0, publisher.getMaxReaderLag());
+            
+            // 读者落后超过一圈时跳过被覆盖的事件并计数
+            for (int i = 0; i < 20; i++) {
+                publisher.update(weatherStation, "COUNTER", "value-" + i);
+            }
+            assertEquals(8, subscriber.poll(100));
+            assertEquals(12, subscriber.getLostCount());
+            assertEquals("value-19", remoteObserver.getLastData());
+            assertEquals(0, subscriber.getLag());
+        }
+    }
+    
+    @Test
+    public void testMappedRingPublisherRestart(@TempDir Path tempDir) throws Exception {
+        Path ringFile = tempDir.resolve("restart.ring");
+        MappedRingPublisher publisher = new MappedRingPublisher("Ring Publisher", ringFile, 8, 128);
+        try (MappedRingSubscriber subscriber = new MappedRingSubscriber(ringFile)) {
+            TestObserver remoteObserver = new TestObserver("Remote Observer");
+            subscriber.registerObserver(remoteObserver);
+            publisher.update(weatherStation, "COUNTER", "before-restart");
+            publisher.close();
+            
+            // 重启的发布者复用已有头部，接着原写序号发布，订阅者继续读取
+            publisher = new MappedRingPublisher("Ring Publisher", ringFile, 8, 128);
+            assertEquals(1, publisher.getPublishedCount());
+            assertEquals(1, publisher.getReaderCount());
+            publisher.update(weatherStation, "COUNTER", "after-restart");
+            assertEquals(2, subscriber.poll(100));
+            assertEquals("after-restart", remoteObserver.getLastData());
+            assertEquals(0, subscriber.getLostCount());
+            
+            // 布局不同的发布者不能接管仍在使用的文件
+            assertThrows(IOException.class, () -> new MappedRingPublisher("Other Publisher", ringFile, 16, 128));
+        } finally {
+            publisher.close();
+        }
+    }
+    
+    @Test
+    public void testMappedRingReclaimsExpiredReaders(@TempDir Path tempDir) throws Exception {
+        Path ringFile = tempDir.resolve("leases.ring");
+        List<MappedRingSubscriber> readers = new ArrayList<>();
+        try (MappedRingPublisher publisher = new MappedRingPublisher("Ring Publisher", ringFile, 8, 128)) {
+            for (int i = 0; i < MappedRingLayout.MAX_READERS; i++) {
+                readers.add(new MappedRingSubscriber(ringFile));
+            }
+            assertThrows(IOException.class, () -> new MappedRingSubscriber(ringFile));
+            
+            // 模拟第一个读者进程异常退出：心跳停在很久以前
+            try (FileChannel channel = FileChannel.open(ringFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, MappedRingLayout.DATA_OFFSET);
+                MappedRingLayout.LONG_VIEW.setRelease(header, MappedRingLayout.readerHeartbeatOffset(0), 1L);
+                assertEquals(MappedRingLayout.MAX_READERS - 1, publisher.getReaderCount());
+                
+                // 过期的位置可以被新读者接管
+                readers.add(new MappedRingSubscriber(ringFile));
+                assertEquals(MappedRingLayout.MAX_READERS, publisher.getReaderCount());
+                
+                // 被接管的读者恢复轮询或关闭时不会改写接管者的游标
+                MappedRingSubscriber expired = readers.remove(0);
+                publisher.update(weatherStation, "COUNTER", "value");
+                assertEquals(1, expired.poll(100));
+                expired.close();
+                assertEquals(1L, (long) MappedRingLayout.LONG_VIEW.getAcquire(header, MappedRingLayout.readerCursorOffset(0)));
+                assertEquals(MappedRingLayout.MAX_READERS, publisher.getReaderCount());
+            }
+        } finally {
+            for (MappedRingSubscriber reader : readers) {
+                reader.close();
+            }
+        }
+    }
+    
+    @Test
+    public void testMappedRingRejectsOversizedStrings(@TempDir Path tempDir) throws Exception {
+        try (MappedRingPublisher publisher = new MappedRingPublisher("Large Publisher", tempDir.resolve("large.ring"),
+                                                                     4, 256 * 1024)) {
+            String oversized = "x".repeat(MappedRingLayout.MAX_STRING_BYTES + 1);
+            assertThrows(IllegalArgumentException.class, () -> publisher.update(weatherStation, "TEXT", oversized));
+            publisher.update(weatherStation, "TEXT", "x".repeat(MappedRingLayout.MAX_STRING_BYTES));
+            assertEquals(1, publisher.getPublishedCount());
+        }
+    }
+    
+    @Test
+    public void testMappedRingAcrossProcesses(@TempDir Path tempDir) throws Exception {
+        Path ringFile = tempDir.resolve("shared.ring");
+        int events = 50;
+        try (MappedRingPublisher publisher = new MappedRingPublisher("Process Publisher", ringFile, 64, 128)) {
+            // 订阅者运行在另一个 JVM 中，只通过映射文件通信
+            Process reader = new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                RingReaderProcess.class.getName(), ringFile.toString(), String.valueOf(events))
+                .redirectErrorStream(true)
+                .start();
+            try {
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+                while (publisher.getReaderCount() == 0 && reader.isAlive() && System.nanoTime() < deadline) {
+                    Thread.sleep(10);
+                }
+                assertEquals(1, publisher.getReaderCount());
+                for (int i = 0; i < events; i++) {
+                    publisher.update(weatherStation, "COUNTER", "value-" + i);
+                }
+                
+                assertTrue(reader.waitFor(30, TimeUnit.SECONDS));
+                String result;
+                try (BufferedReader lines = new BufferedReader(
+                         new InputStreamReader(reader.getInputStream(), StandardCharsets.UTF_8))) {
+                    result = lines.lines().filter(line -> line.startsWith("received=")).findFirst().orElse("");
+                }
+                assertEquals(0, reader.exitValue(), result);
+                assertEquals("received=" + events + " last=value-" + (events - 1), result);
+            } finally {
+                reader.destroyForcibly();
+            }
+        }
+    }
+    
+    /**
+     * 另一个 JVM 中的订阅者：读取指定数量的事件后输出最后一个值并退出
+     */
+    public static class RingReaderProcess {
+        public static void main(String[] args) throws Exception {
+            int expected = Integer.parseInt(args[1]);
+            TestObserver observer = new TestObserver("Process Observer");
+            try (MappedRingSubscriber subscriber = new MappedRingSubscriber(Paths.get(args[0]))) {
+                subscriber.registerObserver(observer);
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+                while (observer.getUpdateCount() < expected && System.nanoTime() < deadline) {
+                    if (subscriber.poll(expected) == 0) {
+                        Thread.sleep(1);
+                    }
+                }
+            }
+            System.out.println();
+            System.out.println("received=" + observer.getUpdateCount() + " last=" + observer.getLastData());
+            System.exit(observer.getUpdateCount() == expected ? 0 : 1);
+        }
+    }
+    
+    @Test
+    public void testFlowPublisherHonorsDemand() {
+        AbstractSubject subject = new AbstractSubject() { };
+        SubjectPublisher publisher = new SubjectPublisher(subject, SubjectPublisher.OverflowStrategy.DROP_NEWEST,
+                                                          16, 4, Runnable::run);
+        List<Object> received = new ArrayList<>();
+        AtomicReference<Flow.Subscription> subscriptionRef =
+            new AtomicReference<>();
+        AtomicInteger completions = new AtomicInteger();
+        
+        publisher.subscribe(new Flow.Subscriber<SubjectPublisher.Event>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscriptionRef.set(subscription);
+                subscription.request(2);
+            }
+            
+            @Override
+            public void onNext(SubjectPublisher.Event item) {
+                received.add(item.getData());
+            }
+            
+            @Override
+            public void onError(Throwable throwable) {
+                fail(throwable);
+            }
+            
+            @Override
+            public void onComplete() {
+                completions.incrementAndGet();
+            }
+        });
+        assertEquals(1, subject.getObserverCount());
+        
+        // 只有申请过的需求会被缓冲和投递，其余按 DROP_NEWEST 丢弃
+        for (int i = 0; i < 5; i++) {
+            subject.notifyObservers("COUNTER", i);
+        }
+        assertEquals(List.of(0, 1), received);
+        
+        subscriptionRef.get().request(3);
+        for (int i = 5; i < 10; i++) {
+            subject.notifyObservers("COUNTER", i);
+        }
+        assertEquals(List.of(0, 1, 5, 6, 7), received);
+        
+        publisher.close();
+        assertEquals(1, completions.get());
+        assertEquals(0, subject.getObserverCount());
+    }
+    
+    @Test
+    public void testFlowPublisherOverflowError() {
+        AbstractSubject subject = new AbstractSubject() { };
+        SubjectPublisher publisher = new SubjectPublisher(subject, SubjectPublisher.OverflowStrategy.ERROR,
+                                                          16, 4, Runnable::run);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        
+        publisher.subscribe(new Flow.Subscriber<SubjectPublisher.Event>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(1);
+            }
+            
+            @Override
+            public void onNext(SubjectPublisher.Event item) {
+            }
+            
+            @Override
+            public void onError(Throwable throwable) {
+                error.set(throwable);
+            }
+            
+            @Override
+            public void onComplete() {
+            }
+        });
+        
+        subject.notifyObservers("COUNTER", 1);
+        assertNull(error.get());
+        subject.notifyObservers("COUNTER", 2);
+        assertInstanceOf(IllegalStateException.class, error.get());
+        assertEquals(0, publisher.getSubscriberCount());
+    }
+    
+    @Test
+    public void testFlowSubscriberCancelledInOnSubscribe() {
+        AbstractSubject subject = new AbstractSubject() { };
+        SubjectPublisher publisher = new SubjectPublisher(subject, SubjectPublisher.OverflowStrategy.DROP_NEWEST,
+                                                          16, 4, Runnable::run);
+        AtomicInteger received = new AtomicInteger();
+        
+        // 在 onSubscribe 中立即取消的订阅者不能留在发布者和主题上
+        publisher.subscribe(new Flow.Subscriber<SubjectPublisher.Event>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+                subscription.cancel();
+            }
+            
+            @Override
+            public void onNext(SubjectPublisher.Event item) {
+                received.incrementAndGet();
+            }
+            
+            @Override
+            public void onError(Throwable throwable) {
+            }
+            
+            @Override
+            public void onComplete() {
+            }
+        });
+        
+        assertEquals(0, publisher.getSubscriberCount());
+        assertEquals(0, subject.getObserverCount());
+        subject.notifyObservers("COUNTER", 1);
+        assertEquals(0, received.get());
+    }
+    
+    @Test
+    public void testAnomalyDetectorRoutesAnomaliesAsEvents() {
+        AnomalyDetector detector = new AnomalyDetector("Anomaly Detector", 0.1, 4.0, 10,
+                                                       new double[] {0.5, 5.0, 2.0});
+        TestObserver anomalyObserver = new TestObserver("Anomaly Observer") {
+            @Override
+            public boolean isInterestedIn(String event) {
+                return AnomalyDetector.EVENT_ANOMALY.equals(event);
+            }
+        };
+        weatherStation.registerObserver(anomalyObserver);
+        
+        // 稳定的读数（每分钟一次，有小幅波动）不应产生异常
+        long time = 0;
+        for (int i = 0; i < 30; i++) {
+            time += 60_000;
+            detector.update(weatherStation, WeatherStation.EVENT_MEASUREMENTS_CHANGED,
+                            new WeatherStation.WeatherData(20.0f + (i % 2) * 0.5f, 50.0f, 1013.0f, "Mild",
+                                                           "Test Weather Station", time));
+        }
+        assertEquals(0, detector.getAnomalyCount());
+        assertEquals(20.25, detector.getMean(weatherStation, AnomalyDetector.Metric.TEMPERATURE), 0.3);
+        
+        // 温度突变：z-score 和变化率都应触发
+        time += 1000;
+        detector.update(weatherStation, WeatherStation.EVENT_MEASUREMENTS_CHANGED,
+                        new WeatherStation.WeatherData(35.0f, 50.0f, 1013.0f, "Hot", "Test Weather Station", time));
+        assertEquals(2, detector.getAnomalyCount());
+        assertTrue(anomalyObserver.getReceivedEvents().contains(AnomalyDetector.EVENT_ANOMALY));
+        AnomalyDetector.Anomaly anomaly = (AnomalyDetector.Anomaly) anomalyObserver.getLastData();
+        assertEquals(AnomalyDetector.Metric.TEMPERATURE, anomaly.getMetric());
+        assertEquals(1, detector.getStationCount());
+    }
+    
+    @Test
+    public void testStationGeoIndexQueriesAndAggregates() {
+        StationGeoIndex index = new StationGeoIndex("Geo Index", 0.5);
+        WeatherStation chaoyang = new WeatherStation("Chaoyang", 39.92, 116.44);
+        WeatherStation haidian = new WeatherStation("Haidian", 39.96, 116.30);
+        WeatherStation tianjin = new WeatherStation("Tianjin", 39.08, 117.20);
+        WeatherStation shanghai = new WeatherStation("Shanghai", 31.23, 121.47);
+        for (WeatherStation station : new WeatherStation[] {chaoyang, haidian, tianjin, shanghai}) {
+            assertTrue(index.addStation(station));
+        }
+        assertThrows(IllegalArgumentException.class, () -> index.addStation(weatherStation));
+        
+        // 北京市区50公里内只有两个站点，天津约110公里
+        List<WeatherStation> nearby = index.findWithinRadius(39.90, 116.40, 50);
+        assertEquals(2, nearby.size());
+        assertTrue(nearby.contains(chaoyang) && nearby.contains(haidian));
+        assertEquals(3, index.findWithinRadius(39.90, 116.40, 150).size());
+        assertEquals(3, index.findInBoundingBox(38.0, 115.0, 41.0, 118.0).size());
+        
+        // 读数到达时区域聚合增量更新
+        chaoyang.setMeasurements(20.0f, 40.0f, 1010.0f);
+        haidian.setMeasurements(22.0f, 50.0f, 1012.0f);
+        tianjin.setMeasurements(24.0f, 60.0f, 1014.0f);
+        shanghai.setMeasurements(30.0f, 80.0f, 1008.0f);
+        StationGeoIndex.RegionalAggregate north = index.getRegionalAggregate(38.0, 115.0, 41.0, 118.0);
+        assertEquals(3, north.getStationCount());
+        assertEquals(22.0f, north.getAverageTemperature(), 0.01f);
+        assertEquals(1012.0f, north.getAveragePressure(), 0.01f);
+        
+        tianjin.setMeasurements(30.0f, 60.0f, 1014.0f);
+        assertEquals(24.0f, index.getRegionalAggregate(38.0, 115.0, 41.0, 118.0).getAverageTemperature(), 0.01f);
+        
+        assertTrue(index.removeStation(tianjin));
+        assertEquals(21.0f, index.getRegionalAggregate(38.0, 115.0, 41.0, 118.0).getAverageTemperature(), 0.01f);
+        assertEquals(0, tianjin.getObserverCount());
+    }
+    
+    @Test
+    public void testFanInObserverAssignsDenseIds() {
+        CountingFanInObserver fanIn = new CountingFanInObserver();
+        AbstractSubject[] subjects = new AbstractSubject[200];
+        for (int i = 0; i < subjects.length; i++) {
+            subjects[i] = new AbstractSubject() { };
+            assertEquals(i, fanIn.attach(subjects[i]));
+        }
+        assertEquals(200, fanIn.getSourceCount());
+        
+        // 每个来源的状态按编号保存在数组中
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < subjects.length; i++) {
+                subjects[i].notifyObservers("TICK", i);
+            }
+        }
+        assertEquals(3, fanIn.counts[150]);
+        
+        // 解除注册后编号被回收，新的来源复用编号且状态被重置
+        assertTrue(fanIn.detach(subjects[7]));
+        assertEquals(0, subjects[7].getObserverCount());
+        AbstractSubject newcomer = new AbstractSubject() { };
+        assertEquals(7, fanIn.attach(newcomer));
+        assertEquals(0, fanIn.counts[7]);
+        newcomer.notifyObservers("TICK", 0);
+        assertEquals(1, fanIn.counts[7]);
+        assertEquals(3, fanIn.counts[8]);
+        assertEquals(200, fanIn.getSourceCount());
+    }
+    
+    @Test
+    public void testSensorFeedGeneratorIsDeterministic() {
+        SensorFeedGenerator first = new SensorFeedGenerator(20, 7L, 60_000L, 0.01, 0.01, 0.05);
+        SensorFeedGenerator second = new SensorFeedGenerator(20, 7L, 60_000L, 0.01, 0.01, 0.05);
+        long[] lastTimes = new long[20];
+        int outOfOrder = 0;
+        for (int i = 0; i < 5000; i++) {
+            SensorFeedGenerator.Reading a = first.next();
+            SensorFeedGenerator.Reading b = second.next();
+            assertEquals(a.getStation(), b.getStation());
+            assertEquals(a.getEventTime(), b.getEventTime());
+            assertEquals(a.getTemperature(), b.getTemperature(), 0.0f);
+            assertEquals(a.getPressure(), b.getPressure(), 0.0f);
+            assertTrue(a.getHumidity() >= 0 && a.getHumidity() <= 100);
+            
+            if (a.getEventTime() < lastTimes[a.getStation()]) {
+                outOfOrder++;
+            }
+            lastTimes[a.getStation()] = Math.max(lastTimes[a.getStation()], a.getEventTime());
+        }
+        assertTrue(outOfOrder > 0);
+        assertEquals(outOfOrder, first.getOutOfOrderCount());
+        assertTrue(first.getExtremeCount() > 0);
+    }
+    
+    @Test
+    public void testLoadHarnessReportsThroughputAndLatency() {
+        WeatherStation[] stations = new WeatherStation[10];
+        TestObserver[] observers = new TestObserver[stations.length];
+        for (int i = 0; i < stations.length; i++) {
+            stations[i] = new WeatherStation("Station-" + i);
+            observers[i] = new TestObserver("Observer-" + i) {
+                @Override
+                public boolean isInterestedIn(String event) {
+                    return WeatherStation.EVENT_MEASUREMENTS_CHANGED.equals(event);
+                }
+            };
+            stations[i].registerObserver(observers[i]);
+        }
+        
+        LoadHarness harness = new LoadHarness(stations, new SensorFeedGenerator(stations.length, 1L));
+        LoadHarness.Report report = harness.run(2000, 20_000);
+        
+        assertEquals(2000, report.getReadings());
+        assertTrue(report.getThroughput() > 0);
+        // 限速运行不会超过目标速率太多
+        assertTrue(report.getElapsedNanos() >= 1999L * 50_000L);
+        assertTrue(report.getLatencyPercentile(50) <= report.getLatencyPercentile(99));
+        assertTrue(report.getLatencyPercentile(99) <= report.getLatencyPercentile(100));
+        
+        int total = 0;
+        for (TestObserver observer : observers) {
+            total += observer.getUpdateCount();
+        }
+        // 每个观察者在注册时还会收到一次初始数据
+        assertEquals(2000 + stations.length, total);
+        
+        assertThrows(IllegalArgumentException.class,
+                     () -> new LoadHarness(stations, new SensorFeedGenerator(3, 1L)));
+    }
+    
+    @Test
+    public void testConsoleSinkBatchesDisplayOutput() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream stream = new PrintStream(bytes, true, StandardCharsets.UTF_8);
+        ConsoleSink sink = new ConsoleSink(stream, 64, "test-console-sink");
+        try {
+            WeatherStation station = new WeatherStation("Sink Station");
+            WeatherDisplay display = new WeatherDisplay("Sink Display", sink);
+            StatisticsDisplay statistics = new StatisticsDisplay("Sink Statistics", sink);
+            ForecastDisplay forecast = new ForecastDisplay("Sink Forecast", sink);
+            station.registerObserver(display);
+            station.registerObserver(statistics);
+            station.registerObserver(forecast);
+            
+            for (int i = 0; i < 200; i++) {
+                station.setMeasurements(20 + i % 10, 50 + i % 7, 1000 + i % 30);
+            }
+            sink.flush();
+            
+            String output = bytes.toString(StandardCharsets.UTF_8);
+            assertTrue(output.contains("=== Sink Display Update ==="));
+            assertTrue(output.contains("=== End Sink Statistics Statistics ==="));
+            assertTrue(output.contains("=== End Sink Forecast Forecast ==="));
+            assertTrue(output.contains("Location: Sink Station"));
+            assertTrue(sink.getWrittenCount() > 200);
+            assertTrue(sink.getBatchCount() <= sink.getWrittenCount());
+        } finally {
+            sink.close();
+        }
+        
+        // 格式化结果与 String.format 一致
+        for (double value : new double[] {0, 1.25, -0.04, -0.06, 12.95, 1013.25, -7.5}) {
+            assertEquals(String.format("%.1f", value),
+                         ConsoleSink.appendDecimal(new StringBuilder(), value).toString());
+            assertEquals(String.format("%+.1f", value),
+                         ConsoleSink.appendSignedDecimal(new StringBuilder(), value).toString());
+        }
+        StringBuilder time = new StringBuilder();
+        sink.appendTime(time, 0L);
+        assertEquals(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
+                         .withZone(ZoneId.systemDefault()).format(Instant.EPOCH),
+                     time.toString());
+    }
+    
+    /**
+     * 测试用的汇聚观察者：按来源编号计数
+     */
+    private static class CountingFanInObserver extends FanInObserver {
+        private int[] counts = new int[getCapacity()];
+        
+        CountingFanInObserver() {
+            super("Counting Fan-in Observer");
+        }
+        
+        @Override
+        protected void onUpdate(int sourceId, Subject subject, String event, Object data) {
+            counts[sourceId]++;
+        }
+        
+        @Override
+        protected void onCapacityChanged(int newCapacity) {
+            counts = Arrays.copyOf(counts, newCapacity);
+        }
+        
+        @Override
+        protected void onSourceAttached(int sourceId, Subject subject) {
+            counts[sourceId] = 0;
+        }
+    }
+    
+    private static WeatherStation.WeatherData reading(float temperature, long eventTime) {
+        return new WeatherStation.WeatherData(temperature, 50.0f, 1013.0f, "Mild", "Test Weather Station", eventTime);
+    }
+    
     /**
      * 测试用的观察者实现
      */
     private static class TestObserver implements Observer {
         private final String name;
         private final AtomicInteger updateCount = new AtomicInteger(0);
-        private final java.util.Set<String> receivedEvents = java.util.concurrent.ConcurrentHashMap.newKeySet();
+        private final Set<String> receivedEvents = ConcurrentHashMap.newKeySet();
+        private volatile Object lastData;
         
         public TestObserver(String name) {
             this.name = name;
@@ -287,6 +1100,7 @@ public class ObserverTest {
         public void update(Subject subject, String event, Object data) {
             updateCount.incrementAndGet();
             receivedEvents.add(event);
+            lastData = data;
         }
         
         @Override
@@ -298,8 +1112,12 @@ public class ObserverTest {
             return updateCount.get();
         }
         
-        public java.util.Set<String> getReceivedEvents() {
+        public Set<String> getReceivedEvents() {
             return receivedEvents;
         }
+        
+        public Object getLastData() {
+            return lastData;
+        }
     }
 }